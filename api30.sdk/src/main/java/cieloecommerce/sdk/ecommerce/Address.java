@@ -2,51 +2,54 @@ package cieloecommerce.sdk.ecommerce;
 
 import com.google.gson.annotations.SerializedName;
 
+import cieloecommerce.sdk.codegen.JsonModel;
+
 /**
  * Representation of customer's address
  */
+@JsonModel
 public class Address {
 	/**
 	 * {@link Address#getStreet()}
 	 */
 	@SerializedName("Street")
-	private String street;
+	String street;
 
 	/**
 	 * {@link Address#getNumber()}
 	 */
 	@SerializedName("Number")
-	private String number;
+	String number;
 
 	/**
 	 * {@link Address#getComplement()}
 	 */
 	@SerializedName("Complement")
-	private String complement;
+	String complement;
 
 	/**
 	 * {@link Address#getZipCode()}
 	 */
 	@SerializedName("ZipCode")
-	private String zipCode;
+	String zipCode;
 
 	/**
 	 * {@link Address#getCity()}
 	 */
 	@SerializedName("City")
-	private String city;
+	String city;
 
 	/**
 	 * {@link Address#getState()}
 	 */
 	@SerializedName("State")
-	private String state;
+	String state;
 
 	/**
 	 * {@link Address#getCountry()}
 	 */
 	@SerializedName("Country")
-	private String country;
+	String country;
 
 	/**
 	 * @return the city of customer's address
@@ -2,27 +2,30 @@ package cieloecommerce.sdk.ecommerce;
 
 import com.google.gson.annotations.SerializedName;
 
+import cieloecommerce.sdk.codegen.JsonModel;
+
+@JsonModel
 public class CardToken {
 	@SerializedName("Brand")
-	private String brand;
+	String brand;
 
 	@SerializedName("CardNumber")
-	private String cardNumber;
+	String cardNumber;
 
 	@SerializedName("CardToken")
-	private String cardToken;
+	String cardToken;
 
 	@SerializedName("CustomerName")
-	private String customerName;
+	String customerName;
 
 	@SerializedName("ExpirationDate")
-	private String expirationDate;
+	String expirationDate;
 
 	@SerializedName("Holder")
-	private String holder;
+	String holder;
 
 	@SerializedName("Links")
-	private Object links;
+	Object links;
 
 	public String getBrand() {
 		return brand;
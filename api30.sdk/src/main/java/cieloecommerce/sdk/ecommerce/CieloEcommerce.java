@@ -1,23 +1,57 @@
 package cieloecommerce.sdk.ecommerce;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import org.apache.http.client.HttpClient;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.pool.PoolStats;
 
 import cieloecommerce.sdk.Merchant;
+import cieloecommerce.sdk.ecommerce.cache.QuerySaleCache;
+import cieloecommerce.sdk.ecommerce.cache.QuerySaleCoalescer;
+import cieloecommerce.sdk.ecommerce.metrics.Metrics;
+import cieloecommerce.sdk.ecommerce.request.AbstractSaleRequest;
 import cieloecommerce.sdk.ecommerce.request.CieloRequestException;
+import cieloecommerce.sdk.ecommerce.request.CircuitBreaker;
+import cieloecommerce.sdk.ecommerce.request.ConcurrencyLimiter;
+import cieloecommerce.sdk.ecommerce.request.ConnectionPool;
 import cieloecommerce.sdk.ecommerce.request.CreateCartTokenRequest;
 import cieloecommerce.sdk.ecommerce.request.CreateSaleRequest;
+import cieloecommerce.sdk.ecommerce.request.HedgePolicy;
+import cieloecommerce.sdk.ecommerce.request.MerchantHeaders;
 import cieloecommerce.sdk.ecommerce.request.QuerySaleRequest;
+import cieloecommerce.sdk.ecommerce.request.RequestIdGenerator;
+import cieloecommerce.sdk.ecommerce.request.RequestListener;
+import cieloecommerce.sdk.ecommerce.request.RetryPolicy;
 import cieloecommerce.sdk.ecommerce.request.UpdateSaleRequest;
+import cieloecommerce.sdk.ecommerce.request.WarmUp;
+import cieloecommerce.sdk.ecommerce.request.WarmUpReport;
+import cieloecommerce.sdk.transport.Transport;
 
 /**
  * The Cielo Ecommerce SDK front-end;
  */
 public class CieloEcommerce {
 	private final Merchant merchant;
-	private final Environment environment;
+	private final cieloecommerce.sdk.Environment environment;
+	private final MerchantHeaders merchantHeaders;
 	private HttpClient httpClient;
+	private HttpAsyncClient httpAsyncClient;
+	private Transport transport;
+	private ConnectionPool connectionPool;
+	private Executor executor;
+	private QuerySaleCache querySaleCache;
+	private QuerySaleCoalescer querySaleCoalescer;
+	private HedgePolicy hedgePolicy;
+	private RetryPolicy retryPolicy;
+	private ConcurrencyLimiter concurrencyLimiter;
+	private CircuitBreaker circuitBreaker;
+	private Metrics metrics;
+	private RequestListener requestListener;
+	private RequestIdGenerator requestIdGenerator = RequestIdGenerator.TIME_ORDERED;
+	private long maxResponseBodySize = AbstractSaleRequest.DEFAULT_MAX_RESPONSE_BODY_SIZE;
 
 	/**
 	 * Create an instance of CieloEcommerce choosing the environment where the
@@ -26,12 +60,30 @@ public class CieloEcommerce {
 	 * @param merchant
 	 *            The merchant credentials
 	 * @param environment
+	 *            The environment: {@link Environment#PRODUCTION},
+	 *            {@link Environment#SANDBOX} or any other implementation, such
+	 *            as a local simulator
+	 */
+	public CieloEcommerce(Merchant merchant, cieloecommerce.sdk.Environment environment) {
+		this.merchant = merchant;
+		this.environment = environment;
+		this.merchantHeaders = new MerchantHeaders(merchant);
+
+		setConnectionPool(ConnectionPool.shared());
+	}
+
+	/**
+	 * Create an instance of CieloEcommerce on one of Cielo's environments;
+	 * kept so code compiled against the enum-only constructor still links
+	 *
+	 * @param merchant
+	 *            The merchant credentials
+	 * @param environment
 	 *            The environment: {@link Environment#PRODUCTION} or
 	 *            {@link Environment#SANDBOX}
 	 */
 	public CieloEcommerce(Merchant merchant, Environment environment) {
-		this.merchant = merchant;
-		this.environment = environment;
+		this(merchant, (cieloecommerce.sdk.Environment) environment);
 	}
 
 	/**
@@ -44,10 +96,281 @@ public class CieloEcommerce {
 		this(merchant, Environment.PRODUCTION);
 	}
 
+	/**
+	 * Use a custom HttpClient instead of the pooled one. When set, the
+	 * connection management is up to the caller.
+	 *
+	 * @param httpClient
+	 *            The HttpClient used to send the requests
+	 */
 	public void setHttpClient(HttpClient httpClient) {
 		this.httpClient = httpClient;
 	}
 
+	/**
+	 * Use a custom HttpAsyncClient, already started, instead of the pooled one
+	 * on the async operations.
+	 *
+	 * @param httpAsyncClient
+	 *            The HttpAsyncClient used to send the async requests
+	 */
+	public void setHttpAsyncClient(HttpAsyncClient httpAsyncClient) {
+		this.httpAsyncClient = httpAsyncClient;
+	}
+
+	/**
+	 * Send the requests through the given transport instead of the Apache
+	 * clients. {@link cieloecommerce.sdk.ecommerce.request.JdkHttpTransport}
+	 * negotiates HTTP/2, multiplexing the concurrent requests over a few
+	 * connections; the pool statistics don't count its connections.
+	 *
+	 * @param transport
+	 *            The transport, or null to use the Apache clients
+	 */
+	public void setTransport(Transport transport) {
+		this.transport = transport;
+	}
+
+	/**
+	 * Run the async operations on the given executor, through the blocking
+	 * client, instead of using the non-blocking one. On JDK 21 and newer,
+	 * {@code Executors.newVirtualThreadPerTaskExecutor()} lets each request
+	 * run on its own virtual thread. The pooled Apache client waits for its
+	 * connections inside synchronized blocks, pinning the carrier threads, so
+	 * with virtual threads also call
+	 * {@code setTransport(new JdkHttpTransport())}.
+	 *
+	 * @param executor
+	 *            The executor of the async operations, or null to use the
+	 *            non-blocking client
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Limit the size of the responses read from Cielo
+	 *
+	 * @param maxResponseBodySize
+	 *            The maximum size, in bytes, of a decompressed response body
+	 */
+	public void setMaxResponseBodySize(long maxResponseBodySize) {
+		this.maxResponseBodySize = maxResponseBodySize;
+	}
+
+	/**
+	 * Answer querySale from the cache when possible. Captures and
+	 * cancellations sent through this instance invalidate the cached Sale.
+	 *
+	 * @param querySaleCache
+	 *            The cache, possibly shared with other instances of the same
+	 *            merchant, or null to always query Cielo
+	 */
+	public void setQuerySaleCache(QuerySaleCache querySaleCache) {
+		this.querySaleCache = querySaleCache;
+	}
+
+	/**
+	 * @return The cache of querySale, or null
+	 */
+	public QuerySaleCache getQuerySaleCache() {
+		return querySaleCache;
+	}
+
+	/**
+	 * Send a single query at a time for each paymentId; concurrent queries of
+	 * the same paymentId wait for the one in flight and receive its result.
+	 * After a capture or cancellation sent through this instance, the queries
+	 * of its paymentId don't wait for the ones sent before it.
+	 *
+	 * @param querySaleCoalescer
+	 *            The coalescer, possibly shared with other instances of the
+	 *            same merchant, or null to send every query
+	 */
+	public void setQuerySaleCoalescer(QuerySaleCoalescer querySaleCoalescer) {
+		this.querySaleCoalescer = querySaleCoalescer;
+	}
+
+	/**
+	 * @return The coalescer of querySale, or null
+	 */
+	public QuerySaleCoalescer getQuerySaleCoalescer() {
+		return querySaleCoalescer;
+	}
+
+	/**
+	 * Hedge the queries: when Cielo takes longer than usual to answer, send a
+	 * second query and use whichever response arrives first. The hedges are
+	 * sent through the async client or the executor, even by querySale.
+	 *
+	 * @param hedgePolicy
+	 *            The policy, possibly shared with other instances, or null to
+	 *            never hedge
+	 */
+	public void setHedgePolicy(HedgePolicy hedgePolicy) {
+		this.hedgePolicy = hedgePolicy;
+	}
+
+	/**
+	 * @return The hedge policy of the queries, or null
+	 */
+	public HedgePolicy getHedgePolicy() {
+		return hedgePolicy;
+	}
+
+	/**
+	 * Retry the failed requests that are safe to send again, the queries, or
+	 * every request when the policy {@link RetryPolicy#setRetryWrites(boolean)
+	 * retries writes}.
+	 *
+	 * @param retryPolicy
+	 *            The policy, possibly shared with other instances, or null to
+	 *            never retry
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * Limit the requests in flight to the Api URL and to the Api Query URL,
+	 * rejecting the excess with
+	 * {@link cieloecommerce.sdk.ecommerce.request.LimitExceededException}
+	 * instead of letting them wait for Cielo.
+	 *
+	 * @param concurrencyLimiter
+	 *            The limiter, possibly shared with other instances, or null to
+	 *            send every request
+	 */
+	public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	/**
+	 * Fail fast, with
+	 * {@link cieloecommerce.sdk.ecommerce.request.CircuitOpenException},
+	 * while Cielo's Api or Api Query host is failing, instead of waiting for
+	 * each request to time out.
+	 *
+	 * @param circuitBreaker
+	 *            The breaker, possibly shared with other instances, or null to
+	 *            always send the requests
+	 */
+	public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	/**
+	 * Record the latency, statuses, Cielo errors and bytes of each request
+	 *
+	 * @param metrics
+	 *            The metrics, possibly shared with other instances, or null
+	 *            to record nothing
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return The metrics, or null
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Follow the phases of each request: connection lease and handshakes,
+	 * time to first byte, decoding, etc.
+	 *
+	 * @param requestListener
+	 *            The listener, like a
+	 *            {@link cieloecommerce.sdk.ecommerce.request.TraceRecorder}, or
+	 *            null
+	 */
+	public void setRequestListener(RequestListener requestListener) {
+		this.requestListener = requestListener;
+	}
+
+	/**
+	 * Set how the RequestIds are generated for the requests sent without one
+	 *
+	 * @param requestIdGenerator
+	 *            {@link RequestIdGenerator#TIME_ORDERED}, the default,
+	 *            {@link RequestIdGenerator#RANDOM_UUID} or any other
+	 */
+	public void setRequestIdGenerator(RequestIdGenerator requestIdGenerator) {
+		this.requestIdGenerator = requestIdGenerator;
+	}
+
+	/**
+	 * Use a dedicated connection pool instead of the one shared by all
+	 * CieloEcommerce instances.
+	 *
+	 * @param connectionPool
+	 *            The pool used to send the requests
+	 */
+	public void setConnectionPool(ConnectionPool connectionPool) {
+		connectionPool.register(environment);
+
+		this.connectionPool = connectionPool;
+	}
+
+	/**
+	 * @return leased, available and pending connections of the pool, considering
+	 *         all routes
+	 */
+	public PoolStats getPoolStats() {
+		return connectionPool.getTotalStats();
+	}
+
+	/**
+	 * @return leased, available and pending connections to the Api URL
+	 */
+	public PoolStats getApiPoolStats() {
+		return connectionPool.getStats(environment.getApiUrl());
+	}
+
+	/**
+	 * @return leased, available and pending connections to the Api Query URL
+	 */
+	public PoolStats getApiQueryPoolStats() {
+		return connectionPool.getStats(environment.getApiQueryURL());
+	}
+
+	/**
+	 * Prepare for the first payments after the application starts: resolve
+	 * and connect to both URLs, priming the TLS sessions, open the pooled
+	 * connections and compile the JSON codecs.
+	 *
+	 * @param warmUp
+	 *            What to warm up; the priming queries only go through the
+	 *            non-blocking client when no executor is set
+	 * @return How long each phase took
+	 * @throws IOException
+	 *             if Cielo can't be reached
+	 */
+	public WarmUpReport warmUp(WarmUp warmUp) throws IOException {
+		QuerySaleRequest request = new QuerySaleRequest(merchant, environment);
+
+		configure(request);
+
+		if (executor != null && warmUp.isAsync()) {
+			warmUp = new WarmUp().setConnections(warmUp.getConnections())
+					.setCodecIterations(warmUp.getCodecIterations())
+					.setAsync(false);
+		}
+
+		return request.warmUp(warmUp);
+	}
+
+	/**
+	 * Warm up opening the given number of pooled connections to each URL
+	 *
+	 * @see #warmUp(WarmUp)
+	 */
+	public WarmUpReport warmUp(int connections) throws IOException {
+		return warmUp(new WarmUp().setConnections(connections));
+	}
+
 	/**
 	 * Send the Sale to be created and return the Sale with tid and the status
 	 * returned by Cielo.
@@ -63,9 +386,28 @@ public class CieloEcommerce {
 	 *      Codes</a>
 	 */
 	public Sale createSale(Sale sale) throws IOException, CieloRequestException {
+		return createSale(sale, null);
+	}
+
+	/**
+	 * Send the Sale to be created with the given RequestId, to find the
+	 * request on the application's logs and on Cielo's. Cielo doesn't
+	 * deduplicate sales by RequestId: a Sale sent again may be created twice.
+	 *
+	 * @param sale
+	 *            The preconfigured Sale
+	 * @param requestId
+	 *            An unique id of this operation, like an UUID
+	 * @return The Sale with authorization, tid, etc. returned by Cielo.
+	 * @throws IOException
+	 * @throws CieloRequestException
+	 *             if anything gets wrong.
+	 */
+	public Sale createSale(Sale sale, String requestId) throws IOException, CieloRequestException {
 		CreateSaleRequest createSaleRequest = new CreateSaleRequest(merchant, environment);
 
-		createSaleRequest.setHttpClient(httpClient);
+		configure(createSaleRequest);
+		createSaleRequest.setRequestId(requestId);
 
 		sale = createSaleRequest.execute(sale);
 
@@ -88,7 +430,7 @@ public class CieloEcommerce {
 	public CardToken createCardToken(CardToken cardToken) throws IOException, CieloRequestException {
 		CreateCartTokenRequest createCartTokenRequest = new CreateCartTokenRequest(merchant, environment);
 
-		createCartTokenRequest.setHttpClient(httpClient);
+		configure(createCartTokenRequest);
 
 		cardToken = createCartTokenRequest.execute(cardToken);
 
@@ -109,13 +451,23 @@ public class CieloEcommerce {
 	 *      Codes</a>
 	 */
 	public Sale querySale(String paymentId) throws IOException, CieloRequestException {
-		QuerySaleRequest querySaleRequest = new QuerySaleRequest(merchant, environment);
+		QuerySaleCache querySaleCache = this.querySaleCache;
 
-		querySaleRequest.setHttpClient(httpClient);
+		if (querySaleCache != null) {
+			Sale cached = querySaleCache.get(paymentId);
 
-		Sale sale = querySaleRequest.execute(paymentId);
+			if (cached != null) {
+				return cached;
+			}
+		}
 
-		return sale;
+		QuerySaleCoalescer querySaleCoalescer = this.querySaleCoalescer;
+
+		if (querySaleCoalescer != null) {
+			return querySaleCoalescer.query(paymentId, this::sendQuerySale);
+		}
+
+		return sendQuerySale(paymentId);
 	}
 
 	/**
@@ -136,12 +488,14 @@ public class CieloEcommerce {
 	public Sale cancelSale(String paymentId, Integer amount) throws IOException, CieloRequestException {
 		UpdateSaleRequest updateSaleRequest = new UpdateSaleRequest("void", merchant, environment);
 
-		updateSaleRequest.setHttpClient(httpClient);
+		configure(updateSaleRequest);
 		updateSaleRequest.setAmount(amount);
 
-		Sale sale = updateSaleRequest.execute(paymentId);
-
-		return sale;
+		try {
+			return updateSaleRequest.execute(paymentId);
+		} finally {
+			invalidate(paymentId);
+		}
 	}
 
 	/**
@@ -184,13 +538,15 @@ public class CieloEcommerce {
 			throws IOException, CieloRequestException {
 		UpdateSaleRequest updateSaleRequest = new UpdateSaleRequest("capture", merchant, environment);
 
-		updateSaleRequest.setHttpClient(httpClient);
+		configure(updateSaleRequest);
 		updateSaleRequest.setAmount(amount);
 		updateSaleRequest.setServiceTaxAmount(serviceTaxAmount);
 
-		Sale sale = updateSaleRequest.execute(paymentId);
-
-		return sale;
+		try {
+			return updateSaleRequest.execute(paymentId);
+		} finally {
+			invalidate(paymentId);
+		}
 	}
 
 	/**
@@ -228,4 +584,289 @@ public class CieloEcommerce {
 	public Sale captureSale(String paymentId) throws IOException, CieloRequestException {
 		return captureSale(paymentId, null, null);
 	}
+
+	/**
+	 * Send the Sale to be created without blocking the calling thread.
+	 *
+	 * @param sale
+	 *            The preconfigured Sale
+	 * @return A future of the Sale with authorization, tid, etc. returned by
+	 *         Cielo; completed exceptionally with {@link CieloRequestException}
+	 *         if anything gets wrong.
+	 * @see #createSale(Sale)
+	 */
+	public CompletableFuture<Sale> createSaleAsync(Sale sale) {
+		return createSaleAsync(sale, null);
+	}
+
+	/**
+	 * Send the Sale to be created with the given RequestId, without blocking
+	 * the calling thread.
+	 *
+	 * @param sale
+	 *            The preconfigured Sale
+	 * @param requestId
+	 *            An unique id of this operation, like an UUID
+	 * @return A future of the Sale with authorization, tid, etc. returned by
+	 *         Cielo; completed exceptionally with {@link CieloRequestException}
+	 *         if anything gets wrong.
+	 * @see #createSale(Sale, String)
+	 */
+	public CompletableFuture<Sale> createSaleAsync(Sale sale, String requestId) {
+		CreateSaleRequest createSaleRequest = new CreateSaleRequest(merchant, environment);
+
+		configure(createSaleRequest);
+		createSaleRequest.setRequestId(requestId);
+
+		return executeAsync(createSaleRequest, sale);
+	}
+
+	/**
+	 * Create a card token without blocking the calling thread.
+	 *
+	 * @param cardToken
+	 *            The credit card data
+	 * @return A future of the card token; completed exceptionally with
+	 *         {@link CieloRequestException} if anything gets wrong.
+	 * @see #createCardToken(CardToken)
+	 */
+	public CompletableFuture<CardToken> createCardTokenAsync(CardToken cardToken) {
+		CreateCartTokenRequest createCartTokenRequest = new CreateCartTokenRequest(merchant, environment);
+
+		configure(createCartTokenRequest);
+
+		return executeAsync(createCartTokenRequest, cardToken);
+	}
+
+	/**
+	 * Query a Sale on Cielo by paymentId without blocking the calling thread.
+	 *
+	 * @param paymentId
+	 *            The paymentId to be queried
+	 * @return A future of the Sale; completed exceptionally with
+	 *         {@link CieloRequestException} if anything gets wrong.
+	 * @see #querySale(String)
+	 */
+	public CompletableFuture<Sale> querySaleAsync(String paymentId) {
+		QuerySaleCache querySaleCache = this.querySaleCache;
+
+		if (querySaleCache != null) {
+			Sale cached = querySaleCache.get(paymentId);
+
+			if (cached != null) {
+				return CompletableFuture.completedFuture(cached);
+			}
+		}
+
+		QuerySaleCoalescer querySaleCoalescer = this.querySaleCoalescer;
+
+		if (querySaleCoalescer != null) {
+			return querySaleCoalescer.queryAsync(paymentId, this::sendQuerySaleAsync);
+		}
+
+		return sendQuerySaleAsync(paymentId);
+	}
+
+	/**
+	 * Cancel a Sale on Cielo by paymentId and speficying the amount, without
+	 * blocking the calling thread.
+	 *
+	 * @param paymentId
+	 *            The paymentId to be cancelled
+	 * @param amount
+	 *            Order value in cents
+	 * @return A future of the Sale; completed exceptionally with
+	 *         {@link CieloRequestException} if anything gets wrong.
+	 * @see #cancelSale(String, Integer)
+	 */
+	public CompletableFuture<Sale> cancelSaleAsync(String paymentId, Integer amount) {
+		UpdateSaleRequest updateSaleRequest = new UpdateSaleRequest("void", merchant, environment);
+
+		configure(updateSaleRequest);
+		updateSaleRequest.setAmount(amount);
+
+		return invalidateOnCompletion(executeAsync(updateSaleRequest, paymentId), paymentId);
+	}
+
+	/**
+	 * Cancel a Sale on Cielo by paymentId, without blocking the calling thread.
+	 *
+	 * @param paymentId
+	 *            The paymentId to be cancelled
+	 * @return A future of the Sale; completed exceptionally with
+	 *         {@link CieloRequestException} if anything gets wrong.
+	 * @see #cancelSale(String)
+	 */
+	public CompletableFuture<Sale> cancelSaleAsync(String paymentId) {
+		return cancelSaleAsync(paymentId, null);
+	}
+
+	/**
+	 * Capture a Sale on Cielo by paymentId and specifying the amount and the
+	 * serviceTaxAmount, without blocking the calling thread.
+	 *
+	 * @param paymentId
+	 *            The paymentId to be captured
+	 * @param amount
+	 *            Amount of the authorization to be captured
+	 * @param serviceTaxAmount
+	 *            Amount of the authorization should be destined for the service
+	 *            charge
+	 * @return A future of the Sale; completed exceptionally with
+	 *         {@link CieloRequestException} if anything gets wrong.
+	 * @see #captureSale(String, Integer, Integer)
+	 */
+	public CompletableFuture<Sale> captureSaleAsync(String paymentId, Integer amount, Integer serviceTaxAmount) {
+		UpdateSaleRequest updateSaleRequest = new UpdateSaleRequest("capture", merchant, environment);
+
+		configure(updateSaleRequest);
+		updateSaleRequest.setAmount(amount);
+		updateSaleRequest.setServiceTaxAmount(serviceTaxAmount);
+
+		return invalidateOnCompletion(executeAsync(updateSaleRequest, paymentId), paymentId);
+	}
+
+	/**
+	 * Capture a Sale on Cielo by paymentId and specifying the amount, without
+	 * blocking the calling thread.
+	 *
+	 * @param paymentId
+	 *            The paymentId to be captured
+	 * @param amount
+	 *            Amount of the authorization to be captured
+	 * @return A future of the Sale; completed exceptionally with
+	 *         {@link CieloRequestException} if anything gets wrong.
+	 * @see #captureSale(String, Integer)
+	 */
+	public CompletableFuture<Sale> captureSaleAsync(String paymentId, Integer amount) {
+		return captureSaleAsync(paymentId, amount, null);
+	}
+
+	/**
+	 * Capture a Sale on Cielo by paymentId, without blocking the calling
+	 * thread.
+	 *
+	 * @param paymentId
+	 *            The paymentId to be captured
+	 * @return A future of the Sale; completed exceptionally with
+	 *         {@link CieloRequestException} if anything gets wrong.
+	 * @see #captureSale(String)
+	 */
+	public CompletableFuture<Sale> captureSaleAsync(String paymentId) {
+		return captureSaleAsync(paymentId, null, null);
+	}
+
+	/**
+	 * Query Cielo, caching the Sale returned
+	 */
+	private Sale sendQuerySale(final String paymentId) throws IOException, CieloRequestException {
+		HedgePolicy hedgePolicy = this.hedgePolicy;
+		QuerySaleCache querySaleCache = this.querySaleCache;
+		long version = querySaleCache != null ? querySaleCache.currentVersion() : 0;
+		Sale sale;
+
+		if (hedgePolicy != null) {
+			sale = hedgePolicy.execute(() -> executeQuerySale(paymentId));
+		} else {
+			QuerySaleRequest querySaleRequest = new QuerySaleRequest(merchant, environment);
+
+			configure(querySaleRequest);
+
+			sale = querySaleRequest.execute(paymentId);
+		}
+
+		if (querySaleCache != null) {
+			querySaleCache.put(paymentId, sale, version);
+		}
+
+		return sale;
+	}
+
+	private CompletableFuture<Sale> sendQuerySaleAsync(final String paymentId) {
+		HedgePolicy hedgePolicy = this.hedgePolicy;
+		final QuerySaleCache querySaleCache = this.querySaleCache;
+		final long version = querySaleCache != null ? querySaleCache.currentVersion() : 0;
+		CompletableFuture<Sale> future;
+
+		if (hedgePolicy != null) {
+			future = hedgePolicy.executeAsync(() -> executeQuerySale(paymentId));
+		} else {
+			future = executeQuerySale(paymentId);
+		}
+
+		if (querySaleCache == null) {
+			return future;
+		}
+
+		return future.thenApply(sale -> {
+			querySaleCache.put(paymentId, sale, version);
+
+			return sale;
+		});
+	}
+
+	private CompletableFuture<Sale> executeQuerySale(String paymentId) {
+		QuerySaleRequest querySaleRequest = new QuerySaleRequest(merchant, environment);
+
+		configure(querySaleRequest);
+
+		return executeAsync(querySaleRequest, paymentId);
+	}
+
+	/**
+	 * A capture or cancellation changes the Sale; even when it fails, the Sale
+	 * may have changed, so neither the cached one nor the one of a query in
+	 * flight can be trusted anymore
+	 */
+	private void invalidate(String paymentId) {
+		QuerySaleCache querySaleCache = this.querySaleCache;
+		QuerySaleCoalescer querySaleCoalescer = this.querySaleCoalescer;
+
+		if (querySaleCache != null) {
+			querySaleCache.invalidate(paymentId);
+		}
+
+		if (querySaleCoalescer != null) {
+			querySaleCoalescer.invalidate(paymentId);
+		}
+	}
+
+	private CompletableFuture<Sale> invalidateOnCompletion(CompletableFuture<Sale> future, final String paymentId) {
+		if (querySaleCache == null && querySaleCoalescer == null) {
+			return future;
+		}
+
+		return future.whenComplete((sale, failure) -> invalidate(paymentId));
+	}
+
+	/**
+	 * Send the request through the executor, when set, or the non-blocking
+	 * client
+	 */
+	private <Request, Response> CompletableFuture<Response> executeAsync(
+			AbstractSaleRequest<Request, Response> request, Request param) {
+		if (executor != null) {
+			return request.executeAsync(param, executor);
+		}
+
+		return request.executeAsync(param);
+	}
+
+	/**
+	 * Share this instance's transport and merchant headers with the request
+	 */
+	private void configure(AbstractSaleRequest<?, ?> request) {
+		request.setMerchantHeaders(merchantHeaders);
+		request.setConnectionPool(connectionPool);
+		request.setHttpClient(httpClient);
+		request.setHttpAsyncClient(httpAsyncClient);
+		request.setTransport(transport);
+		request.setMaxResponseBodySize(maxResponseBodySize);
+		request.setRetryPolicy(retryPolicy);
+		request.setConcurrencyLimiter(concurrencyLimiter);
+		request.setCircuitBreaker(circuitBreaker);
+		request.setMetrics(metrics);
+		request.setRequestListener(requestListener);
+		request.setRequestIdGenerator(requestIdGenerator);
+	}
 }
@@ -2,27 +2,36 @@ package cieloecommerce.sdk.ecommerce;
 
 import com.google.gson.annotations.SerializedName;
 
+import cieloecommerce.sdk.codegen.JsonModel;
+
+@JsonModel
 public class CreditCard {
 	@SerializedName("CardNumber")
-	private String cardNumber;
+	String cardNumber;
 
 	@SerializedName("Holder")
-	private String holder;
+	String holder;
 
 	@SerializedName("ExpirationDate")
-	private String expirationDate;
+	String expirationDate;
 
 	@SerializedName("SecurityCode")
-	private String securityCode;
+	String securityCode;
 
 	@SerializedName("SaveCard")
-	private boolean saveCard = false;
+	boolean saveCard = false;
 
 	@SerializedName("Brand")
-	private String brand;
+	String brand;
 
 	@SerializedName("CardToken")
-	private String cardToken;
+	String cardToken;
+
+	/**
+	 * Used by the JSON decoding
+	 */
+	CreditCard() {
+	}
 
 	public CreditCard(String securityCode, String brand) {
 		setSecurityCode(securityCode);
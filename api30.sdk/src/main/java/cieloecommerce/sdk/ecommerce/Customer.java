@@ -2,27 +2,36 @@ package cieloecommerce.sdk.ecommerce;
 
 import com.google.gson.annotations.SerializedName;
 
+import cieloecommerce.sdk.codegen.JsonModel;
+
+@JsonModel
 public class Customer {
 	@SerializedName("Name")
-	private String name;
+	String name;
 
 	@SerializedName("Email")
-	private String email;
+	String email;
 
 	@SerializedName("BirthDate")
-	private String birthDate;
+	String birthDate;
 
 	@SerializedName("Identity")
-	private String identity;
+	String identity;
 
 	@SerializedName("IdentityType")
-	private String identityType;
+	String identityType;
 
 	@SerializedName("Address")
-	private Address address;
+	Address address;
 
 	@SerializedName("DeliveryAddress")
-	private Address deliveryAddress;
+	Address deliveryAddress;
+
+	/**
+	 * Used by the JSON decoding
+	 */
+	Customer() {
+	}
 
 	public Customer(String name) {
 		setName(name);
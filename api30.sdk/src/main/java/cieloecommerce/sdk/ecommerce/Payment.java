@@ -2,75 +2,86 @@ package cieloecommerce.sdk.ecommerce;
 
 import com.google.gson.annotations.SerializedName;
 
+import cieloecommerce.sdk.codegen.JsonModel;
+
+@JsonModel
 public class Payment {
 	@SerializedName("ServiceTaxAmount")
-	private Integer serviceTaxAmount;
+	Integer serviceTaxAmount;
 	@SerializedName("Installments")
-	private Integer installments;
+	Integer installments;
 	@SerializedName("Interest")
-	private String interest;
+	String interest;
 	@SerializedName("Capture")
-	private boolean capture = false;
+	boolean capture = false;
 	@SerializedName("Authenticate")
-	private boolean authenticate = false;
+	boolean authenticate = false;
 	@SerializedName("Recurrent")
-	private boolean recurrent;
+	boolean recurrent;
 	@SerializedName("RecurrentPayment")
-	private RecurrentPayment recurrentPayment;
+	RecurrentPayment recurrentPayment;
 	@SerializedName("CreditCard")
-	private CreditCard creditCard;
+	CreditCard creditCard;
 	@SerializedName("Tid")
-	private String tid;
+	String tid;
 	@SerializedName("ProofOfSale")
-	private String proofOfSale;
+	String proofOfSale;
 	@SerializedName("AuthorizationCode")
-	private String authorizationCode;
+	String authorizationCode;
 	@SerializedName("SoftDescriptor")
-	private String softDescriptor = "";
+	String softDescriptor;
 	@SerializedName("ReturnUrl")
-	private String returnUrl;
+	String returnUrl;
 	@SerializedName("Provider")
-	private Provider provider;
+	Provider provider;
 	@SerializedName("PaymentId")
-	private String paymentId;
+	String paymentId;
 	@SerializedName("Type")
-	private Type type;
+	Type type;
 	@SerializedName("Amount")
-	private Integer amount;
+	Integer amount;
 	@SerializedName("ReceiveDate")
-	private String receivedDate;
+	String receivedDate;
 	@SerializedName("CapturedAmount")
-	private Integer capturedAmount;
+	Integer capturedAmount;
 	@SerializedName("CapturedDate")
-	private String capturedDate;
+	String capturedDate;
 	@SerializedName("Currency")
-	private Currency currency;
+	Currency currency;
 	@SerializedName("Country")
-	private String country;
+	String country;
 	@SerializedName("ReturnCode")
-	private String returnCode;
+	String returnCode;
 	@SerializedName("ReturnMessage")
-	private String returnMessage;
+	String returnMessage;
 	@SerializedName("Status")
-	private Integer status;
+	Integer status;
 	@SerializedName("Links")
-	private Object links[];
+	Object links[];
 	@SerializedName("ExtraDataCollection")
-	private Object extraDataCollection[];
+	Object extraDataCollection[];
 	@SerializedName("ExpirationDate")
-	private String expirationDate;
+	String expirationDate;
 	@SerializedName("Url")
-	private String url;
+	String url;
 	@SerializedName("Number")
-	private String number;
+	String number;
 	@SerializedName("BarCodeNumber")
-	private String barCodeNumber;
+	String barCodeNumber;
 	@SerializedName("DigitableLine")
-	private String digitableLine;
+	String digitableLine;
 	@SerializedName("Address")
-	private String address;
+	String address;
+
+	/**
+	 * Used by the JSON decoding; a SoftDescriptor absent from the JSON stays
+	 * null
+	 */
+	Payment() {
+	}
 
 	public Payment(Integer amount, Integer installments) {
+		setSoftDescriptor("");
 		setAmount(amount);
 		setInstallments(installments);
 	}
@@ -1,9 +1,18 @@
 package cieloecommerce.sdk.ecommerce;
 
+import cieloecommerce.sdk.codegen.JsonModel;
+
+@JsonModel
 public class RecurrentPayment {
-	private boolean authorizeNow;
-	private String endDate;
-	private Interval interval;
+	boolean authorizeNow;
+	String endDate;
+	Interval interval;
+
+	/**
+	 * Used by the JSON decoding
+	 */
+	RecurrentPayment() {
+	}
 
 	public RecurrentPayment(boolean authorizeNow) {
 		this.authorizeNow = authorizeNow;
@@ -2,15 +2,24 @@ package cieloecommerce.sdk.ecommerce;
 
 import com.google.gson.annotations.SerializedName;
 
+import cieloecommerce.sdk.codegen.JsonModel;
+
+@JsonModel
 public class Sale {
 	@SerializedName("MerchantOrderId")
-	private String merchantOrderId;
+	String merchantOrderId;
 
 	@SerializedName("Customer")
-	private Customer customer;
+	Customer customer;
 
 	@SerializedName("Payment")
-	private Payment payment;
+	Payment payment;
+
+	/**
+	 * Used by the JSON decoding
+	 */
+	Sale() {
+	}
 
 	public Sale(String merchantOrderId) {
 		this.merchantOrderId = merchantOrderId;
@@ -0,0 +1,29 @@
+package cieloecommerce.sdk.ecommerce.batch;
+
+import java.io.IOException;
+
+/**
+ * Keeps track of the operations already done, so a batch interrupted by a
+ * crash can be resumed without sending them again.
+ *
+ * @see FileBatchCheckpoint
+ */
+public interface BatchCheckpoint {
+	/**
+	 * @param operation
+	 *            An operation of the batch input
+	 * @return true if the operation reached a final outcome on a previous run
+	 */
+	boolean isCompleted(BatchOperation operation);
+
+	/**
+	 * Record the final outcome of an operation; called concurrently, from the
+	 * threads that complete the requests
+	 *
+	 * @param result
+	 *            The final outcome of the operation
+	 * @throws IOException
+	 *             if the outcome can't be recorded
+	 */
+	void completed(BatchResult result) throws IOException;
+}
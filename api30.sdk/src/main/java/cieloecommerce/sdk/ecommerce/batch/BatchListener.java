@@ -0,0 +1,14 @@
+package cieloecommerce.sdk.ecommerce.batch;
+
+/**
+ * Notified of each operation outcome while the batch runs
+ */
+public interface BatchListener {
+	/**
+	 * Called from the thread that completed the request; must not block
+	 *
+	 * @param result
+	 *            The outcome of the operation
+	 */
+	void onResult(BatchResult result);
+}
@@ -0,0 +1,81 @@
+package cieloecommerce.sdk.ecommerce.batch;
+
+/**
+ * A capture or a cancellation to be sent by the {@link BatchProcessor}
+ */
+public class BatchOperation {
+	private final Type type;
+	private final String paymentId;
+	private final Integer amount;
+	private final Integer serviceTaxAmount;
+
+	public BatchOperation(Type type, String paymentId, Integer amount, Integer serviceTaxAmount) {
+		this.type = type;
+		this.paymentId = paymentId;
+		this.amount = amount;
+		this.serviceTaxAmount = serviceTaxAmount;
+	}
+
+	/**
+	 * Capture the authorization
+	 *
+	 * @param paymentId
+	 *            The paymentId to be captured
+	 * @param amount
+	 *            Amount to be captured, or null for the full amount
+	 * @param serviceTaxAmount
+	 *            Amount destined for the service charge, or null
+	 * @return the capture operation
+	 */
+	public static BatchOperation capture(String paymentId, Integer amount, Integer serviceTaxAmount) {
+		return new BatchOperation(Type.CAPTURE, paymentId, amount, serviceTaxAmount);
+	}
+
+	/**
+	 * Cancel (void) the authorization
+	 *
+	 * @param paymentId
+	 *            The paymentId to be cancelled
+	 * @param amount
+	 *            Amount to be cancelled, or null for the full amount
+	 * @return the cancel operation
+	 */
+	public static BatchOperation cancel(String paymentId, Integer amount) {
+		return new BatchOperation(Type.CANCEL, paymentId, amount, null);
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public String getPaymentId() {
+		return paymentId;
+	}
+
+	public Integer getAmount() {
+		return amount;
+	}
+
+	public Integer getServiceTaxAmount() {
+		return serviceTaxAmount;
+	}
+
+	/**
+	 * Identify the operation on a {@link BatchCheckpoint}; a batch is expected
+	 * to have at most one operation of each type for a paymentId
+	 *
+	 * @return the type and the paymentId
+	 */
+	public String getKey() {
+		return type + ":" + paymentId;
+	}
+
+	@Override
+	public String toString() {
+		return getKey();
+	}
+
+	public enum Type {
+		CAPTURE, CANCEL
+	}
+}
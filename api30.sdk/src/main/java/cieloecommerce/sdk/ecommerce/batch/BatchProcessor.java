@@ -0,0 +1,212 @@
+package cieloecommerce.sdk.ecommerce.batch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+import cieloecommerce.sdk.ecommerce.CieloEcommerce;
+import cieloecommerce.sdk.ecommerce.Sale;
+
+/**
+ * Sends a batch of captures and cancellations through the async operations of
+ * {@link CieloEcommerce}, with a bounded number of requests in flight and an
+ * optional requests-per-second cap.
+ * <p/>
+ * With a {@link BatchCheckpoint}, operations completed on a previous run are
+ * skipped, so an interrupted batch can be resumed with the same input.
+ */
+public class BatchProcessor {
+	/**
+	 * Default number of requests in flight
+	 */
+	public static final int DEFAULT_CONCURRENCY = 32;
+
+	private final CieloEcommerce cieloEcommerce;
+	private int concurrency = DEFAULT_CONCURRENCY;
+	private double requestsPerSecond;
+	private BatchCheckpoint checkpoint;
+	private BatchListener listener;
+
+	public BatchProcessor(CieloEcommerce cieloEcommerce) {
+		this.cieloEcommerce = cieloEcommerce;
+	}
+
+	/**
+	 * @param concurrency
+	 *            Maximum number of requests in flight; it should not be
+	 *            greater than the connection pool's limit per route
+	 * @return this processor
+	 */
+	public BatchProcessor setConcurrency(int concurrency) {
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("concurrency must be positive");
+		}
+
+		this.concurrency = concurrency;
+		return this;
+	}
+
+	/**
+	 * @param requestsPerSecond
+	 *            Maximum rate of requests, or 0 for no limit
+	 * @return this processor
+	 */
+	public BatchProcessor setRequestsPerSecond(double requestsPerSecond) {
+		this.requestsPerSecond = requestsPerSecond;
+		return this;
+	}
+
+	/**
+	 * @param checkpoint
+	 *            Where the completed operations are recorded, or null
+	 * @return this processor
+	 */
+	public BatchProcessor setCheckpoint(BatchCheckpoint checkpoint) {
+		this.checkpoint = checkpoint;
+		return this;
+	}
+
+	/**
+	 * @param listener
+	 *            Notified of each result as soon as it is known, or null
+	 * @return this processor
+	 */
+	public BatchProcessor setListener(BatchListener listener) {
+		this.listener = listener;
+		return this;
+	}
+
+	/**
+	 * Run the batch, blocking until every operation completes
+	 *
+	 * @param operations
+	 *            The operations, consumed lazily
+	 * @return The report of the batch
+	 * @throws IOException
+	 *             if the checkpoint can't be written; the batch stops
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted; no more operations are
+	 *             sent
+	 */
+	public BatchReport run(Stream<BatchOperation> operations) throws IOException, InterruptedException {
+		return run(operations.iterator());
+	}
+
+	/**
+	 * Run the batch, blocking until every operation completes
+	 *
+	 * @param operations
+	 *            The operations
+	 * @return The report of the batch
+	 * @throws IOException
+	 *             if the checkpoint can't be written; the batch stops
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted; no more operations are
+	 *             sent
+	 */
+	public BatchReport run(Iterable<BatchOperation> operations) throws IOException, InterruptedException {
+		return run(operations.iterator());
+	}
+
+	private BatchReport run(Iterator<BatchOperation> operations) throws IOException, InterruptedException {
+		final Semaphore inFlight = new Semaphore(concurrency);
+		final Queue<BatchResult> results = new ConcurrentLinkedQueue<BatchResult>();
+		final Queue<IOException> checkpointFailures = new ConcurrentLinkedQueue<IOException>();
+		RateLimiter rateLimiter = requestsPerSecond > 0 ? new RateLimiter(requestsPerSecond) : null;
+		long skipped = 0;
+		long index = 0;
+		long start = System.nanoTime();
+
+		try {
+			while (operations.hasNext() && checkpointFailures.isEmpty()) {
+				final BatchOperation operation = operations.next();
+				final long operationIndex = index++;
+
+				if (checkpoint != null && checkpoint.isCompleted(operation)) {
+					skipped++;
+					continue;
+				}
+
+				if (rateLimiter != null) {
+					rateLimiter.acquire();
+				}
+
+				inFlight.acquire();
+
+				final long operationStart = System.nanoTime();
+				CompletableFuture<Sale> future;
+
+				try {
+					future = send(operation);
+				} catch (RuntimeException e) {
+					// an invalid operation fails on its own, releasing its permit below
+					future = new CompletableFuture<Sale>();
+					future.completeExceptionally(e);
+				}
+
+				future.whenComplete((sale, failure) -> {
+					try {
+						BatchResult result = new BatchResult(operationIndex, operation, sale, unwrap(failure),
+								System.nanoTime() - operationStart);
+
+						results.add(result);
+
+						if (checkpoint != null && result.isFinal()) {
+							checkpoint.completed(result);
+						}
+
+						if (listener != null) {
+							listener.onResult(result);
+						}
+					} catch (IOException e) {
+						checkpointFailures.add(e);
+					} finally {
+						inFlight.release();
+					}
+				});
+			}
+		} finally {
+			inFlight.acquireUninterruptibly(concurrency);
+		}
+
+		if (!checkpointFailures.isEmpty()) {
+			throw checkpointFailures.peek();
+		}
+
+		List<BatchResult> sorted = new ArrayList<BatchResult>(results);
+
+		Collections.sort(sorted, new Comparator<BatchResult>() {
+			@Override
+			public int compare(BatchResult a, BatchResult b) {
+				return Long.compare(a.getIndex(), b.getIndex());
+			}
+		});
+
+		return new BatchReport(sorted, skipped, System.nanoTime() - start);
+	}
+
+	private CompletableFuture<Sale> send(BatchOperation operation) {
+		switch (operation.getType()) {
+		case CAPTURE:
+			return cieloEcommerce.captureSaleAsync(operation.getPaymentId(), operation.getAmount(),
+					operation.getServiceTaxAmount());
+		case CANCEL:
+			return cieloEcommerce.cancelSaleAsync(operation.getPaymentId(), operation.getAmount());
+		default:
+			throw new IllegalArgumentException("Unknown operation: " + operation.getType());
+		}
+	}
+
+	private static Throwable unwrap(Throwable failure) {
+		return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+	}
+}
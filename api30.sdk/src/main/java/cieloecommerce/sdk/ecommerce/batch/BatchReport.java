@@ -0,0 +1,128 @@
+package cieloecommerce.sdk.ecommerce.batch;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The outcome of a batch: each operation's result plus aggregate throughput
+ * and latency
+ */
+public class BatchReport {
+	private final List<BatchResult> results;
+	private final long skipped;
+	private final long elapsed;
+	private final long[] latencies;
+
+	BatchReport(List<BatchResult> results, long skipped, long elapsed) {
+		this.results = results;
+		this.skipped = skipped;
+		this.elapsed = elapsed;
+		this.latencies = new long[results.size()];
+
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = results.get(i).getLatency();
+		}
+
+		Arrays.sort(latencies);
+	}
+
+	/**
+	 * @return The result of each operation sent on this run, ordered by index
+	 */
+	public List<BatchResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * @return How many operations were sent on this run
+	 */
+	public long getProcessed() {
+		return results.size();
+	}
+
+	/**
+	 * @return How many operations succeeded
+	 */
+	public long getSucceeded() {
+		long succeeded = 0;
+
+		for (BatchResult result : results) {
+			if (result.isSuccess()) {
+				succeeded++;
+			}
+		}
+
+		return succeeded;
+	}
+
+	/**
+	 * @return How many operations failed, either refused by Cielo or not sent
+	 */
+	public long getFailed() {
+		return getProcessed() - getSucceeded();
+	}
+
+	/**
+	 * @return How many operations were skipped because the checkpoint has them
+	 *         as completed
+	 */
+	public long getSkipped() {
+		return skipped;
+	}
+
+	/**
+	 * @return The batch duration, in nanoseconds
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	/**
+	 * @return Operations sent per second
+	 */
+	public double getThroughput() {
+		return elapsed == 0 ? 0 : results.size() * 1e9 / elapsed;
+	}
+
+	/**
+	 * Gets a latency percentile
+	 *
+	 * @param percentile
+	 *            From 0 to 100
+	 * @return the latency, in nanoseconds, or 0 if nothing was sent
+	 */
+	public long getLatency(double percentile) {
+		if (latencies.length == 0) {
+			return 0;
+		}
+
+		int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+
+		return latencies[Math.max(0, Math.min(index, latencies.length - 1))];
+	}
+
+	/**
+	 * @return The mean latency, in nanoseconds
+	 */
+	public long getMeanLatency() {
+		if (latencies.length == 0) {
+			return 0;
+		}
+
+		long total = 0;
+
+		for (long latency : latencies) {
+			total += latency;
+		}
+
+		return total / latencies.length;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"processed: %d; succeeded: %d; failed: %d; skipped: %d; throughput: %.1f/s; latency p50: %.1fms, p99: %.1fms, max: %.1fms",
+				getProcessed(), getSucceeded(), getFailed(), skipped, getThroughput(), getLatency(50) / 1e6,
+				getLatency(99) / 1e6, getLatency(100) / 1e6);
+	}
+}
@@ -0,0 +1,86 @@
+package cieloecommerce.sdk.ecommerce.batch;
+
+import cieloecommerce.sdk.ecommerce.Sale;
+import cieloecommerce.sdk.ecommerce.request.CieloError;
+import cieloecommerce.sdk.ecommerce.request.CieloRequestException;
+import cieloecommerce.sdk.ecommerce.request.CieloStatusException;
+import cieloecommerce.sdk.ecommerce.request.CircuitOpenException;
+import cieloecommerce.sdk.ecommerce.request.LimitExceededException;
+
+/**
+ * The outcome of a single {@link BatchOperation}
+ */
+public class BatchResult {
+	private final long index;
+	private final BatchOperation operation;
+	private final Sale sale;
+	private final Throwable failure;
+	private final long latency;
+
+	BatchResult(long index, BatchOperation operation, Sale sale, Throwable failure, long latency) {
+		this.index = index;
+		this.operation = operation;
+		this.sale = sale;
+		this.failure = failure;
+		this.latency = latency;
+	}
+
+	/**
+	 * @return The position of the operation on the batch input
+	 */
+	public long getIndex() {
+		return index;
+	}
+
+	public BatchOperation getOperation() {
+		return operation;
+	}
+
+	/**
+	 * @return The Sale returned by Cielo, or null if the operation failed
+	 */
+	public Sale getSale() {
+		return sale;
+	}
+
+	/**
+	 * @return The error returned by Cielo, or null if the operation succeeded
+	 *         or failed before reaching Cielo
+	 */
+	public CieloError getError() {
+		return failure instanceof CieloRequestException ? ((CieloRequestException) failure).getError() : null;
+	}
+
+	/**
+	 * @return The exception that failed the operation, or null
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	/**
+	 * @return The operation latency, in nanoseconds
+	 */
+	public long getLatency() {
+		return latency;
+	}
+
+	public boolean isSuccess() {
+		return failure == null;
+	}
+
+	/**
+	 * Whether the operation reached a final outcome: it succeeded, or Cielo
+	 * refused it with a 400 and its errors or a 404. Transport failures,
+	 * unexpected statuses like 429 and 5xx, and requests rejected without
+	 * being sent by the concurrency limiter or an open circuit are not final;
+	 * the operation can be sent again when the batch is resumed.
+	 *
+	 * @return true if the outcome is final
+	 */
+	public boolean isFinal() {
+		return failure == null || (failure instanceof CieloRequestException
+				&& !(failure instanceof CieloStatusException) && !(failure instanceof LimitExceededException)
+				&& !(failure instanceof CircuitOpenException));
+	}
+}
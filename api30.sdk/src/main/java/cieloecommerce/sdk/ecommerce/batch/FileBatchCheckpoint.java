@@ -0,0 +1,85 @@
+package cieloecommerce.sdk.ecommerce.batch;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Checkpoint journal on a file: one line with the key of each completed
+ * operation, flushed as soon as the outcome is known.
+ * <p/>
+ * Opening an existing journal loads the operations completed on previous
+ * runs, so the same file must be used to resume the batch.
+ */
+public class FileBatchCheckpoint implements BatchCheckpoint, Closeable {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final Set<String> completed = ConcurrentHashMap.newKeySet();
+	private final Lock lock = new ReentrantLock();
+	private final Writer writer;
+
+	public FileBatchCheckpoint(File journal) throws IOException {
+		if (journal.exists()) {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), UTF_8));
+
+			try {
+				String line;
+
+				while ((line = reader.readLine()) != null) {
+					if (!line.isEmpty()) {
+						completed.add(line);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+
+		writer = new OutputStreamWriter(new FileOutputStream(journal, true), UTF_8);
+	}
+
+	@Override
+	public boolean isCompleted(BatchOperation operation) {
+		return completed.contains(operation.getKey());
+	}
+
+	@Override
+	public void completed(BatchResult result) throws IOException {
+		String key = result.getOperation().getKey();
+
+		lock.lock();
+
+		try {
+			if (completed.add(key)) {
+				writer.write(key);
+				writer.write('\n');
+				writer.flush();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return how many operations are recorded as completed
+	 */
+	public int size() {
+		return completed.size();
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
@@ -0,0 +1,34 @@
+package cieloecommerce.sdk.ecommerce.batch;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spaces out the requests so they don't go beyond the given rate
+ */
+class RateLimiter {
+	private final long interval;
+	private long next;
+
+	RateLimiter(double permitsPerSecond) {
+		this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+		this.next = System.nanoTime();
+	}
+
+	/**
+	 * Wait for the next slot; only called by the thread feeding the batch
+	 */
+	void acquire() throws InterruptedException {
+		long wait;
+
+		while ((wait = next - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(wait);
+
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+
+		next = Math.max(next, System.nanoTime()) + interval;
+	}
+}
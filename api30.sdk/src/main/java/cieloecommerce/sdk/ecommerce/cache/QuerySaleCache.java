@@ -0,0 +1,319 @@
+package cieloecommerce.sdk.ecommerce.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import cieloecommerce.sdk.ecommerce.Payment;
+import cieloecommerce.sdk.ecommerce.Sale;
+
+/**
+ * Bounded, least recently used cache of the Sales returned by querySale.
+ * <p/>
+ * How long a Sale stays on the cache depends on its payment status: final
+ * statuses (captured, denied, voided, refunded, aborted) don't change anymore
+ * and are kept for a long time, while the others (not finished, authorized,
+ * pending, scheduled) may change at any moment and are kept for a short time.
+ * <p/>
+ * A query in flight while its paymentId is invalidated may return the Sale as
+ * it was before the capture or cancellation; to keep it from being cached,
+ * the queries take the {@link #currentVersion()} before being sent, and
+ * {@link #put(String, Sale, long)} drops the Sales of queries older than the
+ * last invalidation of their paymentId. The invalidations are remembered for
+ * as many paymentIds as the maximum size; beyond that, the queries older than
+ * the forgotten invalidations are dropped.
+ * <p/>
+ * The cached Sales are shared by all callers and must not be modified.
+ */
+public class QuerySaleCache {
+	/**
+	 * Payment statuses as sent by Cielo on {@link Payment#getStatus()}
+	 */
+	public static final int NOT_FINISHED = 0;
+	public static final int AUTHORIZED = 1;
+	public static final int PAYMENT_CONFIRMED = 2;
+	public static final int DENIED = 3;
+	public static final int VOIDED = 10;
+	public static final int REFUNDED = 11;
+	public static final int PENDING = 12;
+	public static final int ABORTED = 13;
+	public static final int SCHEDULED = 20;
+
+	private final int maxSize;
+	private final long finalTtl;
+	private final long pendingTtl;
+	private final Lock lock = new ReentrantLock();
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private final LinkedHashMap<String, Long> invalidations = new LinkedHashMap<String, Long>();
+	private long version;
+	private long forgottenInvalidation;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+
+	/**
+	 * Create the cache
+	 *
+	 * @param maxSize
+	 *            Maximum number of Sales kept
+	 * @param finalTtl
+	 *            How long a Sale on a final status is kept
+	 * @param pendingTtl
+	 *            How long a Sale on any other status is kept
+	 * @param unit
+	 *            The unit of both ttls
+	 */
+	public QuerySaleCache(int maxSize, long finalTtl, long pendingTtl, TimeUnit unit) {
+		this.maxSize = maxSize;
+		this.finalTtl = unit.toNanos(finalTtl);
+		this.pendingTtl = unit.toNanos(pendingTtl);
+	}
+
+	/**
+	 * Gets a Sale that didn't expire
+	 *
+	 * @param paymentId
+	 *            The paymentId queried
+	 * @return The cached Sale, or null
+	 */
+	public Sale get(String paymentId) {
+		Sale sale = null;
+
+		lock.lock();
+
+		try {
+			Entry entry = entries.get(paymentId);
+
+			if (entry != null) {
+				if (entry.expiresAt - System.nanoTime() > 0) {
+					sale = entry.sale;
+				} else {
+					entries.remove(paymentId);
+					expirations.increment();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		if (sale != null) {
+			hits.increment();
+		} else {
+			misses.increment();
+		}
+
+		return sale;
+	}
+
+	/**
+	 * Gets the version to pass to {@link #put(String, Sale, long)}, taken
+	 * before the query is sent
+	 *
+	 * @return The number of invalidations so far
+	 */
+	public long currentVersion() {
+		lock.lock();
+
+		try {
+			return version;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Cache a Sale known to be current, evicting the least recently used ones
+	 * beyond the maximum size
+	 *
+	 * @param paymentId
+	 *            The paymentId queried
+	 * @param sale
+	 *            The Sale returned by Cielo
+	 */
+	public void put(String paymentId, Sale sale) {
+		put(paymentId, sale, currentVersion());
+	}
+
+	/**
+	 * Cache the Sale returned by a query, unless the paymentId was invalidated
+	 * or a newer query's Sale was cached after the query was sent
+	 *
+	 * @param paymentId
+	 *            The paymentId queried
+	 * @param sale
+	 *            The Sale returned by Cielo
+	 * @param version
+	 *            The {@link #currentVersion()} before the query was sent
+	 * @return true if the Sale was cached
+	 */
+	public boolean put(String paymentId, Sale sale, long version) {
+		if (sale == null || maxSize <= 0) {
+			return false;
+		}
+
+		long ttl = isFinal(sale) ? finalTtl : pendingTtl;
+
+		if (ttl <= 0) {
+			return false;
+		}
+
+		Entry entry = new Entry(sale, System.nanoTime() + ttl, version);
+
+		lock.lock();
+
+		try {
+			Long invalidation = invalidations.get(paymentId);
+
+			if (version < (invalidation != null ? invalidation : forgottenInvalidation)) {
+				return false;
+			}
+
+			Entry current = entries.get(paymentId);
+
+			if (current != null && current.version > version) {
+				return false;
+			}
+
+			entries.put(paymentId, entry);
+
+			Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+
+			while (entries.size() > maxSize) {
+				eldest.next();
+				eldest.remove();
+				evictions.increment();
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Remove the Sale, because it was changed by a capture or a cancellation
+	 *
+	 * @param paymentId
+	 *            The paymentId changed
+	 */
+	public void invalidate(String paymentId) {
+		lock.lock();
+
+		try {
+			entries.remove(paymentId);
+			invalidations.remove(paymentId);
+			invalidations.put(paymentId, ++version);
+
+			Iterator<Long> eldest = invalidations.values().iterator();
+
+			while (invalidations.size() > Math.max(maxSize, 1)) {
+				forgottenInvalidation = Math.max(forgottenInvalidation, eldest.next());
+				eldest.remove();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Remove all Sales
+	 */
+	public void invalidateAll() {
+		lock.lock();
+
+		try {
+			entries.clear();
+			invalidations.clear();
+			forgottenInvalidation = ++version;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return How many Sales are cached, including expired ones not removed yet
+	 */
+	public int size() {
+		lock.lock();
+
+		try {
+			return entries.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return How many Sales were removed to respect the maximum size
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return How many Sales were removed because their ttl expired
+	 */
+	public long getExpirationCount() {
+		return expirations.sum();
+	}
+
+	/**
+	 * @return hits / (hits + misses), or 0 if nothing was queried
+	 */
+	public double getHitRate() {
+		long hits = getHitCount();
+		long total = hits + getMissCount();
+
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * @param sale
+	 *            A Sale returned by Cielo
+	 * @return true if the payment status can't change anymore
+	 */
+	public static boolean isFinal(Sale sale) {
+		Payment payment = sale.getPayment();
+		Integer status = payment != null ? payment.getStatus() : null;
+
+		if (status == null) {
+			return false;
+		}
+
+		switch (status) {
+		case PAYMENT_CONFIRMED:
+		case DENIED:
+		case VOIDED:
+		case REFUNDED:
+		case ABORTED:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private static class Entry {
+		final Sale sale;
+		final long expiresAt;
+		final long version;
+
+		Entry(Sale sale, long expiresAt, long version) {
+			this.sale = sale;
+			this.expiresAt = expiresAt;
+			this.version = version;
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package cieloecommerce.sdk.ecommerce.cache;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import cieloecommerce.sdk.ecommerce.Sale;
+import cieloecommerce.sdk.ecommerce.request.CieloRequestException;
+
+/**
+ * Single-flight of querySale: while a query of a paymentId is in flight, the
+ * concurrent queries of the same paymentId wait for it instead of sending
+ * their own, and all of them receive the same Sale or the same exception.
+ * <p/>
+ * The in-flight queries are kept on a {@link ConcurrentHashMap}, so queries
+ * of different paymentIds never wait for each other. The Sales are shared by
+ * all callers and must not be modified.
+ * <p/>
+ * A capture or cancellation {@link #invalidate(String) invalidates} the
+ * query in flight of its paymentId: the callers already waiting for it still
+ * receive its Sale, but the queries that come after it send a new one.
+ */
+public class QuerySaleCoalescer {
+	/**
+	 * The query sent to Cielo by the first caller
+	 */
+	public interface Query {
+		Sale execute(String paymentId) throws IOException, CieloRequestException;
+	}
+
+	private final ConcurrentMap<String, CompletableFuture<Sale>> inFlight = new ConcurrentHashMap<String, CompletableFuture<Sale>>();
+	private final LongAdder queries = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+
+	/**
+	 * Send the query, or wait for the one already in flight, blocking the
+	 * calling thread
+	 *
+	 * @param paymentId
+	 *            The paymentId queried
+	 * @param query
+	 *            Sends the query to Cielo
+	 * @return The Sale returned by Cielo
+	 * @throws IOException
+	 * @throws CieloRequestException
+	 *             if Cielo returns an error
+	 */
+	public Sale query(String paymentId, Query query) throws IOException, CieloRequestException {
+		CompletableFuture<Sale> future = new CompletableFuture<Sale>();
+		CompletableFuture<Sale> current = inFlight.putIfAbsent(paymentId, future);
+
+		if (current != null) {
+			coalesced.increment();
+
+			return await(current);
+		}
+
+		queries.increment();
+
+		try {
+			Sale sale = query.execute(paymentId);
+
+			future.complete(sale);
+
+			return sale;
+		} catch (IOException | CieloRequestException | RuntimeException | Error e) {
+			future.completeExceptionally(e);
+
+			throw e;
+		} finally {
+			inFlight.remove(paymentId, future);
+		}
+	}
+
+	/**
+	 * Send the query, or join the one already in flight, without blocking the
+	 * calling thread. Cancelling the returned future doesn't cancel the query,
+	 * since other callers may be waiting for it.
+	 *
+	 * @param paymentId
+	 *            The paymentId queried
+	 * @param query
+	 *            Sends the query to Cielo
+	 * @return A future of the Sale returned by Cielo
+	 */
+	public CompletableFuture<Sale> queryAsync(final String paymentId,
+			Function<String, CompletableFuture<Sale>> query) {
+		final CompletableFuture<Sale> future = new CompletableFuture<Sale>();
+		CompletableFuture<Sale> current = inFlight.putIfAbsent(paymentId, future);
+
+		if (current != null) {
+			coalesced.increment();
+
+			return current.thenApply(Function.identity());
+		}
+
+		queries.increment();
+
+		try {
+			query.apply(paymentId).whenComplete((sale, failure) -> {
+				inFlight.remove(paymentId, future);
+
+				if (failure != null) {
+					future.completeExceptionally(unwrap(failure));
+				} else {
+					future.complete(sale);
+				}
+			});
+		} catch (RuntimeException e) {
+			inFlight.remove(paymentId, future);
+			future.completeExceptionally(e);
+		}
+
+		return future.thenApply(Function.identity());
+	}
+
+	/**
+	 * Stop coalescing with the query in flight of the paymentId, which may
+	 * return the Sale as it was before a capture or cancellation
+	 *
+	 * @param paymentId
+	 *            The paymentId changed
+	 */
+	public void invalidate(String paymentId) {
+		inFlight.remove(paymentId);
+	}
+
+	/**
+	 * @return How many queries were sent to Cielo
+	 */
+	public long getQueryCount() {
+		return queries.sum();
+	}
+
+	/**
+	 * @return How many queries waited for another one instead of being sent
+	 */
+	public long getCoalescedCount() {
+		return coalesced.sum();
+	}
+
+	/**
+	 * @return How many queries are in flight now
+	 */
+	public int getInFlightCount() {
+		return inFlight.size();
+	}
+
+	private static Sale await(CompletableFuture<Sale> future) throws IOException, CieloRequestException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			throw new InterruptedIOException("Interrupted while waiting for the query in flight");
+		} catch (ExecutionException e) {
+			Throwable cause = unwrap(e.getCause());
+
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof CieloRequestException) {
+				throw (CieloRequestException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+
+			throw new IOException(cause);
+		}
+	}
+
+	private static Throwable unwrap(Throwable failure) {
+		while (failure instanceof CompletionException && failure.getCause() != null) {
+			failure = failure.getCause();
+		}
+
+		return failure;
+	}
+}
@@ -0,0 +1,343 @@
+package cieloecommerce.sdk.ecommerce.flow;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+import cieloecommerce.sdk.ecommerce.CieloEcommerce;
+import cieloecommerce.sdk.ecommerce.Sale;
+
+/**
+ * A {@link Flow.Processor} that sends an operation to Cielo for each item it
+ * receives, through the async operations of {@link CieloEcommerce}, and emits
+ * a {@link SaleResult} for each one.
+ * <p/>
+ * Items are only requested from upstream while fewer than the concurrency
+ * are in flight and the downstream has demand for their results, so nothing
+ * is buffered beyond what was requested. Failed operations, including the
+ * {@link cieloecommerce.sdk.ecommerce.request.CieloRequestException}s, are
+ * emitted as results; only an upstream error terminates the stream, after
+ * the results of the items already received.
+ * <p/>
+ * Results are emitted as the operations complete or, when ordered, in the
+ * order the items were received. Operations already in flight when the
+ * downstream cancels are not aborted, as Cielo may have acted on them; their
+ * results are dropped.
+ * <p/>
+ * A processor is used once, by a single publisher and a single subscriber;
+ * configure it before subscribing.
+ *
+ * @param <T>
+ *            The input: a Sale or a paymentId
+ */
+public class SaleProcessor<T> implements Flow.Processor<T, SaleResult<T>> {
+	/**
+	 * Default number of requests in flight
+	 */
+	public static final int DEFAULT_CONCURRENCY = 32;
+
+	private final Function<? super T, CompletableFuture<Sale>> operation;
+	private int concurrency = DEFAULT_CONCURRENCY;
+	private boolean ordered;
+
+	private final AtomicReference<Flow.Subscription> upstream = new AtomicReference<Flow.Subscription>();
+	private final AtomicBoolean subscribed = new AtomicBoolean();
+	private final AtomicLong requested = new AtomicLong();
+	private final AtomicInteger wip = new AtomicInteger();
+	private final Queue<SaleResult<T>> completed = new ConcurrentLinkedQueue<SaleResult<T>>();
+	private volatile AtomicReferenceArray<SaleResult<T>> window;
+	private volatile Flow.Subscriber<? super SaleResult<T>> downstream;
+	private volatile long received;
+	private volatile boolean done;
+	private volatile Throwable error;
+	private volatile boolean cancelled;
+	private long upstreamRequested;
+	private long emitted;
+
+	/**
+	 * @param operation
+	 *            The async operation sent for each item, like
+	 *            {@code paymentId -> cieloEcommerce.captureSaleAsync(paymentId, amounts.get(paymentId), null)}
+	 */
+	public SaleProcessor(Function<? super T, CompletableFuture<Sale>> operation) {
+		this.operation = Objects.requireNonNull(operation);
+	}
+
+	/**
+	 * @return A processor that creates each Sale
+	 */
+	public static SaleProcessor<Sale> createSale(CieloEcommerce cieloEcommerce) {
+		return new SaleProcessor<Sale>(cieloEcommerce::createSaleAsync);
+	}
+
+	/**
+	 * @return A processor that captures the full amount of each paymentId
+	 */
+	public static SaleProcessor<String> captureSale(CieloEcommerce cieloEcommerce) {
+		return new SaleProcessor<String>(cieloEcommerce::captureSaleAsync);
+	}
+
+	/**
+	 * @return A processor that cancels the full amount of each paymentId
+	 */
+	public static SaleProcessor<String> cancelSale(CieloEcommerce cieloEcommerce) {
+		return new SaleProcessor<String>(cieloEcommerce::cancelSaleAsync);
+	}
+
+	/**
+	 * @return A processor that queries each paymentId
+	 */
+	public static SaleProcessor<String> querySale(CieloEcommerce cieloEcommerce) {
+		return new SaleProcessor<String>(cieloEcommerce::querySaleAsync);
+	}
+
+	/**
+	 * @param concurrency
+	 *            Maximum number of requests in flight; it should not be
+	 *            greater than the connection pool's limit per route
+	 * @return this processor
+	 */
+	public SaleProcessor<T> setConcurrency(int concurrency) {
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("concurrency must be positive");
+		}
+
+		this.concurrency = concurrency;
+		return this;
+	}
+
+	/**
+	 * @param ordered
+	 *            Whether the results are emitted in the order the items were
+	 *            received, holding the results that complete early until the
+	 *            earlier ones do; by default, they're emitted as they complete
+	 * @return this processor
+	 */
+	public SaleProcessor<T> setOrdered(boolean ordered) {
+		this.ordered = ordered;
+		return this;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super SaleResult<T>> subscriber) {
+		Objects.requireNonNull(subscriber);
+
+		if (!subscribed.compareAndSet(false, true)) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+				}
+
+				@Override
+				public void cancel() {
+				}
+			});
+			subscriber.onError(new IllegalStateException("A SaleProcessor has a single subscriber"));
+
+			return;
+		}
+
+		subscriber.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+				if (n <= 0) {
+					cancelUpstream();
+					error = new IllegalArgumentException("Requested " + n + " results, must be positive");
+					done = true;
+					received = emitted;
+				} else {
+					requested.getAndAccumulate(n, (current, more) -> current + more < 0 ? Long.MAX_VALUE
+							: current + more);
+				}
+
+				drain();
+			}
+
+			@Override
+			public void cancel() {
+				cancelled = true;
+				cancelUpstream();
+			}
+		});
+
+		downstream = subscriber;
+
+		drain();
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		if (!upstream.compareAndSet(null, subscription)) {
+			subscription.cancel();
+
+			return;
+		}
+
+		if (ordered) {
+			window = new AtomicReferenceArray<SaleResult<T>>(concurrency);
+		}
+
+		if (cancelled) {
+			subscription.cancel();
+		} else {
+			drain();
+		}
+	}
+
+	@Override
+	public void onNext(T item) {
+		Objects.requireNonNull(item);
+
+		final long index = received;
+		final long start = System.nanoTime();
+		CompletableFuture<Sale> future;
+
+		received = index + 1;
+
+		try {
+			future = operation.apply(item);
+		} catch (RuntimeException e) {
+			future = CompletableFuture.failedFuture(e);
+		}
+
+		future.whenComplete((sale, failure) -> {
+			SaleResult<T> result = new SaleResult<T>(index, item, sale, unwrap(failure), System.nanoTime() - start);
+
+			if (ordered) {
+				window.set((int) (index % concurrency), result);
+			} else {
+				completed.add(result);
+			}
+
+			drain();
+		});
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		error = Objects.requireNonNull(throwable);
+		done = true;
+
+		drain();
+	}
+
+	@Override
+	public void onComplete() {
+		done = true;
+
+		drain();
+	}
+
+	private void cancelUpstream() {
+		Flow.Subscription subscription = upstream.getAndSet(CANCELLED);
+
+		if (subscription != null && subscription != CANCELLED) {
+			subscription.cancel();
+		}
+	}
+
+	/**
+	 * Emit the completed results the downstream has demand for, terminate it
+	 * when the upstream is done and every result was emitted, and request
+	 * more items from upstream; run by a single thread at a time
+	 */
+	private void drain() {
+		if (wip.getAndIncrement() != 0) {
+			return;
+		}
+
+		int missed = 1;
+
+		do {
+			Flow.Subscriber<? super SaleResult<T>> subscriber = downstream;
+
+			if (subscriber != null && !cancelled) {
+				long demand = requested.get();
+
+				while (emitted < demand && !cancelled) {
+					SaleResult<T> result = poll();
+
+					if (result == null) {
+						break;
+					}
+
+					emitted++;
+					subscriber.onNext(result);
+				}
+
+				if (!cancelled && done && emitted == received) {
+					cancelled = true;
+
+					if (error != null) {
+						subscriber.onError(error);
+					} else {
+						subscriber.onComplete();
+					}
+				} else if (!cancelled && !done) {
+					Flow.Subscription subscription = upstream.get();
+					long limit = Math.min(emitted + concurrency, demand);
+
+					if (subscription != null && subscription != CANCELLED && limit > upstreamRequested) {
+						long n = limit - upstreamRequested;
+
+						upstreamRequested = limit;
+						subscription.request(n);
+					}
+				}
+			}
+
+			if (cancelled) {
+				completed.clear();
+			}
+
+			missed = wip.addAndGet(-missed);
+		} while (missed != 0);
+	}
+
+	/**
+	 * @return The next result to be emitted, or null if it didn't complete
+	 */
+	private SaleResult<T> poll() {
+		if (!ordered) {
+			return completed.poll();
+		}
+
+		AtomicReferenceArray<SaleResult<T>> window = this.window;
+
+		if (window == null) {
+			return null;
+		}
+
+		int slot = (int) (emitted % concurrency);
+		SaleResult<T> result = window.get(slot);
+
+		if (result != null) {
+			window.set(slot, null);
+		}
+
+		return result;
+	}
+
+	private static Throwable unwrap(Throwable failure) {
+		return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+	}
+
+	private static final Flow.Subscription CANCELLED = new Flow.Subscription() {
+		@Override
+		public void request(long n) {
+		}
+
+		@Override
+		public void cancel() {
+		}
+	};
+}
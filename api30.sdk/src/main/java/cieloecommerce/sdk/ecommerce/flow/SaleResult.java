@@ -0,0 +1,80 @@
+package cieloecommerce.sdk.ecommerce.flow;
+
+import cieloecommerce.sdk.ecommerce.Sale;
+import cieloecommerce.sdk.ecommerce.request.CieloError;
+import cieloecommerce.sdk.ecommerce.request.CieloRequestException;
+
+/**
+ * The outcome of a single item of a {@link SaleProcessor}: the Sale returned
+ * by Cielo, or why the operation failed
+ *
+ * @param <T>
+ *            The input: a Sale or a paymentId
+ */
+public class SaleResult<T> {
+	private final long index;
+	private final T input;
+	private final Sale sale;
+	private final Throwable failure;
+	private final long latency;
+
+	SaleResult(long index, T input, Sale sale, Throwable failure, long latency) {
+		this.index = index;
+		this.input = input;
+		this.sale = sale;
+		this.failure = failure;
+		this.latency = latency;
+	}
+
+	/**
+	 * @return The position of the item on the input stream
+	 */
+	public long getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return The Sale or paymentId the operation was sent for
+	 */
+	public T getInput() {
+		return input;
+	}
+
+	/**
+	 * @return The Sale returned by Cielo, or null if the operation failed
+	 */
+	public Sale getSale() {
+		return sale;
+	}
+
+	/**
+	 * @return The error returned by Cielo, or null if the operation succeeded
+	 *         or failed before reaching Cielo
+	 */
+	public CieloError getError() {
+		return failure instanceof CieloRequestException ? ((CieloRequestException) failure).getError() : null;
+	}
+
+	/**
+	 * @return The exception that failed the operation, or null
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	/**
+	 * @return The operation latency, in nanoseconds
+	 */
+	public long getLatency() {
+		return latency;
+	}
+
+	public boolean isSuccess() {
+		return failure == null;
+	}
+
+	@Override
+	public String toString() {
+		return "#" + index + (failure == null ? " ok" : " " + failure);
+	}
+}
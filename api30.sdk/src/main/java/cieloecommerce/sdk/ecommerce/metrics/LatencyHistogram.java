@@ -0,0 +1,143 @@
+package cieloecommerce.sdk.ecommerce.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies, in nanoseconds, with a relative error below 1% up
+ * to about two hours.
+ * <p/>
+ * Like HdrHistogram, the values are counted on log-linear buckets: values
+ * below 256 have a bucket each, and each following power of two is split in
+ * 128 buckets. Recording a value is a few atomic increments, without locks
+ * or allocations.
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 8;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+	private static final int MAX_BITS = 43;
+	private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+	private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_BITS - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Count a latency
+	 *
+	 * @param nanos
+	 *            The latency in nanoseconds; values beyond two hours are
+	 *            counted as two hours
+	 */
+	public void record(long nanos) {
+		long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+
+		counts.incrementAndGet(index(value));
+		count.increment();
+		sum.add(value);
+
+		long current;
+
+		while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+		}
+	}
+
+	/**
+	 * @return How many latencies were recorded
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @param unit
+	 *            The unit of the result
+	 * @return The mean latency, or 0 if none was recorded
+	 */
+	public double getMean(TimeUnit unit) {
+		long count = getCount();
+
+		return count == 0 ? 0 : (double) sum.sum() / count / unit.toNanos(1);
+	}
+
+	/**
+	 * @param unit
+	 *            The unit of the result
+	 * @return The highest latency recorded
+	 */
+	public long getMax(TimeUnit unit) {
+		return unit.convert(max.get(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Gets the latency below which the given percentage of the latencies are
+	 *
+	 * @param percentile
+	 *            Between 0 and 100
+	 * @param unit
+	 *            The unit of the result
+	 * @return The highest value of the percentile's bucket, or 0 if none was
+	 *         recorded
+	 */
+	public long getValueAtPercentile(double percentile, TimeUnit unit) {
+		long count = getCount();
+
+		if (count == 0) {
+			return 0;
+		}
+
+		long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+		long seen = 0;
+
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts.get(i);
+
+			if (seen >= target) {
+				return unit.convert(Math.min(highestValue(i), max.get()), TimeUnit.NANOSECONDS);
+			}
+		}
+
+		return getMax(unit);
+	}
+
+	/**
+	 * Forget all recorded latencies. Latencies recorded concurrently may be
+	 * partially kept.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts.set(i, 0);
+		}
+
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	private static int index(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+
+		int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+
+		return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT
+				+ (int) (value >>> shift) - SUB_BUCKET_HALF_COUNT;
+	}
+
+	private static long highestValue(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+
+		int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+		long top = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+
+		return ((top + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,146 @@
+package cieloecommerce.sdk.ecommerce.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histograms and counters of each operation sent to Cielo.
+ * <p/>
+ * Every structure is allocated up front, so recording a request does no
+ * locking and no allocation; a single instance can be shared by all
+ * CieloEcommerce instances.
+ */
+public class Metrics {
+	private final Map<Operation, OperationMetrics> operations = new EnumMap<Operation, OperationMetrics>(
+			Operation.class);
+
+	public Metrics() {
+		for (Operation operation : Operation.values()) {
+			operations.put(operation, new OperationMetrics(operation));
+		}
+	}
+
+	/**
+	 * Record a request sent to Cielo
+	 *
+	 * @param operation
+	 *            The operation
+	 * @param latency
+	 *            How long, in nanoseconds, the request took
+	 * @param statusCode
+	 *            The HTTP status, or 0 if there was no response
+	 * @param bytesSent
+	 *            The size of the request body
+	 * @param bytesReceived
+	 *            The size of the response body, after decompression
+	 */
+	public void record(Operation operation, long latency, int statusCode, long bytesSent, long bytesReceived) {
+		record(operation, latency, statusCode, bytesSent, bytesReceived, bytesReceived);
+	}
+
+	/**
+	 * Record a request sent to Cielo
+	 *
+	 * @param operation
+	 *            The operation
+	 * @param latency
+	 *            How long, in nanoseconds, the request took
+	 * @param statusCode
+	 *            The HTTP status, or 0 if there was no response
+	 * @param bytesSent
+	 *            The size of the request body
+	 * @param wireBytesReceived
+	 *            The size of the response body, as sent by Cielo
+	 * @param bytesReceived
+	 *            The size of the response body, after decompression
+	 */
+	public void record(Operation operation, long latency, int statusCode, long bytesSent, long wireBytesReceived,
+			long bytesReceived) {
+		operations.get(operation).record(latency, statusCode, bytesSent, wireBytesReceived, bytesReceived);
+	}
+
+	/**
+	 * Record an error returned by Cielo
+	 *
+	 * @param operation
+	 *            The operation
+	 * @param code
+	 *            The Cielo error code
+	 */
+	public void recordError(Operation operation, int code) {
+		operations.get(operation).recordError(code);
+	}
+
+	/**
+	 * @param operation
+	 *            The operation
+	 * @return The metrics of the operation
+	 */
+	public OperationMetrics get(Operation operation) {
+		return operations.get(operation);
+	}
+
+	/**
+	 * Hand the metrics of every operation to the exporter
+	 *
+	 * @param exporter
+	 *            The exporter
+	 */
+	public void export(MetricsExporter exporter) {
+		for (OperationMetrics metrics : operations.values()) {
+			exporter.export(metrics);
+		}
+	}
+
+	/**
+	 * Export the metrics periodically
+	 *
+	 * @param exporter
+	 *            The exporter
+	 * @param scheduler
+	 *            Runs the exports
+	 * @param period
+	 *            The time between exports
+	 * @param unit
+	 *            The unit of the period
+	 * @return The scheduled exports, to be cancelled
+	 */
+	public ScheduledFuture<?> export(final MetricsExporter exporter, ScheduledExecutorService scheduler, long period,
+			TimeUnit unit) {
+		return scheduler.scheduleAtFixedRate(() -> export(exporter), period, period, unit);
+	}
+
+	/**
+	 * Forget everything recorded so far
+	 */
+	public void reset() {
+		for (OperationMetrics metrics : operations.values()) {
+			metrics.reset();
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+
+		for (OperationMetrics metrics : operations.values()) {
+			if (metrics.getRequestCount() == 0) {
+				continue;
+			}
+
+			LatencyHistogram latency = metrics.getLatency();
+
+			builder.append(String.format("%s: %d requests, p50 %.3fms, p99 %.3fms, max %.3fms, statuses %s, errors %s%n",
+					metrics.getOperation(), metrics.getRequestCount(),
+					latency.getValueAtPercentile(50, TimeUnit.MICROSECONDS) / 1000.0,
+					latency.getValueAtPercentile(99, TimeUnit.MICROSECONDS) / 1000.0,
+					latency.getMax(TimeUnit.MICROSECONDS) / 1000.0, metrics.getStatusCounts(),
+					metrics.getErrorCounts()));
+		}
+
+		return builder.toString();
+	}
+}
@@ -0,0 +1,17 @@
+package cieloecommerce.sdk.ecommerce.metrics;
+
+/**
+ * Sends the SDK metrics somewhere else, like a monitoring system
+ *
+ * @see Metrics#export(MetricsExporter)
+ */
+public interface MetricsExporter {
+	/**
+	 * Called once per operation on each export
+	 *
+	 * @param metrics
+	 *            The current metrics of the operation; its counters keep
+	 *            changing while other requests are sent
+	 */
+	void export(OperationMetrics metrics);
+}
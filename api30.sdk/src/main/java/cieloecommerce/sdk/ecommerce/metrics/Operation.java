@@ -0,0 +1,8 @@
+package cieloecommerce.sdk.ecommerce.metrics;
+
+/**
+ * The operations measured by {@link Metrics}
+ */
+public enum Operation {
+	CREATE_SALE, CREATE_CARD_TOKEN, QUERY_SALE, CAPTURE_SALE, CANCEL_SALE
+}
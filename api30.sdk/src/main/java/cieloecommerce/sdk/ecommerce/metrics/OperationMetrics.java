@@ -0,0 +1,166 @@
+package cieloecommerce.sdk.ecommerce.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and counters of a single operation
+ */
+public class OperationMetrics {
+	private static final int MAX_STATUS = 600;
+	private static final int MAX_ERROR_CODE = 1000;
+
+	private final Operation operation;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final AtomicLongArray statuses = new AtomicLongArray(MAX_STATUS);
+	private final AtomicLongArray errors = new AtomicLongArray(MAX_ERROR_CODE);
+	private final LongAdder otherErrors = new LongAdder();
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder bytesSent = new LongAdder();
+	private final LongAdder wireBytesReceived = new LongAdder();
+	private final LongAdder bytesReceived = new LongAdder();
+
+	OperationMetrics(Operation operation) {
+		this.operation = operation;
+	}
+
+	void record(long latency, int statusCode, long bytesSent, long wireBytesReceived, long bytesReceived) {
+		this.latency.record(latency);
+		this.requests.increment();
+		this.statuses.incrementAndGet(statusCode > 0 && statusCode < MAX_STATUS ? statusCode : 0);
+
+		if (bytesSent > 0) {
+			this.bytesSent.add(bytesSent);
+		}
+
+		if (wireBytesReceived > 0) {
+			this.wireBytesReceived.add(wireBytesReceived);
+		}
+
+		if (bytesReceived > 0) {
+			this.bytesReceived.add(bytesReceived);
+		}
+	}
+
+	void recordError(int code) {
+		if (code >= 0 && code < MAX_ERROR_CODE) {
+			errors.incrementAndGet(code);
+		} else {
+			otherErrors.increment();
+		}
+	}
+
+	public Operation getOperation() {
+		return operation;
+	}
+
+	/**
+	 * @return The latency of each request sent, including retries
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @return How many requests were sent, including retries
+	 */
+	public long getRequestCount() {
+		return requests.sum();
+	}
+
+	/**
+	 * @param statusCode
+	 *            The HTTP status, or 0 for the requests that failed without a
+	 *            response
+	 * @return How many responses had the status
+	 */
+	public long getStatusCount(int statusCode) {
+		return statusCode >= 0 && statusCode < MAX_STATUS ? statuses.get(statusCode) : 0;
+	}
+
+	/**
+	 * @return The count of each status received; 0 counts the requests that
+	 *         failed without a response
+	 */
+	public Map<Integer, Long> getStatusCounts() {
+		return nonZero(statuses);
+	}
+
+	/**
+	 * @param code
+	 *            The Cielo error code
+	 * @return How many times Cielo returned the error
+	 */
+	public long getErrorCount(int code) {
+		return code >= 0 && code < MAX_ERROR_CODE ? errors.get(code) : 0;
+	}
+
+	/**
+	 * @return The count of each Cielo error code returned
+	 */
+	public Map<Integer, Long> getErrorCounts() {
+		return nonZero(errors);
+	}
+
+	/**
+	 * @return How many error codes were outside 0-999
+	 */
+	public long getOtherErrorCount() {
+		return otherErrors.sum();
+	}
+
+	/**
+	 * @return The size of the request bodies sent
+	 */
+	public long getBytesSent() {
+		return bytesSent.sum();
+	}
+
+	/**
+	 * @return The size of the response bodies read, as sent by Cielo; less
+	 *         than {@link #getBytesReceived()} when they're compressed
+	 */
+	public long getWireBytesReceived() {
+		return wireBytesReceived.sum();
+	}
+
+	/**
+	 * @return The size of the response bodies read, after decompression
+	 */
+	public long getBytesReceived() {
+		return bytesReceived.sum();
+	}
+
+	void reset() {
+		latency.reset();
+		requests.reset();
+		bytesSent.reset();
+		wireBytesReceived.reset();
+		bytesReceived.reset();
+		otherErrors.reset();
+
+		for (int i = 0; i < MAX_STATUS; i++) {
+			statuses.set(i, 0);
+		}
+
+		for (int i = 0; i < MAX_ERROR_CODE; i++) {
+			errors.set(i, 0);
+		}
+	}
+
+	private static Map<Integer, Long> nonZero(AtomicLongArray counts) {
+		Map<Integer, Long> result = new TreeMap<Integer, Long>();
+
+		for (int i = 0; i < counts.length(); i++) {
+			long count = counts.get(i);
+
+			if (count > 0) {
+				result.put(i, count);
+			}
+		}
+
+		return result;
+	}
+}
@@ -1,141 +1,714 @@
 package cieloecommerce.sdk.ecommerce.request;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.UUID;
-import java.util.zip.GZIPInputStream;
+import java.io.InterruptedIOException;
+import java.util.Date;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.http.Header;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.nio.client.HttpAsyncClient;
 
-import com.google.gson.Gson;
 import cieloecommerce.sdk.Environment;
 import cieloecommerce.sdk.Merchant;
+import cieloecommerce.sdk.ecommerce.metrics.Metrics;
+import cieloecommerce.sdk.ecommerce.metrics.Operation;
+import cieloecommerce.sdk.transport.Transport;
+import cieloecommerce.sdk.transport.TransportRequest;
+import cieloecommerce.sdk.transport.TransportResponse;
 
 /**
  * Abstraction to reuse most of the code that send and receive the HTTP
- * messages.
+ * messages. The messages go through a {@link Transport}: by default, the
+ * {@link ApacheTransport} on the clients of the {@link ConnectionPool}.
  */
 public abstract class AbstractSaleRequest<Request, Response> {
+	/**
+	 * Default maximum size, in bytes, of a decompressed response body
+	 */
+	public static final long DEFAULT_MAX_RESPONSE_BODY_SIZE = 1024 * 1024;
+
 	final Environment environment;
-	private final Merchant merchant;
+	final JsonCodec codec = JsonCodec.shared();
+	final Merchant merchant;
+	private final Class<Response> responseClassOf;
+	private ConnectionPool connectionPool = ConnectionPool.shared();
 	private HttpClient httpClient;
+	private HttpAsyncClient httpAsyncClient;
+	private Transport transport;
+	private MerchantHeaders merchantHeaders;
+	private long maxResponseBodySize = DEFAULT_MAX_RESPONSE_BODY_SIZE;
+	private RetryPolicy retryPolicy;
+	ConcurrencyLimiter concurrencyLimiter;
+	CircuitBreaker circuitBreaker;
+	Metrics metrics;
+	RequestListener requestListener;
+	private String requestId;
+	private RequestIdGenerator requestIdGenerator = RequestIdGenerator.TIME_ORDERED;
 
-	AbstractSaleRequest(Merchant merchant, Environment environment) {
+	AbstractSaleRequest(Merchant merchant, Environment environment, Class<Response> responseClassOf) {
 		this.merchant = merchant;
 		this.environment = environment;
+		this.responseClassOf = responseClassOf;
+	}
+
+	/**
+	 * Send the request to Cielo, blocking until the response is read
+	 *
+	 * @param param
+	 *            The request parameter, defined by the derivations
+	 * @return The response sent by Cielo
+	 * @throws IOException
+	 *             yeah, deal with it
+	 * @throws CieloRequestException
+	 *             if Cielo returns an error
+	 */
+	public Response execute(Request param) throws IOException, CieloRequestException {
+		String requestId = requestId();
+		OperationEvent event = OperationEvent.begin(operation(), requestId, false);
+
+		onRequest();
+
+		try {
+			Response result = retry(param, requestId);
+
+			OperationEvent.end(event, null);
+
+			return result;
+		} catch (IOException | CieloRequestException | RuntimeException e) {
+			OperationEvent.end(event, e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * Send the attempts until one succeeds or the retry policy gives up
+	 */
+	private Response retry(Request param, String requestId) throws IOException, CieloRequestException {
+		for (int attempt = 1;; attempt++) {
+			try {
+				return send(param, requestId, attempt);
+			} catch (IOException | CieloRequestException e) {
+				long delay = retryDelay(attempt, e);
+
+				if (delay < 0) {
+					throw e;
+				}
+
+				try {
+					TimeUnit.NANOSECONDS.sleep(delay);
+				} catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+
+					throw new InterruptedIOException("Interrupted while waiting to retry");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Send a single attempt through the blocking client
+	 */
+	private Response send(Request param, String requestId, int number) throws IOException, CieloRequestException {
+		Attempt attempt = Attempt.begin(this, requestId, number);
+
+		try {
+			TransportRequest request = createRequest(param);
+
+			attempt.sent(request);
+
+			TransportResponse response = sendRequest(request, requestId, attempt.trace());
+			Response result = readResponse(response, responseClassOf, attempt);
+
+			attempt.finish(null);
+
+			return result;
+		} catch (IOException | CieloRequestException | RuntimeException e) {
+			attempt.finish(e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * Send the request to Cielo through the non-blocking client; no thread is
+	 * held while waiting for the response.
+	 *
+	 * @param param
+	 *            The request parameter, defined by the derivations
+	 * @return A future completed with the response sent by Cielo, or completed
+	 *         exceptionally with {@link CieloRequestException} if Cielo returns
+	 *         an error or {@link IOException} if the request can't be sent
+	 */
+	public CompletableFuture<Response> executeAsync(Request param) {
+		CompletableFuture<Response> future = new CompletableFuture<Response>();
+		String requestId = requestId();
+		OperationEvent event = OperationEvent.begin(operation(), requestId, true);
+
+		if (event != null) {
+			future.whenComplete((response, failure) -> OperationEvent.end(event, failure));
+		}
+
+		onRequest();
+		sendAsync(param, requestId, 1, future);
+
+		return future;
 	}
 
-	public abstract Response execute(Request param) throws IOException, CieloRequestException;
+	/**
+	 * Send one attempt through the non-blocking client; failed attempts are
+	 * scheduled again when the retry policy allows
+	 */
+	private void sendAsync(final Request param, final String requestId, final int attempt,
+			final CompletableFuture<Response> future) {
+		if (future.isDone()) {
+			return;
+		}
+
+		final Attempt current;
+
+		try {
+			current = Attempt.begin(this, requestId, attempt);
+		} catch (CieloRequestException e) {
+			future.completeExceptionally(e);
+
+			return;
+		}
+
+		final CompletableFuture<TransportResponse> responseFuture;
+
+		try {
+			TransportRequest request = createRequest(param);
+
+			current.sent(request);
+
+			responseFuture = sendRequestAsync(request, requestId);
+		} catch (IOException | RuntimeException e) {
+			current.finish(e);
+			future.completeExceptionally(e);
+
+			return;
+		}
+
+		future.whenComplete((response, failure) -> {
+			if (future.isCancelled()) {
+				responseFuture.cancel(true);
+			}
+		});
+
+		responseFuture.whenComplete((response, failure) -> {
+			if (failure instanceof CompletionException && failure.getCause() != null) {
+				failure = failure.getCause();
+			}
+
+			if (failure instanceof CancellationException) {
+				current.finish((CancellationException) failure);
+				future.cancel(false);
+
+				return;
+			}
+
+			Exception exception;
+
+			if (failure == null) {
+				try {
+					Response result = readResponse(response, responseClassOf, current);
+
+					current.finish(null);
+					future.complete(result);
+
+					return;
+				} catch (Exception e) {
+					exception = e;
+				}
+			} else if (failure instanceof Exception) {
+				exception = (Exception) failure;
+			} else {
+				current.finish(new CompletionException(failure));
+				future.completeExceptionally(failure);
+
+				return;
+			}
+
+			current.finish(exception);
+
+			long delay = retryDelay(attempt, exception);
+
+			if (delay < 0) {
+				future.completeExceptionally(exception);
+			} else {
+				Scheduler.schedule(() -> sendAsync(param, requestId, attempt + 1, future), delay,
+						TimeUnit.NANOSECONDS);
+			}
+		});
+	}
+
+	/**
+	 * Send the request to Cielo through the blocking client, running it on the
+	 * given executor. Meant to be used with an executor of virtual threads,
+	 * which park instead of holding a platform thread while waiting for Cielo,
+	 * and with the {@link JdkHttpTransport}, whose requests don't pin their
+	 * carrier threads.
+	 *
+	 * @param param
+	 *            The request parameter, defined by the derivations
+	 * @param executor
+	 *            The executor that runs {@link #execute(Object)}
+	 * @return A future completed with the response sent by Cielo, or completed
+	 *         exceptionally with {@link CieloRequestException} if Cielo returns
+	 *         an error or {@link IOException} if the request can't be sent
+	 */
+	public CompletableFuture<Response> executeAsync(final Request param, Executor executor) {
+		final CompletableFuture<Response> future = new CompletableFuture<Response>();
+
+		try {
+			executor.execute(() -> {
+				if (future.isCancelled()) {
+					return;
+				}
+
+				try {
+					future.complete(execute(param));
+				} catch (Exception e) {
+					future.completeExceptionally(e);
+				}
+			});
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+
+		return future;
+	}
+
+	/**
+	 * Build the HTTP request, without the mandatory HTTP Headers
+	 *
+	 * @param param
+	 *            The request parameter
+	 * @return The POST, PUT or GET request
+	 * @throws IOException
+	 *             if the request can't be built
+	 */
+	abstract TransportRequest createRequest(Request param) throws IOException;
+
+	/**
+	 * The URL this request is sent to; requests to the same endpoint share
+	 * their concurrency limit and circuit
+	 *
+	 * @return The Api URL, or the Api Query URL for queries
+	 */
+	String endpoint() {
+		return environment.getApiUrl();
+	}
+
+	/**
+	 * Limit the requests in flight to this request's endpoint
+	 *
+	 * @param concurrencyLimiter
+	 *            The limiter, or null to send every request
+	 */
+	public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	/**
+	 * The operation this request is measured as
+	 *
+	 * @return The operation on the metrics
+	 */
+	abstract Operation operation();
+
+	/**
+	 * Record the latency, statuses, errors and bytes of this request
+	 *
+	 * @param metrics
+	 *            The metrics, or null to record nothing
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Follow the phases of each attempt
+	 *
+	 * @param requestListener
+	 *            The listener, or null
+	 */
+	public void setRequestListener(RequestListener requestListener) {
+		this.requestListener = requestListener;
+	}
+
+	/**
+	 * Fail fast while the circuit of this request's host is open
+	 *
+	 * @param circuitBreaker
+	 *            The breaker, or null to always send the request
+	 */
+	public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	/**
+	 * Retry the failed attempts of this request, when it's safe to send it
+	 * twice, see {@link #isIdempotent()}, or when the policy retries writes
+	 *
+	 * @param retryPolicy
+	 *            The policy, or null to never retry
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * Send the given RequestId instead of a generated one, to find the request
+	 * on the application's logs and on Cielo's; it doesn't make the request
+	 * safe to send twice.
+	 *
+	 * @param requestId
+	 *            An unique id of the operation, like an UUID
+	 */
+	public void setRequestId(String requestId) {
+		this.requestId = requestId;
+	}
+
+	/**
+	 * Set how the RequestId is generated when none is set; by default, time
+	 * ordered UUIDs
+	 *
+	 * @param requestIdGenerator
+	 *            The generator of the RequestIds
+	 */
+	public void setRequestIdGenerator(RequestIdGenerator requestIdGenerator) {
+		this.requestIdGenerator = requestIdGenerator;
+	}
+
+	/**
+	 * Whether the request can be sent twice without side effects: only the
+	 * queries are
+	 *
+	 * @return true if the request can be retried
+	 */
+	boolean isIdempotent() {
+		return false;
+	}
+
+	private boolean isRetried() {
+		return retryPolicy != null && (isIdempotent() || retryPolicy.isRetryWrites());
+	}
+
+	/**
+	 * @return The RequestId set by the caller, or a generated one
+	 */
+	String requestId() {
+		return requestId != null ? requestId : requestIdGenerator.next();
+	}
+
+	private void onRequest() {
+		if (isRetried()) {
+			retryPolicy.onRequest();
+		}
+	}
+
+	/**
+	 * @return How long to wait, in nanoseconds, before retrying the failed
+	 *         attempt, or -1 if the failure must be thrown
+	 */
+	private long retryDelay(int attempt, Exception failure) {
+		if (!isRetried()) {
+			return -1;
+		}
+
+		return retryPolicy.delay(attempt, failure);
+	}
+
+	/**
+	 * Set the pool used when no client is set; by default, the shared one
+	 *
+	 * @param connectionPool
+	 *            The pool of both blocking and non-blocking clients
+	 */
+	public void setConnectionPool(ConnectionPool connectionPool) {
+		this.connectionPool = connectionPool;
+	}
 
 	public void setHttpClient(HttpClient httpClient) {
 		this.httpClient = httpClient;
 	}
 
+	public void setHttpAsyncClient(HttpAsyncClient httpAsyncClient) {
+		this.httpAsyncClient = httpAsyncClient;
+	}
+
+	/**
+	 * Send the request through the given transport instead of the Apache
+	 * clients
+	 *
+	 * @param transport
+	 *            The transport, like a {@link JdkHttpTransport}, or null to
+	 *            use the clients and the pool
+	 */
+	public void setTransport(Transport transport) {
+		this.transport = transport;
+	}
+
+	/**
+	 * Send the headers already built for the request's merchant, shared with
+	 * its other requests, instead of building them on the first call
+	 *
+	 * @param merchantHeaders
+	 *            The headers of the merchant, or null to build them
+	 */
+	public void setMerchantHeaders(MerchantHeaders merchantHeaders) {
+		this.merchantHeaders = merchantHeaders;
+	}
+
+	/**
+	 * Prepare the transport and the codecs for the first requests
+	 *
+	 * @param warmUp
+	 *            What to warm up
+	 * @return How long each phase took
+	 * @throws IOException
+	 *             if Cielo can't be reached
+	 */
+	public WarmUpReport warmUp(WarmUp warmUp) throws IOException {
+		return warmUp.run(this);
+	}
+
+	/**
+	 * @return The transport set, or the one on the clients and the pool
+	 */
+	Transport transport() {
+		if (transport != null) {
+			return transport;
+		}
+
+		if (httpClient == null && httpAsyncClient == null) {
+			return connectionPool.getTransport();
+		}
+
+		return new ApacheTransport(connectionPool, httpClient, httpAsyncClient);
+	}
+
+	/**
+	 * @return The pool whose blocking client sends the requests, or null if
+	 *         they go through a client or transport that was set
+	 */
+	ConnectionPool pooledConnections() {
+		return transport == null && httpClient == null ? connectionPool : null;
+	}
+
+	/**
+	 * Set the maximum size of the response body; larger responses fail with
+	 * an IOException instead of being decoded
+	 *
+	 * @param maxResponseBodySize
+	 *            The maximum size, in bytes, after decompression
+	 */
+	public void setMaxResponseBodySize(long maxResponseBodySize) {
+		this.maxResponseBodySize = maxResponseBodySize;
+	}
+
 	/**
 	 * Send the HTTP request to Cielo with the mandatory HTTP Headers set
 	 *
 	 * @param request
 	 *            The POST, PUT, GET request and its content is defined by the
 	 *            derivations
+	 * @param requestId
+	 *            The RequestId, the same on all attempts
+	 * @param trace
+	 *            The trace of the connection phases, or null
 	 * @return the HTTP response returned by Cielo
 	 * @throws IOException
 	 *             yeah, deal with it
 	 */
-	HttpResponse sendRequest(HttpUriRequest request) throws IOException {
-		if (httpClient == null) {
-			httpClient = HttpClientBuilder.create().build();
+	TransportResponse sendRequest(TransportRequest request, String requestId, RequestTrace trace)
+			throws IOException {
+		addHeaders(request, requestId);
+
+		if (trace != null) {
+			request.setAttribute(RequestTrace.CONTEXT_ATTRIBUTE, trace);
 		}
 
-		request.addHeader("Accept", "application/json");
-		request.addHeader("Accept-Encoding", "gzip");
-		request.addHeader("Content-Type", "application/json");
-		request.addHeader("User-Agent", "CieloEcommerce/3.0 Android SDK");
-		request.addHeader("MerchantId", merchant.getId());
-		request.addHeader("MerchantKey", merchant.getKey());
-		request.addHeader("RequestId", UUID.randomUUID().toString());
+		return transport().send(request);
+	}
 
-		return httpClient.execute(request);
+	/**
+	 * Send the HTTP request to Cielo without blocking
+	 *
+	 * @param request
+	 *            The POST, PUT, GET request
+	 * @param requestId
+	 *            The RequestId, the same on all attempts
+	 * @return the future of the HTTP response
+	 */
+	CompletableFuture<TransportResponse> sendRequestAsync(TransportRequest request, String requestId) {
+		addHeaders(request, requestId);
+
+		return transport().sendAsync(request);
 	}
 
 	/**
-	 * Read the response body sent by Cielo
+	 * Add the headers Cielo expects on every request, and bound the response
+	 * body the transport may buffer
+	 */
+	void addHeaders(TransportRequest request, String requestId) {
+		MerchantHeaders merchantHeaders = this.merchantHeaders;
+
+		if (merchantHeaders == null) {
+			merchantHeaders = new MerchantHeaders(merchant);
+			this.merchantHeaders = merchantHeaders;
+		}
+
+		String[] headers = merchantHeaders.get();
+
+		for (int i = 0; i < headers.length; i += 2) {
+			request.addHeader(headers[i], headers[i + 1]);
+		}
+
+		request.addHeader("RequestId", requestId);
+		request.setMaxResponseBodySize(maxResponseBodySize);
+	}
+
+	/**
+	 * Read the response body sent by Cielo, decompressing it with a pooled
+	 * inflater when gzipped. The body is always read to the end and closed,
+	 * so the connection can be reused
 	 *
 	 * @param response
-	 *            HttpResponse by Cielo, with headers, status code, etc.
+	 *            The response by Cielo, with headers, status code, etc.
+	 * @param attempt
+	 *            The attempt that sent the request, told of the status and
+	 *            the bytes read
 	 * @return An instance of Sale with the response entity sent by Cielo.
 	 * @throws IOException
 	 *             yeah, deal with it
 	 * @throws CieloRequestException
 	 */
-	Response readResponse(HttpResponse response, Class<Response> responseClassOf)
+	Response readResponse(TransportResponse response, Class<Response> responseClassOf, Attempt attempt)
 			throws IOException, CieloRequestException {
-		HttpEntity responseEntity = response.getEntity();
-		InputStream responseEntityContent = responseEntity.getContent();
+		BoundedInputStream wireBody = new BoundedInputStream(response.getBody(), maxResponseBodySize);
+		BoundedInputStream boundedBody = wireBody;
+		InputStream responseBody = wireBody;
 
-		Header contentEncoding = response.getFirstHeader("Content-Encoding");
+		attempt.received(response.getStatusCode());
 
-		if (contentEncoding != null && contentEncoding.getValue().equalsIgnoreCase("gzip")) {
-			responseEntityContent = new GZIPInputStream(responseEntityContent);
-		}
+		try {
+			String contentEncoding = response.getFirstHeader("Content-Encoding");
+
+			if (contentEncoding != null && contentEncoding.equalsIgnoreCase("gzip")) {
+				responseBody = new GzipInputStream(wireBody, InflaterPool.shared());
+				boundedBody = new BoundedInputStream(responseBody, maxResponseBodySize);
+				responseBody = boundedBody;
+			}
+
+			Response result;
 
-		BufferedReader responseReader = new BufferedReader(new InputStreamReader(responseEntityContent));
-		StringBuilder responseBuilder = new StringBuilder();
-		String line;
+			try {
+				result = parseResponse(response, responseBody, responseClassOf);
+			} catch (CieloRequestException e) {
+				try {
+					drain(responseBody);
+				} catch (IOException drainFailure) {
+					e.addSuppressed(drainFailure);
+				}
 
-		while ((line = responseReader.readLine()) != null) {
-			responseBuilder.append(line);
+				throw e;
+			}
+
+			drain(responseBody);
+
+			return result;
+		} finally {
+			responseBody.close();
+			attempt.read(wireBody.getCount(), boundedBody.getCount());
 		}
+	}
 
-		return parseResponse(response.getStatusLine().getStatusCode(), responseBuilder.toString(), responseClassOf);
+	/**
+	 * Read what's left of the body, checking the gzip trailer
+	 */
+	private static void drain(InputStream responseBody) throws IOException {
+		while (responseBody.read() != -1) {
+			responseBody.skip(Long.MAX_VALUE);
+		}
 	}
 
 	/**
 	 * Just decode the JSON into a Sale or create the exception chain to be
 	 * thrown
 	 *
-	 * @param statusCode
-	 *            The status code of response
+	 * @param httpResponse
+	 *            The response sent by Cielo, for the status code and headers
 	 * @param responseBody
-	 *            The response sent by Cielo
-	 * @return An instance of Sale or null
+	 *            The response stream sent by Cielo, already decompressed
+	 * @return An instance of Sale
+	 * @throws IOException
+	 *             if the response body can't be read
 	 * @throws CieloRequestException
+	 *             {@link CieloStatusException} on unexpected statuses
 	 */
-	private Response parseResponse(int statusCode, String responseBody, Class<Response> responseClassOf)
-			throws CieloRequestException {
+	private Response parseResponse(TransportResponse httpResponse, InputStream responseBody,
+			Class<Response> responseClassOf) throws IOException, CieloRequestException {
+		int statusCode = httpResponse.getStatusCode();
 		Response response = null;
-		Gson gson = new Gson();
-
-		System.out.println(responseBody);
 
 		switch (statusCode) {
 		case 200:
 		case 201:
-			response = gson.fromJson(responseBody, responseClassOf);
+			response = codec.read(responseBody, responseClassOf);
 			break;
 		case 400:
 			CieloRequestException exception = null;
-			CieloError[] errors = gson.fromJson(responseBody, CieloError[].class);
+			CieloError[] errors = codec.read(responseBody, CieloError[].class);
 
-			for (CieloError error : errors) {
-				System.out.printf("%s: %s", "Cielo Error [" + error.getCode() + "]", error.getMessage());
+			if (errors != null) {
+				for (CieloError error : errors) {
+					exception = new CieloRequestException(error.getMessage(), error, exception);
+				}
+			}
 
-				exception = new CieloRequestException(error.getMessage(), error, exception);
+			if (exception == null) {
+				exception = new CieloRequestException("Bad request", new CieloError(400, "Bad request"), null);
 			}
 
 			throw exception;
 		case 404:
 			throw new CieloRequestException("Not found", new CieloError(404, "Not found"), null);
 		default:
-			System.out.printf("%s: %s", "Cielo", "Unknown status: " + statusCode);
+			throw new CieloStatusException(statusCode, httpResponse.getReasonPhrase(), retryAfter(httpResponse));
 		}
 
 		return response;
 	}
+
+	/**
+	 * Parse the Retry-After header, either delay-seconds or an HTTP-date
+	 *
+	 * @return The delay in milliseconds, or -1 without a valid header
+	 */
+	private static long retryAfter(TransportResponse response) {
+		String header = response.getFirstHeader("Retry-After");
+
+		if (header == null) {
+			return -1;
+		}
+
+		String value = header.trim();
+
+		try {
+			return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+		} catch (NumberFormatException e) {
+			Date date = DateUtils.parseDate(value);
+
+			return date != null ? Math.max(0, date.getTime() - System.currentTimeMillis()) : -1;
+		}
+	}
 }
@@ -0,0 +1,229 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+
+import cieloecommerce.sdk.transport.Transport;
+import cieloecommerce.sdk.transport.TransportRequest;
+import cieloecommerce.sdk.transport.TransportResponse;
+
+/**
+ * The default {@link Transport}, on Apache HttpClient 4.5: HTTP/1.1, one
+ * request per connection at a time.
+ * <p/>
+ * The blocking requests go through the pooled client of a
+ * {@link ConnectionPool}, which reports the connection phases of the traced
+ * requests, or through a custom HttpClient; the async ones through the
+ * pool's HttpAsyncClient or a custom one.
+ * <p/>
+ * The pooled HttpClient leases and validates its connections inside
+ * synchronized blocks, so a virtual thread waiting there pins its carrier
+ * thread; with virtual threads, prefer the {@link JdkHttpTransport}.
+ */
+public class ApacheTransport implements Transport {
+	private final ConnectionPool connectionPool;
+	private final HttpClient httpClient;
+	private final HttpAsyncClient httpAsyncClient;
+
+	/**
+	 * Create a transport on the clients of the pool
+	 *
+	 * @param connectionPool
+	 *            The pool of both blocking and non-blocking clients
+	 */
+	public ApacheTransport(ConnectionPool connectionPool) {
+		this(connectionPool, null, null);
+	}
+
+	/**
+	 * Create a transport on custom clients; the connection management is up
+	 * to the caller
+	 *
+	 * @param httpClient
+	 *            The client of the blocking requests
+	 * @param httpAsyncClient
+	 *            The client, already started, of the async requests
+	 */
+	public ApacheTransport(HttpClient httpClient, HttpAsyncClient httpAsyncClient) {
+		this(null, httpClient, httpAsyncClient);
+	}
+
+	/**
+	 * Create a transport on the custom clients that are set, using the
+	 * pool's for the others
+	 */
+	ApacheTransport(ConnectionPool connectionPool, HttpClient httpClient, HttpAsyncClient httpAsyncClient) {
+		this.connectionPool = connectionPool;
+		this.httpClient = httpClient;
+		this.httpAsyncClient = httpAsyncClient;
+	}
+
+	@Override
+	public TransportResponse send(TransportRequest request) throws IOException {
+		HttpRequestBase httpRequest = toHttpRequest(request);
+		HttpClient client = httpClient != null ? httpClient : connectionPool.getHttpClient();
+		RequestTrace trace = RequestTrace.from(request);
+		boolean poolWait = httpClient == null && PoolWaitEvent.enabled();
+
+		if (trace == null && !poolWait) {
+			return new ApacheResponse(client.execute(httpRequest));
+		}
+
+		HttpContext context = new BasicHttpContext();
+
+		if (trace != null) {
+			context.setAttribute(RequestTrace.CONTEXT_ATTRIBUTE, trace);
+		}
+
+		if (poolWait) {
+			PoolWaitEvent.begin(context, origin(request.getUrl()));
+		}
+
+		try {
+			return new ApacheResponse(client.execute(httpRequest, context));
+		} finally {
+			PoolWaitEvent.end(context, false);
+		}
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> sendAsync(TransportRequest request) {
+		final CompletableFuture<TransportResponse> future = new CompletableFuture<TransportResponse>();
+		final Future<HttpResponse> responseFuture;
+
+		try {
+			HttpAsyncClient client = httpAsyncClient != null ? httpAsyncClient : connectionPool.getHttpAsyncClient();
+
+			responseFuture = client.execute(HttpAsyncMethods.create(toHttpRequest(request)),
+					new BoundedResponseConsumer(request.getMaxResponseBodySize()), new FutureCallback<HttpResponse>() {
+				@Override
+				public void completed(HttpResponse response) {
+					future.complete(new ApacheResponse(response));
+				}
+
+				@Override
+				public void failed(Exception e) {
+					future.completeExceptionally(e);
+				}
+
+				@Override
+				public void cancelled() {
+					future.cancel(false);
+				}
+			});
+		} catch (IOException | RuntimeException e) {
+			future.completeExceptionally(e);
+
+			return future;
+		}
+
+		future.whenComplete((response, failure) -> {
+			if (future.isCancelled()) {
+				responseFuture.cancel(true);
+			}
+		});
+
+		return future;
+	}
+
+	/**
+	 * The scheme, host and port of the url, with the trailing slash: the
+	 * endpoint of the SDK's requests
+	 */
+	private static String origin(String url) {
+		int authority = url.indexOf("://");
+		int path = authority < 0 ? -1 : url.indexOf('/', authority + 3);
+
+		return path < 0 ? url : url.substring(0, path + 1);
+	}
+
+	private static HttpRequestBase toHttpRequest(TransportRequest request) {
+		HttpRequestBase httpRequest;
+
+		switch (request.getMethod()) {
+		case "GET":
+			httpRequest = new HttpGet(request.getUrl());
+			break;
+		case "POST":
+			httpRequest = new HttpPost(request.getUrl());
+			break;
+		case "PUT":
+			httpRequest = new HttpPut(request.getUrl());
+			break;
+		case "DELETE":
+			httpRequest = new HttpDelete(request.getUrl());
+			break;
+		default:
+			throw new IllegalArgumentException("Unsupported method " + request.getMethod());
+		}
+
+		if (request.getBody() != null) {
+			if (!(httpRequest instanceof HttpEntityEnclosingRequestBase)) {
+				throw new IllegalArgumentException(request.getMethod() + " can't have a body");
+			}
+
+			((HttpEntityEnclosingRequestBase) httpRequest).setEntity(new ByteArrayEntity(request.getBody()));
+		}
+
+		for (int i = 0; i < request.getHeaderCount(); i++) {
+			httpRequest.addHeader(request.getHeaderName(i), request.getHeaderValue(i));
+		}
+
+		return httpRequest;
+	}
+
+	/**
+	 * The response of either client, with the body as sent on the wire; a
+	 * gzipped body is decompressed by the request reading it
+	 */
+	static final class ApacheResponse implements TransportResponse {
+		private final HttpResponse response;
+
+		ApacheResponse(HttpResponse response) {
+			this.response = response;
+		}
+
+		@Override
+		public int getStatusCode() {
+			return response.getStatusLine().getStatusCode();
+		}
+
+		@Override
+		public String getReasonPhrase() {
+			return response.getStatusLine().getReasonPhrase();
+		}
+
+		@Override
+		public String getFirstHeader(String name) {
+			Header header = response.getFirstHeader(name);
+
+			return header != null ? header.getValue() : null;
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			HttpEntity entity = response.getEntity();
+
+			return entity != null ? entity.getContent() : InputStream.nullInputStream();
+		}
+	}
+}
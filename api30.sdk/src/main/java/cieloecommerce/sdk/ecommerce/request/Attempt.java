@@ -0,0 +1,206 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.util.concurrent.CancellationException;
+
+import cieloecommerce.sdk.ecommerce.metrics.Metrics;
+import cieloecommerce.sdk.ecommerce.metrics.Operation;
+import cieloecommerce.sdk.transport.TransportRequest;
+
+/**
+ * A single attempt of a request, holding what it took from the endpoint's
+ * circuit and concurrency limit until its outcome is known, what is recorded
+ * on the metrics, and its trace and {@link RequestEvent}
+ */
+final class Attempt {
+	private final Operation operation;
+	private final CircuitBreaker.Circuit circuit;
+	private final long circuitGeneration;
+	private final ConcurrencyLimiter.Limit limit;
+	private final Metrics metrics;
+	private final RequestTrace trace;
+	private final RequestEvent event;
+	private final long start = System.nanoTime();
+	private int statusCode;
+	private long bytesSent;
+	private long wireBytesReceived;
+	private long bytesReceived;
+
+	private Attempt(Operation operation, CircuitBreaker.Circuit circuit, long circuitGeneration,
+			ConcurrencyLimiter.Limit limit, Metrics metrics, RequestTrace trace, RequestEvent event) {
+		this.operation = operation;
+		this.circuit = circuit;
+		this.circuitGeneration = circuitGeneration;
+		this.limit = limit;
+		this.metrics = metrics;
+		this.trace = trace;
+		this.event = event;
+	}
+
+	/**
+	 * Let the attempt through the circuit and the concurrency limit of the
+	 * endpoint
+	 *
+	 * @throws CircuitOpenException
+	 *             if the endpoint's circuit is open
+	 * @throws LimitExceededException
+	 *             if the endpoint is at its limit
+	 */
+	static Attempt begin(AbstractSaleRequest<?, ?> request, String requestId, int number)
+			throws CieloRequestException {
+		String endpoint = request.endpoint();
+		Operation operation = request.operation();
+		CircuitBreaker.Circuit circuit = null;
+		long circuitGeneration = 0;
+		ConcurrencyLimiter.Limit limit = null;
+		RequestTrace trace = null;
+		RequestEvent event = null;
+
+		if (request.circuitBreaker != null) {
+			circuit = request.circuitBreaker.getCircuit(endpoint);
+			circuitGeneration = circuit.acquire();
+		}
+
+		if (request.concurrencyLimiter != null) {
+			limit = request.concurrencyLimiter.getLimit(endpoint);
+
+			if (!limit.tryAcquire()) {
+				if (circuit != null) {
+					circuit.cancel(circuitGeneration);
+				}
+
+				throw new LimitExceededException(endpoint, limit.getLimit());
+			}
+		}
+
+		if (request.requestListener != null) {
+			trace = new RequestTrace(requestId, operation, endpoint, number, request.requestListener);
+			trace.mark(Phase.START);
+		}
+
+		if (RequestEvent.enabled()) {
+			event = new RequestEvent();
+			event.operation = operation.name();
+			event.endpoint = endpoint;
+			event.requestId = requestId;
+			event.attempt = number;
+			event.begin();
+		}
+
+		return new Attempt(operation, circuit, circuitGeneration, limit, request.metrics, trace, event);
+	}
+
+	/**
+	 * @return The trace, or null if no listener is set
+	 */
+	RequestTrace trace() {
+		return trace;
+	}
+
+	/**
+	 * Mark the phase on the trace, if any
+	 */
+	void mark(Phase phase) {
+		if (trace != null) {
+			trace.mark(phase);
+		}
+	}
+
+	/**
+	 * The request was built and is about to be sent
+	 */
+	void sent(TransportRequest request) {
+		mark(Phase.SERIALIZED);
+
+		if (request.getBody() != null) {
+			bytesSent = request.getBody().length;
+		}
+	}
+
+	/**
+	 * Cielo answered with the status
+	 */
+	void received(int statusCode) {
+		this.statusCode = statusCode;
+
+		mark(Phase.RESPONSE_HEADERS);
+	}
+
+	/**
+	 * The response body was read, decompressed and decoded
+	 *
+	 * @param wireBytes
+	 *            The size of the body as sent by Cielo
+	 * @param bytes
+	 *            The size of the body after decompression
+	 */
+	void read(long wireBytes, long bytes) {
+		wireBytesReceived = wireBytes;
+		bytesReceived = bytes;
+
+		mark(Phase.RESPONSE_DECODED);
+	}
+
+	/**
+	 * Record the outcome of the attempt
+	 *
+	 * @param failure
+	 *            Why the attempt failed, or null if Cielo answered it
+	 */
+	void finish(Exception failure) {
+		long latency = System.nanoTime() - start;
+
+		if (limit != null) {
+			limit.release(latency, failure);
+		}
+
+		if (circuit != null) {
+			circuit.record(circuitGeneration, latency, failure);
+		}
+
+		if (trace != null) {
+			trace.complete(statusCode, failure);
+		}
+
+		if (event != null) {
+			commit(failure);
+		}
+
+		if (metrics != null && !(failure instanceof CancellationException)) {
+			metrics.record(operation, latency, statusCode, bytesSent, wireBytesReceived, bytesReceived);
+
+			if (statusCode == 400) {
+				for (Throwable cause = failure; cause instanceof CieloRequestException; cause = cause.getCause()) {
+					CieloError error = ((CieloRequestException) cause).getError();
+
+					if (error != null && error.getCode() != null) {
+						metrics.recordError(operation, error.getCode());
+					}
+				}
+			}
+		}
+	}
+
+	private void commit(Exception failure) {
+		event.end();
+
+		if (!event.shouldCommit()) {
+			return;
+		}
+
+		event.statusCode = statusCode;
+		event.bytesSent = bytesSent;
+		event.wireBytesReceived = wireBytesReceived;
+		event.bytesReceived = bytesReceived;
+		event.failure = failure != null ? failure.toString() : null;
+
+		if (statusCode == 400 && failure instanceof CieloRequestException) {
+			CieloError error = ((CieloRequestException) failure).getError();
+
+			if (error != null && error.getCode() != null) {
+				event.errorCode = error.getCode();
+			}
+		}
+
+		event.commit();
+	}
+}
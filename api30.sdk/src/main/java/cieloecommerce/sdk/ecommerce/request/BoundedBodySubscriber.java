@@ -0,0 +1,100 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Buffers the response body of the JDK client in a byte array, failing with
+ * an IOException and cancelling the stream as soon as it goes beyond the
+ * maximum size, so a huge body is never held in memory.
+ */
+class BoundedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+	private final HttpResponse.BodySubscriber<byte[]> body = HttpResponse.BodySubscribers.ofByteArray();
+	private final CompletableFuture<byte[]> result = new CompletableFuture<byte[]>();
+	private final long maxSize;
+	private final long contentLength;
+	private Flow.Subscription subscription;
+	private long count;
+
+	/**
+	 * @param maxSize
+	 *            The most bytes to buffer
+	 * @param contentLength
+	 *            The Content-Length of the response, or -1 if unknown
+	 */
+	BoundedBodySubscriber(long maxSize, long contentLength) {
+		this.maxSize = maxSize;
+		this.contentLength = contentLength;
+
+		body.getBody().whenComplete((bytes, failure) -> {
+			if (failure != null) {
+				result.completeExceptionally(failure);
+			} else {
+				result.complete(bytes);
+			}
+		});
+	}
+
+	/**
+	 * @return The handler bounding every response body to the maximum size
+	 */
+	static HttpResponse.BodyHandler<byte[]> handler(long maxSize) {
+		return responseInfo -> new BoundedBodySubscriber(maxSize,
+				responseInfo.headers().firstValueAsLong("Content-Length").orElse(-1));
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		this.subscription = subscription;
+
+		if (contentLength > maxSize) {
+			fail();
+		} else {
+			body.onSubscribe(subscription);
+		}
+	}
+
+	@Override
+	public void onNext(List<ByteBuffer> items) {
+		if (result.isDone()) {
+			return;
+		}
+
+		for (ByteBuffer item : items) {
+			count += item.remaining();
+		}
+
+		if (count > maxSize) {
+			fail();
+		} else {
+			body.onNext(items);
+		}
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		body.onError(throwable);
+	}
+
+	@Override
+	public void onComplete() {
+		if (!result.isDone()) {
+			body.onComplete();
+		}
+	}
+
+	@Override
+	public CompletionStage<byte[]> getBody() {
+		return result;
+	}
+
+	private void fail() {
+		subscription.cancel();
+		result.completeExceptionally(new IOException("Response body exceeds " + maxSize + " bytes"));
+	}
+}
@@ -0,0 +1,71 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fails the read when the stream goes beyond the maximum size, protecting the
+ * client from huge or maliciously compressed response bodies.
+ */
+class BoundedInputStream extends FilterInputStream {
+	private final long maxSize;
+	private long count;
+
+	BoundedInputStream(InputStream in, long maxSize) {
+		super(in);
+
+		this.maxSize = maxSize;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int read = super.read();
+
+		if (read != -1) {
+			count(1);
+		}
+
+		return read;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = super.read(b, off, len);
+
+		if (read > 0) {
+			count(read);
+		}
+
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(n);
+
+		count(skipped);
+
+		return skipped;
+	}
+
+	/**
+	 * @return How many bytes were read so far
+	 */
+	long getCount() {
+		return count;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	private void count(long read) throws IOException {
+		count += read;
+
+		if (count > maxSize) {
+			throw new IOException("Response body exceeds " + maxSize + " bytes");
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Buffers the response body of the HttpAsyncClient, failing with an
+ * IOException as soon as it goes beyond the maximum size, so a huge body is
+ * never held in memory.
+ * <p/>
+ * The body is read a chunk at a time: HttpCore's own buffers read all the
+ * decoder has, which a fast server keeps feeding.
+ */
+class BoundedResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+	private static final int CHUNK_SIZE = 8192;
+
+	private final long maxSize;
+	private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+	private volatile HttpResponse response;
+	private volatile HttpEntity entity;
+	private volatile byte[] body;
+	private volatile int count;
+
+	BoundedResponseConsumer(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	@Override
+	protected void onResponseReceived(HttpResponse response) {
+		this.response = response;
+	}
+
+	@Override
+	protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) throws IOException {
+		long length = entity.getContentLength();
+
+		if (length > maxSize) {
+			throw exceeded();
+		}
+
+		this.entity = entity;
+		body = new byte[length >= 0 && length < Integer.MAX_VALUE - 8 ? (int) length : CHUNK_SIZE];
+	}
+
+	@Override
+	protected void onContentReceived(ContentDecoder decoder, IOControl ioControl) throws IOException {
+		int read;
+
+		while ((read = decoder.read(chunk)) > 0) {
+			long size = (long) count + read;
+
+			if (size > maxSize) {
+				throw exceeded();
+			}
+
+			if (size > body.length) {
+				body = Arrays.copyOf(body, (int) Math.max(size, Math.min(body.length * 2L, Integer.MAX_VALUE - 8)));
+			}
+
+			chunk.flip();
+			chunk.get(body, count, read);
+			chunk.clear();
+			count += read;
+		}
+	}
+
+	@Override
+	protected HttpResponse buildResult(HttpContext context) {
+		if (entity != null) {
+			BasicHttpEntity buffered = new BasicHttpEntity();
+
+			buffered.setContent(new ByteArrayInputStream(body, 0, count));
+			buffered.setContentLength(count);
+			buffered.setContentType(entity.getContentType());
+			buffered.setContentEncoding(entity.getContentEncoding());
+			response.setEntity(buffered);
+		}
+
+		return response;
+	}
+
+	@Override
+	protected void releaseResources() {
+		response = null;
+		entity = null;
+		body = null;
+	}
+
+	private IOException exceeded() {
+		return new IOException("Response body exceeds " + maxSize + " bytes");
+	}
+}
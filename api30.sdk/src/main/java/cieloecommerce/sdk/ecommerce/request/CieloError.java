@@ -11,6 +11,13 @@ public class CieloError {
 	private final Integer Code;
 	private final String Message;
 
+	/**
+	 * Used by the JSON decoding, so Gson doesn't need Unsafe to create it
+	 */
+	private CieloError() {
+		this(null, null);
+	}
+
 	public CieloError(Integer code, String message) {
 		this.Code = code;
 		this.Message = message;
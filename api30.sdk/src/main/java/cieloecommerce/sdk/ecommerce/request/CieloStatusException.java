@@ -0,0 +1,33 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+/**
+ * Cielo answered with a status the SDK doesn't expect, like 429 or 5xx
+ */
+public class CieloStatusException extends CieloRequestException {
+	private static final long serialVersionUID = 4223081735612408562L;
+	private final int statusCode;
+	private final long retryAfter;
+
+	public CieloStatusException(int statusCode, String reason, long retryAfter) {
+		super("Unexpected status " + statusCode + (reason != null ? " " + reason : ""),
+				new CieloError(statusCode, reason), null);
+
+		this.statusCode = statusCode;
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * @return The HTTP status code sent by Cielo
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * @return How long, in milliseconds, Cielo asked to wait through the
+	 *         Retry-After header, or -1 if it didn't
+	 */
+	public long getRetryAfter() {
+		return retryAfter;
+	}
+}
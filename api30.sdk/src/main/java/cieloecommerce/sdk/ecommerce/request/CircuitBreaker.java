@@ -0,0 +1,378 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Circuit breaker of each Cielo host; the Api URL host and the Api Query URL
+ * host are tracked separately.
+ * <p/>
+ * While closed, the outcome of the last requests is kept on a sliding window;
+ * when the rate of failures (I/O errors and 5xx) or of slow requests crosses
+ * its threshold, the circuit opens and the requests fail immediately with
+ * {@link CircuitOpenException}, instead of waiting for a timeout. After a
+ * while, the circuit is half-open and lets a few probes through: if all of
+ * them succeed, it closes; if any fails, or is still in flight after the slow
+ * call duration, it opens again.
+ * <p/>
+ * Each state change starts a new generation of the circuit, and the outcome
+ * of a request only counts on the generation that let it through: the
+ * requests let through while closed that finish after the circuit opened
+ * aren't taken as probes, and a late probe doesn't change the state.
+ */
+public class CircuitBreaker {
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	/**
+	 * Notified on every state change, on the thread of the request that
+	 * changed it; exceptions thrown by a listener don't fail the request
+	 */
+	public interface Listener {
+		void onStateChange(String host, State from, State to);
+	}
+
+	public static final int DEFAULT_WINDOW = 100;
+	public static final int DEFAULT_MIN_CALLS = 20;
+	public static final double DEFAULT_FAILURE_RATE = 0.5;
+	public static final double DEFAULT_SLOW_CALL_RATE = 0.8;
+	public static final long DEFAULT_SLOW_CALL_DURATION = 5000;
+	public static final long DEFAULT_OPEN_DURATION = 30000;
+	public static final int DEFAULT_PROBES = 3;
+
+	private static final byte SUCCESS = 0;
+	private static final byte FAILURE = 1;
+	private static final byte SLOW = 2;
+
+	private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<String, Circuit>();
+	private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+	private int window = DEFAULT_WINDOW;
+	private int minCalls = DEFAULT_MIN_CALLS;
+	private double failureRate = DEFAULT_FAILURE_RATE;
+	private double slowCallRate = DEFAULT_SLOW_CALL_RATE;
+	private long slowCallDuration = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_CALL_DURATION);
+	private long openDuration = TimeUnit.MILLISECONDS.toNanos(DEFAULT_OPEN_DURATION);
+	private int probes = DEFAULT_PROBES;
+
+	/**
+	 * @param window
+	 *            How many of the last requests are considered
+	 * @param minCalls
+	 *            How many requests must be on the window before it trips
+	 * @return this
+	 */
+	public CircuitBreaker setWindow(int window, int minCalls) {
+		this.window = window;
+		this.minCalls = minCalls;
+
+		return this;
+	}
+
+	/**
+	 * @param failureRate
+	 *            The rate of failures, between 0 and 1, that opens the circuit
+	 * @return this
+	 */
+	public CircuitBreaker setFailureRate(double failureRate) {
+		this.failureRate = failureRate;
+
+		return this;
+	}
+
+	/**
+	 * @param slowCallRate
+	 *            The rate of slow requests, between 0 and 1, that opens the
+	 *            circuit
+	 * @param slowCallDuration
+	 *            Requests slower than this are slow
+	 * @param unit
+	 *            The unit of slowCallDuration
+	 * @return this
+	 */
+	public CircuitBreaker setSlowCallRate(double slowCallRate, long slowCallDuration, TimeUnit unit) {
+		this.slowCallRate = slowCallRate;
+		this.slowCallDuration = unit.toNanos(slowCallDuration);
+
+		return this;
+	}
+
+	/**
+	 * @param openDuration
+	 *            How long the circuit stays open before letting probes through
+	 * @param unit
+	 *            The unit of openDuration
+	 * @return this
+	 */
+	public CircuitBreaker setOpenDuration(long openDuration, TimeUnit unit) {
+		this.openDuration = unit.toNanos(openDuration);
+
+		return this;
+	}
+
+	/**
+	 * @param probes
+	 *            How many requests are let through while half-open
+	 * @return this
+	 */
+	public CircuitBreaker setProbes(int probes) {
+		this.probes = probes;
+
+		return this;
+	}
+
+	public CircuitBreaker addListener(Listener listener) {
+		listeners.add(listener);
+
+		return this;
+	}
+
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Gets the circuit of an endpoint's host, created on the first request
+	 *
+	 * @param endpoint
+	 *            The Api URL or the Api Query URL
+	 * @return The circuit of the endpoint's host
+	 */
+	public Circuit getCircuit(String endpoint) {
+		String host = URI.create(endpoint).getHost();
+		Circuit circuit = circuits.get(host);
+
+		if (circuit == null) {
+			circuit = new Circuit(host);
+
+			Circuit current = circuits.putIfAbsent(host, circuit);
+
+			if (current != null) {
+				circuit = current;
+			}
+		}
+
+		return circuit;
+	}
+
+	/**
+	 * The circuit of a single host
+	 */
+	public class Circuit {
+		private final String host;
+		private final Lock lock = new ReentrantLock();
+		private final byte[] outcomes = new byte[Math.max(window, 1)];
+		private int calls;
+		private int next;
+		private int failures;
+		private int slowCalls;
+		private int permits;
+		private int probesSucceeded;
+		private long generation;
+		private long openedAt;
+		private long lastProbeAt;
+		private volatile State state = State.CLOSED;
+
+		Circuit(String host) {
+			this.host = host;
+		}
+
+		/**
+		 * Let the request through, or fail fast while open
+		 *
+		 * @return The generation that let the request through, to be passed
+		 *         to {@link #record(long, long, Exception)} or
+		 *         {@link #cancel(long)}
+		 * @throws CircuitOpenException
+		 *             if the circuit is open, or half-open without probes left
+		 */
+		long acquire() throws CircuitOpenException {
+			State from = null;
+			State to = null;
+
+			lock.lock();
+
+			try {
+				long now = System.nanoTime();
+
+				if (state == State.OPEN && now - openedAt >= openDuration) {
+					from = state;
+					to = transition(State.HALF_OPEN);
+				} else if (state == State.HALF_OPEN && permits >= probes && now - lastProbeAt > slowCallDuration) {
+					// every probe in flight is already a slow call
+					from = state;
+					to = transition(State.OPEN);
+				}
+
+				if (state == State.OPEN || (state == State.HALF_OPEN && permits >= probes)) {
+					throw new CircuitOpenException(host, state);
+				}
+
+				if (state == State.HALF_OPEN) {
+					permits++;
+					lastProbeAt = now;
+				}
+
+				return generation;
+			} finally {
+				lock.unlock();
+				notify(from, to);
+			}
+		}
+
+		/**
+		 * Give back the permit of a request that wasn't sent
+		 *
+		 * @param generation
+		 *            The generation that let the request through
+		 */
+		void cancel(long generation) {
+			lock.lock();
+
+			try {
+				if (generation == this.generation && state == State.HALF_OPEN && permits > 0) {
+					permits--;
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Record the outcome of a request let through; outcomes of previous
+		 * generations are ignored
+		 *
+		 * @param generation
+		 *            The generation that let the request through
+		 * @param latency
+		 *            How long, in nanoseconds, the request took
+		 * @param failure
+		 *            Why the request failed, or null if Cielo answered it
+		 */
+		void record(long generation, long latency, Exception failure) {
+			if (failure != null && !isFailure(failure) && !(failure instanceof CieloRequestException)) {
+				cancel(generation);
+
+				return;
+			}
+
+			byte outcome = isFailure(failure) ? FAILURE : latency > slowCallDuration ? SLOW : SUCCESS;
+			State from = null;
+			State to = null;
+
+			lock.lock();
+
+			try {
+				if (generation != this.generation) {
+					return;
+				}
+
+				if (state == State.HALF_OPEN) {
+					if (outcome != SUCCESS) {
+						from = state;
+						to = transition(State.OPEN);
+					} else if (++probesSucceeded >= probes) {
+						from = state;
+						to = transition(State.CLOSED);
+					}
+				} else if (state == State.CLOSED) {
+					add(outcome);
+
+					if (calls >= minCalls && (failures >= failureRate * calls || slowCalls >= slowCallRate * calls)) {
+						from = state;
+						to = transition(State.OPEN);
+					}
+				}
+			} finally {
+				lock.unlock();
+				notify(from, to);
+			}
+		}
+
+		private boolean isFailure(Exception failure) {
+			if (failure instanceof IOException) {
+				return true;
+			}
+
+			return failure instanceof CieloStatusException && ((CieloStatusException) failure).getStatusCode() >= 500;
+		}
+
+		private void add(byte outcome) {
+			if (calls == outcomes.length) {
+				byte eldest = outcomes[next];
+
+				if (eldest == FAILURE) {
+					failures--;
+				} else if (eldest == SLOW) {
+					slowCalls--;
+				}
+			} else {
+				calls++;
+			}
+
+			outcomes[next] = outcome;
+			next = (next + 1) % outcomes.length;
+
+			if (outcome == FAILURE) {
+				failures++;
+			} else if (outcome == SLOW) {
+				slowCalls++;
+			}
+		}
+
+		/**
+		 * Change the state, resetting the window; called holding the lock
+		 */
+		private State transition(State to) {
+			state = to;
+			generation++;
+			calls = 0;
+			next = 0;
+			failures = 0;
+			slowCalls = 0;
+			permits = 0;
+			probesSucceeded = 0;
+
+			if (to == State.OPEN) {
+				openedAt = System.nanoTime();
+			}
+
+			return to;
+		}
+
+		/**
+		 * Tell the listeners, isolated from each other and from the request:
+		 * an exception thrown by a listener goes to the thread's uncaught
+		 * exception handler
+		 */
+		private void notify(State from, State to) {
+			if (to == null) {
+				return;
+			}
+
+			for (Listener listener : listeners) {
+				try {
+					listener.onStateChange(host, from, to);
+				} catch (RuntimeException e) {
+					Thread thread = Thread.currentThread();
+
+					thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+				}
+			}
+		}
+
+		public String getHost() {
+			return host;
+		}
+
+		public State getState() {
+			return state;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+/**
+ * The request was rejected, without being sent, because the circuit of its
+ * host is open: Cielo has been failing or answering too slowly
+ *
+ * @see CircuitBreaker
+ */
+public class CircuitOpenException extends CieloRequestException {
+	private static final long serialVersionUID = 1360749402938465112L;
+	private final String host;
+	private final CircuitBreaker.State state;
+
+	public CircuitOpenException(String host, CircuitBreaker.State state) {
+		super("Circuit " + state + " for " + host, new CieloError(503, "Circuit open"), null);
+
+		this.host = host;
+		this.state = state;
+	}
+
+	/**
+	 * @return The host whose circuit is open
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * @return OPEN, or HALF_OPEN when all probes are in flight
+	 */
+	public CircuitBreaker.State getState() {
+		return state;
+	}
+}
@@ -0,0 +1,225 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive limit of the requests in flight to each endpoint, the Api URL and
+ * the Api Query URL having separate limits.
+ * <p/>
+ * The limit follows AIMD: it grows by one for each limit's worth of requests
+ * answered in time while the endpoint is busy, and is cut by a ratio when a
+ * request times out, fails on I/O, or Cielo answers with 429 or 5xx. Requests
+ * beyond the limit are rejected immediately with
+ * {@link LimitExceededException} instead of waiting for a connection.
+ */
+public class ConcurrencyLimiter {
+	public static final int DEFAULT_INITIAL_LIMIT = 20;
+	public static final int DEFAULT_MIN_LIMIT = 1;
+	public static final int DEFAULT_MAX_LIMIT = ConnectionPool.DEFAULT_MAX_PER_ROUTE;
+	public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+
+	/**
+	 * Requests slower than this, in milliseconds, count as drops
+	 */
+	public static final long DEFAULT_TIMEOUT = 5000;
+
+	private final ConcurrentMap<String, Limit> limits = new ConcurrentHashMap<String, Limit>();
+	private int initialLimit = DEFAULT_INITIAL_LIMIT;
+	private int minLimit = DEFAULT_MIN_LIMIT;
+	private int maxLimit = DEFAULT_MAX_LIMIT;
+	private double backoffRatio = DEFAULT_BACKOFF_RATIO;
+	private long timeout = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT);
+
+	/**
+	 * @param initialLimit
+	 *            The limit before any request is answered
+	 * @param minLimit
+	 *            The limit is never cut below this
+	 * @param maxLimit
+	 *            The limit never grows beyond this
+	 * @return this
+	 */
+	public ConcurrencyLimiter setLimits(int initialLimit, int minLimit, int maxLimit) {
+		this.initialLimit = initialLimit;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+
+		return this;
+	}
+
+	/**
+	 * @param backoffRatio
+	 *            The limit is multiplied by this on each drop, between 0 and 1
+	 * @return this
+	 */
+	public ConcurrencyLimiter setBackoffRatio(double backoffRatio) {
+		this.backoffRatio = backoffRatio;
+
+		return this;
+	}
+
+	/**
+	 * @param timeout
+	 *            Requests slower than this count as drops
+	 * @param unit
+	 *            The unit of the timeout
+	 * @return this
+	 */
+	public ConcurrencyLimiter setTimeout(long timeout, TimeUnit unit) {
+		this.timeout = unit.toNanos(timeout);
+
+		return this;
+	}
+
+	/**
+	 * Gets the limit of an endpoint, created on the first request
+	 *
+	 * @param endpoint
+	 *            The Api URL or the Api Query URL
+	 * @return The limit of the endpoint
+	 */
+	public Limit getLimit(String endpoint) {
+		Limit limit = limits.get(endpoint);
+
+		if (limit == null) {
+			limit = new Limit(endpoint);
+
+			Limit current = limits.putIfAbsent(endpoint, limit);
+
+			if (current != null) {
+				limit = current;
+			}
+		}
+
+		return limit;
+	}
+
+	/**
+	 * The limit of a single endpoint
+	 */
+	public class Limit {
+		private final String endpoint;
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private final Lock lock = new ReentrantLock();
+		private final LongAdder rejected = new LongAdder();
+		private final LongAdder dropped = new LongAdder();
+		private volatile double limit = initialLimit;
+
+		Limit(String endpoint) {
+			this.endpoint = endpoint;
+		}
+
+		/**
+		 * Take a slot, if the endpoint is below its limit
+		 *
+		 * @return false if the request must be rejected
+		 */
+		boolean tryAcquire() {
+			for (;;) {
+				int current = inFlight.get();
+
+				if (current >= (int) limit) {
+					rejected.increment();
+
+					return false;
+				}
+
+				if (inFlight.compareAndSet(current, current + 1)) {
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * Give the slot back, adjusting the limit by the outcome
+		 *
+		 * @param latency
+		 *            How long, in nanoseconds, the request took
+		 * @param failure
+		 *            Why the request failed, or null if Cielo answered it
+		 */
+		void release(long latency, Exception failure) {
+			int current = inFlight.getAndDecrement();
+
+			if (isDrop(latency, failure)) {
+				dropped.increment();
+				decrease();
+			} else if (failure == null && current * 2 >= limit) {
+				increase();
+			}
+		}
+
+		private boolean isDrop(long latency, Exception failure) {
+			if (latency > timeout || failure instanceof IOException) {
+				return true;
+			}
+
+			if (failure instanceof CieloStatusException) {
+				int statusCode = ((CieloStatusException) failure).getStatusCode();
+
+				return statusCode == 429 || statusCode >= 500;
+			}
+
+			return false;
+		}
+
+		private void increase() {
+			lock.lock();
+
+			try {
+				limit = Math.min(maxLimit, limit + 1 / limit);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void decrease() {
+			lock.lock();
+
+			try {
+				limit = Math.max(minLimit, limit * backoffRatio);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		public String getEndpoint() {
+			return endpoint;
+		}
+
+		/**
+		 * @return How many requests may be in flight now
+		 */
+		public int getLimit() {
+			return (int) limit;
+		}
+
+		/**
+		 * @return How many requests are in flight now
+		 */
+		public int getInFlight() {
+			return inFlight.get();
+		}
+
+		/**
+		 * @return How many requests were rejected for exceeding the limit
+		 */
+		public long getRejectedCount() {
+			return rejected.sum();
+		}
+
+		/**
+		 * @return How many requests cut the limit
+		 */
+		public long getDroppedCount() {
+			return dropped.sum();
+		}
+	}
+}
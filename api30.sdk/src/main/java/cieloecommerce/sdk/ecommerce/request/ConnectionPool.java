@@ -0,0 +1,455 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.DefaultHttpClientConnectionOperator;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import cieloecommerce.sdk.Environment;
+
+/**
+ * Pooled HTTP transport shared by the requests that have no
+ * {@link HttpClient} set.
+ * <p/>
+ * Connections to Cielo are kept alive and reused between requests, so the
+ * TCP and TLS handshakes are paid only once per connection. Idle and expired
+ * connections are evicted by a background thread.
+ * <p/>
+ * The non-blocking client, used by the async operations, has its own pool on
+ * top of a NIO reactor and is only started on the first async request.
+ * <p/>
+ * The blocking client leases a connection, waiting for one to be released
+ * and validating it, inside a synchronized block, which pins the carrier of a
+ * virtual thread; the requests run on virtual threads are better sent through
+ * a {@link JdkHttpTransport}, whose connections this pool doesn't limit or
+ * count.
+ * <p/>
+ * The blocking client reports the connection phases of the requests that
+ * carry a {@link RequestTrace} on their HttpContext, and ends their
+ * {@link PoolWaitEvent} once a connection is leased.
+ */
+public class ConnectionPool implements Closeable {
+	/**
+	 * Maximum number of connections, considering all routes
+	 */
+	public static final int DEFAULT_MAX_TOTAL = 200;
+
+	/**
+	 * Maximum number of connections to each one of the environment's URLs
+	 */
+	public static final int DEFAULT_MAX_PER_ROUTE = 100;
+
+	/**
+	 * How long, in milliseconds, a connection is kept alive when Cielo doesn't
+	 * send a Keep-Alive header
+	 */
+	public static final long DEFAULT_KEEP_ALIVE = 30000;
+
+	/**
+	 * How long, in milliseconds, an idle connection stays on the pool before
+	 * being evicted
+	 */
+	public static final long DEFAULT_MAX_IDLE_TIME = 30000;
+
+	/**
+	 * How long, in milliseconds, {@link #preconnect(String, int)} waits for a
+	 * connection of the pool
+	 */
+	static final long PRECONNECT_LEASE_TIMEOUT = 100;
+
+	/**
+	 * Connect timeout, in milliseconds, of {@link #preconnect(String, int)}
+	 */
+	static final int PRECONNECT_TIMEOUT = 10000;
+
+	private static final ConnectionPool shared = new ConnectionPool();
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final CloseableHttpClient httpClient;
+	private final ConnectionKeepAliveStrategy keepAliveStrategy;
+	private final Set<HttpRoute> routes = new CopyOnWriteArraySet<HttpRoute>();
+	private final Lock lock = new ReentrantLock();
+	private final int maxTotal;
+	private final int maxPerRoute;
+	private final long keepAlive;
+	private volatile PoolingNHttpClientConnectionManager asyncConnectionManager;
+	private volatile CloseableHttpAsyncClient httpAsyncClient;
+	private final ApacheTransport transport = new ApacheTransport(this);
+
+	/**
+	 * Create a pool with the default limits
+	 */
+	public ConnectionPool() {
+		this(DEFAULT_MAX_TOTAL, DEFAULT_MAX_PER_ROUTE, DEFAULT_KEEP_ALIVE, DEFAULT_MAX_IDLE_TIME);
+	}
+
+	/**
+	 * Create a pool with custom limits
+	 *
+	 * @param maxTotal
+	 *            Maximum number of connections, considering all routes
+	 * @param maxPerRoute
+	 *            Maximum number of connections to each registered URL
+	 * @param keepAlive
+	 *            Keep-alive, in milliseconds, when Cielo doesn't send one
+	 * @param maxIdleTime
+	 *            Idle time, in milliseconds, before a connection is evicted
+	 */
+	public ConnectionPool(int maxTotal, int maxPerRoute, final long keepAlive, long maxIdleTime) {
+		this.maxTotal = maxTotal;
+		this.maxPerRoute = maxPerRoute;
+		this.keepAlive = keepAlive;
+
+		connectionManager = new PoolingHttpClientConnectionManager(new TracingConnectionOperator(), null, -1,
+				TimeUnit.MILLISECONDS);
+		connectionManager.setMaxTotal(maxTotal);
+		connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+
+		keepAliveStrategy = new DefaultConnectionKeepAliveStrategy() {
+			@Override
+			public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+				long duration = super.getKeepAliveDuration(response, context);
+
+				return duration > 0 ? duration : keepAlive;
+			}
+		};
+
+		httpClient = HttpClientBuilder.create()
+				.setConnectionManager(connectionManager)
+				.setKeepAliveStrategy(keepAliveStrategy)
+				.setRequestExecutor(new TracingRequestExecutor())
+				.disableContentCompression()
+				.evictExpiredConnections()
+				.evictIdleConnections(maxIdleTime, TimeUnit.MILLISECONDS)
+				.build();
+	}
+
+	/**
+	 * Gets the pool shared by every {@link cieloecommerce.sdk.ecommerce.CieloEcommerce}
+	 * instance that doesn't have its own pool.
+	 *
+	 * @return the shared pool
+	 */
+	public static ConnectionPool shared() {
+		return shared;
+	}
+
+	/**
+	 * Apply the per route limit to both environment's URLs
+	 *
+	 * @param environment
+	 *            The environment whose URLs will be used by the requests
+	 */
+	public void register(Environment environment) {
+		register(route(environment.getApiUrl()));
+		register(route(environment.getApiQueryURL()));
+	}
+
+	private void register(HttpRoute route) {
+		routes.add(route);
+		connectionManager.setMaxPerRoute(route, maxPerRoute);
+
+		PoolingNHttpClientConnectionManager asyncConnectionManager = this.asyncConnectionManager;
+
+		if (asyncConnectionManager != null) {
+			asyncConnectionManager.setMaxPerRoute(route, maxPerRoute);
+		}
+	}
+
+	/**
+	 * Open connections to the URL ahead of the requests, leaving them idle on
+	 * the blocking client's pool. The connections already idle count towards
+	 * the number, and the route's limit isn't exceeded; a lease that isn't
+	 * granted in {@value #PRECONNECT_LEASE_TIMEOUT}ms, because the route is
+	 * busy, stops it.
+	 *
+	 * @param url
+	 *            The Api URL or the Api Query URL
+	 * @param connections
+	 *            How many connections the route should have
+	 * @return How many connections were opened
+	 * @throws IOException
+	 *             if a connection can't be opened
+	 */
+	public int preconnect(String url, int connections) throws IOException {
+		HttpRoute route = route(url);
+		List<HttpClientConnection> leased = new ArrayList<HttpClientConnection>();
+		int opened = 0;
+
+		try {
+			for (int i = 0; i < Math.min(connections, maxPerRoute); i++) {
+				HttpClientConnection connection;
+
+				try {
+					connection = connectionManager.requestConnection(route, null).get(PRECONNECT_LEASE_TIMEOUT,
+							TimeUnit.MILLISECONDS);
+				} catch (ConnectionPoolTimeoutException e) {
+					break;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+
+					throw new InterruptedIOException("Interrupted while opening connections");
+				} catch (ExecutionException e) {
+					throw new IOException(e.getCause());
+				}
+
+				leased.add(connection);
+
+				if (!connection.isOpen()) {
+					HttpContext context = new BasicHttpContext();
+
+					connectionManager.connect(connection, route, PRECONNECT_TIMEOUT, context);
+					connectionManager.routeComplete(connection, route, context);
+					opened++;
+				}
+			}
+		} finally {
+			for (HttpClientConnection connection : leased) {
+				connectionManager.releaseConnection(connection, null, keepAlive, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		return opened;
+	}
+
+	/**
+	 * @return The pooled HttpClient
+	 */
+	public HttpClient getHttpClient() {
+		return httpClient;
+	}
+
+	/**
+	 * @return The transport on both pooled clients, used by the requests that
+	 *         have no client or transport set
+	 */
+	public ApacheTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * Gets the non-blocking client, starting its I/O reactor on the first call
+	 *
+	 * @return The pooled HttpAsyncClient
+	 * @throws IOReactorException
+	 *             if the I/O reactor can't be created
+	 */
+	public HttpAsyncClient getHttpAsyncClient() throws IOReactorException {
+		CloseableHttpAsyncClient httpAsyncClient = this.httpAsyncClient;
+
+		if (httpAsyncClient == null) {
+			lock.lock();
+
+			try {
+				httpAsyncClient = this.httpAsyncClient;
+
+				if (httpAsyncClient == null) {
+					httpAsyncClient = createHttpAsyncClient();
+					httpAsyncClient.start();
+
+					this.httpAsyncClient = httpAsyncClient;
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		return httpAsyncClient;
+	}
+
+	private CloseableHttpAsyncClient createHttpAsyncClient() throws IOReactorException {
+		asyncConnectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor());
+		asyncConnectionManager.setMaxTotal(maxTotal);
+		asyncConnectionManager.setDefaultMaxPerRoute(maxPerRoute);
+
+		for (HttpRoute route : routes) {
+			asyncConnectionManager.setMaxPerRoute(route, maxPerRoute);
+		}
+
+		return HttpAsyncClients.custom()
+				.setConnectionManager(asyncConnectionManager)
+				.setKeepAliveStrategy(keepAliveStrategy)
+				.setThreadFactory(new DaemonThreadFactory("cielo-io-reactor"))
+				.build();
+	}
+
+	/**
+	 * Gets the statistics considering all routes
+	 *
+	 * @return leased, available and pending connections
+	 */
+	public PoolStats getTotalStats() {
+		return connectionManager.getTotalStats();
+	}
+
+	/**
+	 * Gets the statistics of a single URL
+	 *
+	 * @param url
+	 *            The Api URL or the Api Query URL
+	 * @return leased, available and pending connections
+	 */
+	public PoolStats getStats(String url) {
+		return connectionManager.getStats(route(url));
+	}
+
+	/**
+	 * Gets the statistics of the non-blocking client, considering all routes
+	 *
+	 * @return leased, available and pending connections; all zero while no
+	 *         async request was sent
+	 */
+	public PoolStats getAsyncTotalStats() {
+		PoolingNHttpClientConnectionManager asyncConnectionManager = this.asyncConnectionManager;
+
+		if (asyncConnectionManager == null) {
+			return new PoolStats(0, 0, 0, maxTotal);
+		}
+
+		return asyncConnectionManager.getTotalStats();
+	}
+
+	/**
+	 * Shut down the pool, closing all connections
+	 */
+	@Override
+	public void close() throws IOException {
+		httpClient.close();
+
+		if (httpAsyncClient != null) {
+			httpAsyncClient.close();
+		}
+	}
+
+	/**
+	 * Build the same route the HttpClient will use to connect to the url
+	 */
+	private static HttpRoute route(String url) {
+		URI uri = URI.create(url);
+		boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+		int port = uri.getPort();
+
+		if (port < 0) {
+			port = secure ? 443 : 80;
+		}
+
+		return new HttpRoute(new HttpHost(uri.getHost(), port, uri.getScheme()), null, secure);
+	}
+
+	/**
+	 * Opens the connections with the same socket factories as the default
+	 * pool, reporting the lease and the handshakes
+	 */
+	private static class TracingConnectionOperator extends DefaultHttpClientConnectionOperator {
+		TracingConnectionOperator() {
+			super(RegistryBuilder.<ConnectionSocketFactory> create()
+					.register("http", PlainConnectionSocketFactory.getSocketFactory())
+					.register("https", SSLConnectionSocketFactory.getSocketFactory())
+					.build(), null, null);
+		}
+
+		@Override
+		public void connect(ManagedHttpClientConnection conn, HttpHost host, InetSocketAddress localAddress,
+				int connectTimeout, SocketConfig socketConfig, HttpContext context) throws IOException {
+			RequestTrace trace = RequestTrace.from(context);
+
+			PoolWaitEvent.end(context, true);
+
+			if (trace != null) {
+				trace.mark(Phase.CONNECTION_LEASED);
+			}
+
+			super.connect(conn, host, localAddress, connectTimeout, socketConfig, context);
+
+			if (trace != null) {
+				trace.mark(Phase.CONNECTED);
+			}
+		}
+	}
+
+	/**
+	 * Reports when the request was written and when the response headers
+	 * arrived
+	 */
+	private static class TracingRequestExecutor extends HttpRequestExecutor {
+		@Override
+		public HttpResponse execute(HttpRequest request, HttpClientConnection conn, HttpContext context)
+				throws IOException, HttpException {
+			RequestTrace trace = RequestTrace.from(context);
+
+			PoolWaitEvent.end(context, true);
+
+			if (trace != null) {
+				trace.mark(Phase.CONNECTION_LEASED);
+			}
+
+			return super.execute(request, conn, context);
+		}
+
+		@Override
+		protected HttpResponse doSendRequest(HttpRequest request, HttpClientConnection conn, HttpContext context)
+				throws IOException, HttpException {
+			HttpResponse response = super.doSendRequest(request, conn, context);
+			RequestTrace trace = RequestTrace.from(context);
+
+			if (trace != null) {
+				trace.mark(Phase.REQUEST_SENT);
+			}
+
+			return response;
+		}
+
+		@Override
+		protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection conn,
+				HttpContext context) throws HttpException, IOException {
+			HttpResponse response = super.doReceiveResponse(request, conn, context);
+			RequestTrace trace = RequestTrace.from(context);
+
+			if (trace != null) {
+				trace.mark(Phase.RESPONSE_HEADERS);
+			}
+
+			return response;
+		}
+	}
+}
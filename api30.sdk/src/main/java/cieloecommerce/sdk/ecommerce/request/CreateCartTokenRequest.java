@@ -2,30 +2,26 @@ package cieloecommerce.sdk.ecommerce.request;
 
 import java.io.IOException;
 
-import org.apache.http.HttpResponse;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-
-import com.google.gson.GsonBuilder;
-
 import cieloecommerce.sdk.Environment;
 import cieloecommerce.sdk.Merchant;
 import cieloecommerce.sdk.ecommerce.CardToken;
+import cieloecommerce.sdk.ecommerce.metrics.Operation;
+import cieloecommerce.sdk.transport.TransportRequest;
 
 public class CreateCartTokenRequest extends AbstractSaleRequest<CardToken, CardToken> {
+	private static final UriTemplate URI_TEMPLATE = new UriTemplate("{+apiUrl}1/card/");
+
 	public CreateCartTokenRequest(Merchant merchant, Environment environment) {
-		super(merchant, environment);
+		super(merchant, environment, CardToken.class);
 	}
 
 	@Override
-	public CardToken execute(CardToken param) throws IOException, CieloRequestException {
-		String url = environment.getApiUrl() + "1/card/";
-		HttpPost request = new HttpPost(url);
-
-		request.setEntity(new StringEntity(new GsonBuilder().create().toJson(param)));
-
-		HttpResponse response = sendRequest(request);
+	Operation operation() {
+		return Operation.CREATE_CARD_TOKEN;
+	}
 
-		return readResponse(response, CardToken.class);
+	@Override
+	TransportRequest createRequest(CardToken param) throws IOException {
+		return new TransportRequest("POST", URI_TEMPLATE.expand(environment.getApiUrl()), codec.write(param));
 	}
-}
\ No newline at end of file
+}
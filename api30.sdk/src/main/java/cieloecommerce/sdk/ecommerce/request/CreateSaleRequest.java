@@ -2,33 +2,29 @@ package cieloecommerce.sdk.ecommerce.request;
 
 import java.io.IOException;
 
-import org.apache.http.HttpResponse;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-
-import com.google.gson.GsonBuilder;
-
 import cieloecommerce.sdk.Environment;
 import cieloecommerce.sdk.Merchant;
 import cieloecommerce.sdk.ecommerce.Sale;
+import cieloecommerce.sdk.ecommerce.metrics.Operation;
+import cieloecommerce.sdk.transport.TransportRequest;
 
 /**
  * Create any kind of sale
  */
 public class CreateSaleRequest extends AbstractSaleRequest<Sale, Sale> {
+	private static final UriTemplate URI_TEMPLATE = new UriTemplate("{+apiUrl}1/sales/");
+
 	public CreateSaleRequest(Merchant merchant, Environment environment) {
-		super(merchant, environment);
+		super(merchant, environment, Sale.class);
 	}
 
 	@Override
-	public Sale execute(Sale param) throws IOException, CieloRequestException {
-		String url = environment.getApiUrl() + "1/sales/";
-		HttpPost request = new HttpPost(url);
-
-		request.setEntity(new StringEntity(new GsonBuilder().create().toJson(param)));
-
-		HttpResponse response = sendRequest(request);
+	Operation operation() {
+		return Operation.CREATE_SALE;
+	}
 
-		return readResponse(response, Sale.class);
+	@Override
+	TransportRequest createRequest(Sale param) throws IOException {
+		return new TransportRequest("POST", URI_TEMPLATE.expand(environment.getApiUrl()), codec.write(param));
 	}
 }
@@ -0,0 +1,25 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The SDK's background threads must not keep the JVM alive
+ */
+class DaemonThreadFactory implements ThreadFactory {
+	private final AtomicInteger count = new AtomicInteger();
+	private final String name;
+
+	DaemonThreadFactory(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public Thread newThread(Runnable runnable) {
+		Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+
+		thread.setDaemon(true);
+
+		return thread;
+	}
+}
@@ -0,0 +1,235 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decodes a gzip stream, like {@link java.util.zip.GZIPInputStream}, with an
+ * inflater and buffers taken from an {@link InflaterPool} and given back on
+ * close.
+ * <p/>
+ * Concatenated members are decoded as a single stream and anything after the
+ * last one is ignored; the header CRC, when present, is not checked.
+ */
+final class GzipInputStream extends InputStream {
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+
+	private final InputStream in;
+	private final InflaterPool pool;
+	private InflaterPool.Entry entry;
+	private int pos;
+	private int limit;
+	private boolean eof;
+
+	/**
+	 * @param in
+	 *            The compressed stream, closed with this one
+	 * @throws IOException
+	 *             if the gzip header can't be read or is invalid
+	 */
+	GzipInputStream(InputStream in, InflaterPool pool) throws IOException {
+		this.in = in;
+		this.pool = pool;
+		this.entry = pool.acquire();
+
+		try {
+			readHeader();
+		} catch (IOException | RuntimeException e) {
+			release();
+			throw e;
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] scratch = entry().scratch;
+
+		return read(scratch, 0, 1) == 1 ? scratch[0] & 0xff : -1;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		InflaterPool.Entry entry = entry();
+		Inflater inflater = entry.inflater;
+
+		if (eof) {
+			return -1;
+		}
+
+		if (len == 0) {
+			return 0;
+		}
+
+		for (;;) {
+			int read;
+
+			try {
+				read = inflater.inflate(b, off, len);
+			} catch (DataFormatException e) {
+				throw new ZipException(e.getMessage() != null ? e.getMessage() : "Invalid gzip data");
+			}
+
+			if (read > 0) {
+				entry.crc.update(b, off, read);
+
+				return read;
+			}
+
+			if (inflater.finished()) {
+				pos = limit - inflater.getRemaining();
+				readTrailer();
+
+				if (!nextMember()) {
+					eof = true;
+
+					return -1;
+				}
+			} else if (inflater.needsDictionary()) {
+				throw new ZipException("Unexpected preset dictionary");
+			} else if (inflater.needsInput()) {
+				if (pos == limit && !fill()) {
+					throw new EOFException("Unexpected end of gzip stream");
+				}
+
+				inflater.setInput(entry.input, pos, limit - pos);
+				pos = limit;
+			}
+		}
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		byte[] scratch = entry().scratch;
+		long skipped = 0;
+
+		while (skipped < n) {
+			int read = read(scratch, 0, (int) Math.min(scratch.length, n - skipped));
+
+			if (read < 0) {
+				break;
+			}
+
+			skipped += read;
+		}
+
+		return skipped;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (entry != null) {
+			release();
+			in.close();
+		}
+	}
+
+	private InflaterPool.Entry entry() throws IOException {
+		if (entry == null) {
+			throw new IOException("Stream closed");
+		}
+
+		return entry;
+	}
+
+	private void release() {
+		pool.release(entry);
+		entry = null;
+	}
+
+	private void readHeader() throws IOException {
+		if (readUByte() != 0x1f || readUByte() != 0x8b) {
+			throw new ZipException("Not in GZIP format");
+		}
+
+		if (readUByte() != 8) {
+			throw new ZipException("Unsupported compression method");
+		}
+
+		int flags = readUByte();
+
+		// MTIME, XFL and OS
+		skipBytes(6);
+
+		if ((flags & FEXTRA) != 0) {
+			skipBytes(readUByte() | readUByte() << 8);
+		}
+
+		if ((flags & FNAME) != 0) {
+			while (readUByte() != 0) {
+			}
+		}
+
+		if ((flags & FCOMMENT) != 0) {
+			while (readUByte() != 0) {
+			}
+		}
+
+		if ((flags & FHCRC) != 0) {
+			skipBytes(2);
+		}
+	}
+
+	private void readTrailer() throws IOException {
+		long crc = readUInt();
+		long size = readUInt();
+
+		if (crc != entry.crc.getValue() || size != (entry.inflater.getBytesWritten() & 0xffffffffL)) {
+			throw new ZipException("Corrupt GZIP trailer");
+		}
+	}
+
+	/**
+	 * Start decoding the next member, if there's one
+	 *
+	 * @return false at the end of the stream or on trailing garbage
+	 */
+	private boolean nextMember() throws IOException {
+		if (pos == limit && !fill()) {
+			return false;
+		}
+
+		if ((entry.input[pos] & 0xff) != 0x1f) {
+			return false;
+		}
+
+		entry.inflater.reset();
+		entry.crc.reset();
+		readHeader();
+
+		return true;
+	}
+
+	private boolean fill() throws IOException {
+		int read = in.read(entry.input, 0, entry.input.length);
+
+		pos = 0;
+		limit = Math.max(read, 0);
+
+		return read > 0;
+	}
+
+	private int readUByte() throws IOException {
+		if (pos == limit && !fill()) {
+			throw new EOFException("Unexpected end of gzip stream");
+		}
+
+		return entry.input[pos++] & 0xff;
+	}
+
+	private long readUInt() throws IOException {
+		return readUByte() | readUByte() << 8 | readUByte() << 16 | (long) readUByte() << 24;
+	}
+
+	private void skipBytes(int n) throws IOException {
+		for (int i = 0; i < n; i++) {
+			readUByte();
+		}
+	}
+}
@@ -0,0 +1,372 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Hedging of idempotent requests: when a request doesn't answer within a
+ * percentile of the recent latencies, a second one is sent on another pooled
+ * connection; the first response wins and the other request is cancelled.
+ * <p/>
+ * The hedges are taken from a token bucket filled by the requests sent, a
+ * fraction of a hedge each, and holding only a few hedges: after a quiet
+ * period, a slow Cielo gets at most that burst plus the fraction of the
+ * requests, instead of twice the load. No hedge is sent until enough
+ * latencies are known.
+ * <p/>
+ * The percentile is computed from the latencies of the first request of
+ * each hedged pair, whichever answered first; when the hedge won, the time
+ * until the first request was cancelled is taken, a lower bound of its
+ * latency, so the hedges don't pull the percentile down.
+ * <p/>
+ * When the requests run on an executor, a cancelled request can't be
+ * interrupted and runs until Cielo answers; only the non-blocking client
+ * aborts the losing request.
+ */
+public class HedgePolicy {
+	/**
+	 * Hedge after the 95th percentile of the recent latencies
+	 */
+	public static final double DEFAULT_PERCENTILE = 95;
+
+	/**
+	 * At most 5% extra requests
+	 */
+	public static final double DEFAULT_BUDGET = 0.05;
+
+	/**
+	 * Hedges allowed in a burst, when the budget is full
+	 */
+	public static final int DEFAULT_BUDGET_MAX = 10;
+
+	/**
+	 * How many latencies are kept to compute the percentile
+	 */
+	public static final int DEFAULT_WINDOW = 1024;
+
+	/**
+	 * How many latencies must be known before the first hedge
+	 */
+	public static final int MIN_SAMPLES = 64;
+
+	private static final int RECOMPUTE_INTERVAL = 64;
+
+	private static final long TOKEN = 1000;
+
+	private final double percentile;
+	private final long deposit;
+	private final long[] latencies;
+	private final Lock lock = new ReentrantLock();
+	private long recorded;
+	private volatile long maxTokens = DEFAULT_BUDGET_MAX * TOKEN;
+	private final AtomicLong tokens = new AtomicLong(maxTokens);
+	private final LongAdder hedges = new LongAdder();
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder hedgesWon = new LongAdder();
+	private volatile long minDelay;
+	private volatile long delay = Long.MAX_VALUE;
+
+	/**
+	 * Create a policy that hedges after the 95th percentile, with a budget of
+	 * 5% extra requests and bursts of 10
+	 */
+	public HedgePolicy() {
+		this(DEFAULT_PERCENTILE, DEFAULT_BUDGET);
+	}
+
+	/**
+	 * Create a policy
+	 *
+	 * @param percentile
+	 *            The percentile, between 0 and 100, of the recent latencies
+	 *            after which the hedge is sent
+	 * @param budget
+	 *            The hedges earned by each request, between 0 and 1
+	 */
+	public HedgePolicy(double percentile, double budget) {
+		this(percentile, budget, DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Create a policy
+	 *
+	 * @param percentile
+	 *            The percentile, between 0 and 100, of the recent latencies
+	 *            after which the hedge is sent
+	 * @param budget
+	 *            The hedges earned by each request, between 0 and 1
+	 * @param window
+	 *            How many recent latencies are considered
+	 */
+	public HedgePolicy(double percentile, double budget, int window) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("The percentile must be between 0 and 100");
+		}
+
+		this.percentile = percentile;
+		this.deposit = (long) (budget * TOKEN);
+		this.latencies = new long[Math.max(window, MIN_SAMPLES)];
+	}
+
+	/**
+	 * Never hedge before the given delay, even if the percentile is lower
+	 *
+	 * @param minDelay
+	 *            The minimum delay
+	 * @param unit
+	 *            The unit of the delay
+	 * @return this
+	 */
+	public HedgePolicy setMinDelay(long minDelay, TimeUnit unit) {
+		this.minDelay = unit.toNanos(minDelay);
+
+		return this;
+	}
+
+	/**
+	 * @param max
+	 *            The hedges the budget holds, allowed in a burst
+	 * @return this
+	 */
+	public HedgePolicy setBudgetMax(int max) {
+		this.maxTokens = max * TOKEN;
+
+		tokens.set(maxTokens);
+
+		return this;
+	}
+
+	/**
+	 * Send the request, and its hedge if needed, blocking until the first
+	 * response
+	 *
+	 * @param request
+	 *            Sends a new request each time it's called
+	 * @return The first response
+	 * @throws IOException
+	 *             if every request sent failed
+	 * @throws CieloRequestException
+	 *             if Cielo returns an error
+	 */
+	public <T> T execute(Supplier<CompletableFuture<T>> request) throws IOException, CieloRequestException {
+		CompletableFuture<T> future = executeAsync(request);
+
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+
+			throw new InterruptedIOException("Interrupted while waiting for the response");
+		} catch (ExecutionException e) {
+			Throwable cause = unwrap(e.getCause());
+
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof CieloRequestException) {
+				throw (CieloRequestException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Send the request, and its hedge if needed, without blocking
+	 *
+	 * @param request
+	 *            Sends a new request each time it's called
+	 * @return A future of the first response; cancelling it cancels both
+	 *         requests
+	 */
+	public <T> CompletableFuture<T> executeAsync(final Supplier<CompletableFuture<T>> request) {
+		final CompletableFuture<T> result = new CompletableFuture<T>();
+		final AtomicInteger outstanding = new AtomicInteger(1);
+		final long start = System.nanoTime();
+
+		requests.increment();
+		deposit();
+
+		final CompletableFuture<T> primary = request.get();
+
+		primary.whenComplete((response, failure) -> {
+			Throwable cause = unwrap(failure);
+
+			// cancelled because the hedge won: it would have taken longer
+			if (cause == null || cause instanceof CieloRequestException
+					|| (cause instanceof CancellationException && !result.isCancelled())) {
+				record(System.nanoTime() - start);
+			}
+		});
+		primary.whenComplete(complete(result, outstanding, false));
+		result.whenComplete((response, failure) -> primary.cancel(true));
+
+		long delay = Math.max(this.delay, minDelay);
+
+		if (delay != Long.MAX_VALUE && !result.isDone()) {
+			final ScheduledFuture<?> hedge = Scheduler.schedule(() -> {
+				if (result.isDone() || !acquireBudget()) {
+					return;
+				}
+
+				outstanding.incrementAndGet();
+
+				CompletableFuture<T> secondary;
+
+				try {
+					secondary = request.get();
+				} catch (RuntimeException e) {
+					complete(result, outstanding, true).accept(null, e);
+
+					return;
+				}
+
+				secondary.whenComplete(complete(result, outstanding, true));
+				result.whenComplete((response, failure) -> secondary.cancel(true));
+			}, delay, TimeUnit.NANOSECONDS);
+
+			result.whenComplete((response, failure) -> hedge.cancel(false));
+		}
+
+		return result;
+	}
+
+	/**
+	 * The first response completes the result; a failure only does when it's
+	 * an error returned by Cielo or when no other request is in flight
+	 */
+	private <T> BiConsumer<T, Throwable> complete(final CompletableFuture<T> result, final AtomicInteger outstanding,
+			final boolean hedge) {
+		return (response, failure) -> {
+			int left = outstanding.decrementAndGet();
+
+			if (failure == null) {
+				if (result.complete(response) && hedge) {
+					hedgesWon.increment();
+				}
+			} else {
+				failure = unwrap(failure);
+
+				if (left == 0 || failure instanceof CieloRequestException) {
+					result.completeExceptionally(failure);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Add the request to the budget
+	 */
+	private void deposit() {
+		for (;;) {
+			long current = tokens.get();
+			long next = Math.min(maxTokens, current + deposit);
+
+			if (current >= next || tokens.compareAndSet(current, next)) {
+				return;
+			}
+		}
+	}
+
+	private boolean acquireBudget() {
+		for (;;) {
+			long current = tokens.get();
+
+			if (current < TOKEN) {
+				return false;
+			}
+
+			if (tokens.compareAndSet(current, current - TOKEN)) {
+				hedges.increment();
+
+				return true;
+			}
+		}
+	}
+
+	private void record(long latency) {
+		lock.lock();
+
+		try {
+			latencies[(int) (recorded++ % latencies.length)] = latency;
+
+			if (recorded >= MIN_SAMPLES && recorded % RECOMPUTE_INTERVAL == 0) {
+				long[] sorted = Arrays.copyOf(latencies, (int) Math.min(recorded, latencies.length));
+
+				Arrays.sort(sorted);
+
+				int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+
+				delay = sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return How many requests were sent, not counting the hedges
+	 */
+	public long getRequestCount() {
+		return requests.sum();
+	}
+
+	/**
+	 * @return How many hedges were sent
+	 */
+	public long getHedgeCount() {
+		return hedges.sum();
+	}
+
+	/**
+	 * @return How many hedges the budget holds now
+	 */
+	public double getBudget() {
+		return (double) tokens.get() / TOKEN;
+	}
+
+	/**
+	 * @return How many hedges answered before the request they hedged
+	 */
+	public long getHedgeWonCount() {
+		return hedgesWon.sum();
+	}
+
+	/**
+	 * @param unit
+	 *            The unit of the delay
+	 * @return The current delay before a hedge, or -1 while not enough
+	 *         latencies are known
+	 */
+	public long getDelay(TimeUnit unit) {
+		long delay = this.delay;
+
+		return delay == Long.MAX_VALUE ? -1 : unit.convert(Math.max(delay, minDelay), TimeUnit.NANOSECONDS);
+	}
+
+	private static Throwable unwrap(Throwable failure) {
+		while (failure instanceof CompletionException && failure.getCause() != null) {
+			failure = failure.getCause();
+		}
+
+		return failure;
+	}
+}
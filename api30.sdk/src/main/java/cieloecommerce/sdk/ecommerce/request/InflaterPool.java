@@ -0,0 +1,70 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps the {@link Inflater}s and buffers used to decode gzip response
+ * bodies, so each response doesn't allocate a native inflater and leave it
+ * for the GC to release.
+ * <p/>
+ * The pool is bounded: inflaters released while it's full are ended right
+ * away, freeing their native memory.
+ */
+final class InflaterPool {
+	/**
+	 * Maximum number of idle inflaters kept by the shared pool
+	 */
+	static final int DEFAULT_MAX_IDLE = 64;
+
+	private static final InflaterPool shared = new InflaterPool(DEFAULT_MAX_IDLE);
+
+	private final ArrayBlockingQueue<Entry> idle;
+
+	InflaterPool(int maxIdle) {
+		idle = new ArrayBlockingQueue<Entry>(maxIdle);
+	}
+
+	static InflaterPool shared() {
+		return shared;
+	}
+
+	/**
+	 * @return An idle entry, or a new one if there's none
+	 */
+	Entry acquire() {
+		Entry entry = idle.poll();
+
+		return entry != null ? entry : new Entry();
+	}
+
+	/**
+	 * Give the entry back, ending its inflater if the pool is full
+	 */
+	void release(Entry entry) {
+		entry.inflater.reset();
+		entry.crc.reset();
+
+		if (!idle.offer(entry)) {
+			entry.inflater.end();
+		}
+	}
+
+	/**
+	 * @return How many entries are idle
+	 */
+	int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * An inflater with the buffers and checksum used to decode a gzip stream
+	 */
+	static final class Entry {
+		final Inflater inflater = new Inflater(true);
+		final CRC32 crc = new CRC32();
+		final byte[] input = new byte[8192];
+		final byte[] scratch = new byte[512];
+	}
+}
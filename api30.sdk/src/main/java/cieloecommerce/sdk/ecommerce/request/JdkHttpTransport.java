@@ -0,0 +1,165 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import cieloecommerce.sdk.transport.Transport;
+import cieloecommerce.sdk.transport.TransportRequest;
+import cieloecommerce.sdk.transport.TransportResponse;
+
+/**
+ * {@link Transport} on the JDK's {@link HttpClient}, negotiating HTTP/2: ALPN
+ * on https, an upgrade from HTTP/1.1 on plain http.
+ * <p/>
+ * Over HTTP/2, concurrent requests are multiplexed as streams of the same
+ * connection, so many requests in flight need only a few connections, and no
+ * request waits for a connection to be leased. Servers that only speak
+ * HTTP/1.1 get one request per connection at a time, as with the
+ * {@link ApacheTransport}.
+ * <p/>
+ * The async requests buffer the whole response body before completing, so
+ * it's decoded without blocking; the body is bounded by the
+ * {@link TransportRequest#getMaxResponseBodySize() maximum size} of the
+ * request while it streams in.
+ */
+public class JdkHttpTransport implements Transport {
+	/**
+	 * How long, in milliseconds, to wait for a connection to be established
+	 */
+	public static final long DEFAULT_CONNECT_TIMEOUT = 10000;
+
+	private final HttpClient httpClient;
+
+	/**
+	 * Create a transport with its own HTTP/2 client
+	 */
+	public JdkHttpTransport() {
+		this(HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.connectTimeout(Duration.ofMillis(DEFAULT_CONNECT_TIMEOUT))
+				.build());
+	}
+
+	/**
+	 * Create a transport on a custom client
+	 *
+	 * @param httpClient
+	 *            The client; HTTP/2 is only used if it's the client's version
+	 */
+	public JdkHttpTransport(HttpClient httpClient) {
+		this.httpClient = httpClient;
+	}
+
+	/**
+	 * @return The client the requests are sent through
+	 */
+	public HttpClient getHttpClient() {
+		return httpClient;
+	}
+
+	@Override
+	public TransportResponse send(TransportRequest request) throws IOException {
+		try {
+			HttpResponse<InputStream> response = httpClient.send(toHttpRequest(request),
+					HttpResponse.BodyHandlers.ofInputStream());
+
+			return new JdkResponse(response.statusCode(), response.headers(), response.body());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			throw new InterruptedIOException("Interrupted while waiting for Cielo");
+		}
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> sendAsync(TransportRequest request) {
+		final CompletableFuture<TransportResponse> future = new CompletableFuture<TransportResponse>();
+		final CompletableFuture<HttpResponse<byte[]>> responseFuture;
+
+		try {
+			responseFuture = httpClient.sendAsync(toHttpRequest(request),
+					BoundedBodySubscriber.handler(request.getMaxResponseBodySize()));
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+
+			return future;
+		}
+
+		responseFuture.whenComplete((response, failure) -> {
+			if (failure != null) {
+				future.completeExceptionally(failure instanceof CompletionException && failure.getCause() != null
+						? failure.getCause() : failure);
+			} else {
+				future.complete(new JdkResponse(response.statusCode(), response.headers(),
+						new ByteArrayInputStream(response.body())));
+			}
+		});
+
+		future.whenComplete((response, failure) -> {
+			if (future.isCancelled()) {
+				responseFuture.cancel(true);
+			}
+		});
+
+		return future;
+	}
+
+	private static HttpRequest toHttpRequest(TransportRequest request) {
+		byte[] body = request.getBody();
+		HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(request.getUrl()))
+				.method(request.getMethod(), body != null ? HttpRequest.BodyPublishers.ofByteArray(body)
+						: HttpRequest.BodyPublishers.noBody());
+
+		for (int i = 0; i < request.getHeaderCount(); i++) {
+			builder.header(request.getHeaderName(i), request.getHeaderValue(i));
+		}
+
+		return builder.build();
+	}
+
+	private static final class JdkResponse implements TransportResponse {
+		private final int statusCode;
+		private final HttpHeaders headers;
+		private final InputStream body;
+
+		JdkResponse(int statusCode, HttpHeaders headers, InputStream body) {
+			this.statusCode = statusCode;
+			this.headers = headers;
+			this.body = body;
+		}
+
+		@Override
+		public int getStatusCode() {
+			return statusCode;
+		}
+
+		/**
+		 * The JDK client doesn't expose the reason phrase, which HTTP/2
+		 * doesn't have anyway
+		 */
+		@Override
+		public String getReasonPhrase() {
+			return null;
+		}
+
+		@Override
+		public String getFirstHeader(String name) {
+			return headers.firstValue(name).orElse(null);
+		}
+
+		@Override
+		public InputStream getBody() {
+			return body;
+		}
+	}
+}
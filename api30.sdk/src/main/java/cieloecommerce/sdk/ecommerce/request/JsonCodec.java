@@ -0,0 +1,251 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import cieloecommerce.sdk.ecommerce.JsonModelAdapters;
+
+/**
+ * JSON encoding and decoding of the messages exchanged with Cielo.
+ * <p/>
+ * A single instance is shared by all requests; Gson is thread-safe and caches
+ * the type adapters of the model classes, so the reflection over them is done
+ * only once. The model classes don't even need reflection: their adapters are
+ * generated at build time ({@link JsonModelAdapters}), and Gson's reflective
+ * adapter is left for subclasses of the model. Encoding goes through a
+ * per-thread scratch buffer that is reused between requests, and the
+ * characters are encoded to UTF-8 straight into it, so neither an
+ * intermediate String nor the CharBuffers of a charset encoder are created.
+ */
+public class JsonCodec {
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Scratch buffers that grow beyond this size are not kept for reuse
+	 */
+	private static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+
+	private static final JsonCodec shared = new JsonCodec(
+			new GsonBuilder().registerTypeAdapterFactory(new JsonModelAdapters()).create());
+
+	private static final ThreadLocal<Scratch> scratches = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+
+	private final Gson gson;
+
+	public JsonCodec(Gson gson) {
+		this.gson = gson;
+	}
+
+	/**
+	 * @return the codec shared by all requests
+	 */
+	public static JsonCodec shared() {
+		return shared;
+	}
+
+	/**
+	 * Decode the JSON read from the stream, without buffering it as a String
+	 *
+	 * @param content
+	 *            The UTF-8 JSON stream; it isn't closed
+	 * @param classOf
+	 *            The class of the decoded object
+	 * @return The decoded object, or null if the stream is empty
+	 * @throws IOException
+	 *             if the stream can't be read or isn't a valid JSON
+	 */
+	public <T> T read(InputStream content, Class<T> classOf) throws IOException {
+		JsonReader reader = new JsonReader(new InputStreamReader(content, UTF_8));
+
+		try {
+			return gson.fromJson(reader, classOf);
+		} catch (JsonIOException e) {
+			throw new IOException(e.getMessage(), e.getCause());
+		} catch (JsonSyntaxException e) {
+			throw new IOException("Invalid JSON sent by Cielo", e);
+		}
+	}
+
+	/**
+	 * Encode the object as UTF-8 JSON
+	 *
+	 * @param src
+	 *            The object to be encoded
+	 * @return The exact bytes of the JSON
+	 * @throws IOException
+	 *             if the object can't be encoded
+	 */
+	public byte[] write(Object src) throws IOException {
+		Scratch scratch = scratches.get();
+		JsonWriter writer = new JsonWriter(scratch.writer);
+
+		scratch.bytes.reset();
+		scratch.writer.reset();
+
+		try {
+			if (src == null) {
+				gson.toJson(JsonNull.INSTANCE, writer);
+			} else {
+				gson.toJson(src, src.getClass(), writer);
+			}
+
+			writer.flush();
+		} catch (JsonIOException e) {
+			throw new IOException(e.getMessage(), e.getCause());
+		}
+
+		byte[] json = scratch.bytes.toByteArray();
+
+		if (scratch.bytes.capacity() > MAX_POOLED_BUFFER_SIZE) {
+			scratches.remove();
+		}
+
+		return json;
+	}
+
+	private static class Scratch {
+		final Buffer bytes = new Buffer();
+		final Utf8Writer writer = new Utf8Writer(bytes);
+	}
+
+	private static class Buffer extends ByteArrayOutputStream {
+		Buffer() {
+			super(1024);
+		}
+
+		int capacity() {
+			return buf.length;
+		}
+
+		/**
+		 * Grow the buffer, if needed, to fit the given number of bytes more
+		 */
+		void ensureCapacity(int length) {
+			if (count + length > buf.length) {
+				buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + length));
+			}
+		}
+
+		/**
+		 * Append a byte; the capacity must have been ensured
+		 */
+		void put(int b) {
+			buf[count++] = (byte) b;
+		}
+	}
+
+	/**
+	 * Writer that encodes the characters to UTF-8 straight into the buffer;
+	 * unpaired surrogates are written as '?', as the JDK encoders do
+	 */
+	private static class Utf8Writer extends Writer {
+		private final Buffer bytes;
+		private char highSurrogate;
+
+		Utf8Writer(Buffer bytes) {
+			this.bytes = bytes;
+		}
+
+		@Override
+		public void write(int c) {
+			bytes.ensureCapacity(4);
+			encode((char) c);
+		}
+
+		@Override
+		public void write(char[] chars, int offset, int length) {
+			bytes.ensureCapacity(length * 3 + 1);
+
+			for (int i = offset; i < offset + length; i++) {
+				encode(chars[i]);
+			}
+		}
+
+		@Override
+		public void write(String string, int offset, int length) {
+			bytes.ensureCapacity(length * 3 + 1);
+
+			for (int i = offset; i < offset + length; i++) {
+				encode(string.charAt(i));
+			}
+		}
+
+		/**
+		 * Forget a surrogate left by a failed encoding
+		 */
+		void reset() {
+			highSurrogate = 0;
+		}
+
+		/**
+		 * Encode the char; the capacity for it and for a pending high
+		 * surrogate must have been ensured
+		 */
+		private void encode(char c) {
+			if (highSurrogate != 0) {
+				char high = highSurrogate;
+
+				highSurrogate = 0;
+
+				if (Character.isLowSurrogate(c)) {
+					int codePoint = Character.toCodePoint(high, c);
+
+					bytes.put(0xF0 | codePoint >> 18);
+					bytes.put(0x80 | codePoint >> 12 & 0x3F);
+					bytes.put(0x80 | codePoint >> 6 & 0x3F);
+					bytes.put(0x80 | codePoint & 0x3F);
+					return;
+				}
+
+				bytes.put('?');
+			}
+
+			if (c < 0x80) {
+				bytes.put(c);
+			} else if (c < 0x800) {
+				bytes.put(0xC0 | c >> 6);
+				bytes.put(0x80 | c & 0x3F);
+			} else if (Character.isHighSurrogate(c)) {
+				highSurrogate = c;
+			} else if (Character.isLowSurrogate(c)) {
+				bytes.put('?');
+			} else {
+				bytes.put(0xE0 | c >> 12);
+				bytes.put(0x80 | c >> 6 & 0x3F);
+				bytes.put(0x80 | c & 0x3F);
+			}
+		}
+
+		@Override
+		public void flush() {
+			if (highSurrogate != 0) {
+				highSurrogate = 0;
+				bytes.ensureCapacity(1);
+				bytes.put('?');
+			}
+		}
+
+		@Override
+		public void close() {
+			flush();
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+/**
+ * The request was rejected, without being sent, because too many requests
+ * to the same endpoint are in flight
+ *
+ * @see ConcurrencyLimiter
+ */
+public class LimitExceededException extends CieloRequestException {
+	private static final long serialVersionUID = -2306398171651309187L;
+	private final String endpoint;
+	private final int limit;
+
+	public LimitExceededException(String endpoint, int limit) {
+		super("Too many requests in flight to " + endpoint + ": " + limit,
+				new CieloError(429, "Too many requests in flight"), null);
+
+		this.endpoint = endpoint;
+		this.limit = limit;
+	}
+
+	/**
+	 * @return The Api URL or the Api Query URL
+	 */
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	/**
+	 * @return The limit when the request was rejected
+	 */
+	public int getLimit() {
+		return limit;
+	}
+}
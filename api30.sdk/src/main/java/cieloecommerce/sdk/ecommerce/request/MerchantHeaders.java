@@ -0,0 +1,34 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import cieloecommerce.sdk.Merchant;
+
+/**
+ * The headers every request of a merchant sends, all but the RequestId, built
+ * once. {@link cieloecommerce.sdk.ecommerce.CieloEcommerce} keeps the headers
+ * of its merchant and shares them with all its requests; a request used on
+ * its own builds them on its first call.
+ */
+public final class MerchantHeaders {
+	private final String[] headers;
+
+	/**
+	 * @param merchant
+	 *            The merchant whose id and key are sent
+	 */
+	public MerchantHeaders(Merchant merchant) {
+		this.headers = new String[] {
+				"Accept", "application/json",
+				"Accept-Encoding", "gzip",
+				"Content-Type", "application/json",
+				"User-Agent", "CieloEcommerce/3.0 Android SDK",
+				"MerchantId", merchant.getId(),
+				"MerchantKey", merchant.getKey() };
+	}
+
+	/**
+	 * @return The names and values of the headers, in pairs
+	 */
+	String[] get() {
+		return headers;
+	}
+}
@@ -0,0 +1,83 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import cieloecommerce.sdk.ecommerce.metrics.Operation;
+
+/**
+ * JFR event of an operation, like createSale, from the call to the result,
+ * retries included
+ */
+@Name(OperationEvent.NAME)
+@Label("Cielo Operation")
+@Description("An operation sent to Cielo, including its retries")
+@Category({ "Cielo", "SDK" })
+@Enabled(false)
+@StackTrace(false)
+final class OperationEvent extends Event {
+	static final String NAME = "cieloecommerce.Operation";
+
+	private static final OperationEvent PROBE = new OperationEvent();
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Request Id")
+	String requestId;
+
+	@Label("Async")
+	boolean async;
+
+	@Label("Success")
+	boolean success;
+
+	@Label("Failure")
+	String failure;
+
+	static boolean enabled() {
+		return PROBE.isEnabled();
+	}
+
+	/**
+	 * Begin the event, if enabled
+	 *
+	 * @return The event, or null if it isn't enabled
+	 */
+	static OperationEvent begin(Operation operation, String requestId, boolean async) {
+		if (!enabled()) {
+			return null;
+		}
+
+		OperationEvent event = new OperationEvent();
+
+		event.operation = operation.name();
+		event.requestId = requestId;
+		event.async = async;
+		event.begin();
+
+		return event;
+	}
+
+	/**
+	 * End and commit the event, if any
+	 */
+	static void end(OperationEvent event, Throwable failure) {
+		if (event == null) {
+			return;
+		}
+
+		event.end();
+
+		if (event.shouldCommit()) {
+			event.success = failure == null;
+			event.failure = failure != null ? failure.toString() : null;
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+/**
+ * The phases of a request sent to Cielo, in the order they happen.
+ * <p/>
+ * The connection phases are only reported by the pooled blocking client: the
+ * non-blocking client reports the response headers when the whole response
+ * has arrived. The response body is decompressed and decoded while it's read
+ * from the connection, so reading, gzip and JSON parsing are a single phase.
+ */
+public enum Phase {
+	/**
+	 * The attempt started
+	 */
+	START,
+
+	/**
+	 * The HTTP request was built and its body serialized
+	 */
+	SERIALIZED,
+
+	/**
+	 * A connection was leased from the pool
+	 */
+	CONNECTION_LEASED,
+
+	/**
+	 * A new connection finished its TCP and TLS handshakes; not reported when
+	 * a pooled connection is reused
+	 */
+	CONNECTED,
+
+	/**
+	 * The request headers and body were written
+	 */
+	REQUEST_SENT,
+
+	/**
+	 * The response headers arrived
+	 */
+	RESPONSE_HEADERS,
+
+	/**
+	 * The response body was read, decompressed and decoded
+	 */
+	RESPONSE_DECODED,
+
+	/**
+	 * The attempt finished, successfully or not
+	 */
+	END
+}
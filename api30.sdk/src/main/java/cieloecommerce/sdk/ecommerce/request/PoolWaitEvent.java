@@ -0,0 +1,75 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * JFR event of the wait for a pooled connection of the blocking client
+ */
+@Name(PoolWaitEvent.NAME)
+@Label("Cielo Pool Wait")
+@Description("Waiting for a connection of the SDK's blocking pool")
+@Category({ "Cielo", "SDK" })
+@Enabled(false)
+@StackTrace(false)
+final class PoolWaitEvent extends Event {
+	static final String NAME = "cieloecommerce.PoolWait";
+
+	/**
+	 * The HttpContext attribute that carries the event to the pool
+	 */
+	static final String CONTEXT_ATTRIBUTE = "cieloecommerce.sdk.poolWait";
+
+	private static final PoolWaitEvent PROBE = new PoolWaitEvent();
+
+	@Label("Endpoint")
+	String endpoint;
+
+	@Label("Leased")
+	@Description("Whether a connection was leased, false if the wait failed")
+	boolean leased;
+
+	static boolean enabled() {
+		return PROBE.isEnabled();
+	}
+
+	/**
+	 * Begin the event on the context
+	 */
+	static void begin(HttpContext context, String endpoint) {
+		PoolWaitEvent event = new PoolWaitEvent();
+
+		event.endpoint = endpoint;
+		event.begin();
+
+		context.setAttribute(CONTEXT_ATTRIBUTE, event);
+	}
+
+	/**
+	 * End and commit the event carried by the context, once
+	 *
+	 * @param leased
+	 *            false if the request failed before a connection was leased
+	 */
+	static void end(HttpContext context, boolean leased) {
+		Object attribute = context != null ? context.removeAttribute(CONTEXT_ATTRIBUTE) : null;
+
+		if (attribute instanceof PoolWaitEvent) {
+			PoolWaitEvent event = (PoolWaitEvent) attribute;
+
+			event.end();
+			event.leased = leased;
+
+			if (event.shouldCommit()) {
+				event.commit();
+			}
+		}
+	}
+}
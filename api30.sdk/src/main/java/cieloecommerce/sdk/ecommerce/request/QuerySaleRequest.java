@@ -1,29 +1,41 @@
 package cieloecommerce.sdk.ecommerce.request;
 
-import java.io.IOException;
-
-import org.apache.http.HttpResponse;
-import org.apache.http.client.methods.HttpGet;
-
 import cieloecommerce.sdk.Environment;
 import cieloecommerce.sdk.Merchant;
 import cieloecommerce.sdk.ecommerce.Sale;
+import cieloecommerce.sdk.ecommerce.metrics.Operation;
+import cieloecommerce.sdk.transport.TransportRequest;
 
 /**
  * Query a Sale by it's paymentId
  */
 public class QuerySaleRequest extends AbstractSaleRequest<String, Sale> {
+	private static final UriTemplate URI_TEMPLATE = new UriTemplate("{+apiQueryUrl}1/sales/{paymentId}");
+
 	public QuerySaleRequest(Merchant merchant, Environment environment) {
-		super(merchant, environment);
+		super(merchant, environment, Sale.class);
+	}
+
+	/**
+	 * Queries don't change the Sale, so they're always safe to retry
+	 */
+	@Override
+	boolean isIdempotent() {
+		return true;
 	}
 
 	@Override
-	public Sale execute(String paymentId) throws IOException, CieloRequestException {
-		String url = environment.getApiQueryURL() + "1/sales/" + paymentId;
+	String endpoint() {
+		return environment.getApiQueryURL();
+	}
 
-		HttpGet request = new HttpGet(url);
-		HttpResponse response = sendRequest(request);
+	@Override
+	Operation operation() {
+		return Operation.QUERY_SALE;
+	}
 
-		return readResponse(response, Sale.class);
+	@Override
+	TransportRequest createRequest(String paymentId) {
+		return new TransportRequest("GET", URI_TEMPLATE.expand(environment.getApiQueryURL(), paymentId));
 	}
 }
@@ -0,0 +1,70 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of a single attempt sent to Cielo
+ */
+@Name(RequestEvent.NAME)
+@Label("Cielo Request")
+@Description("A single HTTP exchange with Cielo, retries being separate events")
+@Category({ "Cielo", "SDK" })
+@Enabled(false)
+@StackTrace(false)
+final class RequestEvent extends Event {
+	static final String NAME = "cieloecommerce.Request";
+
+	/**
+	 * Only asked whether the event is enabled, which doesn't depend on the
+	 * instance
+	 */
+	private static final RequestEvent PROBE = new RequestEvent();
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Endpoint")
+	String endpoint;
+
+	@Label("Request Id")
+	String requestId;
+
+	@Label("Attempt")
+	int attempt;
+
+	@Label("HTTP Status")
+	int statusCode;
+
+	@Label("Cielo Error Code")
+	int errorCode;
+
+	@Label("Bytes Sent")
+	@DataAmount
+	long bytesSent;
+
+	@Label("Wire Bytes Received")
+	@Description("Size of the response body as sent, before decompression")
+	@DataAmount
+	long wireBytesReceived;
+
+	@Label("Bytes Received")
+	@DataAmount
+	long bytesReceived;
+
+	@Label("Failure")
+	String failure;
+
+	/**
+	 * @return true while a recording has the event enabled
+	 */
+	static boolean enabled() {
+		return PROBE.isEnabled();
+	}
+}
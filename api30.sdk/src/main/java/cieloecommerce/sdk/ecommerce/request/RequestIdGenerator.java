@@ -0,0 +1,34 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates the RequestId sent with the requests that have none set by the
+ * caller
+ */
+public interface RequestIdGenerator {
+	/**
+	 * Random UUIDs (version 4) from the shared {@link java.security.SecureRandom}
+	 * of {@link UUID#randomUUID()}, which threads contend for
+	 */
+	RequestIdGenerator RANDOM_UUID = () -> UUID.randomUUID().toString();
+
+	/**
+	 * Time-ordered UUIDs (version 7): the milliseconds since the epoch
+	 * followed by 74 random bits from {@link ThreadLocalRandom}, so no thread
+	 * waits for another. The default.
+	 */
+	RequestIdGenerator TIME_ORDERED = () -> {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long mostSigBits = System.currentTimeMillis() << 16 | 0x7000 | random.nextInt(0x1000);
+		long leastSigBits = random.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+
+		return new UUID(mostSigBits, leastSigBits).toString();
+	};
+
+	/**
+	 * @return A new RequestId
+	 */
+	String next();
+}
@@ -0,0 +1,28 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+/**
+ * Follows each request sent to Cielo through its phases. It's called on the
+ * thread doing the work, the I/O reactor thread included, so it must be
+ * quick.
+ */
+public interface RequestListener {
+	/**
+	 * A phase was reached
+	 *
+	 * @param trace
+	 *            The trace of the attempt, with the timestamps so far
+	 * @param phase
+	 *            The phase reached
+	 */
+	default void onPhase(RequestTrace trace, Phase phase) {
+	}
+
+	/**
+	 * The attempt finished; the trace won't change anymore
+	 *
+	 * @param trace
+	 *            The trace of the attempt
+	 */
+	default void onComplete(RequestTrace trace) {
+	}
+}
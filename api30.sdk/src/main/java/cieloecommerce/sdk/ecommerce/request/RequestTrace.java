@@ -0,0 +1,178 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.protocol.HttpContext;
+
+import cieloecommerce.sdk.ecommerce.metrics.Operation;
+import cieloecommerce.sdk.transport.TransportRequest;
+
+/**
+ * The {@link System#nanoTime()} timestamps of each phase of an attempt
+ */
+public class RequestTrace {
+	/**
+	 * The attribute, of both the TransportRequest and the HttpContext,
+	 * through which the pooled client reports the connection phases
+	 */
+	static final String CONTEXT_ATTRIBUTE = "cieloecommerce.sdk.trace";
+
+	private static final Phase[] PHASES = Phase.values();
+
+	private final String requestId;
+	private final Operation operation;
+	private final String endpoint;
+	private final int attempt;
+	private final RequestListener listener;
+	private final long[] timestamps = new long[PHASES.length];
+	private volatile int statusCode;
+	private volatile Exception failure;
+
+	RequestTrace(String requestId, Operation operation, String endpoint, int attempt, RequestListener listener) {
+		this.requestId = requestId;
+		this.operation = operation;
+		this.endpoint = endpoint;
+		this.attempt = attempt;
+		this.listener = listener;
+	}
+
+	/**
+	 * Gets the trace carried by the context, if any
+	 */
+	static RequestTrace from(HttpContext context) {
+		Object trace = context != null ? context.getAttribute(CONTEXT_ATTRIBUTE) : null;
+
+		return trace instanceof RequestTrace ? (RequestTrace) trace : null;
+	}
+
+	/**
+	 * Gets the trace carried by the request, if any
+	 */
+	static RequestTrace from(TransportRequest request) {
+		Object trace = request.getAttribute(CONTEXT_ATTRIBUTE);
+
+		return trace instanceof RequestTrace ? (RequestTrace) trace : null;
+	}
+
+	/**
+	 * Record the phase, unless it was already reached
+	 */
+	void mark(Phase phase) {
+		if (timestamps[phase.ordinal()] != 0) {
+			return;
+		}
+
+		timestamps[phase.ordinal()] = System.nanoTime();
+
+		listener.onPhase(this, phase);
+	}
+
+	void complete(int statusCode, Exception failure) {
+		this.statusCode = statusCode;
+		this.failure = failure;
+
+		mark(Phase.END);
+
+		listener.onComplete(this);
+	}
+
+	/**
+	 * @return The RequestId header, the same on all attempts
+	 */
+	public String getRequestId() {
+		return requestId;
+	}
+
+	public Operation getOperation() {
+		return operation;
+	}
+
+	/**
+	 * @return The Api URL or the Api Query URL
+	 */
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	/**
+	 * @return The attempt, starting at 1
+	 */
+	public int getAttempt() {
+		return attempt;
+	}
+
+	/**
+	 * @return The HTTP status, or 0 if there was no response
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * @return Why the attempt failed, or null
+	 */
+	public Exception getFailure() {
+		return failure;
+	}
+
+	/**
+	 * @param phase
+	 *            The phase
+	 * @return The {@link System#nanoTime()} when the phase was reached, or 0
+	 *         if it wasn't
+	 */
+	public long getTimestamp(Phase phase) {
+		return timestamps[phase.ordinal()];
+	}
+
+	/**
+	 * Gets the time between two phases
+	 *
+	 * @param from
+	 *            The earlier phase
+	 * @param to
+	 *            The later phase
+	 * @param unit
+	 *            The unit of the result
+	 * @return The time between them, or -1 if any wasn't reached
+	 */
+	public long getDuration(Phase from, Phase to, TimeUnit unit) {
+		long start = getTimestamp(from);
+		long end = getTimestamp(to);
+
+		return start == 0 || end == 0 ? -1 : unit.convert(end - start, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return Each phase reached, with the time since the previous one
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		long previous = timestamps[Phase.START.ordinal()];
+
+		builder.append(operation).append(' ').append(requestId).append(" #").append(attempt);
+
+		for (Phase phase : PHASES) {
+			long timestamp = timestamps[phase.ordinal()];
+
+			if (timestamp == 0 || phase == Phase.START) {
+				continue;
+			}
+
+			builder.append(String.format(" %s +%.3fms", phase, (timestamp - previous) / 1e6));
+
+			previous = timestamp;
+		}
+
+		if (statusCode != 0) {
+			builder.append(" status ").append(statusCode);
+		}
+
+		if (failure != null) {
+			builder.append(" failure ").append(failure);
+		}
+
+		return builder.toString();
+	}
+}
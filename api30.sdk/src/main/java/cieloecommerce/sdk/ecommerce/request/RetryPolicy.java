@@ -0,0 +1,258 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * When and how long to wait before sending a failed request again.
+ * <p/>
+ * By default, only the queries are retried, since they are the only requests
+ * safe to send twice. Cielo doesn't deduplicate the creations, captures and
+ * cancellations, not even by RequestId: an attempt that failed after being
+ * sent may have been processed, so sending it again can charge, capture or
+ * void twice. Retrying them is an opt-in, {@link #setRetryWrites(boolean)}.
+ * All attempts of a request carry the same RequestId.
+ * <p/>
+ * A request is retried on I/O errors and on 429, 500, 502, 503 and 504,
+ * waiting an exponential backoff with full jitter, or the Retry-After sent by
+ * Cielo. Retries are taken from a token bucket filled by the requests sent,
+ * so while Cielo is failing, the retries are limited to a fraction of the
+ * traffic instead of multiplying it.
+ */
+public class RetryPolicy {
+	public static final int DEFAULT_MAX_ATTEMPTS = 3;
+	public static final long DEFAULT_INITIAL_BACKOFF = 100;
+	public static final long DEFAULT_MAX_BACKOFF = 5000;
+	public static final long DEFAULT_MAX_RETRY_AFTER = 30000;
+
+	/**
+	 * Each request adds a tenth of a retry to the budget
+	 */
+	public static final double DEFAULT_BUDGET_RATIO = 0.1;
+
+	/**
+	 * Retries allowed in a burst, when the budget is full
+	 */
+	public static final int DEFAULT_BUDGET_MAX = 10;
+
+	private static final long TOKEN = 1000;
+
+	private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+	private long initialBackoff = TimeUnit.MILLISECONDS.toNanos(DEFAULT_INITIAL_BACKOFF);
+	private long maxBackoff = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_BACKOFF);
+	private long maxRetryAfter = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_RETRY_AFTER);
+	private boolean retryWrites;
+	private long deposit = (long) (DEFAULT_BUDGET_RATIO * TOKEN);
+	private long maxTokens = DEFAULT_BUDGET_MAX * TOKEN;
+	private final AtomicLong tokens = new AtomicLong(maxTokens);
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder exhausted = new LongAdder();
+
+	/**
+	 * @param maxAttempts
+	 *            How many times a request is sent, including the first one
+	 * @return this
+	 */
+	public RetryPolicy setMaxAttempts(int maxAttempts) {
+		this.maxAttempts = maxAttempts;
+
+		return this;
+	}
+
+	/**
+	 * @param initialBackoff
+	 *            The maximum wait before the first retry; it doubles on each
+	 *            retry
+	 * @param maxBackoff
+	 *            The maximum wait before any retry
+	 * @param unit
+	 *            The unit of both backoffs
+	 * @return this
+	 */
+	public RetryPolicy setBackoff(long initialBackoff, long maxBackoff, TimeUnit unit) {
+		this.initialBackoff = unit.toNanos(initialBackoff);
+		this.maxBackoff = unit.toNanos(maxBackoff);
+
+		return this;
+	}
+
+	/**
+	 * @param maxRetryAfter
+	 *            Requests whose Retry-After is longer than this aren't retried
+	 * @param unit
+	 *            The unit of maxRetryAfter
+	 * @return this
+	 */
+	public RetryPolicy setMaxRetryAfter(long maxRetryAfter, TimeUnit unit) {
+		this.maxRetryAfter = unit.toNanos(maxRetryAfter);
+
+		return this;
+	}
+
+	/**
+	 * Retry the creations, captures and cancellations too. Cielo doesn't
+	 * recognize a repeated request, so a retry after a timeout or a 5xx may
+	 * charge, capture or void the payment twice; the application must be able
+	 * to detect and undo the duplicates, for example by querying the sales of
+	 * the MerchantOrderId.
+	 *
+	 * @param retryWrites
+	 *            true to retry every request, false, the default, to retry
+	 *            only the queries
+	 * @return this
+	 */
+	public RetryPolicy setRetryWrites(boolean retryWrites) {
+		this.retryWrites = retryWrites;
+
+		return this;
+	}
+
+	/**
+	 * @return true if the requests that change the payments are retried too
+	 */
+	public boolean isRetryWrites() {
+		return retryWrites;
+	}
+
+	/**
+	 * @param ratio
+	 *            The retries earned by each request; 0.1 allows one retry
+	 *            every ten requests
+	 * @param max
+	 *            The retries the budget holds, allowed in a burst
+	 * @return this
+	 */
+	public RetryPolicy setBudget(double ratio, int max) {
+		this.deposit = (long) (ratio * TOKEN);
+		this.maxTokens = max * TOKEN;
+
+		tokens.set(maxTokens);
+
+		return this;
+	}
+
+	/**
+	 * Add the request to the budget; called once per request, not per attempt
+	 */
+	void onRequest() {
+		for (;;) {
+			long current = tokens.get();
+			long next = Math.min(maxTokens, current + deposit);
+
+			if (current >= next || tokens.compareAndSet(current, next)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Decide whether the failed attempt is retried
+	 *
+	 * @param attempt
+	 *            The attempt that failed, starting at 1
+	 * @param failure
+	 *            Why it failed
+	 * @return How long to wait, in nanoseconds, before the next attempt, or -1
+	 *         if the failure must be thrown
+	 */
+	long delay(int attempt, Exception failure) {
+		if (attempt >= maxAttempts) {
+			return -1;
+		}
+
+		long delay;
+
+		if (failure instanceof CieloStatusException) {
+			CieloStatusException statusException = (CieloStatusException) failure;
+
+			if (!isRetryable(statusException.getStatusCode())) {
+				return -1;
+			}
+
+			delay = backoff(attempt);
+
+			if (statusException.getRetryAfter() >= 0) {
+				delay = TimeUnit.MILLISECONDS.toNanos(statusException.getRetryAfter());
+
+				if (delay > maxRetryAfter) {
+					return -1;
+				}
+			}
+		} else if (failure instanceof IOException) {
+			delay = backoff(attempt);
+		} else {
+			return -1;
+		}
+
+		if (!acquire()) {
+			exhausted.increment();
+
+			return -1;
+		}
+
+		retries.increment();
+
+		return delay;
+	}
+
+	private static boolean isRetryable(int statusCode) {
+		switch (statusCode) {
+		case 429:
+		case 500:
+		case 502:
+		case 503:
+		case 504:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private long backoff(int attempt) {
+		long ceiling = initialBackoff << Math.min(attempt - 1, 30);
+
+		if (ceiling <= 0 || ceiling > maxBackoff) {
+			ceiling = maxBackoff;
+		}
+
+		return ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+	}
+
+	private boolean acquire() {
+		for (;;) {
+			long current = tokens.get();
+
+			if (current < TOKEN) {
+				return false;
+			}
+
+			if (tokens.compareAndSet(current, current - TOKEN)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @return How many retries were sent
+	 */
+	public long getRetryCount() {
+		return retries.sum();
+	}
+
+	/**
+	 * @return How many failures weren't retried because the budget was empty
+	 */
+	public long getBudgetExhaustedCount() {
+		return exhausted.sum();
+	}
+
+	/**
+	 * @return How many retries the budget holds now
+	 */
+	public double getBudget() {
+		return (double) tokens.get() / TOKEN;
+	}
+}
@@ -0,0 +1,30 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer of the delayed tasks, like hedges and async retries. The tasks only
+ * start requests on the non-blocking client or hand them to an executor, so a
+ * single thread is enough.
+ */
+final class Scheduler {
+	private static final ScheduledThreadPoolExecutor executor = createExecutor();
+
+	private Scheduler() {
+	}
+
+	static ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+		return executor.schedule(task, delay, unit);
+	}
+
+	private static ScheduledThreadPoolExecutor createExecutor() {
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+				new DaemonThreadFactory("cielo-scheduler"));
+
+		executor.setRemoveOnCancelPolicy(true);
+
+		return executor;
+	}
+}
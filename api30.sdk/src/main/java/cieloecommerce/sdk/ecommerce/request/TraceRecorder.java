@@ -0,0 +1,122 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps a sample of the request traces, keyed by RequestId, so a slow
+ * payment reported by the RequestId can be broken down by phase.
+ * <p/>
+ * A fraction of the requests is kept at random, and every request slower
+ * than the threshold is kept; the oldest traces are dropped beyond the
+ * capacity. For each RequestId, the last attempt is kept.
+ */
+public class TraceRecorder implements RequestListener {
+	public static final int DEFAULT_CAPACITY = 1000;
+
+	private final double sampleRate;
+	private final int capacity;
+	private final Lock lock = new ReentrantLock();
+	private final LinkedHashMap<String, RequestTrace> traces = new LinkedHashMap<String, RequestTrace>();
+	private long slowThreshold = Long.MAX_VALUE;
+
+	/**
+	 * @param sampleRate
+	 *            The fraction of the requests kept, between 0 and 1
+	 */
+	public TraceRecorder(double sampleRate) {
+		this(sampleRate, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param sampleRate
+	 *            The fraction of the requests kept, between 0 and 1
+	 * @param capacity
+	 *            How many traces are kept
+	 */
+	public TraceRecorder(double sampleRate, int capacity) {
+		this.sampleRate = sampleRate;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Keep every request slower than the threshold, besides the sampled ones
+	 *
+	 * @param slowThreshold
+	 *            The threshold
+	 * @param unit
+	 *            The unit of the threshold
+	 * @return this
+	 */
+	public TraceRecorder setSlowThreshold(long slowThreshold, TimeUnit unit) {
+		this.slowThreshold = unit.toNanos(slowThreshold);
+
+		return this;
+	}
+
+	@Override
+	public void onComplete(RequestTrace trace) {
+		long duration = trace.getDuration(Phase.START, Phase.END, TimeUnit.NANOSECONDS);
+
+		if (duration < slowThreshold && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+			return;
+		}
+
+		lock.lock();
+
+		try {
+			traces.remove(trace.getRequestId());
+			traces.put(trace.getRequestId(), trace);
+
+			while (traces.size() > capacity) {
+				traces.remove(traces.keySet().iterator().next());
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @param requestId
+	 *            The RequestId header sent to Cielo
+	 * @return The trace of the request's last attempt, or null if it wasn't
+	 *         kept
+	 */
+	public RequestTrace get(String requestId) {
+		lock.lock();
+
+		try {
+			return traces.get(requestId);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The traces kept, oldest first
+	 */
+	public List<RequestTrace> getTraces() {
+		lock.lock();
+
+		try {
+			return new ArrayList<RequestTrace>(traces.values());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void clear() {
+		lock.lock();
+
+		try {
+			traces.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -1,57 +1,37 @@
 package cieloecommerce.sdk.ecommerce.request;
 
-import java.io.IOException;
-import java.net.URISyntaxException;
-
-import org.apache.http.HttpResponse;
-import org.apache.http.client.methods.HttpPut;
-import org.apache.http.client.utils.URIBuilder;
-
 import cieloecommerce.sdk.Environment;
 import cieloecommerce.sdk.Merchant;
 import cieloecommerce.sdk.ecommerce.Sale;
+import cieloecommerce.sdk.ecommerce.metrics.Operation;
+import cieloecommerce.sdk.transport.TransportRequest;
 
 /**
  * Capture or cancel a Sale
  */
 public class UpdateSaleRequest extends AbstractSaleRequest<String, Sale> {
+	private static final UriTemplate URI_TEMPLATE = new UriTemplate(
+			"{+apiUrl}1/sales/{paymentId}/{type}{?amount,serviceTaxAmount}");
+
 	private final String type;
 	private Integer amount;
 	private Integer serviceTaxAmount;
 
 	public UpdateSaleRequest(String type, Merchant merchant, Environment environment) {
-		super(merchant, environment);
+		super(merchant, environment, Sale.class);
 
 		this.type = type;
 	}
 
 	@Override
-	public Sale execute(String paymentId) throws IOException, CieloRequestException {
-		Sale sale = null;
-
-		try {
-			URIBuilder builder = new URIBuilder(environment.getApiUrl() + "1/sales/" + paymentId + "/" + type);
-
-			if (amount != null) {
-				builder.addParameter("amount", amount.toString());
-			}
-
-			if (serviceTaxAmount != null) {
-				builder.addParameter("serviceTaxAmount", serviceTaxAmount.toString());
-			}
-
-			HttpPut request;
-
-			request = new HttpPut(builder.build().toString());
-
-			HttpResponse response = sendRequest(request);
-
-			sale = readResponse(response, Sale.class);
-		} catch (URISyntaxException e) {
-			e.printStackTrace();
-		}
+	Operation operation() {
+		return "void".equals(type) ? Operation.CANCEL_SALE : Operation.CAPTURE_SALE;
+	}
 
-		return sale;
+	@Override
+	TransportRequest createRequest(String paymentId) {
+		return new TransportRequest("PUT",
+				URI_TEMPLATE.expand(environment.getApiUrl(), paymentId, type, amount, serviceTaxAmount));
 	}
 
 	public void setAmount(Integer amount) {
@@ -0,0 +1,130 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A URI template parsed once and expanded for each request, with the subset
+ * of RFC 6570 the Cielo paths need: {var} is percent-encoded, {+var} is
+ * appended as is and {?var1,var2} becomes a query of the non-null values.
+ */
+final class UriTemplate {
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	private final String template;
+	private final String[] literals;
+	private final char[] operators;
+	private final String[][] names;
+
+	UriTemplate(String template) {
+		List<String> literals = new ArrayList<String>();
+		List<String> expressions = new ArrayList<String>();
+		int start = 0;
+		int open;
+
+		while ((open = template.indexOf('{', start)) >= 0) {
+			int close = template.indexOf('}', open);
+
+			if (close < 0) {
+				throw new IllegalArgumentException("Unclosed expression on " + template);
+			}
+
+			literals.add(template.substring(start, open));
+			expressions.add(template.substring(open + 1, close));
+			start = close + 1;
+		}
+
+		literals.add(template.substring(start));
+
+		this.template = template;
+		this.literals = literals.toArray(new String[0]);
+		this.operators = new char[expressions.size()];
+		this.names = new String[expressions.size()][];
+
+		for (int i = 0; i < operators.length; i++) {
+			String expression = expressions.get(i);
+			char operator = expression.charAt(0);
+
+			if (operator == '+' || operator == '?') {
+				expression = expression.substring(1);
+			} else {
+				operator = 0;
+			}
+
+			operators[i] = operator;
+			names[i] = expression.split(",");
+		}
+	}
+
+	/**
+	 * @param values
+	 *            The values of the variables, in the order they appear on the
+	 *            template
+	 * @return The expanded URI
+	 */
+	String expand(Object... values) {
+		StringBuilder uri = new StringBuilder(template.length() + 64);
+		int value = 0;
+
+		uri.append(literals[0]);
+
+		for (int i = 0; i < operators.length; i++) {
+			if (operators[i] == '?') {
+				char separator = '?';
+
+				for (String name : names[i]) {
+					Object query = values[value++];
+
+					if (query != null) {
+						uri.append(separator).append(name).append('=');
+						encode(uri, query.toString());
+						separator = '&';
+					}
+				}
+			} else {
+				Object variable = values[value++];
+
+				if (variable != null) {
+					if (operators[i] == '+') {
+						uri.append(variable);
+					} else {
+						encode(uri, variable.toString());
+					}
+				}
+			}
+
+			uri.append(literals[i + 1]);
+		}
+
+		return uri.toString();
+	}
+
+	/**
+	 * Append the value, percent-encoding everything but the unreserved
+	 * characters
+	 */
+	private static void encode(StringBuilder uri, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			if (isUnreserved(c)) {
+				uri.append(c);
+				continue;
+			}
+
+			int end = Character.isHighSurrogate(c) && i + 1 < value.length() ? i + 2 : i + 1;
+
+			for (byte b : value.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+				uri.append('%').append(HEX[b >> 4 & 0xF]).append(HEX[b & 0xF]);
+			}
+
+			i = end - 1;
+		}
+	}
+
+	private static boolean isUnreserved(char c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '.'
+				|| c == '_' || c == '~';
+	}
+}
@@ -0,0 +1,302 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPOutputStream;
+
+import cieloecommerce.sdk.ecommerce.CardToken;
+import cieloecommerce.sdk.ecommerce.Customer;
+import cieloecommerce.sdk.ecommerce.Payment;
+import cieloecommerce.sdk.ecommerce.Sale;
+import cieloecommerce.sdk.transport.Transport;
+import cieloecommerce.sdk.transport.TransportRequest;
+import cieloecommerce.sdk.transport.TransportResponse;
+
+/**
+ * What {@link cieloecommerce.sdk.ecommerce.CieloEcommerce#warmUp(WarmUp)}
+ * does before the first payments, so they don't pay for the DNS lookup, the
+ * TLS handshakes, the reflection over the model classes and the JIT:
+ * <ol>
+ * <li>prime: the JFR events are registered and a query for a payment that
+ * doesn't exist is sent to the Api URL and to the Api Query URL, through the
+ * same transport as the operations, so the host is resolved, a connection is
+ * opened and the TLS session can be resumed by the next ones;</li>
+ * <li>connect: when the requests go through the {@link ConnectionPool}, its
+ * blocking client opens connections to both URLs ahead of the requests;</li>
+ * <li>codec: synthetic Sales and CardTokens are encoded, and Cielo's
+ * responses and errors decoded, compressed or not, until they are compiled.</li>
+ * </ol>
+ * The priming queries are answered with 404 and aren't recorded on the
+ * metrics.
+ */
+public class WarmUp {
+	/**
+	 * Connections opened to each URL
+	 */
+	public static final int DEFAULT_CONNECTIONS = 4;
+
+	/**
+	 * How many times each payload is encoded or decoded
+	 */
+	public static final int DEFAULT_CODEC_ITERATIONS = 2000;
+
+	private static final UriTemplate PRIME_URI_TEMPLATE = new UriTemplate("{+url}1/sales/{paymentId}");
+
+	private static final byte[] CARD_TOKEN_RESPONSE = ("{\"CardToken\":\"db62dc71-d07b-4745-9969-42697b988ccb\","
+			+ "\"Links\":{\"Method\":\"GET\",\"Rel\":\"self\",\"Href\":"
+			+ "\"https://apiquerysandbox.cieloecommerce.cielo.com.br/1/card/db62dc71-d07b-4745-9969-42697b988ccb\"}}")
+					.getBytes(StandardCharsets.UTF_8);
+
+	private static final byte[] ERRORS_RESPONSE = ("[{\"Code\":126,\"Message\":\"Credit Card Expiration Date is invalid\"},"
+			+ "{\"Code\":121,\"Message\":\"Customer Name is required\"}]").getBytes(StandardCharsets.UTF_8);
+
+	private int connections = DEFAULT_CONNECTIONS;
+	private int codecIterations = DEFAULT_CODEC_ITERATIONS;
+	private boolean async = true;
+
+	/**
+	 * @param connections
+	 *            Connections opened to each URL, up to the pool's limit per
+	 *            route; 0 skips the connect phase
+	 * @return this warm-up
+	 */
+	public WarmUp setConnections(int connections) {
+		if (connections < 0) {
+			throw new IllegalArgumentException("connections can't be negative");
+		}
+
+		this.connections = connections;
+		return this;
+	}
+
+	/**
+	 * @param codecIterations
+	 *            How many times each payload is encoded or decoded; 0 skips
+	 *            the codec phase
+	 * @return this warm-up
+	 */
+	public WarmUp setCodecIterations(int codecIterations) {
+		if (codecIterations < 0) {
+			throw new IllegalArgumentException("codecIterations can't be negative");
+		}
+
+		this.codecIterations = codecIterations;
+		return this;
+	}
+
+	/**
+	 * @param async
+	 *            Whether the priming queries are also sent through the
+	 *            non-blocking client, starting it; true by default
+	 * @return this warm-up
+	 */
+	public WarmUp setAsync(boolean async) {
+		this.async = async;
+		return this;
+	}
+
+	public int getConnections() {
+		return connections;
+	}
+
+	public int getCodecIterations() {
+		return codecIterations;
+	}
+
+	public boolean isAsync() {
+		return async;
+	}
+
+	/**
+	 * Run every phase with the request's merchant, environment and transport
+	 */
+	WarmUpReport run(AbstractSaleRequest<?, ?> request) throws IOException {
+		Set<String> urls = new LinkedHashSet<String>();
+
+		urls.add(request.environment.getApiUrl());
+		urls.add(request.environment.getApiQueryURL());
+
+		long start = System.nanoTime();
+
+		// Registers the JFR events, which takes a while the first time
+		OperationEvent.enabled();
+		RequestEvent.enabled();
+		PoolWaitEvent.enabled();
+
+		for (String url : urls) {
+			prime(request, url);
+		}
+
+		long primed = System.nanoTime();
+		int opened = 0;
+		ConnectionPool connectionPool = request.pooledConnections();
+
+		if (connectionPool != null && connections > 0) {
+			for (String url : urls) {
+				opened += connectionPool.preconnect(url, connections);
+			}
+		}
+
+		long connected = System.nanoTime();
+
+		if (codecIterations > 0) {
+			codec(request);
+		}
+
+		return new WarmUpReport(primed - start, connected - primed, System.nanoTime() - connected, opened);
+	}
+
+	/**
+	 * Query a payment that doesn't exist, reading the whole response
+	 */
+	private void prime(AbstractSaleRequest<?, ?> request, String url) throws IOException {
+		Transport transport = request.transport();
+		TransportRequest query = primeRequest(request, url);
+
+		read(transport.send(query));
+
+		if (async) {
+			try {
+				read(transport.sendAsync(primeRequest(request, url)).get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+
+				throw new InterruptedIOException("Interrupted while warming up");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+
+				throw new IOException(cause);
+			}
+		}
+	}
+
+	private static TransportRequest primeRequest(AbstractSaleRequest<?, ?> request, String url) {
+		TransportRequest query = new TransportRequest("GET",
+				PRIME_URI_TEMPLATE.expand(url, UUID.randomUUID().toString()));
+
+		request.addHeaders(query, request.requestId());
+
+		return query;
+	}
+
+	private static void read(TransportResponse response) throws IOException {
+		try (InputStream body = response.getBody()) {
+			while (body.read() != -1) {
+				body.skip(Long.MAX_VALUE);
+			}
+		}
+	}
+
+	/**
+	 * Build the create sale and card token requests and decode the
+	 * responses, plain and gzipped
+	 */
+	private void codec(AbstractSaleRequest<?, ?> request) throws IOException {
+		JsonCodec codec = request.codec;
+		CreateSaleRequest createSale = new CreateSaleRequest(request.merchant, request.environment);
+		Sale sale = sale();
+		CardToken cardToken = new CardToken().setBrand("Visa")
+				.setCardNumber("4532117080573700")
+				.setHolder("Comprador T Cielo")
+				.setExpirationDate("12/2030");
+		byte[] saleResponse = saleResponse(codec);
+		byte[] saleResponseGzip = gzip(saleResponse);
+		byte[] errorsResponseGzip = gzip(ERRORS_RESPONSE);
+
+		for (int i = 0; i < codecIterations; i++) {
+			TransportRequest transportRequest = createSale.createRequest(sale);
+
+			createSale.addHeaders(transportRequest, createSale.requestId());
+			codec.write(cardToken);
+
+			codec.read(new ByteArrayInputStream(saleResponse), Sale.class);
+			codec.read(new ByteArrayInputStream(CARD_TOKEN_RESPONSE), CardToken.class);
+			codec.read(new ByteArrayInputStream(ERRORS_RESPONSE), CieloError[].class);
+
+			try (InputStream in = new GzipInputStream(new ByteArrayInputStream(saleResponseGzip),
+					InflaterPool.shared())) {
+				codec.read(in, Sale.class);
+			}
+
+			try (InputStream in = new GzipInputStream(new ByteArrayInputStream(errorsResponseGzip),
+					InflaterPool.shared())) {
+				codec.read(in, CieloError[].class);
+			}
+		}
+	}
+
+	/**
+	 * @return A credit card sale with every field of the customer and card
+	 */
+	private static Sale sale() {
+		Sale sale = new Sale("2014111701");
+		Customer customer = sale.customer("Comprador crédito completo")
+				.setIdentity("CPF", "11225468954")
+				.setEmail("compradorteste@teste.com")
+				.setBirthDate("1991-01-02");
+
+		customer.address()
+				.setStreet("Rua Teste")
+				.setNumber("123")
+				.setComplement("AP 123")
+				.setZipCode("12345987")
+				.setCity("São Paulo")
+				.setState("SP")
+				.setCountry("BRA");
+
+		sale.payment(15700, 1)
+				.setSoftDescriptor("123456789ABCD")
+				.setCurrency(Payment.Currency.BRL)
+				.setCountry("BRA")
+				.creditCard("123", "Visa")
+				.setCardNumber("4551870000000183")
+				.setHolder("Teste Holder")
+				.setExpirationDate("12/2030");
+
+		return sale;
+	}
+
+	/**
+	 * @return The sale as Cielo answers it, authorized
+	 */
+	private static byte[] saleResponse(JsonCodec codec) throws IOException {
+		Sale sale = sale();
+
+		sale.getPayment()
+				.setPaymentId("24bc8366-fc31-4d6c-8555-17049a836a07")
+				.setTid("0307031234567")
+				.setProofOfSale("674532")
+				.setAuthorizationCode("123456")
+				.setReceivedDate("2015-06-25 08:37:23")
+				.setStatus(1)
+				.setReturnCode("4")
+				.setReturnMessage("Operation Successful")
+				.getCreditCard()
+				.setCardNumber("455187******0183")
+				.setSecurityCode(null);
+
+		return codec.write(sale);
+	}
+
+	private static byte[] gzip(byte[] content) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+			out.write(content);
+		}
+
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,64 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long each phase of a {@link WarmUp} took
+ */
+public class WarmUpReport {
+	private final long primeTime;
+	private final long connectTime;
+	private final long codecTime;
+	private final int connectionsOpened;
+
+	WarmUpReport(long primeTime, long connectTime, long codecTime, int connectionsOpened) {
+		this.primeTime = primeTime;
+		this.connectTime = connectTime;
+		this.codecTime = codecTime;
+		this.connectionsOpened = connectionsOpened;
+	}
+
+	/**
+	 * @return How long, in nanoseconds, the priming queries took, including
+	 *         the DNS lookup and the first handshakes
+	 */
+	public long getPrimeTime() {
+		return primeTime;
+	}
+
+	/**
+	 * @return How long, in nanoseconds, opening the pooled connections took
+	 */
+	public long getConnectTime() {
+		return connectTime;
+	}
+
+	/**
+	 * @return How long, in nanoseconds, the codec warm-up took
+	 */
+	public long getCodecTime() {
+		return codecTime;
+	}
+
+	/**
+	 * @return How long, in nanoseconds, the whole warm-up took
+	 */
+	public long getTotalTime() {
+		return primeTime + connectTime + codecTime;
+	}
+
+	/**
+	 * @return How many connections the connect phase opened, not counting the
+	 *         ones already on the pool
+	 */
+	public int getConnectionsOpened() {
+		return connectionsOpened;
+	}
+
+	@Override
+	public String toString() {
+		return "prime " + TimeUnit.NANOSECONDS.toMillis(primeTime) + "ms, connect "
+				+ TimeUnit.NANOSECONDS.toMillis(connectTime) + "ms (" + connectionsOpened + " connections), codec "
+				+ TimeUnit.NANOSECONDS.toMillis(codecTime) + "ms";
+	}
+}
@@ -0,0 +1,36 @@
+package cieloecommerce.sdk.transport;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends the HTTP requests of the SDK to Cielo.
+ * <p/>
+ * The requests arrive with every header Cielo expects already set, and their
+ * body already encoded; the transport only moves the bytes. Implementations
+ * must be thread-safe, as a single instance is shared by all requests.
+ */
+public interface Transport {
+	/**
+	 * Send the request, blocking until the response headers arrive
+	 *
+	 * @param request
+	 *            The request
+	 * @return The response; its body must be closed to release the
+	 *         connection
+	 * @throws IOException
+	 *             if the request can't be sent or the response can't be read
+	 */
+	TransportResponse send(TransportRequest request) throws IOException;
+
+	/**
+	 * Send the request without blocking the caller
+	 *
+	 * @param request
+	 *            The request
+	 * @return A future completed with the response, or completed
+	 *         exceptionally with an IOException; cancelling it aborts the
+	 *         request
+	 */
+	CompletableFuture<TransportResponse> sendAsync(TransportRequest request);
+}
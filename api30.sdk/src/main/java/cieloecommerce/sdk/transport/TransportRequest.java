@@ -0,0 +1,169 @@
+package cieloecommerce.sdk.transport;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An HTTP request handed to a {@link Transport}: method, URL, headers and
+ * body.
+ * <p/>
+ * The attributes aren't sent; they carry what the SDK wants the transport to
+ * report on, such as the trace of the request.
+ */
+public class TransportRequest {
+	private final String method;
+	private final String url;
+	private final byte[] body;
+	private String[] headers = new String[16];
+	private int headerCount;
+	private Map<String, Object> attributes;
+	private long maxResponseBodySize = Long.MAX_VALUE;
+
+	/**
+	 * Create a request without body
+	 *
+	 * @param method
+	 *            GET, POST, PUT or DELETE
+	 * @param url
+	 *            The absolute URL
+	 */
+	public TransportRequest(String method, String url) {
+		this(method, url, null);
+	}
+
+	/**
+	 * Create a request with a body
+	 *
+	 * @param method
+	 *            POST or PUT
+	 * @param url
+	 *            The absolute URL
+	 * @param body
+	 *            The bytes of the body, or null for none
+	 */
+	public TransportRequest(String method, String url, byte[] body) {
+		this.method = method;
+		this.url = url;
+		this.body = body;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @return The bytes of the body, or null if the request has none
+	 */
+	public byte[] getBody() {
+		return body;
+	}
+
+	/**
+	 * Add a header, keeping the ones already added with the same name
+	 */
+	public TransportRequest addHeader(String name, String value) {
+		if (headerCount * 2 == headers.length) {
+			headers = Arrays.copyOf(headers, headers.length * 2);
+		}
+
+		headers[headerCount * 2] = name;
+		headers[headerCount * 2 + 1] = value;
+		headerCount++;
+
+		return this;
+	}
+
+	/**
+	 * @return How many headers were added
+	 */
+	public int getHeaderCount() {
+		return headerCount;
+	}
+
+	/**
+	 * @param index
+	 *            The index of the header, in the order they were added
+	 * @return The name of the header
+	 */
+	public String getHeaderName(int index) {
+		return headers[checkIndex(index) * 2];
+	}
+
+	/**
+	 * @param index
+	 *            The index of the header, in the order they were added
+	 * @return The value of the header
+	 */
+	public String getHeaderValue(int index) {
+		return headers[checkIndex(index) * 2 + 1];
+	}
+
+	/**
+	 * @param name
+	 *            The header name, case-insensitive
+	 * @return The value of the first header with the name, or null
+	 */
+	public String getFirstHeader(String name) {
+		for (int i = 0; i < headerCount; i++) {
+			if (headers[i * 2].equalsIgnoreCase(name)) {
+				return headers[i * 2 + 1];
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return The most bytes of response body the transport may buffer
+	 */
+	public long getMaxResponseBodySize() {
+		return maxResponseBodySize;
+	}
+
+	/**
+	 * Set the most bytes of response body the transport may buffer; the
+	 * transports that buffer the body before completing fail with an
+	 * IOException as soon as it goes beyond them, instead of buffering the
+	 * rest
+	 *
+	 * @param maxResponseBodySize
+	 *            The maximum size, in bytes, as sent on the wire
+	 */
+	public TransportRequest setMaxResponseBodySize(long maxResponseBodySize) {
+		this.maxResponseBodySize = maxResponseBodySize;
+
+		return this;
+	}
+
+	public Object getAttribute(String name) {
+		return attributes != null ? attributes.get(name) : null;
+	}
+
+	public TransportRequest setAttribute(String name, Object value) {
+		if (attributes == null) {
+			attributes = new HashMap<String, Object>();
+		}
+
+		attributes.put(name, value);
+
+		return this;
+	}
+
+	private int checkIndex(int index) {
+		if (index < 0 || index >= headerCount) {
+			throw new IndexOutOfBoundsException("Header " + index + " of " + headerCount);
+		}
+
+		return index;
+	}
+
+	@Override
+	public String toString() {
+		return method + " " + url;
+	}
+}
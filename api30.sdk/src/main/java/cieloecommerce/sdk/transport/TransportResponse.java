@@ -0,0 +1,37 @@
+package cieloecommerce.sdk.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The response to a {@link TransportRequest}: status, headers and body
+ */
+public interface TransportResponse {
+	/**
+	 * @return The HTTP status code
+	 */
+	int getStatusCode();
+
+	/**
+	 * @return The reason phrase of the status line, or null if there is none,
+	 *         as on HTTP/2
+	 */
+	String getReasonPhrase();
+
+	/**
+	 * @param name
+	 *            The header name, case-insensitive
+	 * @return The value of the first header with the name, or null
+	 */
+	String getFirstHeader(String name);
+
+	/**
+	 * Gets the body, compressed as the Content-Encoding header says; closing
+	 * it releases the connection
+	 *
+	 * @return The body, empty if the response has none
+	 * @throws IOException
+	 *             if the body can't be read
+	 */
+	InputStream getBody() throws IOException;
+}
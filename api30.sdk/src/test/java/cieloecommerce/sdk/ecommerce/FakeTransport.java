@@ -0,0 +1,181 @@
+package cieloecommerce.sdk.ecommerce;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+
+import cieloecommerce.sdk.Merchant;
+import cieloecommerce.sdk.transport.Transport;
+import cieloecommerce.sdk.transport.TransportRequest;
+import cieloecommerce.sdk.transport.TransportResponse;
+
+/**
+ * {@link Transport} answering the requests with a handler, recording what
+ * was sent
+ */
+public class FakeTransport implements Transport {
+	public static final String API_URL = "http://cielo.test/";
+
+	private final Handler handler;
+	private final Queue<TransportRequest> requests = new ConcurrentLinkedQueue<TransportRequest>();
+
+	public FakeTransport(Handler handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * @return A client sending its requests to the transport
+	 */
+	public CieloEcommerce cieloEcommerce() {
+		return cieloEcommerce(new Merchant("merchant", "key"));
+	}
+
+	/**
+	 * @return A client of the merchant sending its requests to the transport
+	 */
+	public CieloEcommerce cieloEcommerce(Merchant merchant) {
+		CieloEcommerce cieloEcommerce = new CieloEcommerce(merchant,
+				new cieloecommerce.sdk.Environment() {
+					@Override
+					public String getApiUrl() {
+						return API_URL;
+					}
+
+					@Override
+					public String getApiQueryURL() {
+						return API_URL;
+					}
+				});
+
+		cieloEcommerce.setTransport(this);
+
+		return cieloEcommerce;
+	}
+
+	@Override
+	public TransportResponse send(TransportRequest request) throws IOException {
+		try {
+			return sendAsync(request).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+
+			throw new IOException(e.getCause());
+		}
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> sendAsync(TransportRequest request) {
+		requests.add(request);
+
+		return handler.handle(request);
+	}
+
+	/**
+	 * @return The requests sent so far, in order
+	 */
+	public List<TransportRequest> getRequests() {
+		return new ArrayList<TransportRequest>(requests);
+	}
+
+	/**
+	 * @return How many requests were sent to the path
+	 */
+	public int count(String path) {
+		int count = 0;
+
+		for (TransportRequest request : requests) {
+			if (request.getUrl().contains(path)) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * @return A completed response with the JSON body
+	 */
+	public static CompletableFuture<TransportResponse> respond(int statusCode, String json) {
+		return CompletableFuture.completedFuture(response(statusCode, json));
+	}
+
+	/**
+	 * @return A response with the JSON body
+	 */
+	public static TransportResponse response(final int statusCode, String json) {
+		final byte[] body = json.getBytes(StandardCharsets.UTF_8);
+
+		return new TransportResponse() {
+			@Override
+			public int getStatusCode() {
+				return statusCode;
+			}
+
+			@Override
+			public String getReasonPhrase() {
+				return null;
+			}
+
+			@Override
+			public String getFirstHeader(String name) {
+				return name.equalsIgnoreCase("Content-Type") ? "application/json" : null;
+			}
+
+			@Override
+			public InputStream getBody() {
+				return new ByteArrayInputStream(body);
+			}
+		};
+	}
+
+	/**
+	 * @return A response failed as if the connection was reset
+	 */
+	public static CompletableFuture<TransportResponse> fail(String message) {
+		CompletableFuture<TransportResponse> future = new CompletableFuture<TransportResponse>();
+
+		future.completeExceptionally(new IOException(message));
+
+		return future;
+	}
+
+	/**
+	 * @return The JSON of a Sale with the payment
+	 */
+	public static String sale(String paymentId, int status) {
+		return "{\"MerchantOrderId\":\"order\",\"Payment\":{\"PaymentId\":\"" + paymentId + "\",\"Status\":" + status
+				+ "}}";
+	}
+
+	/**
+	 * @return The paymentId of the sales path of the request
+	 */
+	public static String paymentId(TransportRequest request) {
+		String url = request.getUrl();
+		int start = url.indexOf("/sales/") + "/sales/".length();
+		int end = start;
+
+		while (end < url.length() && url.charAt(end) != '/' && url.charAt(end) != '?') {
+			end++;
+		}
+
+		return url.substring(start, end);
+	}
+
+	public interface Handler {
+		CompletableFuture<TransportResponse> handle(TransportRequest request);
+	}
+}
@@ -0,0 +1,149 @@
+package cieloecommerce.sdk.ecommerce.batch;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import cieloecommerce.sdk.ecommerce.FakeTransport;
+import cieloecommerce.sdk.ecommerce.request.CieloRequestException;
+import cieloecommerce.sdk.ecommerce.request.CieloStatusException;
+import cieloecommerce.sdk.transport.TransportRequest;
+import cieloecommerce.sdk.transport.TransportResponse;
+import junit.framework.TestCase;
+
+public class BatchProcessorTest extends TestCase {
+	private File journal;
+
+	@Override
+	protected void setUp() throws Exception {
+		journal = File.createTempFile("batch", ".journal");
+		journal.delete();
+	}
+
+	@Override
+	protected void tearDown() {
+		journal.delete();
+	}
+
+	public void testResumeSendsOnlyTheOperationsWithoutAFinalOutcome() throws Exception {
+		FakeTransport transport = new FakeTransport(request -> {
+			switch (FakeTransport.paymentId(request)) {
+			case "captured":
+				return FakeTransport.respond(200, FakeTransport.sale("captured", 2));
+			case "refused":
+				return FakeTransport.respond(400, "[{\"Code\":308,\"Message\":\"Transaction not available to capture\"}]");
+			case "missing":
+				return FakeTransport.respond(404, "");
+			case "unavailable":
+				return FakeTransport.respond(503, "");
+			default:
+				return FakeTransport.fail("Connection reset");
+			}
+		});
+		List<BatchOperation> operations = Arrays.asList(BatchOperation.capture("captured", null, null),
+				BatchOperation.capture("refused", null, null), BatchOperation.cancel("missing", null),
+				BatchOperation.capture("unavailable", null, null), BatchOperation.cancel("reset", null));
+
+		FileBatchCheckpoint checkpoint = new FileBatchCheckpoint(journal);
+		BatchReport report;
+
+		try {
+			report = new BatchProcessor(transport.cieloEcommerce()).setCheckpoint(checkpoint).run(operations);
+		} finally {
+			checkpoint.close();
+		}
+
+		assertEquals(5, report.getProcessed());
+		assertEquals(1, report.getSucceeded());
+		assertEquals(0, report.getSkipped());
+		assertEquals(3, checkpoint.size());
+
+		List<BatchResult> results = report.getResults();
+
+		assertTrue(results.get(0).isFinal());
+		assertTrue(results.get(1).isFinal());
+		assertEquals(Integer.valueOf(308), results.get(1).getError().getCode());
+		assertTrue(results.get(2).isFinal());
+		assertFalse(results.get(3).isFinal());
+		assertTrue(results.get(3).getFailure() instanceof CieloStatusException);
+		assertFalse(results.get(4).isFinal());
+		assertFalse(results.get(4).getFailure() instanceof CieloRequestException);
+
+		FakeTransport resumed = new FakeTransport(request -> FakeTransport.respond(200,
+				FakeTransport.sale(FakeTransport.paymentId(request), 2)));
+
+		checkpoint = new FileBatchCheckpoint(journal);
+
+		try {
+			report = new BatchProcessor(resumed.cieloEcommerce()).setCheckpoint(checkpoint).run(operations);
+		} finally {
+			checkpoint.close();
+		}
+
+		assertEquals(3, report.getSkipped());
+		assertEquals(2, report.getSucceeded());
+		assertEquals(5, checkpoint.size());
+
+		List<TransportRequest> sent = resumed.getRequests();
+
+		assertEquals(2, sent.size());
+		assertEquals("unavailable", FakeTransport.paymentId(sent.get(0)));
+		assertEquals("reset", FakeTransport.paymentId(sent.get(1)));
+	}
+
+	public void testOperationFailingToSendReleasesItsPermit() throws Exception {
+		FakeTransport transport = new FakeTransport(request -> FakeTransport.respond(200,
+				FakeTransport.sale(FakeTransport.paymentId(request), 2)));
+		List<BatchOperation> operations = Arrays.asList(new BatchOperation(null, "invalid", null, null),
+				BatchOperation.capture("p1", null, null), BatchOperation.capture("p2", null, null));
+
+		BatchReport report = new BatchProcessor(transport.cieloEcommerce()).setConcurrency(1).run(operations);
+
+		assertEquals(3, report.getProcessed());
+		assertEquals(2, report.getSucceeded());
+		assertFalse(report.getResults().get(0).isFinal());
+		assertEquals(2, transport.getRequests().size());
+	}
+
+	public void testConcurrencyBoundsTheRequestsInFlight() throws Exception {
+		final int[] inFlight = new int[2];
+		final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+		try {
+			FakeTransport transport = new FakeTransport(request -> {
+				final CompletableFuture<TransportResponse> future = new CompletableFuture<TransportResponse>();
+
+				synchronized (inFlight) {
+					inFlight[1] = Math.max(inFlight[1], ++inFlight[0]);
+				}
+
+				scheduler.schedule(() -> {
+					synchronized (inFlight) {
+						inFlight[0]--;
+					}
+
+					future.complete(FakeTransport.response(200, FakeTransport.sale(FakeTransport.paymentId(request), 2)));
+				}, 5, TimeUnit.MILLISECONDS);
+
+				return future;
+			});
+			BatchOperation[] operations = new BatchOperation[20];
+
+			for (int i = 0; i < operations.length; i++) {
+				operations[i] = BatchOperation.capture("p" + i, null, null);
+			}
+
+			BatchReport report = new BatchProcessor(transport.cieloEcommerce()).setConcurrency(3)
+					.run(Arrays.asList(operations));
+
+			assertEquals(20, report.getSucceeded());
+			assertTrue("at most 3 in flight, got " + inFlight[1], inFlight[1] <= 3);
+		} finally {
+			scheduler.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package cieloecommerce.sdk.ecommerce.cache;
+
+import java.util.concurrent.TimeUnit;
+
+import cieloecommerce.sdk.ecommerce.CieloEcommerce;
+import cieloecommerce.sdk.ecommerce.FakeTransport;
+import cieloecommerce.sdk.ecommerce.Payment;
+import cieloecommerce.sdk.ecommerce.Sale;
+import junit.framework.TestCase;
+
+public class QuerySaleCacheTest extends TestCase {
+	public void testPendingSalesExpireBeforeFinalOnes() throws Exception {
+		QuerySaleCache cache = new QuerySaleCache(10, TimeUnit.HOURS.toMillis(1), 1, TimeUnit.MILLISECONDS);
+
+		cache.put("authorized", sale("authorized", QuerySaleCache.AUTHORIZED));
+		cache.put("captured", sale("captured", QuerySaleCache.PAYMENT_CONFIRMED));
+		Thread.sleep(20);
+
+		assertNull(cache.get("authorized"));
+		assertNotNull(cache.get("captured"));
+		assertEquals(1, cache.getExpirationCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	public void testLeastRecentlyUsedSaleIsEvicted() {
+		QuerySaleCache cache = new QuerySaleCache(2, 1, 1, TimeUnit.HOURS);
+
+		cache.put("a", sale("a", QuerySaleCache.AUTHORIZED));
+		cache.put("b", sale("b", QuerySaleCache.AUTHORIZED));
+		cache.get("a");
+		cache.put("c", sale("c", QuerySaleCache.AUTHORIZED));
+
+		assertNotNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("c"));
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	public void testSaleQueriedBeforeAnInvalidationIsNotCached() {
+		QuerySaleCache cache = new QuerySaleCache(10, 1, 1, TimeUnit.HOURS);
+		long version = cache.currentVersion();
+
+		cache.invalidate("p1");
+
+		assertFalse(cache.put("p1", sale("p1", QuerySaleCache.AUTHORIZED), version));
+		assertNull(cache.get("p1"));
+		assertTrue(cache.put("p1", sale("p1", QuerySaleCache.PAYMENT_CONFIRMED), cache.currentVersion()));
+		assertNotNull(cache.get("p1"));
+	}
+
+	public void testOlderQueryDoesNotReplaceANewerSale() {
+		QuerySaleCache cache = new QuerySaleCache(10, 1, 1, TimeUnit.HOURS);
+		long older = cache.currentVersion();
+
+		cache.invalidate("p1");
+
+		Sale captured = sale("p1", QuerySaleCache.PAYMENT_CONFIRMED);
+
+		assertTrue(cache.put("p1", captured, cache.currentVersion()));
+		assertFalse(cache.put("p1", sale("p1", QuerySaleCache.AUTHORIZED), older));
+		assertSame(captured, cache.get("p1"));
+	}
+
+	public void testInvalidationsBeyondTheMaximumSizeAreStillHonored() {
+		QuerySaleCache cache = new QuerySaleCache(1, 1, 1, TimeUnit.HOURS);
+		long version = cache.currentVersion();
+
+		cache.invalidate("p1");
+		cache.invalidate("p2");
+
+		assertFalse(cache.put("p1", sale("p1", QuerySaleCache.AUTHORIZED), version));
+
+		version = cache.currentVersion();
+		cache.invalidateAll();
+
+		assertFalse(cache.put("p3", sale("p3", QuerySaleCache.AUTHORIZED), version));
+	}
+
+	public void testCaptureInvalidatesTheCachedSale() throws Exception {
+		FakeTransport transport = new FakeTransport(request -> FakeTransport.respond(200,
+				FakeTransport.sale(FakeTransport.paymentId(request), request.getMethod().equals("PUT")
+						? QuerySaleCache.PAYMENT_CONFIRMED : QuerySaleCache.AUTHORIZED)));
+		CieloEcommerce cieloEcommerce = transport.cieloEcommerce();
+
+		cieloEcommerce.setQuerySaleCache(new QuerySaleCache(10, 1, 1, TimeUnit.HOURS));
+
+		cieloEcommerce.querySale("p1");
+		cieloEcommerce.querySale("p1");
+
+		assertEquals(1, transport.getRequests().size());
+
+		cieloEcommerce.captureSale("p1");
+		cieloEcommerce.querySale("p1");
+
+		assertEquals(3, transport.getRequests().size());
+	}
+
+	static Sale sale(String paymentId, int status) {
+		return new Sale("order").setPayment(new Payment(100).setPaymentId(paymentId).setStatus(status));
+	}
+}
@@ -0,0 +1,150 @@
+package cieloecommerce.sdk.ecommerce.cache;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cieloecommerce.sdk.ecommerce.CieloEcommerce;
+import cieloecommerce.sdk.ecommerce.FakeTransport;
+import cieloecommerce.sdk.ecommerce.Sale;
+import cieloecommerce.sdk.transport.TransportResponse;
+import junit.framework.TestCase;
+
+public class QuerySaleCoalescerTest extends TestCase {
+	public void testConcurrentQueriesShareTheQueryInFlight() throws Exception {
+		QuerySaleCoalescer coalescer = new QuerySaleCoalescer();
+		CompletableFuture<Sale> response = new CompletableFuture<Sale>();
+		AtomicInteger sent = new AtomicInteger();
+
+		CompletableFuture<Sale> first = coalescer.queryAsync("p1", id -> {
+			sent.incrementAndGet();
+			return response;
+		});
+		CompletableFuture<Sale> second = coalescer.queryAsync("p1", id -> {
+			sent.incrementAndGet();
+			return response;
+		});
+
+		assertEquals(1, sent.get());
+		assertEquals(1, coalescer.getInFlightCount());
+
+		Sale sale = QuerySaleCacheTest.sale("p1", QuerySaleCache.AUTHORIZED);
+
+		response.complete(sale);
+
+		assertSame(sale, first.get());
+		assertSame(sale, second.get());
+		assertEquals(0, coalescer.getInFlightCount());
+		assertEquals(1, coalescer.getQueryCount());
+		assertEquals(1, coalescer.getCoalescedCount());
+	}
+
+	public void testFailureIsSharedButNotKept() throws Exception {
+		QuerySaleCoalescer coalescer = new QuerySaleCoalescer();
+		CompletableFuture<Sale> response = new CompletableFuture<Sale>();
+
+		CompletableFuture<Sale> first = coalescer.queryAsync("p1", id -> response);
+		CompletableFuture<Sale> second = coalescer.queryAsync("p1", id -> response);
+		IOException failure = new IOException("Connection reset");
+
+		response.completeExceptionally(failure);
+
+		assertSame(failure, cause(first));
+		assertSame(failure, cause(second));
+
+		Sale sale = QuerySaleCacheTest.sale("p1", QuerySaleCache.AUTHORIZED);
+
+		assertSame(sale, coalescer.queryAsync("p1", id -> CompletableFuture.completedFuture(sale)).get());
+		assertEquals(2, coalescer.getQueryCount());
+	}
+
+	public void testInvalidateStopsCoalescingWithTheQueryInFlight() throws Exception {
+		QuerySaleCoalescer coalescer = new QuerySaleCoalescer();
+		CompletableFuture<Sale> before = new CompletableFuture<Sale>();
+		CompletableFuture<Sale> after = new CompletableFuture<Sale>();
+
+		CompletableFuture<Sale> first = coalescer.queryAsync("p1", id -> before);
+
+		coalescer.invalidate("p1");
+
+		CompletableFuture<Sale> second = coalescer.queryAsync("p1", id -> after);
+		CompletableFuture<Sale> third = coalescer.queryAsync("p1", id -> after);
+		Sale authorized = QuerySaleCacheTest.sale("p1", QuerySaleCache.AUTHORIZED);
+		Sale captured = QuerySaleCacheTest.sale("p1", QuerySaleCache.PAYMENT_CONFIRMED);
+
+		before.complete(authorized);
+
+		assertEquals(1, coalescer.getInFlightCount());
+
+		after.complete(captured);
+
+		assertSame(authorized, first.get());
+		assertSame(captured, second.get());
+		assertSame(captured, third.get());
+		assertEquals(2, coalescer.getQueryCount());
+		assertEquals(0, coalescer.getInFlightCount());
+	}
+
+	public void testBlockingQueryWaitsForTheQueryInFlight() throws Exception {
+		final QuerySaleCoalescer coalescer = new QuerySaleCoalescer();
+		final CountDownLatch sending = new CountDownLatch(1);
+		final CompletableFuture<Sale> respond = new CompletableFuture<Sale>();
+		final Sale sale = QuerySaleCacheTest.sale("p1", QuerySaleCache.AUTHORIZED);
+
+		FutureTask<Sale> first = new FutureTask<Sale>(() -> coalescer.query("p1", id -> {
+			sending.countDown();
+			return respond.join();
+		}));
+
+		new Thread(first).start();
+		sending.await();
+
+		FutureTask<Sale> second = new FutureTask<Sale>(() -> coalescer.query("p1", id -> {
+			throw new AssertionError("The query in flight should be used");
+		}));
+
+		new Thread(second).start();
+
+		while (coalescer.getCoalescedCount() == 0) {
+			Thread.sleep(1);
+		}
+
+		respond.complete(sale);
+
+		assertSame(sale, first.get());
+		assertSame(sale, second.get());
+	}
+
+	public void testCieloEcommerceSendsOneQueryPerPaymentInFlight() throws Exception {
+		final CompletableFuture<TransportResponse> response = new CompletableFuture<TransportResponse>();
+		FakeTransport transport = new FakeTransport(request -> response);
+		CieloEcommerce cieloEcommerce = transport.cieloEcommerce();
+
+		cieloEcommerce.setQuerySaleCoalescer(new QuerySaleCoalescer());
+
+		CompletableFuture<Sale> first = cieloEcommerce.querySaleAsync("p1");
+		CompletableFuture<Sale> second = cieloEcommerce.querySaleAsync("p1");
+
+		response.complete(FakeTransport.response(200, FakeTransport.sale("p1", QuerySaleCache.AUTHORIZED)));
+
+		assertEquals("p1", first.get().getPayment().getPaymentId());
+		assertSame(first.get(), second.get());
+		assertEquals(1, transport.getRequests().size());
+	}
+
+	private static Throwable cause(Future<Sale> future) throws InterruptedException {
+		try {
+			future.get();
+		} catch (ExecutionException e) {
+			return e.getCause();
+		}
+
+		fail("The query should fail");
+
+		return null;
+	}
+}
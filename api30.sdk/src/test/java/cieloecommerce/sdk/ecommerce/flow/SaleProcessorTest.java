@@ -0,0 +1,223 @@
+package cieloecommerce.sdk.ecommerce.flow;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cieloecommerce.sdk.ecommerce.FakeTransport;
+import cieloecommerce.sdk.ecommerce.Sale;
+import junit.framework.TestCase;
+
+public class SaleProcessorTest extends TestCase {
+	private final List<CompletableFuture<Sale>> operations = new ArrayList<CompletableFuture<Sale>>();
+	private final Upstream upstream = new Upstream();
+	private final Downstream downstream = new Downstream();
+
+	public void testItemsAreRequestedOnlyForTheDownstreamDemand() {
+		SaleProcessor<String> processor = subscribe(new SaleProcessor<String>(this::send));
+
+		assertEquals(0, upstream.requested.get());
+
+		downstream.subscription.request(2);
+
+		assertEquals(2, upstream.requested.get());
+
+		processor.onNext("p1");
+		processor.onNext("p2");
+		operations.get(0).complete(new Sale("p1"));
+		operations.get(1).complete(new Sale("p2"));
+
+		assertEquals(2, downstream.results.size());
+		assertEquals(2, upstream.requested.get());
+
+		downstream.subscription.request(3);
+
+		assertEquals(5, upstream.requested.get());
+	}
+
+	public void testConcurrencyBoundsTheItemsInFlight() {
+		SaleProcessor<String> processor = subscribe(new SaleProcessor<String>(this::send).setConcurrency(2));
+
+		downstream.subscription.request(Long.MAX_VALUE);
+
+		assertEquals(2, upstream.requested.get());
+
+		processor.onNext("p1");
+		processor.onNext("p2");
+
+		assertEquals(2, upstream.requested.get());
+
+		operations.get(1).complete(new Sale("p2"));
+
+		assertEquals(3, upstream.requested.get());
+	}
+
+	public void testOrderedResultsFollowTheInput() {
+		SaleProcessor<String> processor = subscribe(new SaleProcessor<String>(this::send).setOrdered(true));
+
+		downstream.subscription.request(3);
+		processor.onNext("p1");
+		processor.onNext("p2");
+		processor.onNext("p3");
+		operations.get(2).complete(new Sale("p3"));
+		operations.get(1).complete(new Sale("p2"));
+
+		assertEquals(0, downstream.results.size());
+
+		operations.get(0).complete(new Sale("p1"));
+
+		assertEquals(3, downstream.results.size());
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals(i, downstream.results.get(i).getIndex());
+			assertEquals("p" + (i + 1), downstream.results.get(i).getInput());
+		}
+	}
+
+	public void testFailuresAreResultsAndErrorsWaitForTheItemsInFlight() {
+		SaleProcessor<String> processor = subscribe(new SaleProcessor<String>(this::send));
+		IOException failure = new IOException("Connection reset");
+
+		downstream.subscription.request(10);
+		processor.onNext("p1");
+		processor.onNext("p2");
+		operations.get(0).completeExceptionally(failure);
+
+		assertEquals(1, downstream.results.size());
+		assertSame(failure, downstream.results.get(0).getFailure());
+		assertFalse(downstream.results.get(0).isSuccess());
+
+		IllegalStateException upstreamError = new IllegalStateException("Upstream failed");
+
+		processor.onError(upstreamError);
+
+		assertNull(downstream.error);
+
+		operations.get(1).complete(new Sale("p2"));
+
+		assertEquals(2, downstream.results.size());
+		assertSame(upstreamError, downstream.error);
+	}
+
+	public void testCancelStopsTheUpstreamAndDropsTheResults() {
+		SaleProcessor<String> processor = subscribe(new SaleProcessor<String>(this::send));
+
+		downstream.subscription.request(10);
+		processor.onNext("p1");
+		downstream.subscription.cancel();
+
+		assertTrue(upstream.cancelled.get());
+		assertFalse(operations.get(0).isCancelled());
+
+		operations.get(0).complete(new Sale("p1"));
+
+		assertEquals(0, downstream.results.size());
+	}
+
+	public void testQueriesEachPaymentIdOfAPublisher() throws Exception {
+		FakeTransport transport = new FakeTransport(request -> FakeTransport.respond(200,
+				FakeTransport.sale(FakeTransport.paymentId(request), 1)));
+		SaleProcessor<String> processor = SaleProcessor.querySale(transport.cieloEcommerce()).setOrdered(true);
+		final List<String> paymentIds = new CopyOnWriteArrayList<String>();
+		final CountDownLatch completed = new CountDownLatch(1);
+
+		processor.subscribe(new Flow.Subscriber<SaleResult<String>>() {
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				subscription.request(Long.MAX_VALUE);
+			}
+
+			@Override
+			public void onNext(SaleResult<String> item) {
+				paymentIds.add(item.getSale().getPayment().getPaymentId());
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+			}
+
+			@Override
+			public void onComplete() {
+				completed.countDown();
+			}
+		});
+
+		try (SubmissionPublisher<String> publisher = new SubmissionPublisher<String>()) {
+			publisher.subscribe(processor);
+
+			for (int i = 0; i < 100; i++) {
+				publisher.submit("p" + i);
+			}
+		}
+
+		assertTrue(completed.await(10, TimeUnit.SECONDS));
+		assertEquals(100, paymentIds.size());
+
+		for (int i = 0; i < 100; i++) {
+			assertEquals("p" + i, paymentIds.get(i));
+		}
+	}
+
+	private CompletableFuture<Sale> send(String paymentId) {
+		CompletableFuture<Sale> future = new CompletableFuture<Sale>();
+
+		operations.add(future);
+
+		return future;
+	}
+
+	private SaleProcessor<String> subscribe(SaleProcessor<String> processor) {
+		processor.onSubscribe(upstream);
+		processor.subscribe(downstream);
+
+		return processor;
+	}
+
+	private static class Upstream implements Flow.Subscription {
+		final AtomicLong requested = new AtomicLong();
+		final AtomicBoolean cancelled = new AtomicBoolean();
+
+		@Override
+		public void request(long n) {
+			requested.addAndGet(n);
+		}
+
+		@Override
+		public void cancel() {
+			cancelled.set(true);
+		}
+	}
+
+	private static class Downstream implements Flow.Subscriber<SaleResult<String>> {
+		final List<SaleResult<String>> results = new CopyOnWriteArrayList<SaleResult<String>>();
+		Flow.Subscription subscription;
+		volatile Throwable error;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(SaleResult<String> item) {
+			results.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+		}
+
+		@Override
+		public void onComplete() {
+		}
+	}
+}
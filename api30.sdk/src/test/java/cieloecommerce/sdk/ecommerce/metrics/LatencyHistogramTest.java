@@ -0,0 +1,143 @@
+package cieloecommerce.sdk.ecommerce.metrics;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class LatencyHistogramTest extends TestCase {
+	private static final double[] PERCENTILES = { 0, 1, 10, 50, 90, 99, 99.9, 99.99, 100 };
+	private static final double RELATIVE_ERROR = 0.01;
+
+	private final LatencyHistogram histogram = new LatencyHistogram();
+
+	public void testNothingRecorded() {
+		assertEquals(0, histogram.getCount());
+		assertEquals(0.0, histogram.getMean(TimeUnit.NANOSECONDS), 0);
+		assertEquals(0, histogram.getMax(TimeUnit.NANOSECONDS));
+		assertEquals(0, histogram.getValueAtPercentile(99, TimeUnit.NANOSECONDS));
+	}
+
+	public void testValuesBelow256AreExact() {
+		for (long value = 0; value < 256; value++) {
+			histogram.record(value);
+		}
+
+		for (long value = 0; value < 256; value++) {
+			assertEquals(value, histogram.getValueAtPercentile((value + 1) * 100.0 / 256, TimeUnit.NANOSECONDS));
+		}
+	}
+
+	public void testSubMicrosecondPercentiles() {
+		assertPercentiles(1, 1000);
+	}
+
+	public void testMillisecondPercentiles() {
+		assertPercentiles(TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(500));
+	}
+
+	public void testMultiSecondPercentiles() {
+		assertPercentiles(TimeUnit.SECONDS.toNanos(1), TimeUnit.SECONDS.toNanos(60));
+	}
+
+	public void testPercentilesAcrossAllRanges() {
+		assertPercentiles(1, TimeUnit.MINUTES.toNanos(30));
+	}
+
+	public void testMaxAndMeanAreExact() {
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(2));
+		histogram.record(3123456789L);
+
+		assertEquals(2, histogram.getCount());
+		assertEquals(3123456789L, histogram.getMax(TimeUnit.NANOSECONDS));
+		assertEquals(3123, histogram.getMax(TimeUnit.MILLISECONDS));
+		assertEquals((2000000 + 3123456789L) / 2.0, histogram.getMean(TimeUnit.NANOSECONDS), 0.5);
+		assertEquals((2000000 + 3123456789L) / 2.0 / 1000000, histogram.getMean(TimeUnit.MILLISECONDS), 0.001);
+
+		// the bucket reaches beyond the max, which caps it
+		assertEquals(3123456789L, histogram.getValueAtPercentile(100, TimeUnit.NANOSECONDS));
+		assertEquals(3123456789L, histogram.getValueAtPercentile(200, TimeUnit.NANOSECONDS));
+	}
+
+	public void testValuesOutOfRangeAreClamped() {
+		long twoHours = (1L << 43) - 1;
+
+		histogram.record(-5);
+
+		assertEquals(0, histogram.getValueAtPercentile(100, TimeUnit.NANOSECONDS));
+
+		histogram.record(Long.MAX_VALUE);
+
+		assertEquals(2, histogram.getCount());
+		assertEquals(twoHours, histogram.getMax(TimeUnit.NANOSECONDS));
+		assertEquals(twoHours, histogram.getValueAtPercentile(100, TimeUnit.NANOSECONDS));
+		assertEquals(twoHours / 2.0, histogram.getMean(TimeUnit.NANOSECONDS), 0.5);
+	}
+
+	public void testResetForgetsEverything() {
+		histogram.record(TimeUnit.SECONDS.toNanos(5));
+		histogram.reset();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax(TimeUnit.NANOSECONDS));
+		assertEquals(0, histogram.getValueAtPercentile(50, TimeUnit.NANOSECONDS));
+
+		histogram.record(1000);
+
+		assertEquals(1000, histogram.getValueAtPercentile(50, TimeUnit.NANOSECONDS));
+		assertEquals(1000.0, histogram.getMean(TimeUnit.NANOSECONDS), 0);
+	}
+
+	public void testConcurrentRecordsAreAllCounted() throws InterruptedException {
+		Thread[] threads = new Thread[4];
+
+		for (int t = 0; t < threads.length; t++) {
+			final long offset = t;
+
+			threads[t] = new Thread(() -> {
+				for (int i = 1; i <= 10000; i++) {
+					histogram.record(i * 1000 + offset);
+				}
+			});
+			threads[t].start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(40000, histogram.getCount());
+		assertEquals(10000003, histogram.getMax(TimeUnit.NANOSECONDS));
+	}
+
+	/**
+	 * Record values spread log-uniformly over [min, max) and compare each
+	 * percentile with the exact one
+	 */
+	private void assertPercentiles(long min, long max) {
+		Random random = new Random(min ^ max);
+		long[] values = new long[100000];
+		double range = Math.log((double) max / min);
+
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (long) (min * Math.exp(random.nextDouble() * range));
+			histogram.record(values[i]);
+		}
+
+		Arrays.sort(values);
+
+		assertEquals(values.length, histogram.getCount());
+		assertEquals(values[values.length - 1], histogram.getMax(TimeUnit.NANOSECONDS));
+
+		for (double percentile : PERCENTILES) {
+			long exact = values[(int) Math.max(0, Math.ceil(percentile / 100 * values.length) - 1)];
+			long recorded = histogram.getValueAtPercentile(percentile, TimeUnit.NANOSECONDS);
+
+			// the highest value of the bucket, so never below the exact one
+			assertTrue("p" + percentile + ": " + recorded + " < " + exact, recorded >= exact);
+			assertTrue("p" + percentile + ": " + recorded + " vs " + exact,
+					recorded - exact <= exact * RELATIVE_ERROR);
+		}
+	}
+}
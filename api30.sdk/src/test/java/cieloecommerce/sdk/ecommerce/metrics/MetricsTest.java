@@ -0,0 +1,134 @@
+package cieloecommerce.sdk.ecommerce.metrics;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import cieloecommerce.sdk.ecommerce.CieloEcommerce;
+import cieloecommerce.sdk.ecommerce.FakeTransport;
+import cieloecommerce.sdk.ecommerce.request.CieloRequestException;
+import junit.framework.TestCase;
+
+public class MetricsTest extends TestCase {
+	private final Metrics metrics = new Metrics();
+
+	public void testRequestsAreCountedByStatus() {
+		metrics.record(Operation.CREATE_SALE, 1000, 201, 300, 120, 400);
+		metrics.record(Operation.CREATE_SALE, 2000, 201, 300, 120, 400);
+		metrics.record(Operation.CREATE_SALE, 3000, 400, 300, 0, 0);
+		metrics.record(Operation.CREATE_SALE, 4000, 0, 300, 0, 0);
+
+		OperationMetrics createSale = metrics.get(Operation.CREATE_SALE);
+
+		assertEquals(Operation.CREATE_SALE, createSale.getOperation());
+		assertEquals(4, createSale.getRequestCount());
+		assertEquals(4, createSale.getLatency().getCount());
+		assertEquals(2, createSale.getStatusCount(201));
+		assertEquals(1, createSale.getStatusCount(400));
+		assertEquals(1, createSale.getStatusCount(0));
+		assertEquals(0, createSale.getStatusCount(500));
+		assertEquals(counts(0, 1, 201, 2, 400, 1), createSale.getStatusCounts());
+		assertEquals(1200, createSale.getBytesSent());
+		assertEquals(240, createSale.getWireBytesReceived());
+		assertEquals(800, createSale.getBytesReceived());
+
+		// the other operations are apart
+		assertEquals(0, metrics.get(Operation.QUERY_SALE).getRequestCount());
+		assertTrue(metrics.get(Operation.QUERY_SALE).getStatusCounts().isEmpty());
+	}
+
+	public void testStatusesOutOfRangeCountAsNoResponse() {
+		metrics.record(Operation.QUERY_SALE, 1000, -1, 0, 0);
+		metrics.record(Operation.QUERY_SALE, 1000, 600, 0, 0);
+		metrics.record(Operation.QUERY_SALE, 1000, 599, 0, 0);
+
+		OperationMetrics querySale = metrics.get(Operation.QUERY_SALE);
+
+		assertEquals(counts(0, 2, 599, 1), querySale.getStatusCounts());
+		assertEquals(0, querySale.getStatusCount(-1));
+		assertEquals(0, querySale.getStatusCount(600));
+	}
+
+	public void testWireBytesDefaultToTheBytesReceived() {
+		metrics.record(Operation.QUERY_SALE, 1000, 200, 0, 500);
+
+		assertEquals(500, metrics.get(Operation.QUERY_SALE).getWireBytesReceived());
+		assertEquals(500, metrics.get(Operation.QUERY_SALE).getBytesReceived());
+	}
+
+	public void testErrorsAreCountedByCieloCode() {
+		metrics.recordError(Operation.CAPTURE_SALE, 308);
+		metrics.recordError(Operation.CAPTURE_SALE, 308);
+		metrics.recordError(Operation.CAPTURE_SALE, 0);
+		metrics.recordError(Operation.CAPTURE_SALE, 999);
+		metrics.recordError(Operation.CAPTURE_SALE, 1000);
+		metrics.recordError(Operation.CAPTURE_SALE, -1);
+
+		OperationMetrics captureSale = metrics.get(Operation.CAPTURE_SALE);
+
+		assertEquals(2, captureSale.getErrorCount(308));
+		assertEquals(1, captureSale.getErrorCount(0));
+		assertEquals(1, captureSale.getErrorCount(999));
+		assertEquals(0, captureSale.getErrorCount(1000));
+		assertEquals(counts(0, 1, 308, 2, 999, 1), captureSale.getErrorCounts());
+		assertEquals(2, captureSale.getOtherErrorCount());
+		assertEquals(0, metrics.get(Operation.CANCEL_SALE).getErrorCounts().size());
+	}
+
+	public void testResetForgetsEveryCounter() {
+		metrics.record(Operation.CANCEL_SALE, 1000, 200, 10, 5, 20);
+		metrics.recordError(Operation.CANCEL_SALE, 309);
+		metrics.recordError(Operation.CANCEL_SALE, 5000);
+		metrics.reset();
+
+		OperationMetrics cancelSale = metrics.get(Operation.CANCEL_SALE);
+
+		assertEquals(0, cancelSale.getRequestCount());
+		assertEquals(0, cancelSale.getLatency().getCount());
+		assertTrue(cancelSale.getStatusCounts().isEmpty());
+		assertTrue(cancelSale.getErrorCounts().isEmpty());
+		assertEquals(0, cancelSale.getOtherErrorCount());
+		assertEquals(0, cancelSale.getBytesSent());
+		assertEquals(0, cancelSale.getWireBytesReceived());
+		assertEquals(0, cancelSale.getBytesReceived());
+	}
+
+	public void testRequestsSentByCieloEcommerceAreRecorded() throws IOException, CieloRequestException {
+		FakeTransport transport = new FakeTransport(request -> request.getUrl().contains("/capture")
+				? FakeTransport.respond(400, "[{\"Code\":308,\"Message\":\"Transaction not available to capture\"}]")
+				: FakeTransport.respond(200, FakeTransport.sale(FakeTransport.paymentId(request), 1)));
+		CieloEcommerce cieloEcommerce = transport.cieloEcommerce();
+
+		cieloEcommerce.setMetrics(metrics);
+		cieloEcommerce.querySale("p1");
+		cieloEcommerce.querySale("p2");
+
+		try {
+			cieloEcommerce.captureSale("p1");
+			fail("Cielo refused the capture");
+		} catch (CieloRequestException e) {
+			// expected
+		}
+
+		OperationMetrics querySale = metrics.get(Operation.QUERY_SALE);
+		OperationMetrics captureSale = metrics.get(Operation.CAPTURE_SALE);
+
+		assertEquals(2, querySale.getStatusCount(200));
+		assertEquals(2, querySale.getLatency().getCount());
+		assertTrue(querySale.getLatency().getMax(TimeUnit.NANOSECONDS) > 0);
+		assertTrue(querySale.getBytesReceived() > 0);
+		assertEquals(counts(400, 1), captureSale.getStatusCounts());
+		assertEquals(counts(308, 1), captureSale.getErrorCounts());
+	}
+
+	private static Map<Integer, Long> counts(long... keysAndCounts) {
+		Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+
+		for (int i = 0; i < keysAndCounts.length; i += 2) {
+			counts.put((int) keysAndCounts[i], keysAndCounts[i + 1]);
+		}
+
+		return counts;
+	}
+}
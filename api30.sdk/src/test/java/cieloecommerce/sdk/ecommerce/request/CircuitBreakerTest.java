@@ -0,0 +1,181 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import cieloecommerce.sdk.ecommerce.request.CircuitBreaker.Circuit;
+import cieloecommerce.sdk.ecommerce.request.CircuitBreaker.State;
+import junit.framework.TestCase;
+
+public class CircuitBreakerTest extends TestCase {
+	private static final String FAKE_URL = "http://cielo.test/";
+	private static final IOException RESET = new IOException("Connection reset");
+
+	public void testFailureRateOpensTheCircuit() throws Exception {
+		Circuit circuit = new CircuitBreaker().setWindow(10, 4).setFailureRate(0.5).getCircuit(FAKE_URL);
+
+		succeeded(circuit);
+		failed(circuit, RESET);
+		succeeded(circuit);
+
+		assertEquals(State.CLOSED, circuit.getState());
+
+		failed(circuit, new CieloStatusException(503, "Service Unavailable", -1));
+
+		assertEquals(State.OPEN, circuit.getState());
+		assertOpen(circuit);
+	}
+
+	public void testErrorsReturnedByCieloDontOpenTheCircuit() throws Exception {
+		Circuit circuit = new CircuitBreaker().setWindow(10, 4).getCircuit(FAKE_URL);
+
+		for (int i = 0; i < 10; i++) {
+			failed(circuit, new CieloRequestException("Not found", new CieloError(404, "Not found"), null));
+			failed(circuit, new CieloStatusException(429, "Too Many Requests", -1));
+		}
+
+		assertEquals(State.CLOSED, circuit.getState());
+	}
+
+	public void testSlowCallsOpenTheCircuit() throws Exception {
+		Circuit circuit = new CircuitBreaker().setWindow(4, 4).setSlowCallRate(0.5, 10, TimeUnit.MILLISECONDS)
+				.getCircuit(FAKE_URL);
+
+		for (int i = 0; i < 4; i++) {
+			circuit.record(circuit.acquire(), i < 2 ? 0 : TimeUnit.MILLISECONDS.toNanos(20), null);
+		}
+
+		assertEquals(State.OPEN, circuit.getState());
+	}
+
+	public void testSuccessfulProbesCloseTheCircuit() throws Exception {
+		Circuit circuit = open(new CircuitBreaker().setProbes(2));
+		long first = circuit.acquire();
+		long second = circuit.acquire();
+
+		assertEquals(State.HALF_OPEN, circuit.getState());
+		assertOpen(circuit);
+
+		circuit.record(first, 0, null);
+
+		assertEquals(State.HALF_OPEN, circuit.getState());
+
+		circuit.record(second, 0, null);
+
+		assertEquals(State.CLOSED, circuit.getState());
+	}
+
+	public void testFailedProbeOpensTheCircuitAgain() throws Exception {
+		Circuit circuit = open(new CircuitBreaker().setProbes(2));
+		long probe = circuit.acquire();
+
+		circuit.record(probe, 0, RESET);
+
+		assertEquals(State.OPEN, circuit.getState());
+	}
+
+	public void testRequestsOfAnotherGenerationDontCount() throws Exception {
+		CircuitBreaker circuitBreaker = new CircuitBreaker().setWindow(2, 2).setProbes(1)
+				.setOpenDuration(10, TimeUnit.MILLISECONDS);
+		Circuit circuit = circuitBreaker.getCircuit(FAKE_URL);
+		long straggler = circuit.acquire();
+
+		failed(circuit, RESET);
+		failed(circuit, RESET);
+		Thread.sleep(20);
+
+		long probe = circuit.acquire();
+
+		assertEquals(State.HALF_OPEN, circuit.getState());
+
+		// sent while closed, it isn't the probe
+		circuit.record(straggler, 0, RESET);
+
+		assertEquals(State.HALF_OPEN, circuit.getState());
+
+		circuit.record(probe, 0, null);
+
+		assertEquals(State.CLOSED, circuit.getState());
+	}
+
+	public void testHungProbeOpensTheCircuitAgain() throws Exception {
+		Circuit circuit = open(new CircuitBreaker().setProbes(1).setSlowCallRate(1, 20, TimeUnit.MILLISECONDS));
+		long probe = circuit.acquire();
+
+		assertOpen(circuit);
+		Thread.sleep(30);
+		assertOpen(circuit);
+		assertEquals(State.OPEN, circuit.getState());
+
+		circuit.record(probe, 0, null);
+
+		assertEquals(State.OPEN, circuit.getState());
+	}
+
+	public void testUnsentProbeGivesItsPermitBack() throws Exception {
+		Circuit circuit = open(new CircuitBreaker().setProbes(1));
+		long probe = circuit.acquire();
+
+		circuit.record(probe, 0, new LimitExceededException("api", 1));
+
+		circuit.record(circuit.acquire(), 0, null);
+
+		assertEquals(State.CLOSED, circuit.getState());
+	}
+
+	public void testListenerExceptionsAreIsolated() throws Exception {
+		final List<String> changes = new ArrayList<String>();
+		final List<Throwable> uncaught = new ArrayList<Throwable>();
+		CircuitBreaker circuitBreaker = new CircuitBreaker().setWindow(1, 1);
+		Thread thread = Thread.currentThread();
+		Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+
+		circuitBreaker.addListener((host, from, to) -> {
+			throw new IllegalStateException("listener bug");
+		});
+		circuitBreaker.addListener((host, from, to) -> changes.add(host + " " + from + " " + to));
+		thread.setUncaughtExceptionHandler((t, e) -> uncaught.add(e));
+
+		try {
+			failed(circuitBreaker.getCircuit(FAKE_URL), RESET);
+		} finally {
+			thread.setUncaughtExceptionHandler(handler);
+		}
+
+		assertEquals(1, changes.size());
+		assertEquals("cielo.test CLOSED OPEN", changes.get(0));
+		assertEquals(1, uncaught.size());
+		assertTrue(uncaught.get(0) instanceof IllegalStateException);
+	}
+
+	private static Circuit open(CircuitBreaker circuitBreaker) throws Exception {
+		Circuit circuit = circuitBreaker.setWindow(1, 1).setOpenDuration(10, TimeUnit.MILLISECONDS)
+				.getCircuit(FAKE_URL);
+
+		failed(circuit, RESET);
+
+		assertEquals(State.OPEN, circuit.getState());
+		Thread.sleep(20);
+
+		return circuit;
+	}
+
+	private static void succeeded(Circuit circuit) throws CircuitOpenException {
+		circuit.record(circuit.acquire(), 0, null);
+	}
+
+	private static void failed(Circuit circuit, Exception failure) throws CircuitOpenException {
+		circuit.record(circuit.acquire(), 0, failure);
+	}
+
+	private static void assertOpen(Circuit circuit) {
+		try {
+			circuit.acquire();
+			fail("The request should fail fast");
+		} catch (CircuitOpenException e) {
+			// expected
+		}
+	}
+}
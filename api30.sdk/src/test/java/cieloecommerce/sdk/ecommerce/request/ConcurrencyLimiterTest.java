@@ -0,0 +1,118 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import cieloecommerce.sdk.ecommerce.CieloEcommerce;
+import cieloecommerce.sdk.ecommerce.FakeTransport;
+import cieloecommerce.sdk.ecommerce.Sale;
+import cieloecommerce.sdk.transport.TransportResponse;
+import junit.framework.TestCase;
+
+public class ConcurrencyLimiterTest extends TestCase {
+	public void testRequestsBeyondTheLimitAreRejected() {
+		ConcurrencyLimiter.Limit limit = new ConcurrencyLimiter().setLimits(2, 1, 10).getLimit("api");
+
+		assertTrue(limit.tryAcquire());
+		assertTrue(limit.tryAcquire());
+		assertFalse(limit.tryAcquire());
+		assertEquals(1, limit.getRejectedCount());
+		assertEquals(2, limit.getInFlight());
+
+		limit.release(0, null);
+
+		assertTrue(limit.tryAcquire());
+	}
+
+	public void testDropsCutTheLimitMultiplicatively() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter().setLimits(16, 2, 32).setBackoffRatio(0.5)
+				.setTimeout(1, TimeUnit.SECONDS);
+		ConcurrencyLimiter.Limit limit = limiter.getLimit("api");
+
+		limit.tryAcquire();
+		limit.release(0, new IOException("Connection reset"));
+
+		assertEquals(8, limit.getLimit());
+
+		limit.tryAcquire();
+		limit.release(0, new CieloStatusException(503, "Service Unavailable", -1));
+
+		assertEquals(4, limit.getLimit());
+
+		limit.tryAcquire();
+		limit.release(TimeUnit.SECONDS.toNanos(2), null);
+
+		assertEquals(2, limit.getLimit());
+
+		limit.tryAcquire();
+		limit.release(0, new CieloStatusException(429, "Too Many Requests", -1));
+
+		assertEquals(2, limit.getLimit());
+		assertEquals(4, limit.getDroppedCount());
+	}
+
+	public void testErrorsReturnedByCieloDontCutTheLimit() {
+		ConcurrencyLimiter.Limit limit = new ConcurrencyLimiter().setLimits(16, 1, 32).getLimit("api");
+
+		limit.tryAcquire();
+		limit.release(0, new CieloRequestException("Not found", new CieloError(404, "Not found"), null));
+
+		assertEquals(16, limit.getLimit());
+		assertEquals(0, limit.getDroppedCount());
+	}
+
+	public void testLimitGrowsAdditivelyOnlyWhileBusy() {
+		ConcurrencyLimiter.Limit limit = new ConcurrencyLimiter().setLimits(4, 1, 6).getLimit("api");
+
+		for (int i = 0; i < 20; i++) {
+			limit.tryAcquire();
+			limit.release(0, null);
+		}
+
+		assertEquals(4, limit.getLimit());
+
+		for (int i = 0; i < 4; i++) {
+			assertTrue(limit.tryAcquire());
+		}
+
+		// each limit's worth of requests answered in time adds one
+		for (int i = 0; i < 5; i++) {
+			limit.release(0, null);
+			limit.tryAcquire();
+		}
+
+		assertEquals(5, limit.getLimit());
+
+		for (int i = 0; i < 100; i++) {
+			limit.release(0, null);
+			limit.tryAcquire();
+		}
+
+		assertEquals(6, limit.getLimit());
+	}
+
+	public void testCieloEcommerceRejectsWithoutSending() throws Exception {
+		CompletableFuture<TransportResponse> response = new CompletableFuture<TransportResponse>();
+		FakeTransport transport = new FakeTransport(request -> response);
+		CieloEcommerce cieloEcommerce = transport.cieloEcommerce();
+
+		cieloEcommerce.setConcurrencyLimiter(new ConcurrencyLimiter().setLimits(1, 1, 1));
+
+		CompletableFuture<Sale> first = cieloEcommerce.querySaleAsync("p1");
+		CompletableFuture<Sale> second = cieloEcommerce.querySaleAsync("p2");
+
+		try {
+			second.get();
+			fail("The request should be rejected");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof LimitExceededException);
+		}
+
+		response.complete(FakeTransport.response(200, FakeTransport.sale("p1", 1)));
+
+		assertEquals("p1", first.get().getPayment().getPaymentId());
+		assertEquals(1, transport.getRequests().size());
+	}
+}
@@ -0,0 +1,265 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import junit.framework.TestCase;
+
+public class GzipInputStreamTest extends TestCase {
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+
+	private final InflaterPool pool = new InflaterPool(4);
+
+	public void testDecodesWhatGZIPOutputStreamWrites() throws IOException {
+		byte[] body = body(100000);
+
+		assertTrue(Arrays.equals(body, decode(gzip(body))));
+		assertEquals(0, decode(gzip(new byte[0])).length);
+	}
+
+	public void testDecodesAStreamArrivingAFewBytesAtATime() throws IOException {
+		byte[] body = body(20000);
+
+		for (int chunk : new int[] { 1, 3, 7, 8191 }) {
+			try (GzipInputStream in = new GzipInputStream(new Trickle(gzip(body), chunk), pool)) {
+				assertTrue(Arrays.equals(body, readAll(in)));
+			}
+		}
+	}
+
+	public void testSkipsEachOptionalHeaderField() throws IOException {
+		byte[] body = body(1000);
+
+		for (int flags : new int[] { FEXTRA, FNAME, FCOMMENT, FHCRC, FEXTRA | FNAME | FCOMMENT | FHCRC }) {
+			assertTrue("flags " + flags, Arrays.equals(body, decode(withHeaderFields(gzip(body), flags))));
+		}
+	}
+
+	public void testCorruptCrcIsRejected() throws IOException {
+		byte[] gzip = gzip(body(1000));
+
+		gzip[gzip.length - 8] ^= 1;
+
+		try {
+			decode(gzip);
+			fail("The CRC should be checked");
+		} catch (ZipException e) {
+			assertEquals("Corrupt GZIP trailer", e.getMessage());
+		}
+	}
+
+	public void testCorruptSizeIsRejected() throws IOException {
+		byte[] gzip = gzip(body(1000));
+
+		gzip[gzip.length - 4] ^= 1;
+
+		try {
+			decode(gzip);
+			fail("The size should be checked");
+		} catch (ZipException e) {
+			assertEquals("Corrupt GZIP trailer", e.getMessage());
+		}
+	}
+
+	public void testTruncatedStreamIsRejected() throws IOException {
+		byte[] gzip = gzip(body(1000));
+
+		// in the header, in the compressed data and in the trailer
+		for (int length : new int[] { 5, gzip.length / 2, gzip.length - 3 }) {
+			try {
+				decode(Arrays.copyOf(gzip, length));
+				fail("Truncated at " + length);
+			} catch (EOFException e) {
+				// expected
+			}
+		}
+	}
+
+	public void testConcatenatedMembersAreOneStream() throws IOException {
+		byte[] first = "first member, ".getBytes(StandardCharsets.UTF_8);
+		byte[] second = body(20000);
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+		expected.write(first);
+		expected.write(second);
+
+		assertTrue(Arrays.equals(expected.toByteArray(), decode(concat(gzip(first), gzip(second)))));
+	}
+
+	public void testTrailingGarbageIsIgnored() throws IOException {
+		byte[] body = body(1000);
+
+		assertTrue(Arrays.equals(body, decode(concat(gzip(body), new byte[] { 0, 0, 0, 0 }))));
+	}
+
+	public void testReadsSingleBytesAndSkips() throws IOException {
+		byte[] body = body(1000);
+
+		try (GzipInputStream in = new GzipInputStream(new ByteArrayInputStream(gzip(body)), pool)) {
+			assertEquals(body[0] & 0xff, in.read());
+			assertEquals(500, in.skip(500));
+			assertEquals(body[501] & 0xff, in.read());
+			assertEquals(498, in.skip(1000));
+			assertEquals(-1, in.read());
+		}
+	}
+
+	public void testEntryGoesBackToThePoolOnClose() throws IOException {
+		GzipInputStream in = new GzipInputStream(new ByteArrayInputStream(gzip(body(1000))), pool);
+
+		assertEquals(0, pool.getIdleCount());
+
+		in.read();
+		in.close();
+
+		assertEquals(1, pool.getIdleCount());
+
+		in.close();
+
+		assertEquals(1, pool.getIdleCount());
+
+		try {
+			in.read();
+			fail("The stream is closed");
+		} catch (IOException e) {
+			assertEquals("Stream closed", e.getMessage());
+		}
+
+		// the idle entry is reused
+		new GzipInputStream(new ByteArrayInputStream(gzip(body(10))), pool);
+
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	public void testEntryGoesBackToThePoolOnAFailedHeader() throws IOException {
+		try {
+			new GzipInputStream(new ByteArrayInputStream("{\"Code\":1}".getBytes(StandardCharsets.UTF_8)), pool);
+			fail("The header should be rejected");
+		} catch (ZipException e) {
+			assertEquals("Not in GZIP format", e.getMessage());
+		}
+
+		assertEquals(1, pool.getIdleCount());
+
+		try {
+			new GzipInputStream(new ByteArrayInputStream(new byte[] { 0x1f, (byte) 0x8b, 8 }), pool);
+			fail("The header is truncated");
+		} catch (EOFException e) {
+			// expected
+		}
+
+		assertEquals(1, pool.getIdleCount());
+	}
+
+	private byte[] decode(byte[] gzip) throws IOException {
+		try (GzipInputStream in = new GzipInputStream(new ByteArrayInputStream(gzip), pool)) {
+			return readAll(in);
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1000];
+		int read;
+
+		while ((read = in.read(buffer, 0, buffer.length)) >= 0) {
+			out.write(buffer, 0, read);
+		}
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * Compressible, like a JSON body, but not only one repeated byte
+	 */
+	private static byte[] body(int size) {
+		Random random = new Random(size);
+		byte[] body = new byte[size];
+
+		for (int i = 0; i < size; i++) {
+			body[i] = (byte) ('a' + random.nextInt(8));
+		}
+
+		return body;
+	}
+
+	private static byte[] gzip(byte[] body) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(body);
+		}
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * Add the optional header fields GZIPOutputStream never writes
+	 */
+	private static byte[] withHeaderFields(byte[] gzip, int flags) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		out.write(gzip, 0, 10);
+
+		if ((flags & FEXTRA) != 0) {
+			out.write(new byte[] { 5, 0, 'A', 'P', 1, 0, 42 });
+		}
+
+		if ((flags & FNAME) != 0) {
+			out.write("sale.json\0".getBytes(StandardCharsets.ISO_8859_1));
+		}
+
+		if ((flags & FCOMMENT) != 0) {
+			out.write("a comment\0".getBytes(StandardCharsets.ISO_8859_1));
+		}
+
+		if ((flags & FHCRC) != 0) {
+			out.write(new byte[] { 0x12, 0x34 });
+		}
+
+		out.write(gzip, 10, gzip.length - 10);
+
+		byte[] result = out.toByteArray();
+
+		result[3] = (byte) flags;
+
+		return result;
+	}
+
+	private static byte[] concat(byte[] first, byte[] second) {
+		byte[] result = Arrays.copyOf(first, first.length + second.length);
+
+		System.arraycopy(second, 0, result, first.length, second.length);
+
+		return result;
+	}
+
+	/**
+	 * Returns at most a few bytes per read, as a slow socket would
+	 */
+	private static class Trickle extends FilterInputStream {
+		private final int chunk;
+
+		Trickle(byte[] bytes, int chunk) {
+			super(new ByteArrayInputStream(bytes));
+			this.chunk = chunk;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return super.read(b, off, Math.min(len, chunk));
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import junit.framework.TestCase;
+
+public class HedgePolicyTest extends TestCase {
+	public void testNoHedgeUntilEnoughLatenciesAreKnown() throws Exception {
+		HedgePolicy policy = new HedgePolicy();
+
+		assertEquals(-1, policy.getDelay(TimeUnit.NANOSECONDS));
+
+		for (int i = 1; i < HedgePolicy.MIN_SAMPLES; i++) {
+			policy.executeAsync(() -> CompletableFuture.completedFuture("primary")).get();
+		}
+
+		assertEquals(-1, policy.getDelay(TimeUnit.NANOSECONDS));
+
+		policy.executeAsync(() -> CompletableFuture.completedFuture("primary")).get();
+
+		assertTrue(policy.getDelay(TimeUnit.NANOSECONDS) >= 0);
+		assertEquals(HedgePolicy.MIN_SAMPLES, policy.getRequestCount());
+		assertEquals(0, policy.getHedgeCount());
+	}
+
+	public void testHedgeWinsAndCancelsTheSlowRequest() throws Exception {
+		HedgePolicy policy = warm(new HedgePolicy().setMinDelay(1, TimeUnit.MILLISECONDS));
+		final CompletableFuture<String> primary = new CompletableFuture<String>();
+		final AtomicInteger sent = new AtomicInteger();
+
+		String response = policy.execute(
+				() -> sent.getAndIncrement() == 0 ? primary : CompletableFuture.completedFuture("hedge"));
+
+		assertEquals("hedge", response);
+		assertEquals(1, policy.getHedgeCount());
+
+		// both happen once the result is completed, possibly after execute returned
+		await(primary::isCancelled);
+		await(() -> policy.getHedgeWonCount() == 1);
+	}
+
+	public void testCieloErrorIsNotHedged() throws Exception {
+		HedgePolicy policy = warm(new HedgePolicy().setMinDelay(1, TimeUnit.SECONDS));
+		CompletableFuture<String> refused = new CompletableFuture<String>();
+
+		refused.completeExceptionally(new CieloRequestException("Not found", new CieloError(404, "Not found"), null));
+
+		try {
+			policy.execute(() -> refused);
+			fail("The error should be thrown");
+		} catch (CieloRequestException e) {
+			assertEquals(Integer.valueOf(404), e.getError().getCode());
+		}
+
+		assertEquals(0, policy.getHedgeCount());
+	}
+
+	public void testBudgetBoundsTheHedgesOfABrownout() throws Exception {
+		HedgePolicy policy = warm(new HedgePolicy(95, 0.05).setBudgetMax(2).setMinDelay(50, TimeUnit.MILLISECONDS));
+		List<CompletableFuture<String>> results = new ArrayList<CompletableFuture<String>>();
+
+		assertEquals(2.0, policy.getBudget(), 0);
+
+		// every request hangs, so each one would hedge without the budget
+		for (int i = 0; i < 20; i++) {
+			results.add(policy.executeAsync(() -> new CompletableFuture<String>()));
+		}
+
+		Thread.sleep(200);
+
+		assertEquals(2, policy.getHedgeCount());
+		assertEquals(0.0, policy.getBudget(), 0);
+
+		for (CompletableFuture<String> result : results) {
+			result.cancel(true);
+		}
+
+		// the budget refills with the requests sent, 5% of a hedge each
+		for (int i = 0; i < 20; i++) {
+			policy.executeAsync(() -> CompletableFuture.completedFuture("primary")).get();
+		}
+
+		assertEquals(1.0, policy.getBudget(), 0.001);
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.nanoTime() < deadline);
+			Thread.sleep(1);
+		}
+	}
+
+	private static HedgePolicy warm(HedgePolicy policy) throws Exception {
+		for (int i = 0; i < HedgePolicy.MIN_SAMPLES; i++) {
+			policy.executeAsync(() -> CompletableFuture.completedFuture("primary")).get();
+		}
+
+		return policy;
+	}
+}
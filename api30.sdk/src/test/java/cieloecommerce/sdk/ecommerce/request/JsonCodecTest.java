@@ -0,0 +1,189 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.annotations.SerializedName;
+
+import cieloecommerce.sdk.codegen.JsonModel;
+import cieloecommerce.sdk.ecommerce.CardToken;
+import cieloecommerce.sdk.ecommerce.Payment;
+import cieloecommerce.sdk.ecommerce.RecurrentPayment;
+import cieloecommerce.sdk.ecommerce.Sale;
+import junit.framework.TestCase;
+
+/**
+ * The generated adapters must encode and decode exactly as Gson's reflective
+ * adapter does
+ */
+public class JsonCodecTest extends TestCase {
+	private static final String SALE = "{\"MerchantOrderId\":\"2014111703\","
+			+ "\"Customer\":{\"Name\":\"Comprador Teste\",\"Email\":\"compradorteste@teste.com\","
+			+ "\"BirthDate\":\"1991-01-02\",\"Identity\":\"11225468954\",\"IdentityType\":\"CPF\","
+			+ "\"Address\":{\"Street\":\"Rua Teste\",\"Number\":\"123\",\"Complement\":\"AP 123\","
+			+ "\"ZipCode\":\"12345987\",\"City\":\"Rio de Janeiro\",\"State\":\"RJ\",\"Country\":\"BRA\"},"
+			+ "\"DeliveryAddress\":{\"Street\":\"Rua Entrega\",\"Number\":\"1\",\"City\":\"Sao Paulo\"}},"
+			+ "\"Payment\":{\"ServiceTaxAmount\":0,\"Installments\":1,\"Interest\":\"ByMerchant\","
+			+ "\"Capture\":true,\"Authenticate\":false,\"Recurrent\":true,"
+			+ "\"RecurrentPayment\":{\"authorizeNow\":true,\"endDate\":\"2019-12-01\",\"interval\":\"SemiAnnual\"},"
+			+ "\"CreditCard\":{\"CardNumber\":\"455187******0183\",\"Holder\":\"Teste Holder\","
+			+ "\"ExpirationDate\":\"12/2030\",\"SaveCard\":true,\"Brand\":\"Visa\","
+			+ "\"CardToken\":\"d37bf475-307d-47be-b50a-8dcc38c5056c\"},"
+			+ "\"Tid\":\"1223092935684\",\"ProofOfSale\":\"2935684\",\"AuthorizationCode\":\"065158\","
+			+ "\"SoftDescriptor\":\"Loja\",\"ReturnUrl\":\"http://www.cielo.com.br\",\"Provider\":\"Simulado\","
+			+ "\"PaymentId\":\"24bc8366-fc31-4d6c-8555-17049a836a07\",\"Type\":\"CreditCard\",\"Amount\":15700,"
+			+ "\"ReceiveDate\":\"2015-06-25 09:37:55\",\"CapturedAmount\":15700,"
+			+ "\"CapturedDate\":\"2015-06-25 09:37:56\",\"Currency\":\"BRL\",\"Country\":\"BRA\","
+			+ "\"ReturnCode\":\"6\",\"ReturnMessage\":\"Operation Successful\",\"Status\":2,"
+			+ "\"Links\":[{\"Method\":\"GET\",\"Rel\":\"self\","
+			+ "\"Href\":\"https://apiquerysandbox.cieloecommerce.cielo.com.br/1/sales/24bc8366\"}],"
+			+ "\"ExtraDataCollection\":[],\"ExpirationDate\":\"2015-06-30\",\"Url\":\"https://boleto\","
+			+ "\"Number\":\"123-2\",\"BarCodeNumber\":\"00096629900000015700\","
+			+ "\"DigitableLine\":\"00090.00005 00000.000005\",\"Address\":\"N/A, 1\"}}";
+
+	private static final String CARD_TOKEN = "{\"Brand\":\"Visa\",\"CardNumber\":\"455187******0183\","
+			+ "\"CardToken\":\"db62dc71-d07b-4745-9969-42697b988ccb\",\"CustomerName\":\"Comprador Teste\","
+			+ "\"ExpirationDate\":\"12/2030\",\"Holder\":\"Teste Holder\","
+			+ "\"Links\":{\"Method\":\"GET\",\"Rel\":\"self\",\"Href\":\"https://apiquery/1/card/db62dc71\"}}";
+
+	private final JsonCodec generated = JsonCodec.shared();
+	private final JsonCodec reflective = new JsonCodec(new Gson());
+
+	public void testSaleIsCodedAsGsonDoes() throws IOException {
+		Sale sale = generated.read(stream(SALE), Sale.class);
+
+		assertEquals("Loja", sale.getPayment().getSoftDescriptor());
+		assertEquals(Payment.Provider.Simulado, sale.getPayment().getProvider());
+		assertEquals(RecurrentPayment.Interval.SemiAnnual, sale.getPayment().getRecurrentPayment().getInterval());
+		assertTrue(sale.getPayment().getCreditCard().isSaveCard());
+		assertEquals("Sao Paulo", sale.getCustomer().getDeliveryAddress().getCity());
+		assertRoundTrip(SALE, Sale.class);
+	}
+
+	public void testCardTokenIsCodedAsGsonDoes() throws IOException {
+		assertEquals("db62dc71-d07b-4745-9969-42697b988ccb",
+				generated.read(stream(CARD_TOKEN), CardToken.class).getCardToken());
+		assertRoundTrip(CARD_TOKEN, CardToken.class);
+	}
+
+	public void testAbsentPropertiesKeepTheJvmDefaults() throws IOException {
+		String json = "{\"Payment\":{\"CreditCard\":{}}}";
+		Payment payment = generated.read(stream(json), Sale.class).getPayment();
+
+		// the "" of the sales created by the application isn't used
+		assertNull(payment.getSoftDescriptor());
+		assertFalse(payment.isCapture());
+		assertFalse(payment.getCreditCard().isSaveCard());
+		assertNull(payment.getStatus());
+		assertRoundTrip(json, Sale.class);
+		assertRoundTrip("{}", CardToken.class);
+	}
+
+	public void testNullsAreOmitted() throws IOException {
+		Sale sale = new Sale("order");
+
+		assertEquals("{\"MerchantOrderId\":\"order\"}", new String(generated.write(sale), JsonCodec.UTF_8));
+
+		sale.payment(15700).creditCard("123", "Visa");
+
+		assertEquals(new String(reflective.write(sale), JsonCodec.UTF_8),
+				new String(generated.write(sale), JsonCodec.UTF_8));
+		assertFalse(new String(generated.write(sale), JsonCodec.UTF_8).contains("null"));
+
+		// explicit nulls decode as absent properties
+		assertRoundTrip("{\"MerchantOrderId\":null,\"Customer\":null,\"Payment\":{\"Capture\":null,"
+				+ "\"Status\":null,\"Provider\":null,\"Links\":null,\"CreditCard\":null}}", Sale.class);
+	}
+
+	public void testEnumsUseTheirSerializedNames() throws IOException {
+		// the adapters generated for this package, from the test sources
+		Gson gson = new GsonBuilder().registerTypeAdapterFactory(new JsonModelAdapters()).create();
+		JsonCodec generated = new JsonCodec(gson);
+		Refund refund = new Refund();
+
+		assertTrue(gson.getAdapter(Refund.class).getClass().getSimpleName().endsWith("_JsonAdapter"));
+
+		refund.amount = 100;
+		refund.reason = Refund.Reason.FRAUD;
+
+		assertEquals("{\"Amount\":100,\"Partial\":true,\"Reason\":\"Fraude\"}",
+				new String(generated.write(refund), JsonCodec.UTF_8));
+
+		String json = "{\"Reason\":\"Fraude\",\"Amount\":100}";
+
+		assertEquals(Refund.Reason.FRAUD, generated.read(stream(json), Refund.class).reason);
+		// as with Gson, the initializer of an absent property is kept
+		assertTrue(generated.read(stream(json), Refund.class).partial);
+		assertEquals(Refund.Reason.DUPLICATE,
+				generated.read(stream("{\"Reason\":\"DUPLICATE\"}"), Refund.class).reason);
+		assertRoundTrip(generated, json, Refund.class);
+		assertRoundTrip(generated, "{\"Reason\":\"DUPLICATE\"}", Refund.class);
+
+		// the constant's name isn't accepted in place of its serialized name
+		assertNull(generated.read(stream("{\"Reason\":\"FRAUD\"}"), Refund.class).reason);
+		assertRoundTrip(generated, "{\"Reason\":\"FRAUD\"}", Refund.class);
+	}
+
+	public void testSubclassesFallBackToReflection() throws IOException {
+		TaggedSale sale = new TaggedSale();
+
+		sale.tag = "black friday";
+		sale.payment(15700).creditCard("123", "Visa").setCardNumber("4024007197692931");
+
+		String json = new String(generated.write(sale), JsonCodec.UTF_8);
+
+		assertTrue(json, json.contains("\"tag\":\"black friday\""));
+		assertEquals(new String(reflective.write(sale), JsonCodec.UTF_8), json);
+		assertEquals("black friday", generated.read(stream(json), TaggedSale.class).tag);
+		assertEquals("4024007197692931",
+				generated.read(stream(json), TaggedSale.class).getPayment().getCreditCard().getCardNumber());
+		assertRoundTrip(json, TaggedSale.class);
+	}
+
+	private void assertRoundTrip(String json, Class<?> classOf) throws IOException {
+		assertRoundTrip(generated, json, classOf);
+	}
+
+	/**
+	 * Decode the JSON with both codecs and check each encodes both objects to
+	 * the same JSON
+	 */
+	private void assertRoundTrip(JsonCodec generated, String json, Class<?> classOf) throws IOException {
+		Object expected = reflective.read(stream(json), classOf);
+		Object actual = generated.read(stream(json), classOf);
+		String reference = new String(reflective.write(expected), JsonCodec.UTF_8);
+
+		assertEquals(reference, new String(reflective.write(actual), JsonCodec.UTF_8));
+		assertEquals(reference, new String(generated.write(expected), JsonCodec.UTF_8));
+		assertEquals(reference, new String(generated.write(actual), JsonCodec.UTF_8));
+	}
+
+	private static ByteArrayInputStream stream(String json) {
+		return new ByteArrayInputStream(json.getBytes(JsonCodec.UTF_8));
+	}
+
+	@JsonModel
+	static class Refund {
+		@SerializedName("Amount")
+		Integer amount;
+		@SerializedName("Partial")
+		boolean partial = true;
+		@SerializedName("Reason")
+		Reason reason;
+
+		enum Reason {
+			@SerializedName("Fraude")
+			FRAUD, DUPLICATE
+		}
+	}
+
+	static class TaggedSale extends Sale {
+		String tag;
+
+		TaggedSale() {
+			super(null);
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.util.List;
+
+import cieloecommerce.sdk.Merchant;
+import cieloecommerce.sdk.ecommerce.CieloEcommerce;
+import cieloecommerce.sdk.ecommerce.FakeTransport;
+import cieloecommerce.sdk.transport.TransportRequest;
+import junit.framework.TestCase;
+
+public class MerchantHeadersTest extends TestCase {
+	public void testEachClientSendsTheHeadersOfItsMerchant() throws Exception {
+		FakeTransport transport = new FakeTransport(request -> FakeTransport.respond(200,
+				FakeTransport.sale(FakeTransport.paymentId(request), 1)));
+		CieloEcommerce first = transport.cieloEcommerce(new Merchant("merchant-1", "key-1"));
+		CieloEcommerce second = transport.cieloEcommerce(new Merchant("merchant-2", "key-2"));
+
+		for (int i = 0; i < 3; i++) {
+			first.querySale("p1");
+			second.querySale("p2");
+		}
+
+		List<TransportRequest> sent = transport.getRequests();
+
+		assertEquals(6, sent.size());
+
+		for (int i = 0; i < sent.size(); i++) {
+			String merchant = i % 2 == 0 ? "1" : "2";
+
+			assertEquals("merchant-" + merchant, sent.get(i).getFirstHeader("MerchantId"));
+			assertEquals("key-" + merchant, sent.get(i).getFirstHeader("MerchantKey"));
+			assertEquals("gzip", sent.get(i).getFirstHeader("Accept-Encoding"));
+			assertNotNull(sent.get(i).getFirstHeader("RequestId"));
+		}
+	}
+
+	public void testRequestOnItsOwnSendsTheHeadersOfItsMerchant() throws Exception {
+		QuerySaleRequest request = new QuerySaleRequest(new Merchant("merchant", "key"), null);
+		TransportRequest first = new TransportRequest("GET", FakeTransport.API_URL);
+		TransportRequest second = new TransportRequest("GET", FakeTransport.API_URL);
+
+		request.addHeaders(first, "r1");
+		request.addHeaders(second, "r2");
+
+		assertEquals("merchant", first.getFirstHeader("MerchantId"));
+		assertEquals("key", second.getFirstHeader("MerchantKey"));
+		assertEquals("r2", second.getFirstHeader("RequestId"));
+	}
+}
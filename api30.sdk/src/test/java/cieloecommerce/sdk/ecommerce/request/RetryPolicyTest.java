@@ -0,0 +1,104 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cieloecommerce.sdk.ecommerce.CieloEcommerce;
+import cieloecommerce.sdk.ecommerce.FakeTransport;
+import cieloecommerce.sdk.transport.TransportRequest;
+import junit.framework.TestCase;
+
+public class RetryPolicyTest extends TestCase {
+	public void testOnlyTransientFailuresAreRetried() {
+		RetryPolicy policy = new RetryPolicy().setBackoff(100, 100, TimeUnit.MILLISECONDS);
+
+		assertTrue(policy.delay(1, new IOException("Connection reset")) >= 0);
+		assertTrue(policy.delay(1, new CieloStatusException(503, "Service Unavailable", -1)) >= 0);
+		assertTrue(policy.delay(1, new CieloStatusException(429, "Too Many Requests", -1)) >= 0);
+		assertEquals(-1, policy.delay(1, new CieloStatusException(401, "Unauthorized", -1)));
+		assertEquals(-1, policy.delay(1, new CieloRequestException("Bad request", new CieloError(400, "Bad"), null)));
+		assertEquals(-1, policy.delay(RetryPolicy.DEFAULT_MAX_ATTEMPTS, new IOException("Connection reset")));
+	}
+
+	public void testBackoffIsJitteredUpToTheCeiling() {
+		RetryPolicy policy = new RetryPolicy().setBudget(1, 1000).setBackoff(100, 300, TimeUnit.MILLISECONDS)
+				.setMaxAttempts(10);
+
+		for (int i = 0; i < 100; i++) {
+			long delay = policy.delay(4, new IOException("Connection reset"));
+
+			assertTrue(delay >= 0 && delay <= TimeUnit.MILLISECONDS.toNanos(300));
+		}
+	}
+
+	public void testRetryAfterIsHonoredUpToTheMaximum() {
+		RetryPolicy policy = new RetryPolicy().setMaxRetryAfter(5, TimeUnit.SECONDS);
+
+		assertEquals(TimeUnit.SECONDS.toNanos(2), policy.delay(1, new CieloStatusException(503, null, 2000)));
+		assertEquals(-1, policy.delay(1, new CieloStatusException(503, null, 10000)));
+	}
+
+	public void testBudgetLimitsTheRetriesToAFractionOfTheRequests() {
+		RetryPolicy policy = new RetryPolicy().setBudget(0.1, 2);
+		IOException failure = new IOException("Connection reset");
+
+		assertTrue(policy.delay(1, failure) >= 0);
+		assertTrue(policy.delay(1, failure) >= 0);
+		assertEquals(-1, policy.delay(1, failure));
+		assertEquals(1, policy.getBudgetExhaustedCount());
+
+		for (int i = 0; i < 10; i++) {
+			policy.onRequest();
+		}
+
+		assertTrue(policy.delay(1, failure) >= 0);
+		assertEquals(-1, policy.delay(1, failure));
+		assertEquals(3, policy.getRetryCount());
+	}
+
+	public void testQueryIsRetriedWithTheSameRequestId() throws Exception {
+		final AtomicInteger attempts = new AtomicInteger();
+		FakeTransport transport = new FakeTransport(request -> attempts.incrementAndGet() == 1
+				? FakeTransport.respond(503, "") : FakeTransport.respond(200, FakeTransport.sale("p1", 1)));
+		CieloEcommerce cieloEcommerce = transport.cieloEcommerce();
+
+		cieloEcommerce.setRetryPolicy(new RetryPolicy().setBackoff(0, 0, TimeUnit.MILLISECONDS));
+
+		assertEquals("p1", cieloEcommerce.querySale("p1").getPayment().getPaymentId());
+
+		List<TransportRequest> sent = transport.getRequests();
+
+		assertEquals(2, sent.size());
+		assertEquals(sent.get(0).getFirstHeader("RequestId"), sent.get(1).getFirstHeader("RequestId"));
+	}
+
+	public void testWritesAreOnlyRetriedWhenOptedIn() throws Exception {
+		FakeTransport transport = new FakeTransport(request -> FakeTransport.respond(503, ""));
+		CieloEcommerce cieloEcommerce = transport.cieloEcommerce();
+		RetryPolicy policy = new RetryPolicy().setBackoff(0, 0, TimeUnit.MILLISECONDS);
+
+		cieloEcommerce.setRetryPolicy(policy);
+
+		try {
+			cieloEcommerce.captureSale("p1");
+			fail("The capture should fail");
+		} catch (CieloStatusException e) {
+			assertEquals(503, e.getStatusCode());
+		}
+
+		assertEquals(1, transport.getRequests().size());
+
+		policy.setRetryWrites(true);
+
+		try {
+			cieloEcommerce.captureSale("p1");
+			fail("The capture should fail");
+		} catch (CieloStatusException e) {
+			assertEquals(503, e.getStatusCode());
+		}
+
+		assertEquals(1 + RetryPolicy.DEFAULT_MAX_ATTEMPTS, transport.getRequests().size());
+	}
+}
@@ -0,0 +1,165 @@
+package cieloecommerce.sdk.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.BenchmarkList;
+import org.openjdk.jmh.runner.BenchmarkListEntry;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks selected on the command line, always with the GC
+ * profiler, and fails if any of them allocates more bytes per operation than
+ * allowed by allocation-budget.properties. A budget that matches no benchmark
+ * fails the run before any benchmark is run, so renaming or removing a
+ * benchmark can't leave a budget that is silently never checked.
+ * <p/>
+ * Accepts the same options as the JMH runner, e.g.
+ * {@code java -jar target/benchmarks.jar ResponseDecoding -rff result.json}.
+ */
+public final class BenchmarkRunner {
+	/**
+	 * The GC profiler's normalized allocation rate, in bytes per operation
+	 */
+	private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+	private BenchmarkRunner() {
+	}
+
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+
+		if (commandLine.shouldHelp() || commandLine.shouldList()) {
+			org.openjdk.jmh.Main.main(args);
+
+			return;
+		}
+
+		Properties budget = budget();
+		List<String> unknown = unknown(budget, benchmarks());
+
+		for (String message : unknown) {
+			System.err.println(message);
+		}
+
+		if (!unknown.isEmpty()) {
+			System.exit(1);
+		}
+
+		Options options = new OptionsBuilder()
+				.parent(commandLine)
+				.addProfiler(GCProfiler.class)
+				.resultFormat(commandLine.getResultFormat().orElse(ResultFormatType.JSON))
+				.build();
+		Collection<RunResult> results = new Runner(options).run();
+		List<String> exceeded = check(results, budget);
+
+		for (String message : exceeded) {
+			System.err.println(message);
+		}
+
+		if (!exceeded.isEmpty()) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Compare the allocation of each benchmark with its budget, keyed by
+	 * SimpleClassName.method; benchmarks without a budget aren't checked
+	 *
+	 * @return A message for each benchmark over its budget
+	 */
+	static List<String> check(Collection<RunResult> results, Properties budget) {
+		List<String> exceeded = new ArrayList<String>();
+
+		for (RunResult result : results) {
+			String key = key(result.getParams().getBenchmark());
+			String limit = budget.getProperty(key);
+			Result<?> allocation = result.getSecondaryResults().get(ALLOCATION);
+
+			if (limit == null || allocation == null) {
+				continue;
+			}
+
+			double bytes = allocation.getScore();
+
+			if (bytes > Double.parseDouble(limit)) {
+				exceeded.add(String.format("%s allocates %.0f bytes/op, over its budget of %s bytes/op", key, bytes,
+						limit));
+			}
+		}
+
+		return exceeded;
+	}
+
+	/**
+	 * Find the budget keys that match no benchmark of the jar
+	 *
+	 * @param benchmarks
+	 *            The SimpleClassName.method of each benchmark
+	 * @return A message for each budget without its benchmark
+	 */
+	static List<String> unknown(Properties budget, Set<String> benchmarks) {
+		List<String> unknown = new ArrayList<String>();
+
+		for (String key : new TreeSet<String>(budget.stringPropertyNames())) {
+			if (!benchmarks.contains(key)) {
+				unknown.add(String.format("%s has a budget in allocation-budget.properties but no benchmark", key));
+			}
+		}
+
+		return unknown;
+	}
+
+	/**
+	 * @return The SimpleClassName.method of the benchmarks listed in the jar
+	 */
+	private static Set<String> benchmarks() throws IOException {
+		Set<String> benchmarks = new HashSet<String>();
+
+		try (InputStream in = BenchmarkRunner.class.getResourceAsStream(BenchmarkList.BENCHMARK_LIST)) {
+			if (in != null) {
+				for (BenchmarkListEntry entry : BenchmarkList.readBenchmarkList(in)) {
+					benchmarks.add(key(entry.getUsername()));
+				}
+			}
+		}
+
+		return benchmarks;
+	}
+
+	/**
+	 * @return The SimpleClassName.method of the fully qualified benchmark
+	 */
+	private static String key(String benchmark) {
+		return benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+	}
+
+	private static Properties budget() throws IOException {
+		Properties budget = new Properties();
+
+		try (InputStream in = BenchmarkRunner.class.getResourceAsStream("/allocation-budget.properties")) {
+			if (in != null) {
+				budget.load(in);
+			}
+		}
+
+		return budget;
+	}
+}
@@ -0,0 +1,122 @@
+package cieloecommerce.sdk.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+import cieloecommerce.sdk.Environment;
+import cieloecommerce.sdk.Merchant;
+import cieloecommerce.sdk.ecommerce.Customer;
+import cieloecommerce.sdk.ecommerce.Payment;
+import cieloecommerce.sdk.ecommerce.Sale;
+
+/**
+ * The messages used by the benchmarks, close to what a shop sends and Cielo
+ * answers
+ */
+public final class Fixtures {
+	public static final Merchant MERCHANT = new Merchant("a3e57bb8-9f1d-4bc7-84e5-b0b2d1c0e5a7",
+			"QWERTYUIOPASDFGHJKLZXCVBNMQWERTYUIOPASDF");
+
+	/**
+	 * An environment that is never reached, for the benchmarks that don't
+	 * send anything
+	 */
+	public static final Environment UNREACHABLE = environment("http://127.0.0.1:9/");
+
+	private Fixtures() {
+	}
+
+	/**
+	 * @return A credit card sale with every field of the customer, addresses
+	 *         and card filled
+	 */
+	public static Sale sale() {
+		Sale sale = new Sale("2014111701");
+		Customer customer = sale.customer("Comprador crédito completo")
+				.setIdentity("CPF", "11225468954")
+				.setEmail("compradorteste@teste.com")
+				.setBirthDate("1991-01-02");
+
+		customer.address()
+				.setStreet("Rua Teste")
+				.setNumber("123")
+				.setComplement("AP 123")
+				.setZipCode("12345987")
+				.setCity("São Paulo")
+				.setState("SP")
+				.setCountry("BRA");
+		customer.deliveryAddress()
+				.setStreet("Rua Teste")
+				.setNumber("123")
+				.setComplement("AP 123")
+				.setZipCode("12345987")
+				.setCity("Rio de Janeiro")
+				.setState("RJ")
+				.setCountry("BRA");
+
+		Payment payment = sale.payment(15700, 1)
+				.setSoftDescriptor("123456789ABCD")
+				.setCurrency(Payment.Currency.BRL)
+				.setCountry("BRA")
+				.setInterest("ByMerchant")
+				.setCapture(false)
+				.setAuthenticate(false);
+
+		payment.creditCard("123", "Visa")
+				.setCardNumber("4551870000000183")
+				.setHolder("Teste Holder")
+				.setExpirationDate("12/2030")
+				.setSaveCard(false);
+
+		return sale;
+	}
+
+	/**
+	 * @return An environment whose both URLs are the given one
+	 */
+	public static Environment environment(final String url) {
+		return new Environment() {
+			@Override
+			public String getApiUrl() {
+				return url;
+			}
+
+			@Override
+			public String getApiQueryURL() {
+				return url;
+			}
+		};
+	}
+
+	/**
+	 * @param name
+	 *            sale.json, card-token.json or errors.json
+	 * @return The response body
+	 */
+	public static byte[] response(String name) {
+		try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+			if (in == null) {
+				throw new IllegalArgumentException("No fixture " + name);
+			}
+
+			return in.readAllBytes();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public static byte[] gzip(byte[] content) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+			out.write(content);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,117 @@
+package cieloecommerce.sdk.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import cieloecommerce.sdk.Environment;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * In-process server, on Jetty, that speaks both HTTP/1.1 and cleartext
+ * HTTP/2 (h2c, upgraded from HTTP/1.1) on the same port, and answers every
+ * request as {@link StubServer} does. It counts the connections the clients
+ * open.
+ */
+public final class Http2StubServer implements AutoCloseable {
+	private final Server server;
+	private final ServerConnector connector;
+	private final byte[] sale = Fixtures.response("sale.json");
+	private final long latency;
+	private final Set<EndPoint> endPoints = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * @param latency
+	 *            How long, in milliseconds, each response is held
+	 */
+	public Http2StubServer(long latency) throws Exception {
+		this.latency = latency;
+
+		HttpConfiguration configuration = new HttpConfiguration();
+
+		server = new Server();
+		connector = new ServerConnector(server, new HttpConnectionFactory(configuration),
+				new HTTP2CServerConnectionFactory(configuration));
+		connector.setHost("127.0.0.1");
+		connector.addBean(new Connection.Listener() {
+			@Override
+			public void onOpened(Connection connection) {
+				endPoints.add(connection.getEndPoint());
+			}
+
+			@Override
+			public void onClosed(Connection connection) {
+			}
+		});
+
+		server.addConnector(connector);
+		server.setHandler(new AbstractHandler() {
+			@Override
+			public void handle(String target, Request baseRequest, HttpServletRequest request,
+					HttpServletResponse response) throws IOException {
+				Http2StubServer.this.handle(request, response);
+				baseRequest.setHandled(true);
+			}
+		});
+		server.start();
+	}
+
+	/**
+	 * @return The environment whose both URLs point to this server
+	 */
+	public Environment getEnvironment() {
+		return Fixtures.environment("http://127.0.0.1:" + connector.getLocalPort() + "/");
+	}
+
+	/**
+	 * @return How many TCP connections were opened since the server started;
+	 *         a connection upgraded to HTTP/2 counts once
+	 */
+	public int getOpenedConnections() {
+		return endPoints.size();
+	}
+
+	/**
+	 * @return How many TCP connections are open now
+	 */
+	public int getOpenConnections() {
+		return connector.getConnectedEndPoints().size();
+	}
+
+	private void handle(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		try (InputStream in = request.getInputStream()) {
+			in.readAllBytes();
+		}
+
+		if (latency > 0) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(latency);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		response.setStatus("POST".equals(request.getMethod()) ? 201 : 200);
+		response.setContentType("application/json; charset=utf-8");
+		response.setContentLength(sale.length);
+		response.getOutputStream().write(sale);
+	}
+
+	@Override
+	public void close() throws Exception {
+		server.stop();
+	}
+}
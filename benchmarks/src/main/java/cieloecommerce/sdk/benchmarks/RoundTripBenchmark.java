@@ -0,0 +1,71 @@
+package cieloecommerce.sdk.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cieloecommerce.sdk.Environment;
+import cieloecommerce.sdk.ecommerce.Sale;
+import cieloecommerce.sdk.ecommerce.request.CieloRequestException;
+import cieloecommerce.sdk.ecommerce.request.ConnectionPool;
+import cieloecommerce.sdk.ecommerce.request.CreateSaleRequest;
+
+/**
+ * A whole createSale, from the Sale to the decoded response, against the
+ * in-process stub over a kept-alive loopback connection
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+	private final Sale sale = Fixtures.sale();
+	private StubServer server;
+	private Environment environment;
+	private ConnectionPool connectionPool;
+
+	@Setup(Level.Trial)
+	public void start() throws IOException {
+		server = new StubServer(0);
+		environment = server.getEnvironment();
+		connectionPool = new ConnectionPool();
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() throws IOException {
+		connectionPool.close();
+		server.close();
+	}
+
+	@Benchmark
+	public Sale createSale() throws IOException, CieloRequestException {
+		return request().execute(sale);
+	}
+
+	@Benchmark
+	public Sale createSaleAsync() {
+		return request().executeAsync(sale).join();
+	}
+
+	private CreateSaleRequest request() {
+		CreateSaleRequest request = new CreateSaleRequest(Fixtures.MERCHANT, environment);
+
+		request.setConnectionPool(connectionPool);
+
+		return request;
+	}
+}
@@ -0,0 +1,90 @@
+package cieloecommerce.sdk.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import cieloecommerce.sdk.Environment;
+
+/**
+ * In-process HTTP server that answers every request as Cielo answers a
+ * created sale, optionally after a fixed delay standing for the network and
+ * Cielo's own latency
+ */
+public final class StubServer implements AutoCloseable {
+	static {
+		// Without it, the responses written in two segments wait for the
+		// delayed ACK of the client, some 40ms each
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final byte[] sale = Fixtures.response("sale.json");
+	private final long latency;
+
+	/**
+	 * @param latency
+	 *            How long, in milliseconds, each response is held
+	 */
+	public StubServer(long latency) throws IOException {
+		this.latency = latency;
+
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+		executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "stub-server");
+
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+		server.start();
+	}
+
+	/**
+	 * @return The environment whose both URLs point to this server
+	 */
+	public Environment getEnvironment() {
+		return Fixtures.environment("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (InputStream in = exchange.getRequestBody()) {
+			in.readAllBytes();
+		}
+
+		if (latency > 0) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(latency);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		int status = "POST".equals(exchange.getRequestMethod()) ? 201 : 200;
+
+		exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, sale.length);
+
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(sale);
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+}
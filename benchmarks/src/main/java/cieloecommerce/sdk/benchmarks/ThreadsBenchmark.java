@@ -0,0 +1,125 @@
+package cieloecommerce.sdk.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cieloecommerce.sdk.Environment;
+import cieloecommerce.sdk.ecommerce.Sale;
+import cieloecommerce.sdk.ecommerce.request.ConnectionPool;
+import cieloecommerce.sdk.ecommerce.request.CreateSaleRequest;
+import cieloecommerce.sdk.ecommerce.request.JdkHttpTransport;
+import cieloecommerce.sdk.transport.Transport;
+
+/**
+ * Throughput of the blocking createSale run on a pool of platform threads
+ * against one virtual thread per request, with the stub holding each
+ * response as long as a real round trip to Cielo. Both run through the same
+ * transport, so only the threads differ: the pooled Apache client, which pins
+ * the carriers of the virtual threads while leasing a connection, or the JDK
+ * client.
+ * <p/>
+ * The virtual threads need JDK 21; on older JDKs that half of the benchmark
+ * fails on setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ThreadsBenchmark {
+	private static final int REQUESTS = 1000;
+
+	/**
+	 * The size of the platform thread pool, a common choice for servlet
+	 * containers
+	 */
+	private static final int PLATFORM_THREADS = 200;
+
+	@Param({ "platform", "virtual" })
+	public String threads;
+
+	@Param({ "apache", "jdk" })
+	public String transport;
+
+	@Param({ "20" })
+	public long latency;
+
+	private final Sale sale = Fixtures.sale();
+	private StubServer server;
+	private Environment environment;
+	private ConnectionPool connectionPool;
+	private Transport jdkTransport;
+	private ExecutorService executor;
+
+	@Setup(Level.Trial)
+	public void start() throws Exception {
+		server = new StubServer(latency);
+		environment = server.getEnvironment();
+		connectionPool = new ConnectionPool(REQUESTS, REQUESTS, ConnectionPool.DEFAULT_KEEP_ALIVE,
+				ConnectionPool.DEFAULT_MAX_IDLE_TIME);
+
+		if ("jdk".equals(transport)) {
+			jdkTransport = new JdkHttpTransport();
+		}
+
+		if ("virtual".equals(threads)) {
+			executor = virtualThreadPerTaskExecutor();
+		} else {
+			executor = Executors.newFixedThreadPool(PLATFORM_THREADS);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() throws IOException {
+		executor.shutdownNow();
+		connectionPool.close();
+		server.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(REQUESTS)
+	public void createSale() {
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[REQUESTS];
+
+		for (int i = 0; i < REQUESTS; i++) {
+			CreateSaleRequest request = new CreateSaleRequest(Fixtures.MERCHANT, environment);
+
+			request.setConnectionPool(connectionPool);
+			request.setTransport(jdkTransport);
+			futures[i] = request.executeAsync(sale, executor);
+		}
+
+		CompletableFuture.allOf(futures).join();
+	}
+
+	/**
+	 * Executors.newVirtualThreadPerTaskExecutor, looked up at run time so the
+	 * benchmarks still build for Java 11
+	 */
+	private static ExecutorService virtualThreadPerTaskExecutor() throws Exception {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException("Virtual threads need JDK 21 or newer", e);
+		}
+	}
+}
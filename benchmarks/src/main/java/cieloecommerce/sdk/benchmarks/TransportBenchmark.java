@@ -0,0 +1,94 @@
+package cieloecommerce.sdk.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cieloecommerce.sdk.ecommerce.CieloEcommerce;
+import cieloecommerce.sdk.ecommerce.Sale;
+import cieloecommerce.sdk.ecommerce.request.CieloRequestException;
+import cieloecommerce.sdk.ecommerce.request.ConnectionPool;
+import cieloecommerce.sdk.ecommerce.request.JdkHttpTransport;
+
+/**
+ * Many concurrent querySale and createSale calls, through the Apache
+ * transport (HTTP/1.1, a pooled connection per request in flight) and the JDK
+ * one (HTTP/2, the requests multiplexed over a connection), against
+ * {@link Http2StubServer}. The latency percentiles, p99 included, come from
+ * the sample mode; the connections each transport opened are printed when the
+ * trial ends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Threads(64)
+@Fork(1)
+public class TransportBenchmark {
+	/**
+	 * How long, in milliseconds, the stub holds each response
+	 */
+	private static final long LATENCY = 10;
+
+	@Param({ "apache", "jdk" })
+	public String transport;
+
+	private final Sale sale = Fixtures.sale();
+	private Http2StubServer server;
+	private ConnectionPool connectionPool;
+	private CieloEcommerce cieloEcommerce;
+
+	@Setup(Level.Trial)
+	public void start() throws Exception {
+		server = new Http2StubServer(LATENCY);
+		cieloEcommerce = new CieloEcommerce(Fixtures.MERCHANT, server.getEnvironment());
+
+		if ("jdk".equals(transport)) {
+			cieloEcommerce.setTransport(new JdkHttpTransport());
+		} else {
+			connectionPool = new ConnectionPool();
+			cieloEcommerce.setConnectionPool(connectionPool);
+		}
+
+		// A first request alone, so the upgrade to HTTP/2 is done before the
+		// concurrent ones start
+		cieloEcommerce.querySale("24bc8366-fc31-4d6c-8555-17049a836a07");
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() throws Exception {
+		System.out.printf("%n%s transport: %d connections opened, %d open%n", transport,
+				server.getOpenedConnections(), server.getOpenConnections());
+
+		if (connectionPool != null) {
+			connectionPool.close();
+		}
+
+		server.close();
+	}
+
+	@Benchmark
+	public Sale querySale() throws IOException, CieloRequestException {
+		return cieloEcommerce.querySale("24bc8366-fc31-4d6c-8555-17049a836a07");
+	}
+
+	@Benchmark
+	public Sale createSale() throws IOException, CieloRequestException {
+		return cieloEcommerce.createSale(sale);
+	}
+}
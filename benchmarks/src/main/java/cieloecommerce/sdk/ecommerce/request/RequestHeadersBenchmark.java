@@ -0,0 +1,93 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cieloecommerce.sdk.benchmarks.Fixtures;
+import cieloecommerce.sdk.ecommerce.Sale;
+import cieloecommerce.sdk.transport.TransportRequest;
+
+/**
+ * What sendRequest does before handing the request to the transport: the
+ * RequestId, the headers and the whole request of a sale and of a capture.
+ * The contended benchmarks run on every core, as a busy shop does, and
+ * randomUuid is the RequestIdGenerator.RANDOM_UUID baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestHeadersBenchmark {
+	private final CreateSaleRequest request = new CreateSaleRequest(Fixtures.MERCHANT, Fixtures.UNREACHABLE);
+	private final UpdateSaleRequest capture = new UpdateSaleRequest("capture", Fixtures.MERCHANT,
+			Fixtures.UNREACHABLE);
+	private final String url = Fixtures.UNREACHABLE.getApiUrl() + "1/sales/";
+	private final Sale sale = Fixtures.sale();
+
+	public RequestHeadersBenchmark() {
+		capture.setAmount(15700);
+		capture.setServiceTaxAmount(0);
+	}
+
+	@Benchmark
+	public String requestId() {
+		return request.requestId();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public String requestIdContended() {
+		return request.requestId();
+	}
+
+	@Benchmark
+	public String randomUuid() {
+		return RequestIdGenerator.RANDOM_UUID.next();
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public String randomUuidContended() {
+		return RequestIdGenerator.RANDOM_UUID.next();
+	}
+
+	@Benchmark
+	public TransportRequest headers() {
+		TransportRequest post = new TransportRequest("POST", url);
+
+		request.addHeaders(post, request.requestId());
+
+		return post;
+	}
+
+	@Benchmark
+	public TransportRequest createSaleRequest() throws IOException {
+		TransportRequest post = request.createRequest(sale);
+
+		request.addHeaders(post, request.requestId());
+
+		return post;
+	}
+
+	@Benchmark
+	public TransportRequest captureRequest() throws IOException {
+		TransportRequest put = capture.createRequest("24bc8366-fc31-4d6c-8555-17049a836a07");
+
+		capture.addHeaders(put, capture.requestId());
+
+		return put;
+	}
+}
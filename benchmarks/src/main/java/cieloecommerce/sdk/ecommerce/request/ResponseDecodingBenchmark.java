@@ -0,0 +1,136 @@
+package cieloecommerce.sdk.ecommerce.request;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+
+import cieloecommerce.sdk.benchmarks.Fixtures;
+import cieloecommerce.sdk.ecommerce.CardToken;
+import cieloecommerce.sdk.ecommerce.Sale;
+import cieloecommerce.sdk.transport.TransportResponse;
+
+/**
+ * Decoding of the responses sent by Cielo, plain and gzipped, through
+ * readResponse; it lives in the request package to reach it.
+ * <p/>
+ * saleViaString is the decoding done before the responses were streamed: the
+ * body read line by line into a String handed to a new Gson.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseDecodingBenchmark {
+	private CreateSaleRequest saleRequest;
+	private CreateCartTokenRequest cardTokenRequest;
+	private Attempt attempt;
+	private TransportResponse sale;
+	private TransportResponse saleGzip;
+	private TransportResponse cardToken;
+	private TransportResponse cardTokenGzip;
+	private TransportResponse errors;
+	private TransportResponse errorsGzip;
+
+	@Setup
+	public void setUp() throws CieloRequestException {
+		saleRequest = new CreateSaleRequest(Fixtures.MERCHANT, Fixtures.UNREACHABLE);
+		cardTokenRequest = new CreateCartTokenRequest(Fixtures.MERCHANT, Fixtures.UNREACHABLE);
+		attempt = Attempt.begin(saleRequest, "benchmark", 1);
+
+		sale = response(201, "sale.json", false);
+		saleGzip = response(201, "sale.json", true);
+		cardToken = response(201, "card-token.json", false);
+		cardTokenGzip = response(201, "card-token.json", true);
+		errors = response(400, "errors.json", false);
+		errorsGzip = response(400, "errors.json", true);
+	}
+
+	@Benchmark
+	public Sale sale() throws IOException, CieloRequestException {
+		return saleRequest.readResponse(sale, Sale.class, attempt);
+	}
+
+	@Benchmark
+	public Sale saleGzip() throws IOException, CieloRequestException {
+		return saleRequest.readResponse(saleGzip, Sale.class, attempt);
+	}
+
+	@Benchmark
+	public CardToken cardToken() throws IOException, CieloRequestException {
+		return cardTokenRequest.readResponse(cardToken, CardToken.class, attempt);
+	}
+
+	@Benchmark
+	public CardToken cardTokenGzip() throws IOException, CieloRequestException {
+		return cardTokenRequest.readResponse(cardTokenGzip, CardToken.class, attempt);
+	}
+
+	@Benchmark
+	public CieloRequestException errors() throws IOException {
+		return decodeErrors(errors);
+	}
+
+	@Benchmark
+	public CieloRequestException errorsGzip() throws IOException {
+		return decodeErrors(errorsGzip);
+	}
+
+	@Benchmark
+	public Sale saleViaString() throws IOException {
+		InputStream content = new GZIPInputStream(saleGzip.getBody());
+		BufferedReader reader = new BufferedReader(new InputStreamReader(content));
+		StringBuilder builder = new StringBuilder();
+		String line;
+
+		while ((line = reader.readLine()) != null) {
+			builder.append(line);
+		}
+
+		return new Gson().fromJson(builder.toString(), Sale.class);
+	}
+
+	private CieloRequestException decodeErrors(TransportResponse response) throws IOException {
+		try {
+			saleRequest.readResponse(response, Sale.class, attempt);
+		} catch (CieloRequestException e) {
+			return e;
+		}
+
+		throw new IllegalStateException("The errors were decoded as a sale");
+	}
+
+	private static TransportResponse response(int statusCode, String fixture, boolean gzip) {
+		byte[] content = Fixtures.response(fixture);
+		BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, null);
+
+		if (gzip) {
+			content = Fixtures.gzip(content);
+			response.addHeader("Content-Encoding", "gzip");
+		}
+
+		response.setEntity(new ByteArrayEntity(content));
+
+		return new ApacheTransport.ApacheResponse(response);
+	}
+}
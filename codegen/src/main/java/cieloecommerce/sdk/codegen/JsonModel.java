@@ -0,0 +1,21 @@
+package cieloecommerce.sdk.codegen;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a model class whose Gson type adapter is generated at build time.
+ * <p/>
+ * The generated adapter reads and writes the fields directly, following the
+ * same rules Gson uses by reflection: {@code @SerializedName} names, static
+ * and transient fields skipped and null values omitted. So the fields must
+ * not be private and the class must have a non-private no-arg constructor.
+ *
+ * @see JsonModelProcessor
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface JsonModel {
+}
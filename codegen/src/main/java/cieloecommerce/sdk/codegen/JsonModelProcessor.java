@@ -0,0 +1,588 @@
+package cieloecommerce.sdk.codegen;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates, for each {@link JsonModel} class, a reflection-free Gson
+ * {@code TypeAdapter} on the same package, plus a
+ * {@code JsonModelAdapters} factory per package that registers them.
+ * <p/>
+ * The factory only matches the exact annotated classes, so subclasses of the
+ * models are still handled by Gson's reflective adapter.
+ * <p/>
+ * The adapters create the model with its no-arg constructor, as Gson's
+ * reflective adapter does, so the properties absent from the JSON keep the
+ * values the constructor and the field initializers set.
+ */
+@SupportedAnnotationTypes("cieloecommerce.sdk.codegen.JsonModel")
+public class JsonModelProcessor extends AbstractProcessor {
+	static final String FACTORY_NAME = "JsonModelAdapters";
+	static final String ADAPTER_SUFFIX = "_JsonAdapter";
+
+	private static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+
+	private final Set<String> generatedPackages = new HashSet<String>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		Map<String, List<TypeElement>> models = new LinkedHashMap<String, List<TypeElement>>();
+
+		for (Element element : roundEnv.getElementsAnnotatedWith(JsonModel.class)) {
+			if (element.getKind() != ElementKind.CLASS) {
+				error(element, "@JsonModel is only allowed on classes");
+				continue;
+			}
+
+			String packageName = packageOf(element).getQualifiedName().toString();
+			List<TypeElement> types = models.get(packageName);
+
+			if (types == null) {
+				types = new ArrayList<TypeElement>();
+				models.put(packageName, types);
+			}
+
+			types.add((TypeElement) element);
+		}
+
+		for (Map.Entry<String, List<TypeElement>> entry : models.entrySet()) {
+			String packageName = entry.getKey();
+
+			if (!generatedPackages.add(packageName)) {
+				error(entry.getValue().get(0), "@JsonModel classes of " + packageName + " must be compiled together");
+				continue;
+			}
+
+			List<TypeElement> generated = new ArrayList<TypeElement>();
+
+			for (TypeElement type : entry.getValue()) {
+				List<Property> properties = properties(type);
+
+				if (properties != null && write(type, adapterSource(packageName, type, properties),
+						packageName + "." + adapterName(type))) {
+					generated.add(type);
+				}
+			}
+
+			write(null, factorySource(packageName, generated), packageName + "." + FACTORY_NAME);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Collect the fields Gson would serialize, checking they can be accessed
+	 * from the generated adapter
+	 */
+	private List<Property> properties(TypeElement type) {
+		boolean valid = true;
+
+		if (type.getModifiers().contains(Modifier.ABSTRACT) || type.getModifiers().contains(Modifier.PRIVATE)
+				|| (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC))) {
+			error(type, "@JsonModel classes must be concrete, non-private and static when nested");
+			valid = false;
+		}
+
+		if (!hasNoArgConstructor(type)) {
+			error(type, "@JsonModel classes must have a non-private no-arg constructor");
+			valid = false;
+		}
+
+		List<Property> properties = new ArrayList<Property>();
+		Set<String> names = new HashSet<String>();
+		TypeElement current = type;
+
+		while (current != null && !current.getQualifiedName().contentEquals("java.lang.Object")) {
+			for (Element member : current.getEnclosedElements()) {
+				if (member.getKind() != ElementKind.FIELD || member.getModifiers().contains(Modifier.STATIC)
+						|| member.getModifiers().contains(Modifier.TRANSIENT)) {
+					continue;
+				}
+
+				VariableElement field = (VariableElement) member;
+
+				if (field.getModifiers().contains(Modifier.PRIVATE) || field.getModifiers().contains(Modifier.FINAL)
+						|| !packageOf(current).equals(packageOf(type))) {
+					error(field, "@JsonModel fields must be non-private, non-final and on the same package");
+					valid = false;
+					continue;
+				}
+
+				Property property = new Property(field.getSimpleName().toString(), jsonName(field), field.asType());
+
+				if (!names.add(property.jsonName)) {
+					error(field, "Duplicated JSON name " + property.jsonName);
+					valid = false;
+				}
+
+				properties.add(property);
+			}
+
+			TypeMirror superclass = current.getSuperclass();
+
+			current = superclass.getKind() == TypeKind.DECLARED
+					? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+		}
+
+		return valid ? properties : null;
+	}
+
+	private String adapterSource(String packageName, TypeElement type, List<Property> properties) {
+		String modelName = type.getQualifiedName().toString();
+		String adapterName = adapterName(type);
+		StringBuilder source = new StringBuilder();
+
+		source.append("package ").append(packageName).append(";\n\n");
+		source.append("import java.io.IOException;\n\n");
+		source.append("import com.google.gson.Gson;\n");
+		source.append("import com.google.gson.TypeAdapter;\n");
+		source.append("import com.google.gson.stream.JsonReader;\n");
+		source.append("import com.google.gson.stream.JsonToken;\n");
+		source.append("import com.google.gson.stream.JsonWriter;\n\n");
+		source.append("/**\n * Generated by JsonModelProcessor from {@link ").append(modelName)
+				.append("}; do not edit.\n */\n");
+		source.append("final class ").append(adapterName).append(" extends TypeAdapter<").append(modelName)
+				.append("> {\n");
+		source.append("\tprivate final Gson gson;\n");
+
+		for (Property property : properties) {
+			if (property.kind() == Kind.DELEGATE) {
+				source.append("\tprivate final TypeAdapter<").append(boxed(property.type)).append("> ")
+						.append(property.name).append("Adapter;\n");
+			}
+		}
+
+		source.append("\n\t").append(adapterName).append("(Gson gson) {\n");
+		source.append("\t\tthis.gson = gson;\n");
+
+		for (Property property : properties) {
+			if (property.kind() == Kind.DELEGATE) {
+				source.append("\t\tthis.").append(property.name).append("Adapter = gson.getAdapter(")
+						.append(typeToken(property.type)).append(");\n");
+			}
+		}
+
+		source.append("\t}\n\n");
+
+		source.append("\t@Override\n");
+		source.append("\tpublic void write(JsonWriter out, ").append(modelName)
+				.append(" value) throws IOException {\n");
+		source.append("\t\tif (value == null) {\n\t\t\tout.nullValue();\n\t\t\treturn;\n\t\t}\n\n");
+		source.append("\t\tout.beginObject();\n");
+
+		for (Property property : properties) {
+			String field = "value." + property.name;
+
+			source.append("\t\tout.name(\"").append(escape(property.jsonName)).append("\");\n");
+
+			switch (property.kind()) {
+			case STRING:
+			case NUMBER:
+				source.append("\t\tout.value(").append(field).append(");\n");
+				break;
+			case BOOLEAN:
+				if (property.type.getKind().isPrimitive()) {
+					source.append("\t\tout.value(").append(field).append(");\n");
+				} else {
+					source.append("\t\t").append(FACTORY_NAME).append(".writeBoolean(out, ").append(field)
+							.append(");\n");
+				}
+				break;
+			case ENUM:
+				source.append("\t\tout.value(").append(field).append(" == null ? null : ")
+						.append(enumMethod("name", property.type)).append("(").append(field).append("));\n");
+				break;
+			case DELEGATE:
+				if (isPolymorphic(property.type)) {
+					source.append("\t\tif (").append(field).append(" != null && ").append(field)
+							.append(".getClass() != ").append(erasure(property.type)).append(".class) {\n");
+					source.append("\t\t\t").append(FACTORY_NAME).append(".writeRuntimeType(gson, out, ")
+							.append(field).append(");\n");
+					source.append("\t\t} else {\n\t\t\t").append(property.name).append("Adapter.write(out, ")
+							.append(field).append(");\n\t\t}\n");
+				} else {
+					source.append("\t\t").append(property.name).append("Adapter.write(out, ").append(field)
+							.append(");\n");
+				}
+				break;
+			}
+		}
+
+		source.append("\t\tout.endObject();\n");
+		source.append("\t}\n\n");
+
+		source.append("\t@Override\n");
+		source.append("\tpublic ").append(modelName).append(" read(JsonReader in) throws IOException {\n");
+		source.append("\t\tif (in.peek() == JsonToken.NULL) {\n\t\t\tin.nextNull();\n\t\t\treturn null;\n\t\t}\n\n");
+		source.append("\t\t").append(modelName).append(" value = new ").append(modelName).append("();\n\n");
+		source.append("\t\tin.beginObject();\n\n");
+		source.append("\t\twhile (in.hasNext()) {\n");
+		source.append("\t\t\tswitch (in.nextName()) {\n");
+
+		for (Property property : properties) {
+			String field = "value." + property.name;
+			boolean primitive = property.type.getKind().isPrimitive();
+
+			source.append("\t\t\tcase \"").append(escape(property.jsonName)).append("\":\n");
+
+			switch (property.kind()) {
+			case STRING:
+				source.append("\t\t\t\t").append(field).append(" = ").append(FACTORY_NAME)
+						.append(".readString(in);\n");
+				break;
+			case NUMBER:
+			case BOOLEAN:
+				String read = FACTORY_NAME + ".read" + simpleName(boxed(property.type)) + "(in)";
+
+				if (primitive) {
+					source.append("\t\t\t\tif (in.peek() == JsonToken.NULL) {\n\t\t\t\t\tin.nextNull();\n");
+					source.append("\t\t\t\t} else {\n\t\t\t\t\t").append(field).append(" = ").append(read)
+							.append(";\n\t\t\t\t}\n");
+				} else {
+					source.append("\t\t\t\t").append(field).append(" = ").append(read).append(";\n");
+				}
+				break;
+			case ENUM:
+				source.append("\t\t\t\t").append(field).append(" = ").append(enumMethod("read", property.type))
+						.append("(").append(FACTORY_NAME).append(".readString(in));\n");
+				break;
+			case DELEGATE:
+				if (primitive) {
+					source.append("\t\t\t\tif (in.peek() == JsonToken.NULL) {\n\t\t\t\t\tin.nextNull();\n");
+					source.append("\t\t\t\t} else {\n\t\t\t\t\t").append(field).append(" = ").append(property.name)
+							.append("Adapter.read(in);\n\t\t\t\t}\n");
+				} else {
+					source.append("\t\t\t\t").append(field).append(" = ").append(property.name)
+							.append("Adapter.read(in);\n");
+				}
+				break;
+			}
+
+			source.append("\t\t\t\tbreak;\n");
+		}
+
+		source.append("\t\t\tdefault:\n\t\t\t\tin.skipValue();\n\t\t\t}\n\t\t}\n\n");
+		source.append("\t\tin.endObject();\n\n");
+		source.append("\t\treturn value;\n");
+		source.append("\t}\n");
+
+		Set<String> enums = new HashSet<String>();
+
+		for (Property property : properties) {
+			if (property.kind() == Kind.ENUM && enums.add(property.type.toString())) {
+				enumMethods(source, property.type);
+			}
+		}
+
+		source.append("}\n");
+
+		return source.toString();
+	}
+
+	/**
+	 * Enum constants are mapped with switches instead of Enum.valueOf, honoring
+	 * {@code @SerializedName} on the constants as Gson does
+	 */
+	private void enumMethods(StringBuilder source, TypeMirror type) {
+		String enumName = erasure(type);
+		TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+		List<VariableElement> constants = new ArrayList<VariableElement>();
+
+		for (Element member : element.getEnclosedElements()) {
+			if (member.getKind() == ElementKind.ENUM_CONSTANT) {
+				constants.add((VariableElement) member);
+			}
+		}
+
+		source.append("\n\tprivate static String ").append(enumMethod("name", type)).append("(").append(enumName)
+				.append(" value) {\n");
+		source.append("\t\tswitch (value) {\n");
+
+		for (VariableElement constant : constants) {
+			source.append("\t\tcase ").append(constant.getSimpleName()).append(":\n");
+			source.append("\t\t\treturn \"").append(escape(jsonName(constant))).append("\";\n");
+		}
+
+		source.append("\t\tdefault:\n\t\t\treturn value.name();\n\t\t}\n\t}\n");
+
+		source.append("\n\tprivate static ").append(enumName).append(" ").append(enumMethod("read", type))
+				.append("(String name) {\n");
+		source.append("\t\tif (name == null) {\n\t\t\treturn null;\n\t\t}\n\n");
+		source.append("\t\tswitch (name) {\n");
+
+		for (VariableElement constant : constants) {
+			source.append("\t\tcase \"").append(escape(jsonName(constant))).append("\":\n");
+			source.append("\t\t\treturn ").append(enumName).append(".").append(constant.getSimpleName()).append(";\n");
+		}
+
+		source.append("\t\tdefault:\n\t\t\treturn null;\n\t\t}\n\t}\n");
+	}
+
+	private String factorySource(String packageName, List<TypeElement> types) {
+		StringBuilder source = new StringBuilder();
+
+		source.append("package ").append(packageName).append(";\n\n");
+		source.append("import java.io.IOException;\n\n");
+		source.append("import com.google.gson.Gson;\n");
+		source.append("import com.google.gson.JsonSyntaxException;\n");
+		source.append("import com.google.gson.TypeAdapter;\n");
+		source.append("import com.google.gson.TypeAdapterFactory;\n");
+		source.append("import com.google.gson.reflect.TypeToken;\n");
+		source.append("import com.google.gson.stream.JsonReader;\n");
+		source.append("import com.google.gson.stream.JsonToken;\n");
+		source.append("import com.google.gson.stream.JsonWriter;\n\n");
+		source.append("/**\n * Generated by JsonModelProcessor; do not edit.\n * <p/>\n");
+		source.append(" * Registers the generated adapters of the @JsonModel classes of this package.\n");
+		source.append(" * Subclasses of those classes are left to Gson's reflective adapter.\n */\n");
+		source.append("public final class ").append(FACTORY_NAME).append(" implements TypeAdapterFactory {\n");
+		source.append("\t@Override\n\t@SuppressWarnings(\"unchecked\")\n");
+		source.append("\tpublic <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {\n");
+		source.append("\t\tClass<? super T> rawType = type.getRawType();\n\n");
+
+		for (TypeElement type : types) {
+			source.append("\t\tif (rawType == ").append(type.getQualifiedName()).append(".class) {\n");
+			source.append("\t\t\treturn (TypeAdapter<T>) new ").append(adapterName(type)).append("(gson);\n");
+			source.append("\t\t}\n\n");
+		}
+
+		source.append("\t\treturn null;\n\t}\n\n");
+
+		source.append("\tstatic String readString(JsonReader in) throws IOException {\n");
+		source.append("\t\tJsonToken token = in.peek();\n\n");
+		source.append("\t\tif (token == JsonToken.NULL) {\n\t\t\tin.nextNull();\n\t\t\treturn null;\n\t\t}\n\n");
+		source.append("\t\tif (token == JsonToken.BOOLEAN) {\n");
+		source.append("\t\t\treturn Boolean.toString(in.nextBoolean());\n\t\t}\n\n");
+		source.append("\t\treturn in.nextString();\n\t}\n\n");
+
+		source.append("\tstatic Boolean readBoolean(JsonReader in) throws IOException {\n");
+		source.append("\t\tJsonToken token = in.peek();\n\n");
+		source.append("\t\tif (token == JsonToken.NULL) {\n\t\t\tin.nextNull();\n\t\t\treturn null;\n\t\t}\n\n");
+		source.append("\t\tif (token == JsonToken.STRING) {\n");
+		source.append("\t\t\treturn Boolean.parseBoolean(in.nextString());\n\t\t}\n\n");
+		source.append("\t\treturn in.nextBoolean();\n\t}\n\n");
+
+		String[][] numbers = { { "Integer", "in.nextInt()" }, { "Long", "in.nextLong()" },
+				{ "Double", "in.nextDouble()" }, { "Float", "(float) in.nextDouble()" },
+				{ "Short", "(short) in.nextInt()" }, { "Byte", "(byte) in.nextInt()" } };
+
+		for (String[] number : numbers) {
+			source.append("\tstatic ").append(number[0]).append(" read").append(number[0])
+					.append("(JsonReader in) throws IOException {\n");
+			source.append("\t\tif (in.peek() == JsonToken.NULL) {\n\t\t\tin.nextNull();\n\t\t\treturn null;\n\t\t}\n\n");
+			source.append("\t\ttry {\n\t\t\treturn ").append(number[1]).append(";\n");
+			source.append("\t\t} catch (NumberFormatException e) {\n");
+			source.append("\t\t\tthrow new JsonSyntaxException(e);\n\t\t}\n\t}\n\n");
+		}
+
+		source.append("\tstatic void writeBoolean(JsonWriter out, Boolean value) throws IOException {\n");
+		source.append("\t\tif (value == null) {\n\t\t\tout.nullValue();\n\t\t} else {\n");
+		source.append("\t\t\tout.value(value.booleanValue());\n\t\t}\n\t}\n\n");
+
+		source.append("\t@SuppressWarnings(\"unchecked\")\n");
+		source.append("\tstatic void writeRuntimeType(Gson gson, JsonWriter out, Object value) throws IOException {\n");
+		source.append("\t\t((TypeAdapter<Object>) gson.getAdapter(value.getClass())).write(out, value);\n");
+		source.append("\t}\n");
+		source.append("}\n");
+
+		return source.toString();
+	}
+
+	private boolean write(Element origin, String source, String name) {
+		try {
+			Writer writer = origin == null ? processingEnv.getFiler().createSourceFile(name).openWriter()
+					: processingEnv.getFiler().createSourceFile(name, origin).openWriter();
+
+			try {
+				writer.write(source);
+			} finally {
+				writer.close();
+			}
+
+			return true;
+		} catch (IOException e) {
+			error(origin, "Can't write " + name + ": " + e.getMessage());
+
+			return false;
+		}
+	}
+
+	private boolean hasNoArgConstructor(TypeElement type) {
+		for (Element member : type.getEnclosedElements()) {
+			if (member.getKind() == ElementKind.CONSTRUCTOR
+					&& ((ExecutableElement) member).getParameters().isEmpty()
+					&& !member.getModifiers().contains(Modifier.PRIVATE)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Nested models may be subclassed; Gson serializes the runtime type of
+	 * those fields, and so does the generated adapter
+	 */
+	private boolean isPolymorphic(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) {
+			return false;
+		}
+
+		Element element = ((DeclaredType) type).asElement();
+
+		return element.getKind() == ElementKind.CLASS && !element.getModifiers().contains(Modifier.FINAL)
+				&& !((TypeElement) element).getQualifiedName().contentEquals("java.lang.Object")
+				&& ((DeclaredType) type).getTypeArguments().isEmpty();
+	}
+
+	private String jsonName(Element element) {
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+
+			if (annotationType.getQualifiedName().contentEquals(SERIALIZED_NAME)) {
+				for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : annotation
+						.getElementValues().entrySet()) {
+					if (value.getKey().getSimpleName().contentEquals("value")) {
+						return (String) value.getValue().getValue();
+					}
+				}
+			}
+		}
+
+		return element.getSimpleName().toString();
+	}
+
+	private String typeToken(TypeMirror type) {
+		if (type.getKind() == TypeKind.DECLARED && !((DeclaredType) type).getTypeArguments().isEmpty()) {
+			return "new com.google.gson.reflect.TypeToken<" + type + ">() {}";
+		}
+
+		return erasure(type) + ".class";
+	}
+
+	private String erasure(TypeMirror type) {
+		return processingEnv.getTypeUtils().erasure(type).toString();
+	}
+
+	private String boxed(TypeMirror type) {
+		if (type.getKind().isPrimitive()) {
+			return processingEnv.getTypeUtils().boxedClass((javax.lang.model.type.PrimitiveType) type)
+					.getQualifiedName().toString();
+		}
+
+		return type.toString();
+	}
+
+	private static String enumMethod(String prefix, TypeMirror type) {
+		Element element = ((DeclaredType) type).asElement();
+		StringBuilder name = new StringBuilder(element.getSimpleName());
+
+		for (Element enclosing = element.getEnclosingElement(); enclosing.getKind() != ElementKind.PACKAGE; enclosing = enclosing
+				.getEnclosingElement()) {
+			name.insert(0, enclosing.getSimpleName() + "_");
+		}
+
+		return prefix + name;
+	}
+
+	private static String simpleName(String qualifiedName) {
+		return qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+	}
+
+	private static String adapterName(TypeElement type) {
+		StringBuilder name = new StringBuilder(type.getSimpleName());
+		Element enclosing = type.getEnclosingElement();
+
+		while (enclosing.getKind() != ElementKind.PACKAGE) {
+			name.insert(0, enclosing.getSimpleName() + "_");
+			enclosing = enclosing.getEnclosingElement();
+		}
+
+		return name.append(ADAPTER_SUFFIX).toString();
+	}
+
+	private static PackageElement packageOf(Element element) {
+		while (element.getKind() != ElementKind.PACKAGE) {
+			element = element.getEnclosingElement();
+		}
+
+		return (PackageElement) element;
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+
+	private enum Kind {
+		STRING, NUMBER, BOOLEAN, ENUM, DELEGATE
+	}
+
+	private class Property {
+		final String name;
+		final String jsonName;
+		final TypeMirror type;
+
+		Property(String name, String jsonName, TypeMirror type) {
+			this.name = name;
+			this.jsonName = jsonName;
+			this.type = type;
+		}
+
+		Kind kind() {
+			String boxed = boxed(type);
+
+			if (boxed.equals("java.lang.String")) {
+				return Kind.STRING;
+			}
+
+			if (boxed.equals("java.lang.Boolean")) {
+				return Kind.BOOLEAN;
+			}
+
+			if (boxed.equals("java.lang.Integer") || boxed.equals("java.lang.Long") || boxed.equals("java.lang.Double")
+					|| boxed.equals("java.lang.Float") || boxed.equals("java.lang.Short")
+					|| boxed.equals("java.lang.Byte")) {
+				return Kind.NUMBER;
+			}
+
+			if (type.getKind() == TypeKind.DECLARED
+					&& ((DeclaredType) type).asElement().getKind() == ElementKind.ENUM) {
+				return Kind.ENUM;
+			}
+
+			return Kind.DELEGATE;
+		}
+	}
+}
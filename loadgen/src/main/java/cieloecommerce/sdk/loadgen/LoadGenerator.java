@@ -0,0 +1,341 @@
+package cieloecommerce.sdk.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import cieloecommerce.sdk.Environment;
+import cieloecommerce.sdk.Merchant;
+import cieloecommerce.sdk.ecommerce.CieloEcommerce;
+import cieloecommerce.sdk.ecommerce.request.ConnectionPool;
+import cieloecommerce.sdk.ecommerce.request.JdkHttpTransport;
+import cieloecommerce.sdk.simulator.CieloSimulator;
+import cieloecommerce.sdk.simulator.LatencyDistribution;
+
+/**
+ * Drives a mix of operations through {@link CieloEcommerce} and reports the
+ * throughput, the latency percentiles, the errors by Cielo code and the CPU
+ * and memory used by the client.
+ * <p/>
+ * The open model starts the requests on a fixed schedule, whatever the
+ * responses; the closed model has a fixed number of workers, each waiting for
+ * its response. With a rate, the closed workers are paced too. In both, each
+ * latency counts from when the request was scheduled to start, so a stall
+ * isn't hidden by the requests that didn't start during it (the coordinated
+ * omission).
+ */
+public final class LoadGenerator {
+	private final Options options;
+	private final CieloEcommerce cieloEcommerce;
+	private final Workload workload;
+	private final ExecutorService executor;
+	private final Report report = new Report();
+	// requests in flight, unbounded: an open run against a stalled target
+	// can have far more of them than the parties of a Phaser
+	private final AtomicLong outstanding = new AtomicLong();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition drained = lock.newCondition();
+	private volatile long measureStart;
+
+	private LoadGenerator(Options options, Environment environment, Merchant merchant) throws Exception {
+		this.options = options;
+
+		cieloEcommerce = new CieloEcommerce(merchant, environment);
+		cieloEcommerce.setConnectionPool(new ConnectionPool(options.connections, options.connections,
+				ConnectionPool.DEFAULT_KEEP_ALIVE, ConnectionPool.DEFAULT_MAX_IDLE_TIME));
+
+		if ("jdk".equals(options.transport)) {
+			cieloEcommerce.setTransport(new JdkHttpTransport());
+		}
+
+		if ("virtual".equals(options.mode)) {
+			executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			cieloEcommerce.setExecutor(executor);
+		} else {
+			executor = Executors.newCachedThreadPool(daemon("loadgen-worker"));
+		}
+
+		workload = new Workload(cieloEcommerce, options.mix);
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options;
+
+		try {
+			options = Options.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(2);
+
+			return;
+		}
+
+		CieloSimulator simulator = null;
+		Environment environment;
+		Merchant merchant;
+
+		if (options.isSimulator()) {
+			simulator = new CieloSimulator().setLatency(
+					LatencyDistribution.logNormal(options.latencyMedian, options.latencyP99, TimeUnit.MILLISECONDS));
+			environment = simulator;
+			merchant = new Merchant("simulator", "simulator");
+		} else {
+			environment = environment(options.target);
+			merchant = new Merchant(options.merchantId, options.merchantKey);
+		}
+
+		try {
+			new LoadGenerator(options, environment, merchant).run(environment);
+		} catch (NoSuchMethodException e) {
+			System.err.println("The virtual mode needs JDK 21 or newer");
+			System.exit(2);
+		} finally {
+			if (simulator != null) {
+				simulator.close();
+			}
+		}
+	}
+
+	private static Environment environment(String target) {
+		switch (target) {
+		case "sandbox":
+			return cieloecommerce.sdk.ecommerce.Environment.SANDBOX;
+		case "production":
+			return cieloecommerce.sdk.ecommerce.Environment.PRODUCTION;
+		default:
+			final String url = target.endsWith("/") ? target : target + "/";
+
+			return new Environment() {
+				@Override
+				public String getApiUrl() {
+					return url;
+				}
+
+				@Override
+				public String getApiQueryURL() {
+					return url;
+				}
+			};
+		}
+	}
+
+	private void run(Environment environment) throws InterruptedException {
+		System.out.printf("Target        %s%s%n", environment.getApiUrl(),
+				options.isSimulator() ? " (simulator in this process, counted on the client's CPU)" : "");
+		System.out.printf("Model         %s, %s, %s mode, %s transport, %d s + %d s warmup%n%n",
+				options.open ? "open" : "closed, " + options.concurrency + " workers",
+				options.rate > 0 ? options.rate + " requests/s" : "unpaced", options.mode, options.transport,
+				TimeUnit.NANOSECONDS.toSeconds(options.duration), TimeUnit.NANOSECONDS.toSeconds(options.warmup));
+
+		ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(daemon("loadgen-progress"));
+
+		try (Resources resources = new Resources("virtual".equals(options.mode))) {
+			long start = System.nanoTime();
+			long end = start + options.warmup + options.duration;
+			Resources.Usage usage;
+
+			measureStart = start + options.warmup;
+			progress.scheduleAtFixedRate(this::progress, 5, 5, TimeUnit.SECONDS);
+
+			if (options.open) {
+				usage = open(start, end, resources);
+			} else {
+				usage = closed(start, end, resources);
+			}
+
+			awaitOutstanding();
+
+			long elapsed = Math.max(1, System.nanoTime() - measureStart);
+
+			System.out.println();
+			report.print(System.out, elapsed, resources.usage().since(usage));
+		} finally {
+			progress.shutdownNow();
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Start each request on its own schedule, on a free worker thread or
+	 * through the async API
+	 */
+	private Resources.Usage open(long start, long end, Resources resources) {
+		long interval = (long) (TimeUnit.SECONDS.toNanos(1) / options.rate);
+		Resources.Usage usage = null;
+
+		for (long intended = start; intended < end; intended += interval) {
+			park(intended);
+
+			if (usage == null && intended >= measureStart) {
+				usage = resources.usage();
+			}
+
+			dispatch(workload.next(), intended);
+		}
+
+		return usage != null ? usage : resources.usage();
+	}
+
+	/**
+	 * Run the workers, each one sending its next request once the previous
+	 * one is answered and its turn on the schedule comes
+	 */
+	private Resources.Usage closed(long start, long end, Resources resources) throws InterruptedException {
+		long interval = options.rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(options.concurrency) / options.rate) : 0;
+		List<Thread> workers = new ArrayList<Thread>();
+
+		for (int i = 0; i < options.concurrency; i++) {
+			// spread the first requests over an interval
+			long first = start + (interval * i) / options.concurrency;
+			Thread worker = new Thread(() -> {
+				for (long intended = first; intended < end;) {
+					park(intended);
+					execute(workload.next(), interval > 0 ? intended : System.nanoTime());
+					intended = interval > 0 ? intended + interval : System.nanoTime();
+				}
+			}, "loadgen-closed-" + i);
+
+			worker.setDaemon(true);
+			workers.add(worker);
+		}
+
+		for (Thread worker : workers) {
+			worker.start();
+		}
+
+		park(measureStart);
+
+		Resources.Usage usage = resources.usage();
+
+		for (Thread worker : workers) {
+			worker.join();
+		}
+
+		return usage;
+	}
+
+	private void dispatch(Workload.Task task, long intended) {
+		outstanding.incrementAndGet();
+
+		if ("sync".equals(options.mode)) {
+			executor.execute(() -> {
+				try {
+					execute(task, intended);
+				} finally {
+					finish();
+				}
+			});
+		} else {
+			CompletableFuture<?> future;
+
+			try {
+				future = task.runAsync();
+			} catch (RuntimeException e) {
+				complete(task, intended, e);
+
+				return;
+			}
+
+			future.whenComplete((result, failure) -> complete(task, intended, failure));
+		}
+	}
+
+	private void execute(Workload.Task task, long intended) {
+		Throwable failure = null;
+
+		try {
+			if ("sync".equals(options.mode)) {
+				task.run();
+			} else {
+				task.runAsync().join();
+			}
+		} catch (Exception e) {
+			failure = e;
+		}
+
+		record(task, intended, failure);
+	}
+
+	private void complete(Workload.Task task, long intended, Throwable failure) {
+		try {
+			record(task, intended, failure);
+		} finally {
+			finish();
+		}
+	}
+
+	private void finish() {
+		if (outstanding.decrementAndGet() == 0) {
+			lock.lock();
+
+			try {
+				drained.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Wait for the answers of the requests started before the end of the
+	 * schedule
+	 */
+	private void awaitOutstanding() throws InterruptedException {
+		lock.lock();
+
+		try {
+			while (outstanding.get() > 0) {
+				drained.await();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void record(Workload.Task task, long intended, Throwable failure) {
+		if (intended >= measureStart) {
+			report.record(task.operation, System.nanoTime() - intended, failure);
+		}
+	}
+
+	private void progress() {
+		long now = System.nanoTime();
+
+		if (now < measureStart) {
+			System.out.println("warming up...");
+
+			return;
+		}
+
+		System.out.printf("%6d s  %9d requests  p99 %.2f ms%n", TimeUnit.NANOSECONDS.toSeconds(now - measureStart),
+				report.getCount(),
+				report.getLatencies().getValueAtPercentile(99, TimeUnit.MICROSECONDS) / 1000.0);
+	}
+
+	private static void park(long until) {
+		long wait;
+
+		while ((wait = until - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(wait);
+		}
+	}
+
+	private static ThreadFactory daemon(String name) {
+		return runnable -> {
+			Thread thread = new Thread(runnable, name);
+
+			thread.setDaemon(true);
+
+			return thread;
+		};
+	}
+}
@@ -0,0 +1,202 @@
+package cieloecommerce.sdk.loadgen;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import cieloecommerce.sdk.ecommerce.metrics.Operation;
+
+/**
+ * The command line of the load generator
+ */
+final class Options {
+	static final String USAGE = String.join("\n",
+			"Usage: java -jar loadgen.jar [options]",
+			"",
+			"  --target simulator|sandbox|production|<url>",
+			"                          Where to send the load (default: simulator, run in",
+			"                          this process)",
+			"  --merchant-id <id>      Required unless the target is the simulator",
+			"  --merchant-key <key>    Required unless the target is the simulator",
+			"  --model open|closed     open: requests start at the rate whatever the",
+			"                          responses; closed: each worker waits for its",
+			"                          response (default: open)",
+			"  --rate <n>              Requests per second; 0 for an unpaced closed",
+			"                          model (default: 100)",
+			"  --concurrency <n>       Workers of the closed model (default: 50)",
+			"  --duration <time>       Measured time, e.g. 30s or 2m (default: 30s)",
+			"  --warmup <time>         Time run before measuring (default: 5s)",
+			"  --mix <op=weight,...>   create, capture, void, query and token weights",
+			"                          (default: create=50,capture=20,void=10,query=15,token=5)",
+			"  --mode sync|async|virtual",
+			"                          Blocking calls, the async API, or the async API",
+			"                          run on virtual threads (default: sync)",
+			"  --transport apache|jdk  The pooled Apache client or the JDK's HTTP/2 one",
+			"                          (default: jdk in virtual mode, whose carrier",
+			"                          threads the Apache pool pins; apache otherwise)",
+			"  --connections <n>       Size of the Apache connection pool (default: 200)",
+			"  --latency <median:p99>  Latency of the simulator, in milliseconds",
+			"                          (default: 50:200)");
+
+	String target = "simulator";
+	String merchantId;
+	String merchantKey;
+	boolean open = true;
+	double rate = 100;
+	int concurrency = 50;
+	long duration = TimeUnit.SECONDS.toNanos(30);
+	long warmup = TimeUnit.SECONDS.toNanos(5);
+	Map<Operation, Integer> mix = parseMix("create=50,capture=20,void=10,query=15,token=5");
+	String mode = "sync";
+	String transport;
+	int connections = 200;
+	long latencyMedian = 50;
+	long latencyP99 = 200;
+
+	static Options parse(String[] args) {
+		Options options = new Options();
+
+		for (int i = 0; i < args.length; i++) {
+			String name = args[i];
+
+			if ("--help".equals(name) || "-h".equals(name)) {
+				throw new IllegalArgumentException(USAGE);
+			}
+
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing the value of " + name);
+			}
+
+			String value = args[++i];
+
+			switch (name) {
+			case "--target":
+				options.target = value;
+				break;
+			case "--merchant-id":
+				options.merchantId = value;
+				break;
+			case "--merchant-key":
+				options.merchantKey = value;
+				break;
+			case "--model":
+				if (!"open".equals(value) && !"closed".equals(value)) {
+					throw new IllegalArgumentException("Unknown model " + value);
+				}
+
+				options.open = "open".equals(value);
+				break;
+			case "--rate":
+				options.rate = Double.parseDouble(value);
+				break;
+			case "--concurrency":
+				options.concurrency = Integer.parseInt(value);
+				break;
+			case "--duration":
+				options.duration = parseTime(value);
+				break;
+			case "--warmup":
+				options.warmup = parseTime(value);
+				break;
+			case "--mix":
+				options.mix = parseMix(value);
+				break;
+			case "--mode":
+				if (!"sync".equals(value) && !"async".equals(value) && !"virtual".equals(value)) {
+					throw new IllegalArgumentException("Unknown mode " + value);
+				}
+
+				options.mode = value;
+				break;
+			case "--transport":
+				if (!"apache".equals(value) && !"jdk".equals(value)) {
+					throw new IllegalArgumentException("Unknown transport " + value);
+				}
+
+				options.transport = value;
+				break;
+			case "--connections":
+				options.connections = Integer.parseInt(value);
+				break;
+			case "--latency":
+				String[] latency = value.split(":");
+
+				options.latencyMedian = Long.parseLong(latency[0]);
+				options.latencyP99 = latency.length > 1 ? Long.parseLong(latency[1]) : options.latencyMedian;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + name + "\n\n" + USAGE);
+			}
+		}
+
+		if (!options.isSimulator() && (options.merchantId == null || options.merchantKey == null)) {
+			throw new IllegalArgumentException("--merchant-id and --merchant-key are required for " + options.target);
+		}
+
+		if (options.transport == null) {
+			options.transport = "virtual".equals(options.mode) ? "jdk" : "apache";
+		}
+
+		if (options.open && options.rate <= 0) {
+			throw new IllegalArgumentException("The open model needs a rate");
+		}
+
+		return options;
+	}
+
+	boolean isSimulator() {
+		return "simulator".equals(target);
+	}
+
+	/**
+	 * @return The time in nanoseconds; plain numbers are seconds
+	 */
+	static long parseTime(String value) {
+		if (value.endsWith("ms")) {
+			return TimeUnit.MILLISECONDS.toNanos(Long.parseLong(value.substring(0, value.length() - 2)));
+		}
+
+		if (value.endsWith("m")) {
+			return TimeUnit.MINUTES.toNanos(Long.parseLong(value.substring(0, value.length() - 1)));
+		}
+
+		if (value.endsWith("s")) {
+			value = value.substring(0, value.length() - 1);
+		}
+
+		return TimeUnit.SECONDS.toNanos(Long.parseLong(value));
+	}
+
+	static Map<Operation, Integer> parseMix(String value) {
+		Map<Operation, Integer> mix = new EnumMap<Operation, Integer>(Operation.class);
+
+		for (String entry : value.split(",")) {
+			String[] weight = entry.trim().split("=");
+
+			if (weight.length != 2) {
+				throw new IllegalArgumentException("Invalid mix entry " + entry);
+			}
+
+			mix.put(operation(weight[0].trim()), Integer.parseInt(weight[1].trim()));
+		}
+
+		return mix;
+	}
+
+	private static Operation operation(String name) {
+		switch (name) {
+		case "create":
+			return Operation.CREATE_SALE;
+		case "capture":
+			return Operation.CAPTURE_SALE;
+		case "void":
+			return Operation.CANCEL_SALE;
+		case "query":
+			return Operation.QUERY_SALE;
+		case "token":
+			return Operation.CREATE_CARD_TOKEN;
+		default:
+			throw new IllegalArgumentException("Unknown operation " + name);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package cieloecommerce.sdk.loadgen;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import cieloecommerce.sdk.ecommerce.metrics.LatencyHistogram;
+import cieloecommerce.sdk.ecommerce.metrics.Operation;
+import cieloecommerce.sdk.ecommerce.request.CieloError;
+import cieloecommerce.sdk.ecommerce.request.CieloRequestException;
+import cieloecommerce.sdk.ecommerce.request.CieloStatusException;
+
+/**
+ * Latencies and failures of the measured requests.
+ * <p/>
+ * Latencies count from when the request was meant to start, not from when it
+ * actually started, so a stall of the target or of the client shows on the
+ * percentiles instead of just delaying the following requests.
+ */
+final class Report {
+	private final Map<Operation, LatencyHistogram> latencies = new EnumMap<Operation, LatencyHistogram>(
+			Operation.class);
+	private final Map<Operation, LongAdder> failures = new EnumMap<Operation, LongAdder>(Operation.class);
+	private final LatencyHistogram all = new LatencyHistogram();
+	private final Map<String, LongAdder> errors = new ConcurrentHashMap<String, LongAdder>();
+
+	Report() {
+		for (Operation operation : Operation.values()) {
+			latencies.put(operation, new LatencyHistogram());
+			failures.put(operation, new LongAdder());
+		}
+	}
+
+	/**
+	 * @param latency
+	 *            From the intended start to the response, in nanoseconds
+	 * @param failure
+	 *            Why the request failed, or null
+	 */
+	void record(Operation operation, long latency, Throwable failure) {
+		latencies.get(operation).record(latency);
+		all.record(latency);
+
+		if (failure != null) {
+			failures.get(operation).increment();
+			errors.computeIfAbsent(classify(failure), key -> new LongAdder()).increment();
+		}
+	}
+
+	long getCount() {
+		return all.getCount();
+	}
+
+	LatencyHistogram getLatencies() {
+		return all;
+	}
+
+	/**
+	 * Cielo errors by code, unexpected statuses by status, everything else by
+	 * exception
+	 */
+	static String classify(Throwable failure) {
+		while ((failure instanceof CompletionException || failure instanceof ExecutionException)
+				&& failure.getCause() != null) {
+			failure = failure.getCause();
+		}
+
+		if (failure instanceof CieloStatusException) {
+			return "HTTP " + ((CieloStatusException) failure).getStatusCode();
+		}
+
+		if (failure instanceof CieloRequestException) {
+			CieloError error = ((CieloRequestException) failure).getError();
+
+			if (error != null && error.getCode() != null) {
+				return "CieloError " + error.getCode() + " " + error.getMessage();
+			}
+		}
+
+		return failure.getClass().getSimpleName();
+	}
+
+	void print(PrintStream out, long elapsed, Resources.Usage usage) {
+		double seconds = elapsed / 1e9;
+		long failed = 0;
+
+		for (LongAdder count : failures.values()) {
+			failed += count.sum();
+		}
+
+		out.printf("Throughput    %.1f requests/s (%d requests, %d failed, in %.1f s)%n%n", all.getCount() / seconds,
+				all.getCount(), failed, seconds);
+		out.printf("%-18s %9s %8s %9s %9s %9s %9s%n", "Operation", "Requests", "Failed", "p50 ms", "p99 ms",
+				"p99.9 ms", "max ms");
+
+		for (Operation operation : Operation.values()) {
+			LatencyHistogram histogram = latencies.get(operation);
+
+			if (histogram.getCount() > 0) {
+				row(out, operation.name(), histogram, failures.get(operation).sum());
+			}
+		}
+
+		row(out, "ALL", all, failed);
+
+		if (!errors.isEmpty()) {
+			out.printf("%nErrors%n");
+
+			for (Map.Entry<String, LongAdder> error : new TreeMap<String, LongAdder>(errors).entrySet()) {
+				out.printf("  %-50s %9d%n", error.getKey(), error.getValue().sum());
+			}
+		}
+
+		out.printf("%nClient%n");
+		out.printf("  CPU           %.1f%% of %d cores (%.2f s)%n",
+				100.0 * usage.cpu / elapsed / usage.cores, usage.cores, usage.cpu / 1e9);
+		out.printf("  Allocation    %.1f MB/s, %.1f KB/request%n", usage.allocated / seconds / (1024 * 1024),
+				all.getCount() > 0 ? usage.allocated / 1024.0 / all.getCount() : 0);
+	}
+
+	private static void row(PrintStream out, String name, LatencyHistogram histogram, long failed) {
+		out.printf("%-18s %9d %8d %9.2f %9.2f %9.2f %9.2f%n", name, histogram.getCount(), failed,
+				millis(histogram, 50), millis(histogram, 99), millis(histogram, 99.9),
+				histogram.getMax(TimeUnit.MICROSECONDS) / 1000.0);
+	}
+
+	private static double millis(LatencyHistogram histogram, double percentile) {
+		return histogram.getValueAtPercentile(percentile, TimeUnit.MICROSECONDS) / 1000.0;
+	}
+}
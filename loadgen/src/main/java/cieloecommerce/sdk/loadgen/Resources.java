@@ -0,0 +1,161 @@
+package cieloecommerce.sdk.loadgen;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.OperatingSystemMXBean;
+import com.sun.management.ThreadMXBean;
+
+/**
+ * CPU time and bytes allocated by the whole process.
+ * <p/>
+ * The JVM only counts allocations per live platform thread, so the threads
+ * are sampled every 100ms; the last bytes of a thread that dies between two
+ * samples are missed. Virtual threads aren't listed at all, so with them the
+ * allocations are taken from the heap instead: the bytes in use plus the
+ * bytes each collection freed, which is only as precise as the heap regions
+ * in use between two collections.
+ */
+final class Resources implements AutoCloseable {
+	private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+	private final OperatingSystemMXBean os = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+	private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+	private final Map<Long, Long> allocatedByThread = new HashMap<Long, Long>();
+	private final Set<String> heapPools = new HashSet<String>();
+	private final AtomicLong collected = new AtomicLong();
+	private final NotificationListener collections = this::collected;
+	private final boolean heap;
+	private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "loadgen-resources");
+
+		thread.setDaemon(true);
+
+		return thread;
+	});
+	private long allocated;
+
+	/**
+	 * @param virtualThreads whether the requests run on virtual threads,
+	 *            whose allocations can only be counted on the heap
+	 */
+	Resources(boolean virtualThreads) {
+		heap = virtualThreads;
+
+		if (heap) {
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				if (pool.getType() == MemoryType.HEAP) {
+					heapPools.add(pool.getName());
+				}
+			}
+
+			for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+				((NotificationEmitter) collector).addNotificationListener(collections, null, null);
+			}
+		} else {
+			sampler.scheduleAtFixedRate(this::sample, 0, 100, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * What was used so far; the difference of two of them is the usage
+	 * between them
+	 */
+	static final class Usage {
+		final long cpu;
+		final long allocated;
+		final int cores;
+
+		Usage(long cpu, long allocated, int cores) {
+			this.cpu = cpu;
+			this.allocated = allocated;
+			this.cores = cores;
+		}
+
+		Usage since(Usage start) {
+			return new Usage(cpu - start.cpu, allocated - start.allocated, cores);
+		}
+	}
+
+	synchronized Usage usage() {
+		long bytes;
+
+		if (heap) {
+			bytes = memory.getHeapMemoryUsage().getUsed() + collected.get();
+		} else {
+			sample();
+			bytes = allocated;
+		}
+
+		return new Usage(os.getProcessCpuTime(), bytes, Runtime.getRuntime().availableProcessors());
+	}
+
+	private void collected(Notification notification, Object handback) {
+		if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+			return;
+		}
+
+		GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+				.from((CompositeData) notification.getUserData());
+		Map<String, MemoryUsage> after = info.getGcInfo().getMemoryUsageAfterGc();
+		long freed = 0;
+
+		// what was promoted leaves one pool for another, so only the bytes
+		// freed remain in the sum
+		for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageBeforeGc().entrySet()) {
+			if (heapPools.contains(pool.getKey()) && after.containsKey(pool.getKey())) {
+				freed += pool.getValue().getUsed() - after.get(pool.getKey()).getUsed();
+			}
+		}
+
+		collected.addAndGet(freed);
+	}
+
+	private synchronized void sample() {
+		long[] ids = threads.getAllThreadIds();
+		long[] bytes = threads.getThreadAllocatedBytes(ids);
+
+		for (int i = 0; i < ids.length; i++) {
+			if (bytes[i] < 0) {
+				continue;
+			}
+
+			Long previous = allocatedByThread.put(ids[i], bytes[i]);
+
+			allocated += bytes[i] - (previous != null ? previous : 0);
+		}
+	}
+
+	@Override
+	public void close() {
+		sampler.shutdownNow();
+
+		if (heap) {
+			for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+				try {
+					((NotificationEmitter) collector).removeNotificationListener(collections);
+				} catch (ListenerNotFoundException e) {
+					// never added
+				}
+			}
+		}
+	}
+}
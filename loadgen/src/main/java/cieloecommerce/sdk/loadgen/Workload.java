@@ -0,0 +1,178 @@
+package cieloecommerce.sdk.loadgen;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import cieloecommerce.sdk.ecommerce.CardToken;
+import cieloecommerce.sdk.ecommerce.CieloEcommerce;
+import cieloecommerce.sdk.ecommerce.Payment;
+import cieloecommerce.sdk.ecommerce.Sale;
+import cieloecommerce.sdk.ecommerce.metrics.Operation;
+import cieloecommerce.sdk.ecommerce.request.CieloRequestException;
+
+/**
+ * Draws the operations from the mix and runs them; captures, voids and
+ * queries use the sales authorized earlier, and become a createSale while
+ * there are none
+ */
+final class Workload {
+	private static final int AUTHORIZED = 1;
+	private static final int MAX_AUTHORIZED = 10000;
+	private static final int RECENT = 1024;
+
+	private final CieloEcommerce cieloEcommerce;
+	private final Operation[] operations;
+	private final int[] cumulativeWeights;
+	private final Queue<String> authorized = new ConcurrentLinkedQueue<String>();
+	private final AtomicInteger authorizedCount = new AtomicInteger();
+	private final AtomicReferenceArray<String> recent = new AtomicReferenceArray<String>(RECENT);
+	private final AtomicInteger recentIndex = new AtomicInteger();
+
+	Workload(CieloEcommerce cieloEcommerce, Map<Operation, Integer> mix) {
+		this.cieloEcommerce = cieloEcommerce;
+		this.operations = new Operation[mix.size()];
+		this.cumulativeWeights = new int[mix.size()];
+
+		int i = 0;
+		int total = 0;
+
+		for (Map.Entry<Operation, Integer> weight : mix.entrySet()) {
+			total += weight.getValue();
+			operations[i] = weight.getKey();
+			cumulativeWeights[i++] = total;
+		}
+
+		if (total <= 0) {
+			throw new IllegalArgumentException("The mix has no weight");
+		}
+	}
+
+	/**
+	 * An operation ready to run, with the sale it acts on
+	 */
+	final class Task {
+		final Operation operation;
+		final String paymentId;
+
+		Task(Operation operation, String paymentId) {
+			this.operation = operation;
+			this.paymentId = paymentId;
+		}
+
+		void run() throws IOException, CieloRequestException {
+			switch (operation) {
+			case CREATE_SALE:
+				created(cieloEcommerce.createSale(sale()));
+				break;
+			case CAPTURE_SALE:
+				cieloEcommerce.captureSale(paymentId);
+				break;
+			case CANCEL_SALE:
+				cieloEcommerce.cancelSale(paymentId);
+				break;
+			case QUERY_SALE:
+				cieloEcommerce.querySale(paymentId);
+				break;
+			default:
+				cieloEcommerce.createCardToken(cardToken());
+			}
+		}
+
+		CompletableFuture<?> runAsync() {
+			switch (operation) {
+			case CREATE_SALE:
+				return cieloEcommerce.createSaleAsync(sale()).thenAccept(Workload.this::created);
+			case CAPTURE_SALE:
+				return cieloEcommerce.captureSaleAsync(paymentId);
+			case CANCEL_SALE:
+				return cieloEcommerce.cancelSaleAsync(paymentId);
+			case QUERY_SALE:
+				return cieloEcommerce.querySaleAsync(paymentId);
+			default:
+				return cieloEcommerce.createCardTokenAsync(cardToken());
+			}
+		}
+	}
+
+	/**
+	 * Draw the next operation
+	 */
+	Task next() {
+		int draw = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+		Operation operation = operations[operations.length - 1];
+
+		for (int i = 0; i < cumulativeWeights.length; i++) {
+			if (draw < cumulativeWeights[i]) {
+				operation = operations[i];
+				break;
+			}
+		}
+
+		switch (operation) {
+		case CAPTURE_SALE:
+		case CANCEL_SALE:
+			String paymentId = authorized.poll();
+
+			if (paymentId != null) {
+				authorizedCount.decrementAndGet();
+
+				return new Task(operation, paymentId);
+			}
+
+			return new Task(Operation.CREATE_SALE, null);
+		case QUERY_SALE:
+			String recentId = recent.get(ThreadLocalRandom.current().nextInt(RECENT));
+
+			return new Task(recentId != null ? operation : Operation.CREATE_SALE, recentId);
+		default:
+			return new Task(operation, null);
+		}
+	}
+
+	private void created(Sale sale) {
+		Payment payment = sale.getPayment();
+
+		if (payment == null || payment.getPaymentId() == null) {
+			return;
+		}
+
+		recent.set(recentIndex.getAndIncrement() & (RECENT - 1), payment.getPaymentId());
+
+		if (Integer.valueOf(AUTHORIZED).equals(payment.getStatus()) && authorizedCount.get() < MAX_AUTHORIZED) {
+			authorizedCount.incrementAndGet();
+			authorized.add(payment.getPaymentId());
+		}
+	}
+
+	/**
+	 * A sale the sandbox and the simulator authorize
+	 */
+	private static Sale sale() {
+		Sale sale = new Sale(UUID.randomUUID().toString().substring(0, 20));
+
+		sale.customer("Comprador Teste");
+		sale.payment(ThreadLocalRandom.current().nextInt(100, 100000))
+				.creditCard("123", "Visa")
+				.setCardNumber("0000000000000001")
+				.setHolder("Comprador Teste")
+				.setExpirationDate("12/2030");
+
+		return sale;
+	}
+
+	private static CardToken cardToken() {
+		return new CardToken()
+				.setBrand("Visa")
+				.setCardNumber("0000000000000001")
+				.setHolder("Comprador Teste")
+				.setExpirationDate("12/2030")
+				.setCustomerName("Comprador Teste");
+	}
+}
@@ -0,0 +1,96 @@
+package cieloecommerce.sdk.samples;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import cieloecommerce.sdk.Environment;
+import cieloecommerce.sdk.Merchant;
+import cieloecommerce.sdk.ecommerce.CieloEcommerce;
+import cieloecommerce.sdk.ecommerce.Sale;
+import cieloecommerce.sdk.ecommerce.request.CieloRequestException;
+import cieloecommerce.sdk.ecommerce.request.ConnectionPool;
+import cieloecommerce.sdk.ecommerce.request.JdkHttpTransport;
+
+/**
+ * What a short-lived payment function does: create a single sale and exit.
+ * Built as a native image by the native profile, and launched by the
+ * {@link StartupBenchmark}.
+ * <p/>
+ * A sale Cielo rejects is sent after the first one, so the decoding of the
+ * errors is exercised too.
+ *
+ * <pre>
+ * first-sale URL [apache|jdk]
+ * </pre>
+ */
+public final class FirstSale {
+	/**
+	 * Printed once the first sale is created, followed by the time since main
+	 * started, in microseconds
+	 */
+	static final String FIRST_SALE = "first-sale ";
+
+	private FirstSale() {
+	}
+
+	public static void main(String[] args) throws IOException, CieloRequestException {
+		long start = System.nanoTime();
+
+		if (args.length < 1) {
+			System.err.println("usage: first-sale URL [apache|jdk]");
+			System.exit(2);
+		}
+
+		try (ConnectionPool connectionPool = new ConnectionPool()) {
+			CieloEcommerce cieloEcommerce = new CieloEcommerce(new Merchant("MERCHANT ID", "MERCHANT KEY"),
+					environment(args[0]));
+
+			cieloEcommerce.setConnectionPool(connectionPool);
+
+			if (args.length > 1 && args[1].equals("jdk")) {
+				cieloEcommerce.setTransport(new JdkHttpTransport());
+			}
+
+			Sale sale = sale();
+
+			sale.payment(15700).creditCard("123", "Visa")
+					.setExpirationDate("12/2030")
+					.setCardNumber("0000000000000001")
+					.setHolder("Fulano de Tal");
+
+			sale = cieloEcommerce.createSale(sale);
+
+			System.out.println(FIRST_SALE + TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+			System.out.println("status " + sale.getPayment().getStatus() + ", paymentId "
+					+ sale.getPayment().getPaymentId());
+
+			try {
+				cieloEcommerce.createSale(sale());
+			} catch (CieloRequestException e) {
+				System.out.println("rejected with " + e.getError().getCode() + ": " + e.getError().getMessage());
+			}
+		}
+	}
+
+	private static Sale sale() {
+		Sale sale = new Sale("2014111701");
+
+		sale.customer("Comprador Teste");
+
+		return sale;
+	}
+
+	private static Environment environment(final String url) {
+		return new Environment() {
+			@Override
+			public String getApiUrl() {
+				return url;
+			}
+
+			@Override
+			public String getApiQueryURL() {
+				return url;
+			}
+		};
+	}
+}
@@ -0,0 +1,197 @@
+package cieloecommerce.sdk.samples;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import cieloecommerce.sdk.simulator.CieloSimulator;
+
+/**
+ * Measures the time to the first createSale of a new process, against a
+ * {@link CieloSimulator} running in this one: from the spawn of
+ * {@link FirstSale} to the line it prints after the sale, and to its exit.
+ * <p/>
+ * The variants are the plain JVM, the JVM with an AppCDS archive, C1 only and
+ * the serial GC (the fast-start profile), and the native image, when built
+ * with -Pnative. Each variant runs once unmeasured, so the files it reads are
+ * cached, and then the given number of times.
+ *
+ * <pre>
+ * java -cp samples/native/target/first-sale.jar cieloecommerce.sdk.samples.StartupBenchmark [--runs N] [--transport apache|jdk] [jvm] [jvm-fast] [native]
+ * </pre>
+ */
+public final class StartupBenchmark {
+	private static final int DEFAULT_RUNS = 10;
+	private static final long TIMEOUT = 60;
+
+	private final Path target;
+	private final String java;
+	private final String url;
+	private final String transport;
+
+	private StartupBenchmark(Path target, String url, String transport) {
+		this.target = target;
+		this.java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		this.url = url;
+		this.transport = transport;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int runs = DEFAULT_RUNS;
+		String transport = "apache";
+		List<String> variants = new ArrayList<String>();
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--runs") && i + 1 < args.length) {
+				runs = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("--transport") && i + 1 < args.length) {
+				transport = args[++i];
+			} else {
+				variants.add(args[i]);
+			}
+		}
+
+		if (variants.isEmpty()) {
+			variants.addAll(Arrays.asList("jvm", "jvm-fast", "native"));
+		}
+
+		// target/classes or target/first-sale.jar
+		Path target = Paths.get(FirstSale.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+				.getParent();
+
+		try (CieloSimulator simulator = new CieloSimulator()) {
+			StartupBenchmark benchmark = new StartupBenchmark(target, simulator.getApiUrl(), transport);
+
+			System.out.printf("%-10s %8s %8s %8s %8s %10s%n", "variant", "min", "median", "max", "exit", "in-process");
+
+			for (String variant : variants) {
+				List<String> command = benchmark.command(variant);
+
+				if (command == null) {
+					System.out.printf("%-10s skipped, %s not built%n", variant, benchmark.nativeImage());
+
+					continue;
+				}
+
+				benchmark.run(command);
+
+				long[] firstSale = new long[runs];
+				long[] exit = new long[runs];
+				long[] inProcess = new long[runs];
+
+				for (int i = 0; i < runs; i++) {
+					long[] times = benchmark.run(command);
+
+					firstSale[i] = times[0];
+					exit[i] = times[1];
+					inProcess[i] = times[2];
+				}
+
+				Arrays.sort(firstSale);
+				Arrays.sort(exit);
+				Arrays.sort(inProcess);
+
+				System.out.printf("%-10s %6.1fms %6.1fms %6.1fms %6.1fms %8.1fms%n", variant, millis(firstSale[0]),
+						millis(firstSale[runs / 2]), millis(firstSale[runs - 1]), millis(exit[runs / 2]),
+						millis(inProcess[runs / 2]));
+			}
+		}
+	}
+
+	/**
+	 * The command line of the variant, or null for a native image not built
+	 */
+	private List<String> command(String variant) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<String>();
+		String jar = target.resolve("first-sale.jar").toString();
+
+		switch (variant) {
+		case "jvm":
+			Collections.addAll(command, java, "-jar", jar);
+			break;
+		case "jvm-fast":
+			Path archive = target.resolve("first-sale.jsa");
+
+			if (!Files.exists(archive)) {
+				// the training run dumps the classes it loaded
+				run(Arrays.asList(java, "-XX:ArchiveClassesAtExit=" + archive, "-jar", jar, url, transport));
+			}
+
+			Collections.addAll(command, java, "-XX:SharedArchiveFile=" + archive, "-XX:TieredStopAtLevel=1",
+					"-XX:+UseSerialGC", "-jar", jar);
+			break;
+		case "native":
+			if (!Files.isRegularFile(nativeImage())) {
+				return null;
+			}
+
+			command.add(nativeImage().toString());
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown variant " + variant + ", expected jvm, jvm-fast or native");
+		}
+
+		command.add(url);
+		command.add(transport);
+
+		return command;
+	}
+
+	private Path nativeImage() {
+		return target.resolve(File.separatorChar == '\\' ? "first-sale.exe" : "first-sale");
+	}
+
+	/**
+	 * Run the command to its exit
+	 *
+	 * @return The nanoseconds to the first sale and to the exit, and the
+	 *         microseconds FirstSale counted from its main
+	 */
+	private long[] run(List<String> command) throws IOException, InterruptedException {
+		long start = System.nanoTime();
+		Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		long firstSale = -1;
+		long inProcess = -1;
+
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+
+			while ((line = reader.readLine()) != null) {
+				if (firstSale < 0 && line.startsWith(FirstSale.FIRST_SALE)) {
+					firstSale = System.nanoTime() - start;
+					inProcess = TimeUnit.MICROSECONDS.toNanos(
+							Long.parseLong(line.substring(FirstSale.FIRST_SALE.length()).trim()));
+				}
+			}
+		}
+
+		if (!process.waitFor(TIMEOUT, TimeUnit.SECONDS)) {
+			process.destroyForcibly();
+
+			throw new IOException(command.get(0) + " didn't exit in " + TIMEOUT + "s");
+		}
+
+		long exit = System.nanoTime() - start;
+
+		if (process.exitValue() != 0 || firstSale < 0) {
+			throw new IOException(String.join(" ", command) + " failed with exit code " + process.exitValue());
+		}
+
+		return new long[] { firstSale, exit, inProcess };
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+}
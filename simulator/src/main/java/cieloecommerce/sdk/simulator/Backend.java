@@ -0,0 +1,10 @@
+package cieloecommerce.sdk.simulator;
+
+import java.io.IOException;
+
+/**
+ * Answers the requests that went through the injected latency and faults
+ */
+interface Backend {
+	Response handle(Request request) throws IOException;
+}
@@ -0,0 +1,407 @@
+package cieloecommerce.sdk.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import cieloecommerce.sdk.Environment;
+import cieloecommerce.sdk.ecommerce.metrics.Operation;
+
+/**
+ * A local Cielo, for load tests and tests without network: sales, queries,
+ * captures, voids and card tokens served from memory on localhost, with
+ * injected latency, failures and throttling.
+ * <p/>
+ * The simulator is itself the {@link Environment} pointing at it:
+ *
+ * <pre>
+ * try (CieloSimulator simulator = new CieloSimulator()) {
+ * 	simulator.setLatency(LatencyDistribution.logNormal(80, 400, TimeUnit.MILLISECONDS))
+ * 			.addFault(Fault.status(503, 0.01));
+ *
+ * 	Sale sale = new CieloEcommerce(merchant, simulator).createSale(sale);
+ * }
+ * </pre>
+ *
+ * Exchanges can be recorded to a file, including the ones proxied to a real
+ * environment with {@link #proxy(Environment)}, and replayed later instead of
+ * the simulated answers.
+ */
+public class CieloSimulator implements Environment, Closeable {
+	/**
+	 * How many sales are kept before the oldest ones are forgotten
+	 */
+	public static final int DEFAULT_MAX_SALES = 100000;
+
+	static {
+		// The responses are written in two segments; without it, the second
+		// waits for the delayed ACK of the client
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final String url;
+	private final List<Fault> faults = new CopyOnWriteArrayList<Fault>();
+	private final Map<Operation, LatencyDistribution> latencies = new EnumMap<Operation, LatencyDistribution>(
+			Operation.class);
+	private volatile LatencyDistribution latency = LatencyDistribution.NONE;
+	private volatile Backend backend;
+	private volatile TokenBucket rateLimit;
+	private volatile boolean gzip;
+	private volatile ExchangeLog.Recorder recorder;
+
+	/**
+	 * Start the simulator on a free port
+	 */
+	public CieloSimulator() throws IOException {
+		this(0);
+	}
+
+	/**
+	 * Start the simulator on the given port of the loopback interface
+	 */
+	public CieloSimulator(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+		executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "cielo-simulator");
+
+			thread.setDaemon(true);
+
+			return thread;
+		});
+		url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+		backend = new SimulatedCielo(url, url, DEFAULT_MAX_SALES);
+
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+		server.start();
+	}
+
+	@Override
+	public String getApiUrl() {
+		return url;
+	}
+
+	@Override
+	public String getApiQueryURL() {
+		return url;
+	}
+
+	/**
+	 * Hold every response for a latency drawn from the distribution
+	 */
+	public CieloSimulator setLatency(LatencyDistribution latency) {
+		this.latency = latency;
+
+		return this;
+	}
+
+	/**
+	 * Hold the responses of one operation for a latency drawn from its own
+	 * distribution
+	 */
+	public CieloSimulator setLatency(Operation operation, LatencyDistribution latency) {
+		synchronized (latencies) {
+			latencies.put(operation, latency);
+		}
+
+		return this;
+	}
+
+	/**
+	 * Inject a failure on a share of the requests; faults are tried in the
+	 * order they were added
+	 */
+	public CieloSimulator addFault(Fault fault) {
+		faults.add(fault);
+
+		return this;
+	}
+
+	public CieloSimulator clearFaults() {
+		faults.clear();
+
+		return this;
+	}
+
+	/**
+	 * Answer 429 to the requests beyond the rate, as Cielo throttles a
+	 * merchant
+	 *
+	 * @param permitsPerSecond
+	 *            The sustained rate; bursts of up to one second of it are
+	 *            allowed
+	 * @param retryAfter
+	 *            The Retry-After sent with the 429, in seconds
+	 */
+	public CieloSimulator setRateLimit(double permitsPerSecond, long retryAfter) {
+		rateLimit = new TokenBucket(permitsPerSecond, retryAfter);
+
+		return this;
+	}
+
+	public CieloSimulator removeRateLimit() {
+		rateLimit = null;
+
+		return this;
+	}
+
+	/**
+	 * Compress the responses of the requests that accept gzip
+	 */
+	public CieloSimulator setGzip(boolean gzip) {
+		this.gzip = gzip;
+
+		return this;
+	}
+
+	/**
+	 * Forward the requests to a real environment instead of simulating them;
+	 * meant to capture its exchanges with {@link #record(Path)}
+	 */
+	public CieloSimulator proxy(Environment target) {
+		backend = new Proxy(target);
+
+		return this;
+	}
+
+	/**
+	 * Write every exchange to the file, one JSON object per line
+	 */
+	public CieloSimulator record(Path file) throws IOException {
+		ExchangeLog.Recorder previous = recorder;
+
+		recorder = new ExchangeLog.Recorder(file);
+
+		if (previous != null) {
+			previous.close();
+		}
+
+		return this;
+	}
+
+	/**
+	 * Answer with the exchanges recorded on the file instead of simulating
+	 * them
+	 */
+	public CieloSimulator replay(Path file) throws IOException {
+		backend = new ExchangeLog.Replay(file);
+
+		return this;
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			Request request = read(exchange);
+
+			if (request.operation == null) {
+				send(exchange, request, Response.empty(404));
+
+				return;
+			}
+
+			TokenBucket rateLimit = this.rateLimit;
+
+			if (rateLimit != null && !rateLimit.tryAcquire()) {
+				Response throttled = Response.empty(429);
+
+				throttled.headers.put("Retry-After", Long.toString(rateLimit.retryAfter));
+				send(exchange, request, throttled);
+
+				return;
+			}
+
+			long delay = latency(request.operation).next(ThreadLocalRandom.current());
+
+			if (delay > 0) {
+				TimeUnit.NANOSECONDS.sleep(delay);
+			}
+
+			Response response = inject(request);
+
+			if (response == null) {
+				response = backend.handle(request);
+			}
+
+			ExchangeLog.Recorder recorder = this.recorder;
+
+			if (recorder != null) {
+				recorder.record(request, response, TimeUnit.NANOSECONDS.toMillis(delay));
+			}
+
+			send(exchange, request, response);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Disconnect e) {
+			// closing without sending the headers drops the connection
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private LatencyDistribution latency(Operation operation) {
+		synchronized (latencies) {
+			LatencyDistribution latency = latencies.get(operation);
+
+			return latency != null ? latency : this.latency;
+		}
+	}
+
+	/**
+	 * @return The response of the first fault drawn, or null
+	 */
+	private Response inject(Request request) throws Disconnect {
+		for (Fault fault : faults) {
+			if (!fault.appliesTo(request.operation) || ThreadLocalRandom.current().nextDouble() >= fault.probability) {
+				continue;
+			}
+
+			switch (fault.kind) {
+			case STATUS:
+				return Response.empty(fault.code);
+			case ERROR:
+				return Response.error(fault.code, fault.message);
+			default:
+				throw new Disconnect();
+			}
+		}
+
+		return null;
+	}
+
+	private static Request read(HttpExchange exchange) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+		try (InputStream in = exchange.getRequestBody()) {
+			in.transferTo(body);
+		}
+
+		Map<String, String> headers = new LinkedHashMap<String, String>();
+
+		for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+			headers.put(header.getKey(), header.getValue().get(0));
+		}
+
+		return new Request(exchange.getRequestMethod(), exchange.getRequestURI().getPath(),
+				exchange.getRequestURI().getRawQuery(), headers, body.toByteArray());
+	}
+
+	private void send(HttpExchange exchange, Request request, Response response) throws IOException {
+		byte[] body = response.body;
+
+		for (Map.Entry<String, String> header : response.headers.entrySet()) {
+			exchange.getResponseHeaders().add(header.getKey(), header.getValue());
+		}
+
+		String acceptEncoding = request.header("Accept-Encoding");
+
+		if (gzip && body.length > 0 && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+			try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+				out.write(body);
+			}
+
+			body = compressed.toByteArray();
+			exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+		}
+
+		exchange.sendResponseHeaders(response.status, body.length > 0 ? body.length : -1);
+
+		if (body.length > 0) {
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		}
+	}
+
+	/**
+	 * Stop answering and close the recording, if any
+	 */
+	@Override
+	public void close() throws IOException {
+		server.stop(0);
+		executor.shutdownNow();
+
+		if (recorder != null) {
+			recorder.close();
+		}
+	}
+
+	/**
+	 * Run the simulator until the process is killed
+	 *
+	 * @param args
+	 *            The port, 8080 by default
+	 */
+	public static void main(String[] args) throws IOException {
+		CieloSimulator simulator = new CieloSimulator(args.length > 0 ? Integer.parseInt(args[0]) : 8080);
+
+		System.out.println("Cielo simulator listening on " + simulator.getApiUrl());
+	}
+
+	private static class Disconnect extends Exception {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Refills the permits continuously, up to one second of them
+	 */
+	private static class TokenBucket {
+		private final double permitsPerNano;
+		private final double capacity;
+		private final long retryAfter;
+		private final Lock lock = new ReentrantLock();
+		private double permits;
+		private long last = System.nanoTime();
+
+		TokenBucket(double permitsPerSecond, long retryAfter) {
+			this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+			this.capacity = Math.max(1, permitsPerSecond);
+			this.retryAfter = retryAfter;
+			this.permits = capacity;
+		}
+
+		boolean tryAcquire() {
+			lock.lock();
+
+			try {
+				long now = System.nanoTime();
+
+				permits = Math.min(capacity, permits + (now - last) * permitsPerNano);
+				last = now;
+
+				if (permits < 1) {
+					return false;
+				}
+
+				permits--;
+
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package cieloecommerce.sdk.simulator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * The exchanges recorded by the simulator, one JSON object per line, and
+ * their replay.
+ * <p/>
+ * Card numbers are masked and security codes dropped before a request body
+ * is written; the merchant credentials aren't recorded at all.
+ */
+final class ExchangeLog {
+	private static final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+
+	private ExchangeLog() {
+	}
+
+	/**
+	 * The line written for each exchange
+	 */
+	static final class Exchange {
+		String method;
+		String uri;
+		JsonElement request;
+		int status;
+		Map<String, String> headers;
+		String response;
+		long latency;
+	}
+
+	/**
+	 * Appends the exchanges to the file
+	 */
+	static final class Recorder implements Closeable {
+		private final BufferedWriter writer;
+		private final Lock lock = new ReentrantLock();
+
+		Recorder(Path file) throws IOException {
+			writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * @param latency
+		 *            The injected latency, in milliseconds
+		 */
+		void record(Request request, Response response, long latency) throws IOException {
+			Exchange exchange = new Exchange();
+
+			exchange.method = request.method;
+			exchange.uri = request.uri();
+			exchange.request = request.body.length > 0 ? mask(request.body) : null;
+			exchange.status = response.status;
+			exchange.headers = response.headers;
+			exchange.response = new String(response.body, StandardCharsets.UTF_8);
+			exchange.latency = latency;
+
+			String line = gson.toJson(exchange);
+
+			lock.lock();
+
+			try {
+				writer.write(line);
+				writer.newLine();
+				writer.flush();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Answers each request with the next response recorded for the same
+	 * method and URI; the last one is repeated once they run out
+	 */
+	static final class Replay implements Backend {
+		private final Map<String, Deque<Exchange>> exchanges = new HashMap<String, Deque<Exchange>>();
+		private final Lock lock = new ReentrantLock();
+
+		Replay(Path file) throws IOException {
+			try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				String line;
+
+				while ((line = reader.readLine()) != null) {
+					if (line.trim().isEmpty()) {
+						continue;
+					}
+
+					Exchange exchange;
+
+					try {
+						exchange = gson.fromJson(line, Exchange.class);
+					} catch (JsonParseException e) {
+						throw new IOException("Invalid exchange on " + file + ": " + line, e);
+					}
+
+					exchanges.computeIfAbsent(exchange.method + " " + exchange.uri, key -> new ArrayDeque<Exchange>())
+							.add(exchange);
+				}
+			}
+		}
+
+		@Override
+		public Response handle(Request request) {
+			Exchange exchange;
+
+			lock.lock();
+
+			try {
+				Deque<Exchange> recorded = exchanges.get(request.method + " " + request.uri());
+
+				if (recorded == null) {
+					return Response.empty(404);
+				}
+
+				exchange = recorded.size() > 1 ? recorded.poll() : recorded.peek();
+			} finally {
+				lock.unlock();
+			}
+
+			Response response = new Response(exchange.status,
+					exchange.response != null ? exchange.response.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+
+			if (exchange.headers != null) {
+				response.headers.putAll(exchange.headers);
+			}
+
+			return response;
+		}
+	}
+
+	/**
+	 * The request body without the card data, or as a string if it isn't
+	 * JSON
+	 */
+	static JsonElement mask(byte[] body) {
+		String json = new String(body, StandardCharsets.UTF_8);
+
+		try {
+			JsonElement element = new JsonParser().parse(json);
+
+			mask(element);
+
+			return element;
+		} catch (JsonParseException e) {
+			return new JsonPrimitive(json);
+		}
+	}
+
+	private static void mask(JsonElement element) {
+		if (element.isJsonArray()) {
+			for (JsonElement item : element.getAsJsonArray()) {
+				mask(item);
+			}
+		} else if (element.isJsonObject()) {
+			JsonObject object = element.getAsJsonObject();
+			Map<String, JsonElement> fields = new LinkedHashMap<String, JsonElement>();
+
+			for (Map.Entry<String, JsonElement> field : object.entrySet()) {
+				fields.put(field.getKey(), field.getValue());
+			}
+
+			for (Map.Entry<String, JsonElement> field : fields.entrySet()) {
+				String name = field.getKey();
+				JsonElement value = field.getValue();
+
+				if ("SecurityCode".equalsIgnoreCase(name)) {
+					object.remove(name);
+				} else if ("CardNumber".equalsIgnoreCase(name) && value.isJsonPrimitive()) {
+					object.addProperty(name, SimulatedCielo.mask(value.getAsString()));
+				} else {
+					mask(value);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package cieloecommerce.sdk.simulator;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import cieloecommerce.sdk.ecommerce.metrics.Operation;
+
+/**
+ * A failure injected on a share of the requests, instead of the answer the
+ * simulated Cielo would give. Immutable, so it can be shared with the request
+ * threads of the simulator.
+ */
+public final class Fault {
+	enum Kind {
+		STATUS, ERROR, DISCONNECT
+	}
+
+	final Kind kind;
+	final double probability;
+	final int code;
+	final String message;
+	private final Set<Operation> operations;
+
+	private Fault(Kind kind, double probability, int code, String message, Set<Operation> operations) {
+		if (probability < 0 || probability > 1) {
+			throw new IllegalArgumentException("probability must be between 0 and 1");
+		}
+
+		this.kind = kind;
+		this.probability = probability;
+		this.code = code;
+		this.message = message;
+		this.operations = Collections.unmodifiableSet(operations);
+	}
+
+	/**
+	 * Answer with the HTTP status and an empty body, like the 500, 502 and 503
+	 * of an unhealthy gateway
+	 */
+	public static Fault status(int statusCode, double probability) {
+		return new Fault(Kind.STATUS, probability, statusCode, null, EnumSet.allOf(Operation.class));
+	}
+
+	/**
+	 * Answer 400 with a single Cielo error
+	 */
+	public static Fault error(int code, String message, double probability) {
+		return new Fault(Kind.ERROR, probability, code, message, EnumSet.allOf(Operation.class));
+	}
+
+	/**
+	 * Close the connection without answering
+	 */
+	public static Fault disconnect(double probability) {
+		return new Fault(Kind.DISCONNECT, probability, 0, null, EnumSet.allOf(Operation.class));
+	}
+
+	/**
+	 * Inject the fault only on the given operations; by default, on all
+	 *
+	 * @return A new fault, this one is left as is
+	 */
+	public Fault only(Operation first, Operation... rest) {
+		return new Fault(kind, probability, code, message, EnumSet.of(first, rest));
+	}
+
+	boolean appliesTo(Operation operation) {
+		return operations.contains(operation);
+	}
+}
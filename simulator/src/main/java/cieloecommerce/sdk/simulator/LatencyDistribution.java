@@ -0,0 +1,88 @@
+package cieloecommerce.sdk.simulator;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long the simulator holds each response, standing for the network and
+ * Cielo's own processing
+ */
+public interface LatencyDistribution {
+	/**
+	 * No latency at all
+	 */
+	LatencyDistribution NONE = random -> 0;
+
+	/**
+	 * @return The next latency, in nanoseconds
+	 */
+	long next(Random random);
+
+	/**
+	 * The same latency for every response
+	 */
+	static LatencyDistribution fixed(long latency, TimeUnit unit) {
+		long nanos = unit.toNanos(latency);
+
+		return random -> nanos;
+	}
+
+	/**
+	 * Latencies spread evenly between min and max
+	 */
+	static LatencyDistribution uniform(long min, long max, TimeUnit unit) {
+		long minNanos = unit.toNanos(min);
+		long range = unit.toNanos(max) - minNanos;
+
+		if (range < 0) {
+			throw new IllegalArgumentException("max must not be less than min");
+		}
+
+		return random -> minNanos + (long) (random.nextDouble() * range);
+	}
+
+	/**
+	 * Exponentially distributed latencies, as the waits on a busy server
+	 */
+	static LatencyDistribution exponential(long mean, TimeUnit unit) {
+		double meanNanos = unit.toNanos(mean);
+
+		return random -> (long) (-meanNanos * Math.log(1 - random.nextDouble()));
+	}
+
+	/**
+	 * Log-normal latencies, the usual shape of a remote API: most responses
+	 * close to the median and a long tail
+	 *
+	 * @param median
+	 *            Half of the responses are faster than this
+	 * @param p99
+	 *            99% of the responses are faster than this
+	 */
+	static LatencyDistribution logNormal(long median, long p99, TimeUnit unit) {
+		if (p99 < median) {
+			throw new IllegalArgumentException("p99 must not be less than the median");
+		}
+
+		double mu = Math.log(unit.toNanos(median));
+		// 2.326 is the z-score of the 99th percentile
+		double sigma = (Math.log(unit.toNanos(p99)) - mu) / 2.326;
+
+		return random -> (long) Math.exp(mu + sigma * random.nextGaussian());
+	}
+
+	/**
+	 * Replace some of the latencies by the ones of another distribution, for
+	 * an occasional slow response
+	 *
+	 * @param probability
+	 *            The share of the responses that take the tail latency
+	 * @param tail
+	 *            The distribution of the slow responses
+	 */
+	default LatencyDistribution withTail(double probability, LatencyDistribution tail) {
+		LatencyDistribution base = this;
+
+		return random -> random.nextDouble() < probability ? tail.next(random) : base.next(random);
+	}
+}
@@ -0,0 +1,61 @@
+package cieloecommerce.sdk.simulator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+import cieloecommerce.sdk.Environment;
+import cieloecommerce.sdk.ecommerce.metrics.Operation;
+
+/**
+ * Forwards the requests to a real environment, so its answers can be
+ * recorded and replayed later
+ */
+final class Proxy implements Backend {
+	private static final String[] FORWARDED_HEADERS = { "Content-Type", "MerchantId", "MerchantKey", "RequestId" };
+
+	private final Environment target;
+	private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+	Proxy(Environment target) {
+		this.target = target;
+	}
+
+	@Override
+	public Response handle(Request request) throws IOException {
+		String url = request.operation == Operation.QUERY_SALE ? target.getApiQueryURL() : target.getApiUrl();
+		HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url + request.uri().substring(1)))
+				.timeout(Duration.ofSeconds(30))
+				.method(request.method, request.body.length > 0 ? HttpRequest.BodyPublishers.ofByteArray(request.body)
+						: HttpRequest.BodyPublishers.noBody());
+
+		for (String name : FORWARDED_HEADERS) {
+			String value = request.header(name);
+
+			if (value != null) {
+				builder.header(name, value);
+			}
+		}
+
+		HttpResponse<byte[]> forwarded;
+
+		try {
+			forwarded = client.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			throw new InterruptedIOException("Interrupted while waiting for " + url);
+		}
+
+		Response response = new Response(forwarded.statusCode(), forwarded.body());
+
+		forwarded.headers().firstValue("Content-Type").ifPresent(value -> response.headers.put("Content-Type", value));
+		forwarded.headers().firstValue("Retry-After").ifPresent(value -> response.headers.put("Retry-After", value));
+
+		return response;
+	}
+}
@@ -0,0 +1,84 @@
+package cieloecommerce.sdk.simulator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cieloecommerce.sdk.ecommerce.metrics.Operation;
+
+/**
+ * A request received by the simulator, already routed to the operation
+ */
+final class Request {
+	final String method;
+	final String path;
+	final String rawQuery;
+	final Map<String, String> query = new LinkedHashMap<String, String>();
+	final Map<String, String> headers;
+	final byte[] body;
+	final Operation operation;
+	final String paymentId;
+
+	Request(String method, String path, String rawQuery, Map<String, String> headers, byte[] body) {
+		this.method = method;
+		this.path = path;
+		this.rawQuery = rawQuery;
+		this.headers = headers;
+		this.body = body;
+
+		if (rawQuery != null) {
+			for (String parameter : rawQuery.split("&")) {
+				int equals = parameter.indexOf('=');
+
+				if (equals > 0) {
+					query.put(parameter.substring(0, equals), parameter.substring(equals + 1));
+				}
+			}
+		}
+
+		String[] segments = path.replaceAll("^/+|/+$", "").split("/+");
+		Operation operation = null;
+		String paymentId = null;
+
+		if (segments.length >= 2 && "1".equals(segments[0])) {
+			if ("sales".equals(segments[1])) {
+				if (segments.length == 2 && "POST".equals(method)) {
+					operation = Operation.CREATE_SALE;
+				} else if (segments.length == 3 && "GET".equals(method)) {
+					operation = Operation.QUERY_SALE;
+					paymentId = segments[2];
+				} else if (segments.length == 4 && "PUT".equals(method) && "capture".equals(segments[3])) {
+					operation = Operation.CAPTURE_SALE;
+					paymentId = segments[2];
+				} else if (segments.length == 4 && "PUT".equals(method) && "void".equals(segments[3])) {
+					operation = Operation.CANCEL_SALE;
+					paymentId = segments[2];
+				}
+			} else if ("card".equals(segments[1]) && segments.length == 2 && "POST".equals(method)) {
+				operation = Operation.CREATE_CARD_TOKEN;
+			}
+		}
+
+		this.operation = operation;
+		this.paymentId = paymentId;
+	}
+
+	/**
+	 * @return The header, looked up ignoring case, or null
+	 */
+	String header(String name) {
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			if (header.getKey().equalsIgnoreCase(name)) {
+				return header.getValue();
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return The path and the query, as sent
+	 */
+	String uri() {
+		return rawQuery != null ? path + "?" + rawQuery : path;
+	}
+}
@@ -0,0 +1,49 @@
+package cieloecommerce.sdk.simulator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * What the simulator answers, before the latency and the compression
+ */
+final class Response {
+	final int status;
+	final Map<String, String> headers = new LinkedHashMap<String, String>();
+	final byte[] body;
+
+	Response(int status, byte[] body) {
+		this.status = status;
+		this.body = body;
+	}
+
+	static Response empty(int status) {
+		return new Response(status, new byte[0]);
+	}
+
+	static Response json(int status, JsonElement body) {
+		Response response = new Response(status, body.toString().getBytes(StandardCharsets.UTF_8));
+
+		response.headers.put("Content-Type", "application/json; charset=utf-8");
+
+		return response;
+	}
+
+	/**
+	 * 400 with the array of errors Cielo sends, here with a single one
+	 */
+	static Response error(int code, String message) {
+		JsonObject error = new JsonObject();
+		JsonArray errors = new JsonArray();
+
+		error.addProperty("Code", code);
+		error.addProperty("Message", message);
+		errors.add(error);
+
+		return json(400, errors);
+	}
+}
@@ -0,0 +1,489 @@
+package cieloecommerce.sdk.simulator;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * The sales and card tokens kept in memory, answered as the Cielo sandbox
+ * does: the last digit of the card number decides the authorization.
+ * <ul>
+ * <li>0, 1 and 4: authorized</li>
+ * <li>2: not authorized</li>
+ * <li>3: expired card</li>
+ * <li>5: blocked card</li>
+ * <li>6: timed out</li>
+ * <li>7: cancelled card</li>
+ * <li>8: problems with the card</li>
+ * <li>9: randomly authorized or not</li>
+ * </ul>
+ */
+final class SimulatedCielo implements Backend {
+	static final int NOT_FINISHED = 0;
+	static final int AUTHORIZED = 1;
+	static final int PAYMENT_CONFIRMED = 2;
+	static final int DENIED = 3;
+	static final int VOIDED = 10;
+
+	private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+	private static final DateTimeFormatter EXPIRATION = DateTimeFormatter.ofPattern("MM/yyyy");
+
+	private final String apiUrl;
+	private final String apiQueryUrl;
+	private final int maxSales;
+	private final Map<String, JsonObject> sales = new ConcurrentHashMap<String, JsonObject>();
+	private final Queue<String> order = new ConcurrentLinkedQueue<String>();
+	private final Map<String, JsonObject> cardTokens = new ConcurrentHashMap<String, JsonObject>();
+
+	/**
+	 * @param maxSales
+	 *            The oldest sales are forgotten beyond this number, so a long
+	 *            load test doesn't run out of memory
+	 */
+	SimulatedCielo(String apiUrl, String apiQueryUrl, int maxSales) {
+		this.apiUrl = apiUrl;
+		this.apiQueryUrl = apiQueryUrl;
+		this.maxSales = maxSales;
+	}
+
+	@Override
+	public Response handle(Request request) {
+		if (isBlank(request.header("MerchantId"))) {
+			return Response.error(101, "MerchantId is required");
+		}
+
+		if (isBlank(request.header("MerchantKey"))) {
+			return Response.error(131, "MerchantKey is required");
+		}
+
+		switch (request.operation) {
+		case CREATE_SALE:
+			return createSale(request);
+		case QUERY_SALE:
+			return querySale(request.paymentId);
+		case CAPTURE_SALE:
+			return captureSale(request);
+		case CANCEL_SALE:
+			return voidSale(request);
+		case CREATE_CARD_TOKEN:
+			return createCardToken(request);
+		default:
+			return Response.empty(404);
+		}
+	}
+
+	private Response createSale(Request request) {
+		JsonObject sale = parse(request.body);
+
+		if (sale == null) {
+			return Response.error(0, "The request body is not a valid JSON object");
+		}
+
+		if (isBlank(string(sale, "MerchantOrderId"))) {
+			return Response.error(122, "MerchantOrderId is required");
+		}
+
+		JsonObject payment = object(sale, "Payment");
+
+		if (payment == null) {
+			return Response.error(119, "At least one Payment is required");
+		}
+
+		Integer installments = integer(payment, "Installments");
+
+		if (installments != null && installments < 1) {
+			return Response.error(123, "Installments must be greater or equal to one");
+		}
+
+		String type = string(payment, "Type");
+		String paymentId = UUID.randomUUID().toString();
+
+		payment.addProperty("PaymentId", paymentId);
+		payment.addProperty("ReceivedDate", LocalDateTime.now().format(DATE));
+		payment.addProperty("Provider", "Simulado");
+		defaults(payment, "Currency", "BRL");
+		defaults(payment, "Country", "BRA");
+
+		if (type == null || "CreditCard".equals(type)) {
+			Response invalid = authorize(payment);
+
+			if (invalid != null) {
+				return invalid;
+			}
+		} else {
+			payment.addProperty("Status", NOT_FINISHED);
+			payment.addProperty(
+					"DebitCard".equals(type) ? "AuthenticationUrl" : "Url",
+					"https://simulator.local/pay/" + paymentId);
+		}
+
+		payment.add("Links", links(paymentId));
+
+		Response response = Response.json(201, sale);
+
+		store(paymentId, sale);
+
+		return response;
+	}
+
+	/**
+	 * Validate the card and decide the authorization by its last digit
+	 *
+	 * @return The error, or null if the card was valid
+	 */
+	private Response authorize(JsonObject payment) {
+		JsonObject card = object(payment, "CreditCard");
+
+		if (card == null) {
+			return Response.error(124, "Credit Card is required");
+		}
+
+		String token = string(card, "CardToken");
+		JsonObject saved = token != null ? cardTokens.get(token) : null;
+		String number = saved != null ? string(saved, "CardNumber") : string(card, "CardNumber");
+		String expiration = saved != null ? string(saved, "ExpirationDate") : string(card, "ExpirationDate");
+
+		if (isBlank(number)) {
+			return Response.error(127, "You must provide CreditCard Number");
+		}
+
+		if (number.length() > 19) {
+			return Response.error(128, "Card Number length exceeded");
+		}
+
+		if (isBlank(expiration)) {
+			return Response.error(125, "Credit Card Expiration Date is required");
+		}
+
+		// the outcome of an expired card is the one of a card ending in 3,
+		// but the number echoed back is still the one sent
+		char last = number.charAt(number.length() - 1);
+
+		try {
+			if (YearMonth.parse(expiration, EXPIRATION).isBefore(YearMonth.now())) {
+				last = '3';
+			}
+		} catch (DateTimeParseException e) {
+			return Response.error(126, "Credit Card Expiration Date is invalid");
+		}
+
+		if (last == '9') {
+			last = ThreadLocalRandom.current().nextBoolean() ? '4' : '2';
+		}
+
+		String returnCode;
+		String returnMessage;
+
+		switch (last) {
+		case '0':
+		case '1':
+		case '4':
+			returnCode = "4";
+			returnMessage = "Operation Successful";
+			break;
+		case '2':
+			returnCode = "05";
+			returnMessage = "Not Authorized";
+			break;
+		case '3':
+			returnCode = "57";
+			returnMessage = "Card Expired";
+			break;
+		case '5':
+			returnCode = "78";
+			returnMessage = "Blocked Card";
+			break;
+		case '6':
+			returnCode = "99";
+			returnMessage = "Time Out";
+			break;
+		case '7':
+			returnCode = "77";
+			returnMessage = "Card Canceled";
+			break;
+		default:
+			returnCode = "70";
+			returnMessage = "Problems with Creditcard";
+		}
+
+		boolean authorized = "4".equals(returnCode);
+		boolean capture = payment.has("Capture") && payment.get("Capture").getAsBoolean();
+
+		payment.addProperty("Tid", digits(13));
+		payment.addProperty("ProofOfSale", digits(6));
+		payment.addProperty("ReturnCode", returnCode);
+		payment.addProperty("ReturnMessage", returnMessage);
+
+		if (authorized) {
+			payment.addProperty("AuthorizationCode", digits(6));
+
+			if (capture) {
+				payment.addProperty("Status", PAYMENT_CONFIRMED);
+				payment.add("CapturedAmount", payment.get("Amount"));
+				payment.addProperty("CapturedDate", LocalDateTime.now().format(DATE));
+			} else {
+				payment.addProperty("Status", AUTHORIZED);
+			}
+
+			if (card.has("SaveCard") && card.get("SaveCard").getAsBoolean() && saved == null) {
+				card.addProperty("CardToken", saveCard(card));
+			}
+		} else {
+			payment.addProperty("Status", DENIED);
+		}
+
+		card.addProperty("CardNumber", mask(number));
+		card.remove("SecurityCode");
+
+		return null;
+	}
+
+	private Response querySale(String paymentId) {
+		JsonObject sale = sales.get(paymentId);
+
+		if (sale == null) {
+			return Response.empty(404);
+		}
+
+		synchronized (sale) {
+			return Response.json(200, sale);
+		}
+	}
+
+	private Response captureSale(Request request) {
+		JsonObject sale = sales.get(request.paymentId);
+
+		if (sale == null) {
+			return Response.empty(404);
+		}
+
+		synchronized (sale) {
+			JsonObject payment = object(sale, "Payment");
+
+			if (integer(payment, "Status") != AUTHORIZED) {
+				return Response.error(308, "Transaction not available to capture");
+			}
+
+			Integer amount = parameter(request, "amount");
+
+			payment.addProperty("Status", PAYMENT_CONFIRMED);
+			payment.addProperty("CapturedAmount", amount != null ? amount : integer(payment, "Amount"));
+			payment.addProperty("CapturedDate", LocalDateTime.now().format(DATE));
+
+			return update(payment, PAYMENT_CONFIRMED, "6");
+		}
+	}
+
+	private Response voidSale(Request request) {
+		JsonObject sale = sales.get(request.paymentId);
+
+		if (sale == null) {
+			return Response.empty(404);
+		}
+
+		synchronized (sale) {
+			JsonObject payment = object(sale, "Payment");
+			int status = integer(payment, "Status");
+
+			if (status != AUTHORIZED && status != PAYMENT_CONFIRMED) {
+				return Response.error(309, "Transaction not available to void");
+			}
+
+			Integer amount = parameter(request, "amount");
+
+			payment.addProperty("Status", VOIDED);
+			payment.addProperty("VoidedAmount", amount != null ? amount : integer(payment, "Amount"));
+			payment.addProperty("VoidedDate", LocalDateTime.now().format(DATE));
+
+			return update(payment, VOIDED, "9");
+		}
+	}
+
+	/**
+	 * The short answer Cielo gives to captures and voids
+	 */
+	private Response update(JsonObject payment, int status, String returnCode) {
+		JsonObject response = new JsonObject();
+
+		response.addProperty("Status", status);
+		response.addProperty("ReasonCode", 0);
+		response.addProperty("ReasonMessage", "Successful");
+		response.addProperty("ProviderReturnCode", returnCode);
+		response.addProperty("ProviderReturnMessage", "Operation Successful");
+		response.addProperty("ReturnCode", returnCode);
+		response.addProperty("ReturnMessage", "Operation Successful");
+		response.add("Links", links(string(payment, "PaymentId")));
+
+		return Response.json(200, response);
+	}
+
+	private Response createCardToken(Request request) {
+		JsonObject card = parse(request.body);
+
+		if (card == null) {
+			return Response.error(0, "The request body is not a valid JSON object");
+		}
+
+		if (isBlank(string(card, "CardNumber"))) {
+			return Response.error(127, "You must provide CreditCard Number");
+		}
+
+		if (isBlank(string(card, "ExpirationDate"))) {
+			return Response.error(125, "Credit Card Expiration Date is required");
+		}
+
+		try {
+			YearMonth.parse(string(card, "ExpirationDate"), EXPIRATION);
+		} catch (DateTimeParseException e) {
+			return Response.error(126, "Credit Card Expiration Date is invalid");
+		}
+
+		String token = saveCard(card);
+		JsonObject response = new JsonObject();
+		JsonObject link = new JsonObject();
+
+		link.addProperty("Method", "GET");
+		link.addProperty("Rel", "self");
+		link.addProperty("Href", apiQueryUrl + "1/card/" + token);
+		response.addProperty("CardToken", token);
+		response.add("Links", link);
+
+		return Response.json(201, response);
+	}
+
+	private String saveCard(JsonObject card) {
+		String token = UUID.randomUUID().toString();
+		JsonObject saved = new JsonObject();
+
+		saved.add("CardNumber", card.get("CardNumber"));
+		saved.add("ExpirationDate", card.get("ExpirationDate"));
+		cardTokens.put(token, saved);
+
+		return token;
+	}
+
+	private void store(String paymentId, JsonObject sale) {
+		sales.put(paymentId, sale);
+		order.add(paymentId);
+
+		while (sales.size() > maxSales) {
+			String oldest = order.poll();
+
+			if (oldest == null) {
+				break;
+			}
+
+			sales.remove(oldest);
+		}
+	}
+
+	private JsonArray links(String paymentId) {
+		JsonArray links = new JsonArray();
+
+		links.add(link("GET", "self", apiQueryUrl + "1/sales/" + paymentId));
+		links.add(link("PUT", "capture", apiUrl + "1/sales/" + paymentId + "/capture"));
+		links.add(link("PUT", "void", apiUrl + "1/sales/" + paymentId + "/void"));
+
+		return links;
+	}
+
+	private static JsonObject link(String method, String rel, String href) {
+		JsonObject link = new JsonObject();
+
+		link.addProperty("Method", method);
+		link.addProperty("Rel", rel);
+		link.addProperty("Href", href);
+
+		return link;
+	}
+
+	private static JsonObject parse(byte[] body) {
+		try {
+			JsonElement element = new JsonParser().parse(new String(body, StandardCharsets.UTF_8));
+
+			return element.isJsonObject() ? element.getAsJsonObject() : null;
+		} catch (JsonParseException e) {
+			return null;
+		}
+	}
+
+	private static Integer parameter(Request request, String name) {
+		try {
+			String value = request.query.get(name);
+
+			return value != null ? Integer.valueOf(value) : null;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static JsonObject object(JsonObject parent, String name) {
+		JsonElement element = parent.get(name);
+
+		return element != null && element.isJsonObject() ? element.getAsJsonObject() : null;
+	}
+
+	private static String string(JsonObject parent, String name) {
+		JsonElement element = parent.get(name);
+
+		return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+	}
+
+	private static Integer integer(JsonObject parent, String name) {
+		JsonElement element = parent.get(name);
+
+		return element != null && element.isJsonPrimitive() ? element.getAsInt() : null;
+	}
+
+	private static void defaults(JsonObject parent, String name, String value) {
+		if (!parent.has(name)) {
+			parent.addProperty(name, value);
+		}
+	}
+
+	/**
+	 * Keep the first six and the last four digits, as Cielo does
+	 */
+	static String mask(String number) {
+		if (number.length() <= 10) {
+			return number;
+		}
+
+		StringBuilder masked = new StringBuilder(number.substring(0, 6));
+
+		for (int i = 10; i < number.length(); i++) {
+			masked.append('*');
+		}
+
+		return masked.append(number.substring(number.length() - 4)).toString();
+	}
+
+	private static String digits(int length) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		char[] digits = new char[length];
+
+		for (int i = 0; i < length; i++) {
+			digits[i] = (char) ('0' + random.nextInt(10));
+		}
+
+		return new String(digits);
+	}
+
+	private static boolean isBlank(String value) {
+		return value == null || value.trim().isEmpty();
+	}
+}
@@ -0,0 +1,247 @@
+package cieloecommerce.sdk.simulator;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import cieloecommerce.sdk.Merchant;
+import cieloecommerce.sdk.ecommerce.CardToken;
+import cieloecommerce.sdk.ecommerce.CieloEcommerce;
+import cieloecommerce.sdk.ecommerce.Payment;
+import cieloecommerce.sdk.ecommerce.Sale;
+import cieloecommerce.sdk.ecommerce.metrics.Operation;
+import cieloecommerce.sdk.ecommerce.request.CieloRequestException;
+import cieloecommerce.sdk.ecommerce.request.CieloStatusException;
+import junit.framework.TestCase;
+
+public class CieloSimulatorTest extends TestCase {
+	private static final Merchant MERCHANT = new Merchant("merchant", "key");
+	private static final String VALID = "12/2099";
+	private static final String EXPIRED = "01/2000";
+
+	private CieloSimulator simulator;
+	private CieloEcommerce cieloEcommerce;
+
+	@Override
+	protected void setUp() throws Exception {
+		simulator = new CieloSimulator();
+		cieloEcommerce = new CieloEcommerce(MERCHANT, simulator);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		simulator.close();
+	}
+
+	public void testRoutesEachOperation() throws Exception {
+		Sale created = cieloEcommerce.createSale(sale("4024007197692931", VALID));
+		String paymentId = created.getPayment().getPaymentId();
+
+		assertNotNull(paymentId);
+		assertEquals(Integer.valueOf(SimulatedCielo.AUTHORIZED), created.getPayment().getStatus());
+		assertEquals(paymentId, cieloEcommerce.querySale(paymentId).getPayment().getPaymentId());
+
+		cieloEcommerce.captureSale(paymentId);
+
+		assertEquals(Integer.valueOf(SimulatedCielo.PAYMENT_CONFIRMED),
+				cieloEcommerce.querySale(paymentId).getPayment().getStatus());
+
+		cieloEcommerce.cancelSale(paymentId);
+
+		assertEquals(Integer.valueOf(SimulatedCielo.VOIDED),
+				cieloEcommerce.querySale(paymentId).getPayment().getStatus());
+
+		try {
+			cieloEcommerce.captureSale(paymentId);
+			fail("A voided sale can't be captured");
+		} catch (CieloRequestException e) {
+			assertEquals(Integer.valueOf(308), e.getError().getCode());
+		}
+
+		CardToken cardToken = cieloEcommerce.createCardToken(new CardToken().setCardNumber("4024007197692931")
+				.setExpirationDate(VALID).setBrand("Visa").setHolder("Comprador Teste"));
+		Sale sale = new Sale("order-token");
+
+		sale.payment(15700).creditCard("123", "Visa").setCardToken(cardToken.getCardToken());
+
+		assertEquals("4", cieloEcommerce.createSale(sale).getPayment().getReturnCode());
+	}
+
+	public void testUnknownRoutesAndPaymentsAreNotFound() throws Exception {
+		assertEquals(404, get("1/unknown"));
+		assertEquals(404, get("1/sales/" + "00000000-0000-0000-0000-000000000000"));
+
+		try {
+			cieloEcommerce.querySale("00000000-0000-0000-0000-000000000000");
+			fail("The payment doesn't exist");
+		} catch (CieloRequestException e) {
+			assertEquals(Integer.valueOf(404), e.getError().getCode());
+		}
+	}
+
+	public void testLastDigitOfTheCardDecidesTheOutcome() throws Exception {
+		String[] returnCodes = { "4", "4", "05", "57", "4", "78", "99", "77", "70" };
+
+		for (int digit = 0; digit < returnCodes.length; digit++) {
+			Payment payment = cieloEcommerce.createSale(sale("402400719769293" + digit, VALID)).getPayment();
+
+			assertEquals("digit " + digit, returnCodes[digit], payment.getReturnCode());
+			assertEquals("digit " + digit, Integer.valueOf("4".equals(returnCodes[digit])
+					? SimulatedCielo.AUTHORIZED : SimulatedCielo.DENIED), payment.getStatus());
+			assertEquals("402400******293" + digit, payment.getCreditCard().getCardNumber());
+		}
+	}
+
+	public void testExpiredCardIsDeniedButEchoedAsSent() throws Exception {
+		Payment payment = cieloEcommerce.createSale(sale("4024007197692931", EXPIRED)).getPayment();
+
+		assertEquals("57", payment.getReturnCode());
+		assertEquals(Integer.valueOf(SimulatedCielo.DENIED), payment.getStatus());
+		assertEquals("402400******2931", payment.getCreditCard().getCardNumber());
+		assertNull(payment.getCreditCard().getSecurityCode());
+	}
+
+	public void testInvalidSalesAreAnsweredWithCieloErrors() throws Exception {
+		assertCieloError(122, new Sale(null));
+		assertCieloError(126, sale("4024007197692931", "2099-12"));
+
+		Sale noCard = new Sale("order");
+
+		noCard.payment(15700);
+
+		assertCieloError(124, noCard);
+	}
+
+	public void testFaultsAreInjectedOnlyOnTheirOperations() throws Exception {
+		Fault everywhere = Fault.error(999, "Injected", 1);
+		Fault onQueries = everywhere.only(Operation.QUERY_SALE);
+
+		assertNotSame(everywhere, onQueries);
+
+		simulator.addFault(onQueries);
+
+		String paymentId = cieloEcommerce.createSale(sale("4024007197692931", VALID)).getPayment().getPaymentId();
+
+		try {
+			cieloEcommerce.querySale(paymentId);
+			fail("The fault should be injected");
+		} catch (CieloRequestException e) {
+			assertEquals(Integer.valueOf(999), e.getError().getCode());
+			assertEquals("Injected", e.getError().getMessage());
+		}
+
+		// only() left the original applying to every operation
+		simulator.clearFaults().addFault(everywhere);
+
+		assertCieloError(999, sale("4024007197692931", VALID));
+
+		simulator.clearFaults().addFault(Fault.status(503, 1));
+
+		try {
+			cieloEcommerce.captureSale(paymentId);
+			fail("The fault should be injected");
+		} catch (CieloStatusException e) {
+			assertEquals(503, e.getStatusCode());
+		}
+
+		simulator.clearFaults().addFault(Fault.disconnect(1));
+
+		try {
+			cieloEcommerce.querySale(paymentId);
+			fail("The connection should be closed");
+		} catch (IOException e) {
+			// expected
+		}
+
+		simulator.clearFaults().addFault(Fault.status(503, 0));
+
+		assertEquals(paymentId, cieloEcommerce.querySale(paymentId).getPayment().getPaymentId());
+	}
+
+	public void testRequestsBeyondTheRateAreThrottled() throws Exception {
+		simulator.setRateLimit(1, 3);
+
+		cieloEcommerce.createSale(sale("4024007197692931", VALID));
+
+		try {
+			cieloEcommerce.createSale(sale("4024007197692931", VALID));
+			fail("The request should be throttled");
+		} catch (CieloStatusException e) {
+			assertEquals(429, e.getStatusCode());
+			assertEquals(3000, e.getRetryAfter());
+		}
+
+		simulator.removeRateLimit();
+
+		cieloEcommerce.createSale(sale("4024007197692931", VALID));
+	}
+
+	public void testRecordedExchangesAreReplayed() throws Exception {
+		Path file = Files.createTempFile("exchanges", ".jsonl");
+
+		try {
+			simulator.record(file);
+
+			Sale created = cieloEcommerce.createSale(sale("4024007197692931", VALID));
+			String paymentId = created.getPayment().getPaymentId();
+
+			cieloEcommerce.captureSale(paymentId);
+			cieloEcommerce.querySale(paymentId);
+			simulator.close();
+
+			String recorded = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+
+			assertFalse(recorded.contains("4024007197692931"));
+			assertFalse(recorded.contains("SecurityCode"));
+			assertFalse(recorded.contains("\"key\""));
+
+			simulator = new CieloSimulator().replay(file);
+			cieloEcommerce = new CieloEcommerce(MERCHANT, simulator);
+
+			Sale replayed = cieloEcommerce.createSale(sale("4024007197692931", VALID));
+
+			assertEquals(paymentId, replayed.getPayment().getPaymentId());
+			assertEquals(created.getPayment().getTid(), replayed.getPayment().getTid());
+
+			cieloEcommerce.captureSale(paymentId);
+
+			assertEquals(Integer.valueOf(SimulatedCielo.PAYMENT_CONFIRMED),
+					cieloEcommerce.querySale(paymentId).getPayment().getStatus());
+
+			// nothing was recorded for it
+			assertEquals(404, get("1/sales/" + paymentId + "/void"));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private void assertCieloError(int code, Sale sale) throws IOException {
+		try {
+			cieloEcommerce.createSale(sale);
+			fail("Cielo should answer " + code);
+		} catch (CieloRequestException e) {
+			assertEquals(Integer.valueOf(code), e.getError().getCode());
+		}
+	}
+
+	private int get(String path) throws Exception {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(simulator.getApiUrl() + path))
+				.header("MerchantId", MERCHANT.getId()).header("MerchantKey", MERCHANT.getKey()).build();
+
+		return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	private static Sale sale(String cardNumber, String expirationDate) {
+		Sale sale = new Sale("order");
+
+		sale.payment(15700).creditCard("123", "Visa").setCardNumber(cardNumber).setExpirationDate(expirationDate)
+				.setHolder("Comprador Teste");
+
+		return sale;
+	}
+}